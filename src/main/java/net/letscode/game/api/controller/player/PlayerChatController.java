@@ -6,6 +6,7 @@ import net.letscode.game.api.zone.chat.ChatController;
 import net.letscode.game.api.zone.chat.ChatZoneMessage;
 import net.letscode.game.api.zone.chat.ChatZone;
 import net.letscode.game.api.zone.chat.ChatZoneMessageEvent;
+import net.letscode.game.event.EventFilter;
 import net.letscode.game.event.EventHandler;
 import net.letscode.game.server.client.ClientSession;
 import net.letscode.game.server.message.incoming.ChatMessageEvent;
@@ -25,6 +26,23 @@ public class PlayerChatController implements ChatController {
 	private ClientSession session;
 	private Entity entity;
 	private ChatZone zone;
+	
+	/**
+	 * Only accepts zone messages from the zone the controller is currently
+	 * active in. We register weakly on the zone bus, so a controller that was
+	 * never properly deactivated may still be attached to zones it has left.
+	 */
+	public static class CurrentZoneFilter
+			implements EventFilter<ChatZoneMessageEvent> {
+		
+		@Override
+		public boolean accept(Object listener, ChatZoneMessageEvent event) {
+			PlayerChatController c = (PlayerChatController) listener;
+			
+			return c.zone != null && c.zone == event.getContext();
+		}
+		
+	}
 
 	public PlayerChatController(ClientSession session) {
 		this.session = session;
@@ -44,7 +62,11 @@ public class PlayerChatController implements ChatController {
 		zone = entity.getZoneByType(ChatZone.class);
 		
 		// also register for chat zone events
-		zone.bus().register(this);
+		// the zone outlives us, so register weakly in case we're never
+		// deactivated properly
+		if (zone != null) {
+			zone.bus().registerWeak(this);
+		}
 	}
 	
 	/**
@@ -70,10 +92,11 @@ public class PlayerChatController implements ChatController {
 	/**
 	 * Handles a ChatZone message event; that is, an event that occurs when
 	 * some other zone member sends a message to the zone (or possibly even this
-	 * client).
+	 * client). Messages from zones other than the current one are filtered out
+	 * before this is called.
 	 * @param event the event
 	 */
-	@EventHandler
+	@EventHandler(filter = CurrentZoneFilter.class)
 	public void handleChatZoneMessage(ChatZoneMessageEvent event) {
 		log.info("Pushing message from zone to client: " + event);
 		
@@ -99,7 +122,9 @@ public class PlayerChatController implements ChatController {
 	@Override
 	public void onDeactivated(Entity e) {
 		// remove events
-		zone.bus().deregister(e);
+		if (zone != null) {
+			zone.bus().deregister(this);
+		}
 		
 		this.entity = null;
 		this.zone = null;
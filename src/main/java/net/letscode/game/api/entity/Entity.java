@@ -14,6 +14,7 @@ import net.letscode.game.api.zone.Zone;
 import net.letscode.game.event.EventBus;
 import net.letscode.game.event.EventBusClient;
 import net.letscode.game.event.EventBusProvider;
+import net.letscode.game.event.EventBusSchema;
 
 /**
  * Defines a basic entity. An entity is essentially some server-side object,
@@ -22,6 +23,10 @@ import net.letscode.game.event.EventBusProvider;
  * @author timothyb89
  */
 public class Entity implements TargetedSerializable<Entity>, EventBusProvider {
+	
+	private static final EventBusSchema SCHEMA = EventBusSchema.of(
+			EntityZoneEnteredEvent.class,
+			EntityZoneExitedEvent.class);
 
 	/**
 	 * A private list of zones that this entity is currently in. Note that this
@@ -42,10 +47,7 @@ public class Entity implements TargetedSerializable<Entity>, EventBusProvider {
 		controllers = new HashMap<>();
 		views = new HashMap<>();
 		
-		bus = new EventBus() {{
-			add(EntityZoneEnteredEvent.class);
-			add(EntityZoneExitedEvent.class);
-		}};
+		bus = new EventBus(SCHEMA);
 	}
 	
 	@Override
@@ -169,9 +171,13 @@ public class Entity implements TargetedSerializable<Entity>, EventBusProvider {
 	 * Entity.
 	 */
 	public void purgeControllers() {
-		for (Class<? extends Controller> c : controllers.keySet()) {
-			setController(c, null);
+		// setController() doesn't accept null implementations, so deactivate
+		// the controllers directly
+		for (Controller c : controllers.values()) {
+			c.onDeactivated(this);
 		}
+		
+		controllers.clear();
 	}
 	
 	/** Gets this entity's View implementation for the given zone type.
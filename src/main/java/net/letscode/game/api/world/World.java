@@ -3,7 +3,6 @@ package net.letscode.game.api.world;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import net.letscode.game.api.zone.Zone;
 import net.letscode.game.api.zone.chat.ChatZone;
@@ -11,6 +10,9 @@ import net.letscode.game.config.Config;
 import net.letscode.game.event.EventBus;
 import net.letscode.game.event.EventBusClient;
 import net.letscode.game.event.EventBusProvider;
+import net.letscode.game.event.EventBusSchema;
+import net.letscode.game.event.EventExecutors;
+import net.letscode.game.event.EventRingBuffer;
 
 /**
  * Defines the game world. The world is, primarily, a container for Zone
@@ -20,6 +22,11 @@ import net.letscode.game.event.EventBusProvider;
 @Slf4j
 public class World implements EventBusProvider {
 	
+	private static final EventBusSchema SCHEMA = EventBusSchema.of(
+			WorldTickEvent.class,
+			ZoneAddedEvent.class,
+			ZoneRemovedEvent.class);
+	
 	private static World instance;
 	
 	private List<Zone> zones;
@@ -29,22 +36,31 @@ public class World implements EventBusProvider {
 	 * a specifically defined zone.
 	 */
 	@Getter
-	@Setter
 	private Zone defaultZone;
 	
 	private EventBus bus;
 	
+	/**
+	 * The buffer of events handed to the world thread from other threads
+	 * (e.g. incoming client messages). This is drained at the start of each
+	 * tick, so the resulting listeners run on the world thread.
+	 */
+	@Getter
+	private EventRingBuffer inbox;
+	
 	private boolean killed;
 	private long lastTick;
+	private long lastShedCount;
 	
 	private World() {
 		zones = new ArrayList<>();
 		
-		bus = new EventBus() {{
-			add(WorldTickEvent.class);
-			add(ZoneAddedEvent.class);
-			add(ZoneRemovedEvent.class);
-		}};
+		inbox = new EventRingBuffer(Config.get().server.inboxSize);
+		
+		bus = new EventBus(SCHEMA);
+		
+		// let low priority tick handlers slip a tick when we fall behind
+		bus.setShedPriority(Config.get().server.shedPriority);
 		
 		// a quick and dirty singleton
 		initZones();
@@ -62,7 +78,7 @@ public class World implements EventBusProvider {
 		// TODO: do real zone initialization at some point
 		// right now, we'll just add a dummy chatzone for testing
 		
-		defaultZone = new ChatZone();
+		setDefaultZone(new ChatZone());
 		addZone(new ChatZone());
 	}
 	
@@ -77,7 +93,12 @@ public class World implements EventBusProvider {
 	public void start() {
 		killed = false;
 		
-		new Thread(new WorldThread(), "WorldThread").start();
+		Thread thread = new Thread(new WorldThread(), "WorldThread");
+		
+		// handlers declaring ExecutionContext.WORLD are queued in our inbox
+		// when their events are pushed from other threads
+		EventExecutors.setWorld(thread, inbox);
+		thread.start();
 	}
 	
 	public List<Zone> getZones() {
@@ -86,31 +107,69 @@ public class World implements EventBusProvider {
 	
 	public void addZone(Zone zone) {
 		zones.add(zone);
+		zone.setAttached(true);
 		bus.push(new ZoneAddedEvent(zone));
 	}
 	
 	public void removeZone(Zone zone) {
 		zones.remove(zone);
+		if (zone != defaultZone) {
+			zone.setAttached(false);
+		}
+		
 		bus.push(new ZoneRemovedEvent(zone));
 	}
 	
+	/**
+	 * Sets the default zone. The default zone is flushed at the end of each
+	 * tick along with the zones in {@link #getZones()}, whether or not it is
+	 * one of them.
+	 * @param zone the new default zone
+	 */
+	public void setDefaultZone(Zone zone) {
+		Zone old = defaultZone;
+		if (old != null && old != zone && !zones.contains(old)) {
+			old.setAttached(false);
+		}
+		
+		defaultZone = zone;
+		if (zone != null) {
+			zone.setAttached(true);
+		}
+	}
+	
 	protected void tick() {
 		long tickRate = Config.get().server.tickRate;
 		long timestamp = System.currentTimeMillis();
 		long elapsed = timestamp - lastTick;
 		long deadline = timestamp + tickRate;
 		
+		// dispatch everything handed to us since the last tick first
+		inbox.drain();
+		
 		// puch the tick event to the event bus
 		// this is synchronous and will return after all listeners have been
 		// processed
-		bus.push(new WorldTickEvent(
+		bus.push(WorldTickEvent.obtain(
 				timestamp, elapsed, tickRate, deadline));
 		
+		// deliver whatever the zones deferred during the tick
+		for (Zone z : zones) {
+			z.flushDeferred();
+		}
+		
+		if (defaultZone != null && !zones.contains(defaultZone)) {
+			defaultZone.flushDeferred();
+		}
+		
 		long end = System.currentTimeMillis();
-		long diff = end - deadline;
+		long diff = deadline - end;
 		
 		if (diff < 0) {
-			log.warn("Tick duration overflow! {} ms", diff);
+			long shed = bus.getShedCount();
+			log.warn("Tick duration overflow! {} ms ({} handlers shed)",
+					-diff, shed - lastShedCount);
+			lastShedCount = shed;
 		} else {
 			// sleep the remaining time to prevent CPU hammering
 			// TODO: make this toggleable?
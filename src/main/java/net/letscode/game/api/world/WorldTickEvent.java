@@ -1,42 +1,100 @@
 package net.letscode.game.api.world;
 
-import lombok.Data;
-import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
-import net.letscode.game.event.Event;
+import net.letscode.game.event.DeadlineEvent;
+import net.letscode.game.event.EventPool;
+import net.letscode.game.event.PooledEvent;
 
 /**
  * An event dispatched when a new tick or iteration of game loop has started.
  * Zones and entities may use this event to process events over a period of
  * time.
+ * <p>Tick events are pooled: {@link World} obtains them with
+ * {@link #obtain(long, long, long, long)} and the instance is reused once the
+ * tick has been dispatched, so handlers must not keep a reference to the
+ * event.</p>
+ * <p>Tick events carry the tick deadline, so when a tick overruns the world
+ * bus sheds low priority tick handlers (see
+ * {@link net.letscode.game.config.Config.ServerConfig#shedPriority}). Any
+ * handler that needs to run every tick should use a priority above that.</p>
+ * @see PooledEvent
  * @author timothyb
  */
-@Data
-@EqualsAndHashCode(callSuper = false)
 @ToString
-
-public class WorldTickEvent extends Event {
+public class WorldTickEvent extends PooledEvent implements DeadlineEvent {
+	
+	private static final EventPool<WorldTickEvent> POOL = new EventPool<>(
+			new EventPool.Factory<WorldTickEvent>() {
+		
+		@Override
+		public WorldTickEvent create() {
+			return new WorldTickEvent();
+		}
+		
+	}, 4);
 	
 	/**
 	 * The timestamp of the current tick. This is not necessarily the time that
 	 * the current event listener is notified as other (potentially higher
 	 * priority) events may have been processed first.
 	 */
-	private final long timestamp;
+	@Getter
+	private long timestamp;
 	
 	/**
 	 * The elapsed time since the last tick occurred.
 	 */
-	private final long elapsed;
+	@Getter
+	private long elapsed;
 	
 	/**
 	 * The current tick rate, in milliseconds.
 	 */
-	private final long tickRate;
+	@Getter
+	private long tickRate;
 	
 	/**
 	 * The expected ending timestamp for the current game tick.
 	 */
-	private final long deadline;
+	@Getter
+	private long deadline;
+	
+	private WorldTickEvent() {
+		
+	}
+	
+	public WorldTickEvent(
+			long timestamp, long elapsed, long tickRate, long deadline) {
+		set(timestamp, elapsed, tickRate, deadline);
+	}
+	
+	/**
+	 * Gets a pooled tick event with the given values.
+	 * @param timestamp the tick timestamp
+	 * @param elapsed the time since the last tick
+	 * @param tickRate the current tick rate
+	 * @param deadline the expected end of the tick
+	 * @return a pooled tick event
+	 */
+	public static WorldTickEvent obtain(
+			long timestamp, long elapsed, long tickRate, long deadline) {
+		WorldTickEvent event = POOL.acquire();
+		event.set(timestamp, elapsed, tickRate, deadline);
+		
+		return event;
+	}
+	
+	private void set(long timestamp, long elapsed, long tickRate, long deadline) {
+		this.timestamp = timestamp;
+		this.elapsed = elapsed;
+		this.tickRate = tickRate;
+		this.deadline = deadline;
+	}
+	
+	@Override
+	protected void reset() {
+		set(0, 0, 0, 0);
+	}
 	
 }
@@ -7,9 +7,11 @@ import java.util.LinkedList;
 import java.util.List;
 import net.letscode.game.api.entity.Entity;
 import net.letscode.game.api.util.TargetedSerializable;
+import net.letscode.game.event.Event;
 import net.letscode.game.event.EventBus;
 import net.letscode.game.event.EventBusClient;
 import net.letscode.game.event.EventBusProvider;
+import net.letscode.game.event.EventBusSchema;
 
 /**
  * A zone is an abstract collection of entities. 
@@ -20,6 +22,10 @@ import net.letscode.game.event.EventBusProvider;
  */
 public class Zone implements TargetedSerializable<Entity>, EventBusProvider {
 	
+	private static final EventBusSchema SCHEMA = EventBusSchema.of(
+			ZoneEnteredEvent.class,
+			ZoneExitedEvent.class);
+	
 	/**
 	 * The {@link EventBus} for this Zone. This should be used to push new
 	 * events to registered listener classes. Note that all event types will
@@ -37,11 +43,14 @@ public class Zone implements TargetedSerializable<Entity>, EventBusProvider {
 	 */
 	protected List<Entity> entities; 
 	
+	/**
+	 * Whether {@link #flushDeferred()} is called at the end of every tick,
+	 * i.e. whether the zone is attached to the {@link World}.
+	 */
+	private volatile boolean attached;
+	
 	public Zone() {
-		bus = new EventBus() {{
-			add(ZoneEnteredEvent.class);
-			add(ZoneExitedEvent.class);
-		}};
+		bus = new EventBus(SCHEMA);
 		
 		entities = new LinkedList<>();
 	}
@@ -139,6 +148,53 @@ public class Zone implements TargetedSerializable<Entity>, EventBusProvider {
 		return entities.contains(entity);
 	}
 	
+	/**
+	 * Pushes any events deferred on this zone's bus during the current tick.
+	 * This is called by {@link World} at the end of each tick.
+	 * @see EventBus#pushDeferred(net.letscode.game.event.Event)
+	 */
+	public void flushDeferred() {
+		bus.flushDeferred();
+	}
+	
+	/**
+	 * Checks whether this zone's deferred events are flushed by the
+	 * {@link World} at the end of each tick.
+	 * @return true if the zone is attached to the world
+	 */
+	public boolean isAttached() {
+		return attached;
+	}
+	
+	/**
+	 * Marks this zone as attached to (or detached from) the {@link World}.
+	 * This is called by the world as zones are added and removed. Any events
+	 * still deferred when a zone is detached are pushed immediately.
+	 * @param attached true if the world will flush this zone every tick
+	 */
+	public void setAttached(boolean attached) {
+		this.attached = attached;
+		
+		if (!attached) {
+			bus.flushDeferred();
+		}
+	}
+	
+	/**
+	 * Defers an event until the end of the current tick if this zone is
+	 * attached to the {@link World}, and otherwise pushes it immediately, as
+	 * nothing would ever flush it.
+	 * @param event the event to push
+	 * @see EventBus#pushDeferred(Event)
+	 */
+	protected void pushDeferred(Event event) {
+		if (attached) {
+			bus.pushDeferred(event);
+		} else {
+			bus.push(event);
+		}
+	}
+	
 	//
 	// serialization specifics
 	//
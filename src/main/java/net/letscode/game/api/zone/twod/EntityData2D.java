@@ -38,7 +38,8 @@ public class EntityData2D implements QuadTreeItem {
 	 */
 	@Getter private double velocity;
 
-	private QuadTree parent;
+	private QuadTree<EntityData2D> parent;
+	private int quadTreeIndex;
 	
 	public EntityData2D(Entity entity) {
 		this.entity = entity;
@@ -65,17 +66,28 @@ public class EntityData2D implements QuadTreeItem {
 	 * @return 
 	 */
 	@Override
-	public QuadTree getQuadTreeParent() {
+	public QuadTree<EntityData2D> getQuadTreeParent() {
 		return parent;
 	}
 
 	@Override
-	public void setQuadTreeParent(QuadTree parent) {
-		this.parent = parent;
+	@SuppressWarnings("unchecked")
+	public void setQuadTreeParent(QuadTree<?> parent) {
+		this.parent = (QuadTree<EntityData2D>) parent;
+	}
+	
+	@Override
+	public int getQuadTreeIndex() {
+		return quadTreeIndex;
+	}
+	
+	@Override
+	public void setQuadTreeIndex(int index) {
+		this.quadTreeIndex = index;
 	}
 	
 	/**
-	 * Gets the entity {@code y} position, ignoring any ongoing movement. If the
+	 * Gets the entity {@code x} position, ignoring any ongoing movement. If the
 	 * entity is currently moving, this will return the position of the entity
 	 * before the current movement event started. In other words, the returned
 	 * position will be the starting point for the entity's current trajectory,
@@ -88,7 +100,7 @@ public class EntityData2D implements QuadTreeItem {
 	 */
 	@Override
 	public double getX() {
-		return position.y;
+		return position.x;
 	}
 	
 	/**
@@ -103,7 +115,7 @@ public class EntityData2D implements QuadTreeItem {
 	 */
 	@Override
 	public double getY() {
-		return position.x;
+		return position.y;
 	}
 	
 	/**
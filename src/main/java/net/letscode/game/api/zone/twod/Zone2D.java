@@ -1,5 +1,6 @@
 package net.letscode.game.api.zone.twod;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import lombok.Getter;
@@ -8,16 +9,20 @@ import net.letscode.game.api.entity.Entity;
 import net.letscode.game.api.world.WorldTickEvent;
 import net.letscode.game.misc.QuadTree;
 import net.letscode.game.api.zone.Zone;
-import net.letscode.game.event.EventHandler;
+import net.letscode.game.event.Event;
+import net.letscode.game.event.EventConsumer;
 import net.letscode.game.misc.Boundry2D;
 import net.letscode.game.misc.Point2D;
 
 /**
  * Defines a Zone in which entities are placed in a continuous 2d plane. 
+ * <p>The zone updates its entities on each {@link WorldTickEvent}; it should
+ * be subscribed to the world's bus, e.g.
+ * {@code world.bus().subscribe(WorldTickEvent.class, zone)}.</p>
  * @author timothyb89
  */
 @Slf4j
-public class Zone2D extends Zone {
+public class Zone2D extends Zone implements EventConsumer<WorldTickEvent> {
 	
 	@Getter
 	private Boundry2D bounds;
@@ -78,7 +83,11 @@ public class Zone2D extends Zone {
 	
 	/**
 	 * Immediately moves the specified entity to the given position within this
-	 * zone.
+	 * zone. The resulting {@link Zone2DMovementEvent} is deferred until the end
+	 * of the current tick, or pushed immediately if this zone isn't attached
+	 * to the world (see {@link #pushDeferred(Event)}).
+	 * <p>The entity's existing position is updated in place, so {@code pos}
+	 * is not retained and may be reused by the caller.</p>
 	 * @param e the entity to move
 	 * @param pos the new location for the entity
 	 */
@@ -89,16 +98,51 @@ public class Zone2D extends Zone {
 					+ "currently in this zone.");
 		}
 		
-		Point2D start = data.getPosition();
-		data.setPosition(pos);
+		Point2D position = data.getPosition();
 		
-		entityMap.update(data);
+		// movement events are coalesced per entity, so listeners only see
+		// one per tick no matter how many times the entity moves. the event
+		// copies the old position, so it can be overwritten afterwards
+		pushDeferred(Zone2DMovementEvent.obtain(data, position, pos));
+		
+		position.x = pos.x;
+		position.y = pos.y;
 		
-		bus.push(new Zone2DMovementEvent(data, start, pos));
+		entityMap.update(data);
+	}
+	
+	/**
+	 * Finds the entities within the given area of this zone, by their last
+	 * stopped position (see {@link EntityData2D#getX()}).
+	 * @param area the area to search
+	 * @param results the collection to add matching entity data to
+	 * @return {@code results}
+	 */
+	public <C extends Collection<? super EntityData2D>> C getEntitiesWithin(
+			Boundry2D area, C results) {
+		return entityMap.query(area, results);
 	}
 	
-	@EventHandler
-	public void tick(WorldTickEvent event) {
+	/**
+	 * Finds the entities within {@code radius} units of the given point, by
+	 * their last stopped position (see {@link EntityData2D#getX()}).
+	 * @param x the center x
+	 * @param y the center y
+	 * @param radius the search radius
+	 * @param results the collection to add matching entity data to
+	 * @return {@code results}
+	 */
+	public <C extends Collection<? super EntityData2D>> C getEntitiesNear(
+			double x, double y, double radius, C results) {
+		return entityMap.queryRadius(x, y, radius, results);
+	}
+	
+	/**
+	 * Updates entities on each world tick.
+	 * @param event the tick event
+	 */
+	@Override
+	public void accept(WorldTickEvent event) {
 		updateEntities();
 	}
 	
@@ -1,26 +1,99 @@
 package net.letscode.game.api.zone.twod;
 
-import lombok.Data;
-import lombok.EqualsAndHashCode;
-import net.letscode.game.event.Event;
+import lombok.Getter;
+import lombok.ToString;
+import net.letscode.game.event.CoalescingEvent;
+import net.letscode.game.event.EventPool;
+import net.letscode.game.event.PooledEvent;
 import net.letscode.game.misc.Point2D;
 
 /**
- *
+ * An event fired when an entity moves within a {@link Zone2D}. Movement events
+ * are deferred until the end of the tick and coalesced per entity, so if an
+ * entity moves several times within a tick, only the last movement is
+ * delivered.
+ * <p>Movement events are pooled, and own their {@code start} and {@code end}
+ * points: the coordinates are copied in when the event is obtained, and both
+ * the event and its points are reused after dispatch. Handlers must copy out
+ * any values they need to keep rather than holding on to the event or its
+ * points.</p>
+ * @see PooledEvent
  * @author timothyb
  */
-@Data
-@EqualsAndHashCode(callSuper = false)
-public class Zone2DMovementEvent extends Event {
+@ToString
+public class Zone2DMovementEvent extends PooledEvent implements CoalescingEvent {
 	
-	private final EntityData2D entity;
+	/**
+	 * Up to one movement event per moving entity is held until the end of the
+	 * tick, so the pool needs to be large enough to take them all back.
+	 */
+	public static final int POOL_CAPACITY = 4096;
+	
+	private static final EventPool<Zone2DMovementEvent> POOL = new EventPool<>(
+			new EventPool.Factory<Zone2DMovementEvent>() {
+		
+		@Override
+		public Zone2DMovementEvent create() {
+			return new Zone2DMovementEvent();
+		}
+		
+	}, POOL_CAPACITY);
+	
+	@Getter
+	private EntityData2D entity;
+	
+	@Getter
 	private final Point2D start;
+	
+	@Getter
 	private final Point2D end;
 	
+	private Zone2DMovementEvent() {
+		start = new Point2D();
+		end = new Point2D();
+	}
+	
 	public Zone2DMovementEvent(EntityData2D entity, Point2D start, Point2D end) {
+		this();
+		
+		set(entity, start, end);
+	}
+	
+	/**
+	 * Gets a pooled movement event. The coordinates of {@code start} and
+	 * {@code end} are copied, so the caller is free to reuse them.
+	 * @param entity the entity that moved
+	 * @param start the position before the move
+	 * @param end the position after the move
+	 * @return a pooled movement event
+	 */
+	public static Zone2DMovementEvent obtain(
+			EntityData2D entity, Point2D start, Point2D end) {
+		Zone2DMovementEvent event = POOL.acquire();
+		event.set(entity, start, end);
+		
+		return event;
+	}
+	
+	private void set(EntityData2D entity, Point2D start, Point2D end) {
 		this.entity = entity;
-		this.start = start;
-		this.end = end;
+		this.start.x = start.x;
+		this.start.y = start.y;
+		this.end.x = end.x;
+		this.end.y = end.y;
+	}
+	
+	@Override
+	protected void reset() {
+		entity = null;
+		start.x = start.y = 0;
+		end.x = end.y = 0;
+	}
+	
+	@Override
+	public Object getCoalescingKey() {
+		// EntityData2D's hash changes as it moves, so key on the entity
+		return entity.getEntity();
 	}
 	
 }
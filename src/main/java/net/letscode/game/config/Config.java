@@ -6,6 +6,7 @@ import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
+import net.letscode.game.event.EventPriority;
 
 /**
  * Handles loading and saving of server configuration in YAML files.
@@ -66,6 +67,13 @@ public class Config {
 		public int port = 8333;
 		public String webDirectory = "./web";
 		public long tickRate = 15;
+		public int inboxSize = 4096;
+		
+		/**
+		 * Tick handlers at or below this priority are skipped for a tick once
+		 * the tick has overrun; see EventBus.setShedPriority().
+		 */
+		public int shedPriority = EventPriority.LOW;
 		
 	}
 	
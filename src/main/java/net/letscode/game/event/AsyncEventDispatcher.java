@@ -0,0 +1,510 @@
+package net.letscode.game.event;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dispatches events to {@link EventBus} instances on an {@link Executor}
+ * rather than on the pushing thread. This is the backend for
+ * {@link EventBus#pushAsync(Event, Object)}.
+ * <p>Events are ordered through a fixed number of serial "lanes". Every event
+ * is pushed with a key, and all events with the same key go to the same lane
+ * and are dispatched one at a time, in the order they were pushed. Events with
+ * different keys will usually land in different lanes and may be dispatched in
+ * parallel. By default the key is the bus itself, so each
+ * {@code ClientSession}, {@code Zone}, etc. sees its own events in order.</p>
+ * <p>The number of events waiting across all lanes is bounded. When the bound
+ * is reached, the {@link OverflowPolicy} decides what happens to new
+ * events.</p>
+ * <p>Note that handlers running on a lane are no longer on the pushing thread,
+ * and so are responsible for their own thread safety.</p>
+ * <p>If the executor rejects a lane (e.g. because it has been shut down), the
+ * lane's waiting events are dispatched on the thread that tried to schedule
+ * it instead, so that no event is ever stranded in a lane.</p>
+ */
+@Slf4j
+public class AsyncEventDispatcher {
+	
+	/**
+	 * The maximum number of events a lane will dispatch before giving its
+	 * executor thread back, so that a single busy lane can't starve others.
+	 */
+	public static final int LANE_BATCH = 64;
+	
+	/**
+	 * Defines what happens when an event is pushed while the dispatcher is
+	 * already holding its maximum number of waiting events.
+	 */
+	public enum OverflowPolicy {
+		
+		/**
+		 * The new event is dropped and counted in {@link #getDiscarded()}.
+		 */
+		DISCARD,
+		
+		/**
+		 * The pushing thread blocks until space is available. A handler
+		 * already running on one of this dispatcher's lanes never blocks, as
+		 * it may be holding up the very lane it would wait for; its event is
+		 * dispatched on its own thread instead, as with {@link #CALLER_RUNS}.
+		 */
+		BLOCK,
+		
+		/**
+		 * The event is dispatched synchronously on the pushing thread. This
+		 * keeps every event, but it may be delivered ahead of events with the
+		 * same key that are still waiting in their lane.
+		 */
+		CALLER_RUNS
+		
+	}
+	
+	private final Executor executor;
+	private final boolean ownsExecutor;
+	
+	private final Lane[] lanes;
+	private final int laneMask;
+	
+	@Getter
+	private final int capacity;
+	private final Semaphore permits;
+	
+	@Getter
+	@Setter
+	private volatile OverflowPolicy overflowPolicy;
+	
+	private final AtomicLong submitted;
+	private final AtomicLong discarded;
+	private final AtomicLong callerRuns;
+	
+	/**
+	 * The lane being drained by the current thread, if any.
+	 */
+	private final ThreadLocal<Lane> draining;
+	
+	private volatile boolean shutdown;
+	private final AtomicBoolean warnedRejection;
+	
+	/**
+	 * Creates a new dispatcher running on the given executor.
+	 * @param executor the executor to run lanes on
+	 * @param lanes the number of lanes; rounded up to a power of two
+	 * @param capacity the maximum number of waiting events
+	 * @param policy the policy to apply when {@code capacity} is reached
+	 */
+	public AsyncEventDispatcher(
+			Executor executor, int lanes, int capacity, OverflowPolicy policy) {
+		this(executor, false, lanes, capacity, policy);
+	}
+	
+	/**
+	 * Creates a new dispatcher with its own pool of daemon threads, one per
+	 * available processor (but never more than there are lanes).
+	 * @param lanes the number of lanes; rounded up to a power of two
+	 * @param capacity the maximum number of waiting events
+	 * @param policy the policy to apply when {@code capacity} is reached
+	 */
+	public AsyncEventDispatcher(int lanes, int capacity, OverflowPolicy policy) {
+		this(Executors.newFixedThreadPool(
+						Math.min(lanes,
+								Runtime.getRuntime().availableProcessors()),
+						new LaneThreadFactory()),
+				true, lanes, capacity, policy);
+	}
+	
+	private AsyncEventDispatcher(
+			Executor executor, boolean ownsExecutor,
+			int lanes, int capacity, OverflowPolicy policy) {
+		if (lanes < 1 || capacity < 1) {
+			throw new IllegalArgumentException(
+					"Lane count and capacity must be positive");
+		}
+		
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		
+		int size = Integer.highestOneBit(lanes);
+		if (size < lanes) {
+			size <<= 1;
+		}
+		
+		this.lanes = new Lane[size];
+		for (int i = 0; i < size; i++) {
+			this.lanes[i] = new Lane();
+		}
+		laneMask = size - 1;
+		
+		this.capacity = capacity;
+		permits = new Semaphore(capacity);
+		overflowPolicy = policy;
+		
+		submitted = new AtomicLong();
+		discarded = new AtomicLong();
+		callerRuns = new AtomicLong();
+		
+		draining = new ThreadLocal<>();
+		warnedRejection = new AtomicBoolean();
+	}
+	
+	/**
+	 * Queues the given event to be pushed to {@code bus} on the lane for
+	 * {@code key}. Once the dispatcher has been shut down, the event is
+	 * instead pushed on the calling thread, as with
+	 * {@link OverflowPolicy#CALLER_RUNS}.
+	 * @param bus the bus to push the event to
+	 * @param event the event to push
+	 * @param key the ordering key; events with equal keys are dispatched in
+	 *     order
+	 * @return true if the event was queued or dispatched, false if it was
+	 *     discarded
+	 */
+	public boolean dispatch(EventBus bus, Event event, Object key) {
+		if (shutdown) {
+			callerRuns.incrementAndGet();
+			bus.push(event);
+			return true;
+		}
+		
+		if (!permits.tryAcquire()) {
+			switch (overflowPolicy) {
+				case DISCARD:
+					discarded.incrementAndGet();
+					PooledEvent.recycle(event);
+					return false;
+				case BLOCK:
+					// blocking a lane thread may stop the lanes from ever
+					// draining, so it runs the event itself instead
+					if (draining.get() == null) {
+						permits.acquireUninterruptibly();
+						break;
+					}
+					
+					// fall through
+				case CALLER_RUNS:
+				default:
+					callerRuns.incrementAndGet();
+					bus.push(event);
+					return true;
+			}
+		}
+		
+		submitted.incrementAndGet();
+		lanes[laneFor(key)].submit(new Task(bus, event));
+		
+		return true;
+	}
+	
+	private int laneFor(Object key) {
+		if (key == null) {
+			return 0;
+		}
+		
+		// spread the hash bits, as keys are mostly identity hashed objects
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		
+		return h & laneMask;
+	}
+	
+	/**
+	 * Gets the number of lanes in this dispatcher.
+	 * @return the lane count
+	 */
+	public int getLaneCount() {
+		return lanes.length;
+	}
+	
+	/**
+	 * Gets the number of events currently waiting across all lanes.
+	 * @return the total queue depth
+	 */
+	public int getQueueDepth() {
+		return capacity - permits.availablePermits();
+	}
+	
+	/**
+	 * Gets the number of events currently waiting in the given lane.
+	 * @param lane the lane index
+	 * @return the lane queue depth
+	 */
+	public int getLaneDepth(int lane) {
+		return lanes[lane].depth.get();
+	}
+	
+	/**
+	 * @return the number of events accepted onto a lane
+	 */
+	public long getSubmitted() {
+		return submitted.get();
+	}
+	
+	/**
+	 * @return the number of events dispatched from a lane
+	 */
+	public long getCompleted() {
+		long count = 0;
+		for (Lane lane : lanes) {
+			count += lane.completed.get();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Gets the number of events dispatched from the given lane.
+	 * @param lane the lane index
+	 * @return the number of events dispatched from the lane
+	 */
+	public long getLaneCompleted(int lane) {
+		return lanes[lane].completed.get();
+	}
+	
+	/**
+	 * @return the number of events dropped by {@link OverflowPolicy#DISCARD}
+	 */
+	public long getDiscarded() {
+		return discarded.get();
+	}
+	
+	/**
+	 * @return the number of events dispatched on the pushing thread, by
+	 *     {@link OverflowPolicy#CALLER_RUNS}, by {@link OverflowPolicy#BLOCK}
+	 *     from a lane, or after {@link #shutdown()}
+	 */
+	public long getCallerRuns() {
+		return callerRuns.get();
+	}
+	
+	/**
+	 * Gets the average time events have spent waiting in their lane before
+	 * being dispatched, across all lanes.
+	 * @see #getLaneAverageLatency(int)
+	 * @return the average lane latency, in nanoseconds
+	 */
+	public double getAverageLatency() {
+		long count = 0;
+		long total = 0;
+		for (Lane lane : lanes) {
+			count += lane.completed.get();
+			total += lane.totalLatency.get();
+		}
+		
+		return count == 0 ? 0 : (double) total / count;
+	}
+	
+	/**
+	 * Gets the longest time an event has spent waiting in its lane before
+	 * being dispatched, across all lanes.
+	 * @see #getLaneMaxLatency(int)
+	 * @return the maximum lane latency, in nanoseconds
+	 */
+	public long getMaxLatency() {
+		long max = 0;
+		for (Lane lane : lanes) {
+			max = Math.max(max, lane.maxLatency.get());
+		}
+		
+		return max;
+	}
+	
+	/**
+	 * Gets the average time events have spent waiting in the given lane
+	 * before being dispatched. A single slow or hot key shows up here long
+	 * before it moves the overall average.
+	 * @param lane the lane index
+	 * @return the average latency of the lane, in nanoseconds
+	 */
+	public double getLaneAverageLatency(int lane) {
+		Lane l = lanes[lane];
+		
+		long count = l.completed.get();
+		return count == 0 ? 0 : (double) l.totalLatency.get() / count;
+	}
+	
+	/**
+	 * Gets the longest time an event has spent waiting in the given lane
+	 * before being dispatched.
+	 * @param lane the lane index
+	 * @return the maximum latency of the lane, in nanoseconds
+	 */
+	public long getLaneMaxLatency(int lane) {
+		return lanes[lane].maxLatency.get();
+	}
+	
+	/**
+	 * Shuts down the thread pool, if this dispatcher created its own. Events
+	 * already queued will still be dispatched, and events dispatched from now
+	 * on are pushed on the calling thread.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		
+		if (ownsExecutor) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+	
+	private static class Task {
+		
+		private final EventBus bus;
+		private final Event event;
+		private final long queued;
+		
+		public Task(EventBus bus, Event event) {
+			this.bus = bus;
+			this.event = event;
+			this.queued = System.nanoTime();
+		}
+		
+	}
+	
+	/**
+	 * A serial lane. Tasks are appended to an unbounded queue (the bound is
+	 * enforced globally by the dispatcher) and the lane is scheduled on the
+	 * executor whenever it has work and isn't already running, so at most one
+	 * thread ever drains a given lane.
+	 */
+	private class Lane implements Runnable {
+		
+		private final Queue<Task> tasks;
+		private final AtomicBoolean scheduled;
+		private final AtomicInteger depth;
+		
+		private final AtomicLong completed;
+		private final AtomicLong totalLatency;
+		private final AtomicLong maxLatency;
+		
+		public Lane() {
+			tasks = new ConcurrentLinkedQueue<>();
+			scheduled = new AtomicBoolean();
+			depth = new AtomicInteger();
+			
+			completed = new AtomicLong();
+			totalLatency = new AtomicLong();
+			maxLatency = new AtomicLong();
+		}
+		
+		public void submit(Task task) {
+			depth.incrementAndGet();
+			tasks.add(task);
+			
+			schedule();
+		}
+		
+		private void schedule() {
+			while (scheduled.compareAndSet(false, true)) {
+				try {
+					executor.execute(this);
+					return;
+				} catch (RejectedExecutionException ex) {
+					if (!shutdown && warnedRejection.compareAndSet(false, true)) {
+						log.warn("Event lane rejected by executor, dispatching "
+								+ "its events on the calling thread", ex);
+					}
+				}
+				
+				// we still own the lane, so drain it here rather than leave
+				// its events (and their permits) stranded
+				drain(Integer.MAX_VALUE);
+				scheduled.set(false);
+				
+				if (tasks.isEmpty()) {
+					return;
+				}
+			}
+		}
+		
+		@Override
+		public void run() {
+			drain(LANE_BATCH);
+			scheduled.set(false);
+			
+			// tasks may have arrived after the last poll() but before the flag
+			// was cleared, in which case their submit() didn't reschedule us
+			if (!tasks.isEmpty()) {
+				schedule();
+			}
+		}
+		
+		/**
+		 * Dispatches up to {@code limit} waiting events. Only the thread that
+		 * set {@code scheduled} may call this.
+		 */
+		private void drain(int limit) {
+			Task task;
+			int processed = 0;
+			
+			// the lane may already be draining further up the stack, if the
+			// executor rejected it from a handler on another lane
+			Lane outer = draining.get();
+			draining.set(this);
+			
+			try {
+				while (processed < limit && (task = tasks.poll()) != null) {
+					depth.decrementAndGet();
+					permits.release();
+					
+					recordLatency(System.nanoTime() - task.queued);
+					
+					try {
+						task.bus.push(task.event);
+					} catch (Throwable t) {
+						// push() already isolates handler errors, so this would
+						// be a bug in the bus itself; don't let it kill the lane
+						log.error("Error dispatching event " + task.event, t);
+					}
+					
+					completed.incrementAndGet();
+					processed++;
+				}
+			} finally {
+				if (outer == null) {
+					draining.remove();
+				} else {
+					draining.set(outer);
+				}
+			}
+		}
+		
+		private void recordLatency(long latency) {
+			totalLatency.addAndGet(latency);
+			
+			long max;
+			while (latency > (max = maxLatency.get())) {
+				if (maxLatency.compareAndSet(max, latency)) {
+					break;
+				}
+			}
+		}
+		
+	}
+	
+	private static class LaneThreadFactory implements ThreadFactory {
+		
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "EventLane-" + count.incrementAndGet());
+			t.setDaemon(true);
+			
+			return t;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,23 @@
+package net.letscode.game.event;
+
+/**
+ * Defines an {@link Event} that may be merged with other events of the same
+ * type when deferred. When several events of the same class with equal
+ * coalescing keys are pushed with {@link EventBus#pushDeferred(Event)} before
+ * the bus is flushed, only the most recent one is delivered, in the position
+ * of the first.
+ * <p>This is intended for high-frequency "latest state" events, like
+ * movement, where listeners only care about where things ended up by the end
+ * of a tick.</p>
+ */
+public interface CoalescingEvent {
+	
+	/**
+	 * Gets the key identifying what this event is about, for example the
+	 * entity that moved. Keys are compared using {@code equals()}, so the key
+	 * must not be an object whose hash code changes while it's deferred.
+	 * @return the coalescing key for this event
+	 */
+	public Object getCoalescingKey();
+	
+}
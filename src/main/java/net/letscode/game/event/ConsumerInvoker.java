@@ -0,0 +1,22 @@
+package net.letscode.game.event;
+
+/**
+ * The {@link EventInvoker} for {@link EventConsumer} subscriptions. The
+ * consumer itself is the listener, so a single stateless invoker serves every
+ * subscription.
+ */
+final class ConsumerInvoker implements EventInvoker {
+	
+	public static final ConsumerInvoker INSTANCE = new ConsumerInvoker();
+	
+	private ConsumerInvoker() {
+		
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public void invoke(Object listener, Event event) {
+		((EventConsumer<Event>) listener).accept(event);
+	}
+	
+}
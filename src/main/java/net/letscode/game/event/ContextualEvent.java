@@ -8,6 +8,9 @@ import lombok.ToString;
  * could be, for example, the zone in which some entity event took place, or
  * more generally the primary containing entity for the subject of the
  * notification.
+ * <p>Listeners can subscribe to the events of a single context with
+ * {@link EventBus#register(Object, Object)}, rather than receiving every
+ * event of the type and filtering by hand.</p>
  * @author timothyb89
  * @param <T> the type of context for the event
  */
@@ -0,0 +1,23 @@
+package net.letscode.game.event;
+
+/**
+ * An event that should be fully dispatched by some deadline, such as the end
+ * of a game tick. When an {@link EventBus} has a
+ * {@link EventBus#setShedPriority(int) shed priority} set, low priority
+ * handlers for deadline events may be skipped once the deadline has passed,
+ * so that an overrunning tick doesn't get any further behind.
+ * <p>A handler shed from an event never receives that event; it is not
+ * queued for later. The handler is guaranteed to receive the next deadline
+ * event pushed to the same queue instead.</p>
+ * @see EventQueueDefinition#push(Event, int, int)
+ */
+public interface DeadlineEvent {
+	
+	/**
+	 * Gets the time by which dispatch of this event should have finished.
+	 * @return the deadline, in milliseconds, as with
+	 *     {@link System#currentTimeMillis()}
+	 */
+	public long getDeadline();
+	
+}
@@ -0,0 +1,125 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds events deferred with {@link EventBus#pushDeferred(Event)} until the bus
+ * is flushed, merging {@link CoalescingEvent}s with the same type and key.
+ * <p>Events are kept in arrival order. Coalescing events are delivered at the
+ * position of the first event for their key, but with the contents of the
+ * last: the position of each key is tracked, and a later event for the same
+ * key replaces the earlier one in place. Replaced {@link PooledEvent}s are
+ * released immediately, as they will never be delivered.</p>
+ * <p>Two sets of buffers are swapped on each flush so that events deferred by
+ * handlers during a flush are held for the next one.</p>
+ */
+class DeferredEventQueue {
+	
+	private Buffer active;
+	private Buffer spare;
+	
+	public DeferredEventQueue() {
+		active = new Buffer();
+		spare = new Buffer();
+	}
+	
+	/**
+	 * Adds the given event to the queue.
+	 * @param event the event to defer
+	 */
+	public synchronized void add(Event event) {
+		active.add(event);
+	}
+	
+	/**
+	 * Gets the number of events currently waiting to be delivered, after
+	 * coalescing.
+	 * @return the number of deferred events
+	 */
+	public synchronized int size() {
+		return active.events.size();
+	}
+	
+	/**
+	 * Pushes all deferred events to the given bus as a single batch.
+	 * @param bus the bus to push to
+	 * @return the number of events delivered
+	 */
+	public int flush(EventBus bus) {
+		Buffer buffer;
+		synchronized (this) {
+			if (active.events.isEmpty()) {
+				return 0;
+			}
+			
+			buffer = active;
+			active = (spare != null) ? spare : new Buffer();
+			spare = null;
+		}
+		
+		int delivered = buffer.events.size();
+		try {
+			bus.pushAll(buffer.events);
+		} finally {
+			buffer.clear();
+			
+			synchronized (this) {
+				spare = buffer;
+			}
+		}
+		
+		return delivered;
+	}
+	
+	private static class Buffer {
+		
+		private final List<Event> events;
+		private final Map<Class<?>, Map<Object, Integer>> positions;
+		
+		public Buffer() {
+			events = new ArrayList<>();
+			positions = new IdentityHashMap<>();
+		}
+		
+		public void add(Event event) {
+			if (event instanceof CoalescingEvent) {
+				Map<Object, Integer> keys = positions.get(event.getClass());
+				if (keys == null) {
+					keys = new HashMap<>();
+					positions.put(event.getClass(), keys);
+				}
+				
+				Object key = ((CoalescingEvent) event).getCoalescingKey();
+				Integer pos = keys.get(key);
+				if (pos != null) {
+					// supersede the earlier event, keeping its position
+					Event previous = events.set(pos, event);
+					if (previous != event) {
+						PooledEvent.recycle(previous);
+					}
+					
+					return;
+				}
+				
+				keys.put(key, events.size());
+			}
+			
+			events.add(event);
+		}
+		
+		public void clear() {
+			events.clear();
+			
+			// keep the per-type maps around; they'll likely be needed again
+			for (Map<Object, Integer> keys : positions.values()) {
+				keys.clear();
+			}
+		}
+		
+	}
+	
+}
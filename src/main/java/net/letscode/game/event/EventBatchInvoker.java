@@ -0,0 +1,24 @@
+package net.letscode.game.event;
+
+import java.util.List;
+
+/**
+ * An {@link EventInvoker} for a batch handler, that is, a handler declared
+ * with {@code @EventHandler(batch = true)} taking a {@code List} of events.
+ * Batch invokers can still be called with a single event through
+ * {@link #invoke(Object, Event)}, in which case the handler receives a list
+ * containing only that event.
+ * @see EventBus#pushAll(java.util.Collection)
+ */
+public interface EventBatchInvoker extends EventInvoker {
+	
+	/**
+	 * Invokes the handler on the given listener with a batch of events.
+	 * @param listener the listener instance that owns the handler
+	 * @param events the events to pass to the handler; never empty
+	 * @throws Throwable any exception thrown by the handler
+	 */
+	public void invokeBatch(Object listener, List<Event> events)
+			throws Throwable;
+	
+}
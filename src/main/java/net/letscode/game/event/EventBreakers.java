@@ -0,0 +1,148 @@
+package net.letscode.game.event;
+
+/**
+ * Global settings for handler circuit breakers. Every queue entry counts the
+ * exceptions thrown by its handler (or its filter), and once a handler has
+ * failed {@link #getFailureThreshold()} times within
+ * {@link #getFailureWindow()} milliseconds, it is suspended: it is skipped
+ * for a backoff period, after which a single invocation is let through as a
+ * trial. If the trial succeeds, the handler is resumed; otherwise it is
+ * suspended again for twice as long, up to {@link #getMaxBackoff()}.
+ * <p>Errors are logged with a stack trace at most once per
+ * {@link #getLogInterval()} milliseconds per entry; the errors in between are
+ * only counted, and summarized in the next report. This keeps a single broken
+ * handler on a busy queue from flooding the log.</p>
+ * <p>Breaker state has no cost for handlers that don't fail: it is only
+ * allocated on an entry's first failure. Trips, skipped invocations and
+ * currently suspended entries are always recorded in the handler's
+ * {@link HandlerMetrics}, whether or not {@link EventMetrics} are
+ * enabled.</p>
+ * <p>Breakers are enabled by default. While disabled, handlers are never
+ * suspended and every error is logged, as before.</p>
+ */
+public final class EventBreakers {
+	
+	private static volatile boolean enabled = true;
+	
+	private static volatile int failureThreshold = 5;
+	private static volatile long failureWindow = 10000;
+	
+	private static volatile long initialBackoff = 1000;
+	private static volatile long maxBackoff = 300000;
+	
+	private static volatile long logInterval = 10000;
+	
+	private EventBreakers() {
+		
+	}
+	
+	/**
+	 * @return true if failing handlers are suspended
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Enables or disables handler circuit breakers. Handlers that are
+	 * suspended when breakers are disabled resume after their next trial,
+	 * whether it succeeds or not.
+	 * @param enabled true to suspend failing handlers
+	 */
+	public static void setEnabled(boolean enabled) {
+		EventBreakers.enabled = enabled;
+	}
+	
+	/**
+	 * @return the number of failures within the window that suspends a
+	 *     handler
+	 */
+	public static int getFailureThreshold() {
+		return failureThreshold;
+	}
+	
+	/**
+	 * Sets the number of failures within the window that suspends a handler.
+	 * @param threshold the failure threshold
+	 */
+	public static void setFailureThreshold(int threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("Threshold must be positive");
+		}
+		
+		failureThreshold = threshold;
+	}
+	
+	/**
+	 * @return the window failures are counted in, in milliseconds
+	 */
+	public static long getFailureWindow() {
+		return failureWindow;
+	}
+	
+	/**
+	 * Sets the window failures are counted in. The count starts over with the
+	 * first failure after a window has passed.
+	 * @param millis the window, in milliseconds
+	 */
+	public static void setFailureWindow(long millis) {
+		if (millis < 1) {
+			throw new IllegalArgumentException("Window must be positive");
+		}
+		
+		failureWindow = millis;
+	}
+	
+	/**
+	 * @return the time a handler is first suspended for, in milliseconds
+	 */
+	public static long getInitialBackoff() {
+		return initialBackoff;
+	}
+	
+	/**
+	 * @return the longest time a handler is suspended for, in milliseconds
+	 */
+	public static long getMaxBackoff() {
+		return maxBackoff;
+	}
+	
+	/**
+	 * Sets the suspension backoff. A handler is first suspended for
+	 * {@code initial} milliseconds, and the time doubles each time its trial
+	 * invocation fails, up to {@code max}.
+	 * @param initial the initial backoff, in milliseconds
+	 * @param max the maximum backoff, in milliseconds
+	 */
+	public static void setBackoff(long initial, long max) {
+		if (initial < 1 || max < initial) {
+			throw new IllegalArgumentException(
+					"Invalid backoff: " + initial + ", " + max);
+		}
+		
+		initialBackoff = initial;
+		maxBackoff = max;
+	}
+	
+	/**
+	 * @return the minimum time between logged errors for an entry, in
+	 *     milliseconds
+	 */
+	public static long getLogInterval() {
+		return logInterval;
+	}
+	
+	/**
+	 * Sets the minimum time between logged errors for an entry. Only applies
+	 * while breakers are enabled.
+	 * @param millis the log interval, in milliseconds; 0 to log every error
+	 */
+	public static void setLogInterval(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("Interval must not be negative");
+		}
+		
+		logInterval = millis;
+	}
+	
+}
@@ -2,9 +2,13 @@ package net.letscode.game.event;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -34,50 +38,217 @@ import lombok.extern.slf4j.Slf4j;
  * priority may prevent handlers further down in the queue from being executed.
  * While useful, this should be used with caution to ensure potentially
  * important events may still get an opportunity to be notified.</p>
+ * <p>Registering a listener returns an {@link EventRegistration} handle. The
+ * bus also keeps a reverse index from each listener to its registrations, so
+ * {@link #deregister(Object)} and {@link EventRegistration#cancel()} only
+ * touch the entries belonging to that listener, however many other listeners
+ * the bus holds.</p>
+ * <p>Listeners for {@link ContextualEvent}s may also be registered against a
+ * single context with {@link #register(Object, Object)}, in which case they
+ * only receive events for that context, found with a direct lookup rather
+ * than by filtering every event.</p>
+ * <p>The event types a bus defines are described by an immutable, shared
+ * {@link EventBusSchema}, and queues are only created for types that have
+ * listeners, so buses that are never listened to (e.g. those of most
+ * entities) stay small.</p>
  * @author timothyb89
  */
 @Slf4j
 public class EventBus {
 	
-	private List<EventQueueDefinition> definitions;
+	/**
+	 * The schema and the queues created so far. This is replaced (never
+	 * modified) whenever a type is added or removed or a queue is created, so
+	 * that lookups during {@link #push(Event)} see a consistent table and
+	 * cost the same regardless of how many event types this bus defines.
+	 */
+	private volatile QueueTable table;
+	
+	/**
+	 * Maps registered listeners to their registrations, for deregistration.
+	 * Created with the first registration.
+	 */
+	private volatile ListenerIndex listeners;
+	
+	/**
+	 * Client-safe interface for the event bus. Created on first use.
+	 */
+	private volatile EventBusClient client;
 	
 	/**
-	 * Client-safe interface for the event bus
+	 * The dispatcher used by {@link #pushAsync(Event, Object)}. If this is
+	 * {@code null} (the default), asynchronous pushes are dispatched
+	 * synchronously instead. Dispatchers may be shared between buses.
 	 */
 	@Getter
-	private EventBusClient client;
+	@Setter
+	private volatile AsyncEventDispatcher asyncDispatcher;
+	
+	/**
+	 * Events held by {@link #pushDeferred(Event)}. This is only created once
+	 * something is actually deferred.
+	 */
+	private volatile DeferredEventQueue deferred;
+	
+	/**
+	 * The highest handler priority that may be shed when a
+	 * {@link DeadlineEvent} overruns its deadline, or
+	 * {@link EventPriority#NO_SHEDDING} (the default) to never shed handlers.
+	 * @see EventQueueDefinition#push(Event, int, int)
+	 */
+	@Getter
+	@Setter
+	private volatile int shedPriority = EventPriority.NO_SHEDDING;
 	
 	public EventBus() {
-		definitions = new ArrayList<>();
+		this(EventBusSchema.EMPTY);
+	}
+	
+	/**
+	 * Creates a bus defining the event types in the given schema. This is
+	 * equivalent to calling {@link #add(Class)} for each type in turn.
+	 * @param schema the schema
+	 */
+	public EventBus(EventBusSchema schema) {
+		table = schema.getEmptyTable();
+	}
+	
+	/**
+	 * Gets the client-safe interface for this bus.
+	 * @return the client
+	 */
+	public EventBusClient getClient() {
+		EventBusClient c = client;
+		if (c == null) {
+			synchronized (this) {
+				c = client;
+				if (c == null) {
+					c = client = new EventBusClient(this);
+				}
+			}
+		}
 		
-		client = new EventBusClient(this);
+		return c;
 	}
 	
 	/**
-	 * Defines a new event type. A new event queue will be added for the
-	 * provided class, and future invocations of {@link push(Event)} will notify
-	 * registered listeners.
-	 * @param e the event class to register
+	 * Gets the schema describing the event types this bus defines.
+	 * @return the current schema
 	 */
-	public void add(Class<? extends Event> clazz) {
-		definitions.add(new EventQueueDefinition(clazz));
+	public EventBusSchema getSchema() {
+		return table.getSchema();
 	}
 	
 	/**
-	 * Gets the EventQueueDefinition for the given class. If no event queue has
-	 * been created for the given class, {@code null} is returned. Note that
-	 * this will not return superclasses of the given class, only exact matches.
+	 * Defines a new event type. Future invocations of {@link #push(Event)}
+	 * will notify listeners registered for it. Defining a type that is
+	 * already defined has no effect.
+	 * <p>Listeners registered before the type was added are not added to its
+	 * queue.</p>
+	 * @param clazz the event class to register
+	 */
+	public synchronized void add(Class<? extends Event> clazz) {
+		QueueTable t = table;
+		table = t.withSchema(t.getSchema().with(clazz));
+	}
+	
+	/**
+	 * Gets the EventQueueDefinition for the given class, creating it if the
+	 * class is defined but nothing has listened to it yet. If the given class
+	 * is not defined, {@code null} is returned. Note that this will not return
+	 * superclasses of the given class, only exact matches.
+	 * @see #findQueueForClass(Class)
 	 * @param clazz The class to search for
 	 * @return the event queue for the given class
 	 */
 	public EventQueueDefinition getQueueForClass(Class<? extends Event> clazz) {
-		for (EventQueueDefinition d : definitions) {
-			if (d.getEventType() == clazz) {
-				return d;
+		EventQueueDefinition def = table.get(clazz);
+		if (def != null) {
+			return def;
+		}
+		
+		int slot = table.getSchema().slotOf(clazz);
+		return (slot < 0) ? null : queueFor(slot, clazz);
+	}
+	
+	/**
+	 * Finds the EventQueueDefinition for the given class without creating it.
+	 * If the class is not defined, or nothing has listened to it yet (so its
+	 * queue hasn't been created), {@code null} is returned.
+	 * @see #getQueueForClass(Class)
+	 * @param clazz The class to search for
+	 * @return the event queue for the given class, if it exists
+	 */
+	public EventQueueDefinition findQueueForClass(
+			Class<? extends Event> clazz) {
+		return table.get(clazz);
+	}
+	
+	/**
+	 * Gets the queue for the given slot and type, creating it if needed. The
+	 * type is passed along in case the schema changes in the meantime.
+	 */
+	private synchronized EventQueueDefinition queueFor(
+			int slot, Class<? extends Event> type) {
+		QueueTable t = table;
+		if (t.getSchema().getType(slot) != type) {
+			slot = t.getSchema().slotOf(type);
+			if (slot < 0) {
+				return null;
+			}
+		}
+		
+		EventQueueDefinition def = t.get(slot);
+		if (def == null) {
+			def = new EventQueueDefinition(type);
+			table = t.withQueue(slot, def);
+		}
+		
+		return def;
+	}
+	
+	/**
+	 * Takes a snapshot of the metrics for every event queue on this bus.
+	 * Queues only record metrics while {@link EventMetrics} are enabled.
+	 * Types that nothing has listened to yet report empty stats.
+	 * @return a snapshot for each queue, in the order the types were added
+	 */
+	public List<QueueStats> getStats() {
+		QueueTable t = table;
+		EventBusSchema schema = t.getSchema();
+		
+		List<QueueStats> stats = new ArrayList<>(schema.size());
+		for (int i = 0; i < schema.size(); i++) {
+			EventQueueDefinition d = t.get(i);
+			if (d != null) {
+				stats.add(d.getStats());
+			} else {
+				stats.add(new QueueStats(schema.getType(i), 0, 0, 0, 0,
+						Collections.<HandlerStats>emptyList()));
 			}
 		}
 		
-		return null;
+		return stats;
+	}
+	
+	/**
+	 * Gets the total number of handler invocations shed across all queues on
+	 * this bus because a {@link DeadlineEvent} overran its deadline.
+	 * @see #setShedPriority(int)
+	 * @return the number of shed handler invocations
+	 */
+	public long getShedCount() {
+		QueueTable t = table;
+		
+		long count = 0;
+		for (int i = 0; i < t.getSchema().size(); i++) {
+			EventQueueDefinition d = t.get(i);
+			if (d != null) {
+				count += d.getShedCount();
+			}
+		}
+		
+		return count;
 	}
 	
 	/**
@@ -85,8 +256,9 @@ public class EventBus {
 	 * class is found, the method fails silently.
 	 * @param clazz the class for which to remove the queue
 	 */
-	public void remove(Class<? extends Event> clazz) {
-		definitions.remove(getQueueForClass(clazz));
+	public synchronized void remove(Class<? extends Event> clazz) {
+		QueueTable t = table;
+		table = t.withSchema(t.getSchema().without(clazz));
 	}
 	
 	/**
@@ -98,12 +270,71 @@ public class EventBus {
 	 * registration time)
 	 * <p>If no queue exists for the given event type, no listeners will be
 	 * notified and the method will fail silently.</p>
+	 * <p>{@link PooledEvent}s are released back to their pool once dispatch
+	 * has finished.</p>
+	 * <p>If a {@link #setShedPriority(int) shed priority} has been set and
+	 * the event is a {@link DeadlineEvent}, handlers at or below that priority
+	 * may be skipped if the event's deadline has already passed. Skipped
+	 * handlers don't receive the event later.</p>
 	 * @param event the event to push
 	 */
 	public void push(Event event) {
-		EventQueueDefinition def = getQueueForClass(event.getClass());
-		if (def != null) {
-			def.push(event);
+		EventQueueDefinition def = table.get(event.getClass());
+		try {
+			if (def != null) {
+				def.push(event, Integer.MIN_VALUE, shedPriority);
+			}
+		} finally {
+			PooledEvent.recycle(event);
+		}
+	}
+	
+	/**
+	 * Pushes a batch of events to the bus. Events are grouped by their exact
+	 * type, and each group is dispatched to its queue in one go: handlers
+	 * declared with {@code @EventHandler(batch = true)} receive the whole
+	 * group as a single list once the group has been dispatched, while
+	 * ordinary handlers are invoked in exactly the order they would have been
+	 * had each event been passed to {@link #push(Event)} in turn.
+	 * <p>Events of the same type are delivered in the order given. Groups are
+	 * delivered in the order their types first appear, so events of
+	 * different types are not necessarily delivered in their original
+	 * relative order.</p>
+	 * <p>{@link PooledEvent}s are released once the whole batch has been
+	 * dispatched. {@link DeadlineEvent}s in the batch are subject to the
+	 * {@link #setShedPriority(int) shed priority}, as with
+	 * {@link #push(Event)}.</p>
+	 * @see EventQueueDefinition#pushAll(List, int)
+	 * @param events the events to push
+	 */
+	public void pushAll(Collection<? extends Event> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		
+		Map<Class<?>, List<Event>> groups = new LinkedHashMap<>();
+		for (Event e : events) {
+			List<Event> group = groups.get(e.getClass());
+			if (group == null) {
+				group = new ArrayList<>();
+				groups.put(e.getClass(), group);
+			}
+			
+			group.add(e);
+		}
+		
+		QueueTable t = table;
+		try {
+			for (Map.Entry<Class<?>, List<Event>> group : groups.entrySet()) {
+				EventQueueDefinition def = t.get(group.getKey());
+				if (def != null) {
+					def.pushAll(group.getValue(), shedPriority);
+				}
+			}
+		} finally {
+			for (Event e : events) {
+				PooledEvent.recycle(e);
+			}
 		}
 	}
 	
@@ -117,12 +348,89 @@ public class EventBus {
 	 * @param priority the minimum event priority 
 	 */
 	public void push(Event event, int priority) {
-		EventQueueDefinition def = getQueueForClass(event.getClass());
-		if (def != null) {
-			def.push(event, priority);
+		EventQueueDefinition def = table.get(event.getClass());
+		try {
+			if (def != null) {
+				def.push(event, priority, shedPriority);
+			}
+		} finally {
+			PooledEvent.recycle(event);
+		}
+	}
+	
+	/**
+	 * Pushes the given event to the bus asynchronously, using this bus as the
+	 * ordering key. All events pushed asynchronously to this bus will be
+	 * dispatched in the order they were pushed.
+	 * @see #pushAsync(Event, Object)
+	 * @param event the event to push
+	 */
+	public void pushAsync(Event event) {
+		pushAsync(event, this);
+	}
+	
+	/**
+	 * Pushes the given event to the bus asynchronously. The event is handed to
+	 * the {@link AsyncEventDispatcher} for this bus and will be dispatched on
+	 * one of its threads, as with {@link #push(Event)}. Events pushed with the
+	 * same {@code key} are dispatched one at a time in the order they were
+	 * pushed; events with different keys may be dispatched in parallel.
+	 * <p>If no dispatcher has been set, the event is pushed synchronously.</p>
+	 * @see AsyncEventDispatcher
+	 * @param event the event to push
+	 * @param key the ordering key for the event
+	 */
+	public void pushAsync(Event event, Object key) {
+		AsyncEventDispatcher dispatcher = asyncDispatcher;
+		if (dispatcher == null) {
+			push(event);
+		} else {
+			dispatcher.dispatch(this, event, key);
 		}
 	}
 	
+	/**
+	 * Defers the given event until {@link #flushDeferred()} is next called,
+	 * at which point it is pushed as part of a batch, as with
+	 * {@link #pushAll(Collection)}. Deferred events of the same type are
+	 * delivered in the order they were deferred.
+	 * <p>Events implementing {@link CoalescingEvent} are merged: if several
+	 * events of the same class and coalescing key are deferred before a flush,
+	 * only the most recent is delivered. This is useful for events that may be
+	 * fired many times within a tick, but where only the final state
+	 * matters.</p>
+	 * @see CoalescingEvent
+	 * @param event the event to defer
+	 */
+	public void pushDeferred(Event event) {
+		DeferredEventQueue queue = deferred;
+		if (queue == null) {
+			synchronized (this) {
+				queue = deferred;
+				if (queue == null) {
+					queue = deferred = new DeferredEventQueue();
+				}
+			}
+		}
+		
+		queue.add(event);
+	}
+	
+	/**
+	 * Pushes all events deferred with {@link #pushDeferred(Event)} since the
+	 * last flush, as a batch (see {@link #pushAll(Collection)}). Events
+	 * deferred by listeners during the flush are held until the next call.
+	 * @return the number of events pushed
+	 */
+	public int flushDeferred() {
+		DeferredEventQueue queue = deferred;
+		if (queue == null) {
+			return 0;
+		}
+		
+		return queue.flush(this);
+	}
+	
 	/**
 	 * Registers the given method to the event bus. The object is assumed to be
 	 * of the class that contains the given method.
@@ -140,79 +448,250 @@ public class EventBus {
 	 * @param m the method to register
 	 * @param priority the event priority
 	 * @param vetoable vetoable flag
+	 * @return a handle for the registered method
 	 */
-	protected void registerMethod(
+	protected EventRegistration registerMethod(
 			Object o, Method m, int priority, boolean vetoable) {
-		// check the parameter types, and attempt to resolve the event
-		// type
-		if (m.getParameterTypes().length != 1) {
-			log.warn("Skipping invalid event handler definition: " + m);
-			return;
-		}
-
-		// make sure the parameter is an Event
-		// this additional/technically unneeded check should cut down on the
-		// time required to process the loop over the definitions for methods
-		// that don't match
-		Class<?> param = m.getParameterTypes()[0];
-		if (!Event.class.isAssignableFrom(param)) {
-			log.warn("Skipping event handler without an Event parameter: " + m);
-			return;
+		return registerMethod(o, m, priority, vetoable, false);
+	}
+	
+	/**
+	 * Registers the given method to the event bus, optionally holding the
+	 * object through a weak reference.
+	 * @see #registerMethod(Object, Method, int, boolean)
+	 * @see #registerWeak(Object)
+	 * @param o an instance of the class containing the method <code>m</code>
+	 * @param m the method to register
+	 * @param priority the event priority
+	 * @param vetoable vetoable flag
+	 * @param weak if true, the bus will not keep {@code o} reachable
+	 * @return a handle for the registered method
+	 */
+	protected EventRegistration registerMethod(
+			Object o, Method m, int priority, boolean vetoable, boolean weak) {
+		List<EventQueueEntry> entries = new ArrayList<>();
+		
+		HandlerMethod handler = HandlerMethod.create(m, priority, vetoable);
+		if (handler != null) {
+			addHandler(o, handler, weak, null, entries);
 		}
+		
+		return index(o, entries);
+	}
 	
+	/**
+	 * Adds the given handler to every compatible queue, collecting the new
+	 * entries into {@code added}. If {@code context} is not null, the handler
+	 * is only added to {@link ContextualEvent} queues, keyed on that context.
+	 */
+	private void addHandler(
+			Object o, HandlerMethod handler, boolean weak, Object context,
+			List<EventQueueEntry> added) {
+		EventBusSchema schema = table.getSchema();
+		
 		// add the method to all assignable definitions.
 		// this may result in the method being added to multiple queues,
 		// that is, the queues for each superclass.
 		// (this is intended and is fundamentally what makes subclassed events
 		// work as expected)
-		for (EventQueueDefinition d : definitions) {
-			if (param.isAssignableFrom(d.getEventType())) {
-				d.getQueue().add(new EventQueueEntry(o, m, priority, vetoable));
-				log.debug("Added {} to queue {}", m, d.getEventType());
+		for (int slot : schema.getCompatibleSlots(handler.getEventType())) {
+			if (context != null && !schema.isContextual(slot)) {
+				continue;
+			}
+			
+			EventQueueDefinition d = queueFor(slot, schema.getType(slot));
+			if (d != null) {
+				EventQueueEntry entry = new EventQueueEntry(
+						o, weak, context,
+						handler.getMethod(), handler.getInvoker(),
+						handler.getPriority(), handler.isVetoable());
+				entry.setFilter(handler.getFilter());
+				entry.setExecution(handler.getExecution());
+				d.add(entry);
+				added.add(entry);
+				log.debug("Added {} to queue {}", entry.getHandlerName(),
+						d.getEventType());
 			}
 		}
 	}
 	
 	/**
 	 * Registers all methods of the given object annotated with
-	 * {@link EventHandler}.
+	 * {@link EventHandler}. The class of {@code o} is only scanned for
+	 * handlers the first time an instance of it is registered with any bus.
 	 * @see EventBus#registerMethod(Object, Method, int)
 	 * @param o the object to process
+	 * @return a handle that may be used to cancel the registration
 	 */
-	public void register(Object o) {
-		for (Method m : o.getClass().getMethods()) {
-			if (m.isAnnotationPresent(EventHandler.class)) {
-				// get the priority from the annotation
-				EventHandler h = m.getAnnotation(EventHandler.class);
-				int priority = h.priority();
-				boolean vetoable = h.vetoable();
-				
-				registerMethod(o, m, priority, vetoable);
+	public EventRegistration register(Object o) {
+		return register(o, false, null);
+	}
+	
+	/**
+	 * Registers all methods of the given object annotated with
+	 * {@link EventHandler}, keyed on the given context. The handlers will only
+	 * be notified of {@link ContextualEvent}s whose
+	 * {@link ContextualEvent#getContext() context} equals {@code context};
+	 * handlers for other event types are not registered at all.
+	 * <p>Dispatch looks up the handlers for an event's context directly, so
+	 * a shared bus can hold keyed listeners for many contexts (e.g. one per
+	 * entity) without every push visiting all of them.</p>
+	 * @param o the object to process
+	 * @param context the context to receive events for, compared with
+	 *     {@link Object#equals(Object)}; if null, this is the same as
+	 *     {@link #register(Object)}
+	 * @return a handle that may be used to cancel the registration
+	 */
+	public EventRegistration register(Object o, Object context) {
+		return register(o, false, context);
+	}
+	
+	/**
+	 * Registers all methods of the given object annotated with
+	 * {@link EventHandler}, but without keeping the object reachable. Once the
+	 * object has been garbage collected its handlers stop being notified, and
+	 * are removed from their queues the next time those queues are pushed to.
+	 * <p>This is intended for listeners whose lifetime is owned elsewhere
+	 * (e.g. by a client session), so that a missed {@link #deregister(Object)}
+	 * doesn't leave them attached to a long-lived bus forever. The listener
+	 * must be strongly referenced by something else for as long as it should
+	 * receive events. Explicit deregistration still works as usual.</p>
+	 * @param o the object to process
+	 * @return a handle that may be used to cancel the registration
+	 */
+	public EventRegistration registerWeak(Object o) {
+		return register(o, true, null);
+	}
+	
+	/**
+	 * Registers all methods of the given object annotated with
+	 * {@link EventHandler}, keyed on the given context and without keeping
+	 * the object reachable.
+	 * <p>The context is held weakly too, so it may be the listener itself, or
+	 * an object that refers to it (e.g. the entity that owns the listener).
+	 * The handlers expire once either of them has been collected.</p>
+	 * @see #register(Object, Object)
+	 * @see #registerWeak(Object)
+	 * @param o the object to process
+	 * @param context the context to receive events for
+	 * @return a handle that may be used to cancel the registration
+	 */
+	public EventRegistration registerWeak(Object o, Object context) {
+		return register(o, true, context);
+	}
+	
+	/**
+	 * Subscribes a consumer to the given event type with
+	 * {@link EventPriority#NORMAL} priority.
+	 * @see #subscribe(Class, EventConsumer, int, boolean)
+	 * @param <E> the event type
+	 * @param type the event type to subscribe to
+	 * @param consumer the consumer to notify
+	 * @return a handle that may be used to cancel the subscription
+	 */
+	public <E extends Event> EventRegistration subscribe(
+			Class<E> type, EventConsumer<? super E> consumer) {
+		return subscribe(type, consumer, EventPriority.NORMAL, true);
+	}
+	
+	/**
+	 * Subscribes a consumer to the given event type. This behaves like
+	 * registering an object with a single
+	 * {@code @EventHandler(priority = priority, vetoable = vetoable)} method
+	 * taking {@code type}: the consumer is added to the queue for
+	 * {@code type} and for each of its subclasses, and is notified in
+	 * priority order along with annotated handlers.
+	 * <p>There is no class scan or method handle involved, so this is a
+	 * lightweight way to attach short-lived listeners. The consumer is held
+	 * strongly, and may be removed by cancelling the returned handle or with
+	 * {@link #deregister(Object)}. Metrics for consumers are aggregated by
+	 * consumer class.</p>
+	 * @param <E> the event type
+	 * @param type the event type to subscribe to
+	 * @param consumer the consumer to notify
+	 * @param priority the handler priority
+	 * @param vetoable the vetoable flag
+	 * @return a handle that may be used to cancel the subscription
+	 */
+	public <E extends Event> EventRegistration subscribe(
+			Class<E> type, EventConsumer<? super E> consumer,
+			int priority, boolean vetoable) {
+		List<EventQueueEntry> entries = new ArrayList<>();
+		addHandler(consumer,
+				HandlerMethod.forConsumer(type, priority, vetoable),
+				false, null, entries);
+		
+		return index(consumer, entries);
+	}
+	
+	private EventRegistration register(Object o, boolean weak, Object context) {
+		List<EventQueueEntry> entries = new ArrayList<>();
+		
+		// the handler scan is cached per class, so this only needs to match
+		// each handler against this bus's queues
+		for (HandlerMethod handler : HandlerMethod.forClass(o.getClass())) {
+			addHandler(o, handler, weak, context, entries);
+		}
+		
+		return index(o, entries);
+	}
+	
+	/**
+	 * Wraps the given entries in a registration handle, and records it in the
+	 * listener index if it registered anything.
+	 */
+	private EventRegistration index(Object o, List<EventQueueEntry> entries) {
+		EventRegistration registration = new EventRegistration(this, entries);
+		if (!entries.isEmpty()) {
+			listeners().add(o, registration);
+		}
+		
+		return registration;
+	}
+	
+	/**
+	 * Cancels the given registration. Called by
+	 * {@link EventRegistration#cancel()}.
+	 * @param registration the registration to cancel
+	 */
+	void cancel(EventRegistration registration) {
+		// grab the listener first, as it may be weakly held
+		Object o = registration.getListener();
+		
+		if (registration.release() && o != null) {
+			listeners().remove(o, registration);
+		}
+	}
+	
+	private ListenerIndex listeners() {
+		ListenerIndex index = listeners;
+		if (index == null) {
+			synchronized (this) {
+				index = listeners;
+				if (index == null) {
+					index = listeners = new ListenerIndex();
+				}
 			}
 		}
+		
+		return index;
 	}
 	
 	/**
 	 * Removes the given object from all event queues that it may be a member
 	 * of. The object will immediately stop receiving events from this EventBus.
+	 * <p>This cancels every {@link EventRegistration} made for the object, and
+	 * only visits the queue entries those registrations created.</p>
 	 * @param o the object to remove
 	 */
 	public void deregister(Object o) {
-		for (EventQueueDefinition def : definitions) {
-			// a queue for the entries to remove
-			// we can't remove them inline because we'd cause a
-			// ConcurrentModificationException
-			List<EventQueueEntry> removeQueue = new LinkedList<>();
-			
-			// find all entries to remove
-			for (EventQueueEntry e : def.getQueue()) {
-				if (e.getObject() == o) {
-					removeQueue.add(e);
-				}
-			}
-			
-			// remove them
-			def.getQueue().removeAll(removeQueue);
+		ListenerIndex index = listeners;
+		if (index == null) {
+			return;
+		}
+		
+		for (EventRegistration registration : index.removeAll(o)) {
+			registration.release();
 		}
 	}
 	
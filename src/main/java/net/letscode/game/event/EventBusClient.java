@@ -20,9 +20,77 @@ public class EventBusClient {
 	 * {@link EventHandler}.
 	 * @see EventBus#registerMethod(Object, Method, int)
 	 * @param o the object to process
+	 * @return a handle that may be used to cancel the registration
 	 */
-	public void register(Object object) {
-		bus.register(object);
+	public EventRegistration register(Object object) {
+		return bus.register(object);
+	}
+	
+	/**
+	 * Registers all methods of the given object annotated with
+	 * {@link EventHandler}, to receive only {@link ContextualEvent}s with the
+	 * given context.
+	 * @see EventBus#register(Object, Object)
+	 * @param object the object to process
+	 * @param context the context to receive events for
+	 * @return a handle that may be used to cancel the registration
+	 */
+	public EventRegistration register(Object object, Object context) {
+		return bus.register(object, context);
+	}
+	
+	/**
+	 * Registers all methods of the given object annotated with
+	 * {@link EventHandler}, holding the object only weakly. The object will
+	 * stop receiving events once it has been garbage collected.
+	 * @see EventBus#registerWeak(Object)
+	 * @param object the object to process
+	 * @return a handle that may be used to cancel the registration
+	 */
+	public EventRegistration registerWeak(Object object) {
+		return bus.registerWeak(object);
+	}
+	
+	/**
+	 * Registers all methods of the given object annotated with
+	 * {@link EventHandler}, to receive only {@link ContextualEvent}s with the
+	 * given context, holding the object only weakly.
+	 * @see EventBus#registerWeak(Object, Object)
+	 * @param object the object to process
+	 * @param context the context to receive events for
+	 * @return a handle that may be used to cancel the registration
+	 */
+	public EventRegistration registerWeak(Object object, Object context) {
+		return bus.registerWeak(object, context);
+	}
+	
+	/**
+	 * Subscribes a consumer to the given event type with normal priority.
+	 * @see EventBus#subscribe(Class, EventConsumer)
+	 * @param <E> the event type
+	 * @param type the event type to subscribe to
+	 * @param consumer the consumer to notify
+	 * @return a handle that may be used to cancel the subscription
+	 */
+	public <E extends Event> EventRegistration subscribe(
+			Class<E> type, EventConsumer<? super E> consumer) {
+		return bus.subscribe(type, consumer);
+	}
+	
+	/**
+	 * Subscribes a consumer to the given event type.
+	 * @see EventBus#subscribe(Class, EventConsumer, int, boolean)
+	 * @param <E> the event type
+	 * @param type the event type to subscribe to
+	 * @param consumer the consumer to notify
+	 * @param priority the handler priority
+	 * @param vetoable the vetoable flag
+	 * @return a handle that may be used to cancel the subscription
+	 */
+	public <E extends Event> EventRegistration subscribe(
+			Class<E> type, EventConsumer<? super E> consumer,
+			int priority, boolean vetoable) {
+		return bus.subscribe(type, consumer, priority, vetoable);
 	}
 	
 	/**
@@ -0,0 +1,236 @@
+package net.letscode.game.event;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable description of the event types defined by an {@link EventBus}:
+ * the types themselves, the queue slot each one occupies, and which slots a
+ * handler for a given event type belongs in (i.e. the slots for that type and
+ * all of its defined subclasses).
+ * <p>Schemas are interned. Every schema is reached from {@link #EMPTY} through
+ * a chain of {@link #with(Class)} transitions, and each transition is only
+ * ever created once, so all buses that define the same types in the same
+ * order share a single schema instance. In particular, the usual pattern of
+ * an owner creating its bus with</p>
+ * <p><code>
+ * bus = new EventBus() {{ add(XYZEvent.class); ... }};
+ * </code></p>
+ * <p>... allocates no per-instance type information at all: each
+ * {@link EventBus#add(Class)} just follows a cached transition. Owners can
+ * also build their schema once up front with {@link #of(Class[])} and pass it
+ * to {@link EventBus#EventBus(EventBusSchema)}.</p>
+ * <p>Transitions and compatible slots are cached with {@link ClassValue}s
+ * rather than maps keyed on the event class, so the schemas hanging off the
+ * static {@link #EMPTY} never keep an event class (or its class loader)
+ * alive. A schema stays interned for as long as the last type added to it
+ * is loaded.</p>
+ * <p>A bus only creates the {@link EventQueueDefinition} for a slot once a
+ * listener is registered for it, so a bus that nobody listens to costs little
+ * more than the {@code EventBus} object itself.</p>
+ */
+public final class EventBusSchema {
+	
+	/**
+	 * The schema with no event types, from which all others are derived.
+	 */
+	public static final EventBusSchema EMPTY =
+			new EventBusSchema(new Class<?>[0]);
+	
+	private final Class<?>[] types;
+	private final boolean[] contextual;
+	
+	/**
+	 * Slots by exact event type. Never modified after construction.
+	 */
+	private final Map<Class<?>, Integer> slots;
+	
+	/**
+	 * The interned schemas with one more type than this one, by added type.
+	 */
+	private final ClassValue<EventBusSchema> transitions;
+	
+	/**
+	 * The slots a handler for a given event type should be added to, by
+	 * handler event type. Computed lazily.
+	 */
+	private final ClassValue<int[]> compatible;
+	
+	/**
+	 * The queue table for a bus with this schema and no queues, shared by
+	 * every such bus.
+	 */
+	private final QueueTable emptyTable;
+	
+	private EventBusSchema(Class<?>[] types) {
+		this.types = types;
+		
+		contextual = new boolean[types.length];
+		slots = new IdentityHashMap<>(types.length);
+		for (int i = 0; i < types.length; i++) {
+			contextual[i] = ContextualEvent.class.isAssignableFrom(types[i]);
+			slots.put(types[i], i);
+		}
+		
+		transitions = new ClassValue<EventBusSchema>() {
+			@Override
+			protected EventBusSchema computeValue(Class<?> type) {
+				return extend(type);
+			}
+		};
+		
+		compatible = new ClassValue<int[]>() {
+			@Override
+			protected int[] computeValue(Class<?> eventType) {
+				return findCompatibleSlots(eventType);
+			}
+		};
+		
+		emptyTable = new QueueTable(this, new EventQueueDefinition[types.length]);
+	}
+	
+	/**
+	 * Gets the interned schema for the given event types, in order.
+	 * Duplicate types are ignored.
+	 * @param types the event types
+	 * @return the schema
+	 */
+	@SafeVarargs
+	public static EventBusSchema of(Class<? extends Event>... types) {
+		EventBusSchema schema = EMPTY;
+		for (Class<? extends Event> type : types) {
+			schema = schema.with(type);
+		}
+		
+		return schema;
+	}
+	
+	/**
+	 * Gets the schema with the given type added after this schema's types.
+	 * The result is interned, so this is cheap to call repeatedly.
+	 * @param type the event type to add
+	 * @return the new schema, or this schema if it already defines
+	 *     {@code type}
+	 */
+	public EventBusSchema with(Class<? extends Event> type) {
+		if (slots.containsKey(type)) {
+			return this;
+		}
+		
+		// only one value is ever installed per type, even if two threads
+		// race to compute it
+		return transitions.get(type);
+	}
+	
+	/**
+	 * Gets the schema without the given type. The remaining types keep their
+	 * relative order.
+	 * @param type the event type to remove
+	 * @return the new schema, or this schema if it doesn't define
+	 *     {@code type}
+	 */
+	@SuppressWarnings("unchecked")
+	public EventBusSchema without(Class<? extends Event> type) {
+		if (!slots.containsKey(type)) {
+			return this;
+		}
+		
+		EventBusSchema schema = EMPTY;
+		for (Class<?> t : types) {
+			if (t != type) {
+				schema = schema.with((Class<? extends Event>) t);
+			}
+		}
+		
+		return schema;
+	}
+	
+	/**
+	 * @return the number of event types (and queue slots) in this schema
+	 */
+	public int size() {
+		return types.length;
+	}
+	
+	/**
+	 * Gets the event types in this schema, in slot order.
+	 * @return an unmodifiable list of event types
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Class<? extends Event>> getTypes() {
+		return Collections.unmodifiableList(Arrays.asList(
+				(Class<? extends Event>[]) types));
+	}
+	
+	/**
+	 * Gets the event type for the given slot.
+	 * @param slot the slot
+	 * @return the event type
+	 */
+	@SuppressWarnings("unchecked")
+	public Class<? extends Event> getType(int slot) {
+		return (Class<? extends Event>) types[slot];
+	}
+	
+	/**
+	 * Gets the slot for an exact event type. Superclasses are not matched.
+	 * @param type the event type
+	 * @return the slot, or -1 if this schema doesn't define {@code type}
+	 */
+	public int slotOf(Class<?> type) {
+		Integer slot = slots.get(type);
+		return (slot == null) ? -1 : slot;
+	}
+	
+	/**
+	 * @param slot the slot
+	 * @return true if the event type for the slot is a {@link ContextualEvent}
+	 */
+	public boolean isContextual(int slot) {
+		return contextual[slot];
+	}
+	
+	/**
+	 * Gets the slots that a handler accepting {@code eventType} belongs in:
+	 * the slots of every defined type assignable to it. This is computed once
+	 * per handler event type.
+	 * @param eventType the event type accepted by the handler
+	 * @return the compatible slots, in ascending order; callers must not
+	 *     modify the array
+	 */
+	public int[] getCompatibleSlots(Class<?> eventType) {
+		return compatible.get(eventType);
+	}
+	
+	private EventBusSchema extend(Class<?> type) {
+		Class<?>[] nextTypes = Arrays.copyOf(types, types.length + 1);
+		nextTypes[types.length] = type;
+		
+		return new EventBusSchema(nextTypes);
+	}
+	
+	private int[] findCompatibleSlots(Class<?> eventType) {
+		int count = 0;
+		int[] found = new int[types.length];
+		for (int i = 0; i < types.length; i++) {
+			if (eventType.isAssignableFrom(types[i])) {
+				found[count++] = i;
+			}
+		}
+		
+		return Arrays.copyOf(found, count);
+	}
+	
+	QueueTable getEmptyTable() {
+		return emptyTable;
+	}
+	
+	@Override
+	public String toString() {
+		return "EventBusSchema" + Arrays.toString(types);
+	}
+	
+}
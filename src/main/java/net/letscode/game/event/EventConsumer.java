@@ -0,0 +1,22 @@
+package net.letscode.game.event;
+
+/**
+ * A functional event listener, subscribed to a single event type with
+ * {@link EventBus#subscribe(Class, EventConsumer, int, boolean)}.
+ * <p>Unlike annotated listeners, consumers don't need to be scanned for
+ * {@link EventHandler} methods, so subscribing one is cheap enough for
+ * short-lived or per-entity listeners, and the bus invokes them with a plain
+ * interface call.</p>
+ * @param <E> the event type consumed
+ */
+public interface EventConsumer<E extends Event> {
+	
+	/**
+	 * Handles an event. Throwing an {@link EventVetoException} vetoes the
+	 * event; note that the same exception thrown from an {@link EventHandler}
+	 * method is only logged.
+	 * @param event the event
+	 */
+	public void accept(E event);
+	
+}
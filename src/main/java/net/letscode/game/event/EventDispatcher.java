@@ -0,0 +1,139 @@
+package net.letscode.game.event;
+
+import java.util.Collections;
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * A dispatch table for a listener class, generated at compile time by
+ * {@link net.letscode.game.event.processor.EventHandlerProcessor}.
+ * <p>For a listener class with the binary name {@code a.b.Listener}, the
+ * processor generates {@code a.b.Listener$$EventDispatcher}, which lists every
+ * {@link EventHandler} the class has (including inherited ones) along with its
+ * settings, and invokes each handler with a plain, direct method call. When
+ * {@link EventBus#register(Object)} first sees a listener class it looks for
+ * this class, and only falls back to scanning the listener with reflection
+ * if there isn't one, e.g. for anonymous classes or listeners compiled
+ * without the processor.</p>
+ * <p>This interface and its nested classes are only meant to be used by
+ * generated code.</p>
+ */
+public interface EventDispatcher {
+	
+	/**
+	 * The suffix appended to a listener's binary class name to find its
+	 * generated dispatcher.
+	 */
+	public static final String SUFFIX = "$$EventDispatcher";
+	
+	/**
+	 * Gets the handlers for the listener class. This is only called once per
+	 * listener class.
+	 * @return the listener's handlers
+	 */
+	public Handler[] getHandlers();
+	
+	/**
+	 * A single generated handler: its {@link EventHandler} settings, and an
+	 * {@link EventInvoker} calling the handler method directly.
+	 */
+	public static abstract class Handler implements EventInvoker {
+		
+		/**
+		 * The name of the handler method.
+		 */
+		@Getter
+		private final String name;
+		
+		/**
+		 * The declared parameter type of the handler method; the same as the
+		 * event type unless this is a batch handler.
+		 */
+		@Getter
+		private final Class<?> parameterType;
+		
+		@Getter
+		private final Class<?> eventType;
+		
+		@Getter
+		private final int priority;
+		
+		@Getter
+		private final boolean vetoable;
+		
+		/**
+		 * The filter class, or {@link EventFilter.None} for none.
+		 */
+		@Getter
+		private final Class<? extends EventFilter<?>> filter;
+		
+		@Getter
+		private final ExecutionContext execution;
+		
+		protected Handler(
+				String name, Class<?> parameterType, Class<?> eventType,
+				int priority, boolean vetoable,
+				Class<? extends EventFilter<?>> filter) {
+			this(name, parameterType, eventType, priority, vetoable, filter,
+					ExecutionContext.CALLER);
+		}
+		
+		protected Handler(
+				String name, Class<?> parameterType, Class<?> eventType,
+				int priority, boolean vetoable,
+				Class<? extends EventFilter<?>> filter,
+				ExecutionContext execution) {
+			this.name = name;
+			this.parameterType = parameterType;
+			this.eventType = eventType;
+			this.priority = priority;
+			this.vetoable = vetoable;
+			this.filter = filter;
+			this.execution = execution;
+		}
+		
+		/**
+		 * @return true if this is a batch handler
+		 */
+		public boolean isBatch() {
+			return false;
+		}
+		
+	}
+	
+	/**
+	 * A generated batch handler.
+	 * @see EventHandler#batch()
+	 */
+	public static abstract class BatchHandler
+			extends Handler implements EventBatchInvoker {
+		
+		protected BatchHandler(
+				String name, Class<?> parameterType, Class<?> eventType,
+				int priority, boolean vetoable,
+				Class<? extends EventFilter<?>> filter) {
+			super(name, parameterType, eventType, priority, vetoable, filter);
+		}
+		
+		protected BatchHandler(
+				String name, Class<?> parameterType, Class<?> eventType,
+				int priority, boolean vetoable,
+				Class<? extends EventFilter<?>> filter,
+				ExecutionContext execution) {
+			super(name, parameterType, eventType, priority, vetoable, filter,
+					execution);
+		}
+		
+		@Override
+		public boolean isBatch() {
+			return true;
+		}
+		
+		@Override
+		public void invoke(Object listener, Event event) throws Throwable {
+			invokeBatch(listener, Collections.singletonList(event));
+		}
+		
+	}
+	
+}
@@ -0,0 +1,247 @@
+package net.letscode.game.event;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Routes handler invocations to the {@link ExecutionContext} their handler
+ * declared. These settings are global, as handlers for a context may be
+ * registered with any bus.
+ * <p>{@link ExecutionContext#WORLD} invocations are offered to the world's
+ * {@link EventRingBuffer}, which the world thread drains at the start of each
+ * tick. Until a world thread has been set with
+ * {@link #setWorld(Thread, EventRingBuffer)}, world handlers run on the
+ * caller. If the buffer is full, the invocation is dropped, as running it on
+ * the wrong thread could be unsafe. Drops are counted (see
+ * {@link #getDropped()}) and logged at most once every
+ * {@link #DROP_WARNING_INTERVAL} ms.</p>
+ * <p>{@link ExecutionContext#BACKGROUND} invocations are handed to the
+ * background executor, by default a small pool of daemon threads created on
+ * first use, with a queue of at most {@link #BACKGROUND_QUEUE} waiting
+ * invocations. If the executor rejects an invocation (e.g. because its queue
+ * is full), the invocation is dropped rather than run on the caller, which
+ * may well be the world thread or an I/O thread. These drops are counted
+ * separately (see {@link #getBackgroundDropped()}) and logged the same
+ * way.</p>
+ * <p>An invocation that is handed off keeps its event (including a
+ * {@link PooledEvent}) until the handler has run. A handler running outside
+ * the caller's context can't veto the event, as the rest of the queue has
+ * already been notified; a veto from such a handler is logged and
+ * ignored.</p>
+ */
+@Slf4j
+public final class EventExecutors {
+	
+	/**
+	 * The number of invocations the default background pool holds before it
+	 * starts dropping new ones.
+	 */
+	public static final int BACKGROUND_QUEUE = 1024;
+	
+	/**
+	 * The minimum time between warnings about dropped invocations for each
+	 * context, in milliseconds.
+	 */
+	public static final long DROP_WARNING_INTERVAL = 10000;
+	
+	private static volatile Thread worldThread;
+	private static volatile EventRingBuffer worldBuffer;
+	
+	private static volatile Executor background;
+	
+	private static final AtomicLong dropped = new AtomicLong();
+	private static final AtomicLong lastDropWarning = new AtomicLong();
+	
+	private static final AtomicLong backgroundDropped = new AtomicLong();
+	private static final AtomicLong lastBackgroundWarning = new AtomicLong();
+	
+	private EventExecutors() {
+		
+	}
+	
+	/**
+	 * Sets the world thread, and the buffer that world handler invocations
+	 * from other threads are queued in. The world thread must drain the
+	 * buffer regularly.
+	 * @param thread the world thread, or null to run world handlers on the
+	 *     caller
+	 * @param buffer the buffer drained by {@code thread}
+	 */
+	public static synchronized void setWorld(
+			Thread thread, EventRingBuffer buffer) {
+		worldBuffer = buffer;
+		worldThread = thread;
+	}
+	
+	/**
+	 * @return the world thread, or null if none has been set
+	 */
+	public static Thread getWorldThread() {
+		return worldThread;
+	}
+	
+	/**
+	 * Sets the executor for background handlers.
+	 * @param executor the executor, or null to use the default pool
+	 */
+	public static void setBackground(Executor executor) {
+		background = executor;
+	}
+	
+	/**
+	 * Gets the executor for background handlers, creating the default pool if
+	 * no executor has been set.
+	 * @return the background executor
+	 */
+	public static Executor getBackground() {
+		Executor executor = background;
+		if (executor == null) {
+			synchronized (EventExecutors.class) {
+				executor = background;
+				if (executor == null) {
+					executor = background = createDefaultPool();
+				}
+			}
+		}
+		
+		return executor;
+	}
+	
+	private static ExecutorService createDefaultPool() {
+		int threads = Math.max(2,
+				Runtime.getRuntime().availableProcessors() / 2);
+		
+		ThreadFactory factory = new ThreadFactory() {
+			
+			private final AtomicInteger count = new AtomicInteger();
+			
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r,
+						"EventBackground-" + count.incrementAndGet());
+				t.setDaemon(true);
+				
+				return t;
+			}
+			
+		};
+		
+		// the queue must be bounded, or a burst would pile up behind the pool
+		// without limit; past this point invocations are dropped
+		return new ThreadPoolExecutor(threads, threads,
+				0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(BACKGROUND_QUEUE), factory);
+	}
+	
+	/**
+	 * Gets the number of world handler invocations dropped because the world
+	 * buffer was full.
+	 * @return the number of dropped invocations
+	 */
+	public static long getDropped() {
+		return dropped.get();
+	}
+	
+	/**
+	 * Gets the number of background handler invocations dropped because the
+	 * background executor rejected them.
+	 * @return the number of dropped invocations
+	 */
+	public static long getBackgroundDropped() {
+		return backgroundDropped.get();
+	}
+	
+	/**
+	 * Hands an invocation of the given entry off to its execution context, if
+	 * that isn't the current thread.
+	 * @param context the entry's execution context
+	 * @param entry the entry to invoke
+	 * @param event the event to pass to the entry
+	 * @return true if the invocation was handed off (or dropped), false if it
+	 *     should run on the caller
+	 */
+	static boolean handOff(
+			ExecutionContext context, EventQueueEntry entry, Event event) {
+		switch (context) {
+			case WORLD:
+				return handOffWorld(entry, event);
+			case BACKGROUND:
+				return handOffBackground(entry, event);
+			case CALLER:
+			default:
+				return false;
+		}
+	}
+	
+	private static boolean handOffWorld(EventQueueEntry entry, Event event) {
+		Thread thread = worldThread;
+		EventRingBuffer buffer = worldBuffer;
+		if (thread == null || buffer == null
+				|| Thread.currentThread() == thread) {
+			return false;
+		}
+		
+		PooledEvent.retain(event);
+		if (!buffer.offer(entry, event)) {
+			PooledEvent.recycle(event);
+			
+			long total = dropped.incrementAndGet();
+			if (shouldWarn(lastDropWarning)) {
+				log.warn("World buffer full, dropping invocations of {} "
+						+ "({} dropped in total)",
+						entry.getHandlerName(), total);
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Checks whether a drop should be logged, i.e. whether no other drop has
+	 * been logged with the given timestamp within the last
+	 * {@link #DROP_WARNING_INTERVAL} ms. Only one caller wins each interval.
+	 */
+	private static boolean shouldWarn(AtomicLong lastWarning) {
+		long now = System.currentTimeMillis();
+		long last = lastWarning.get();
+		
+		return now - last >= DROP_WARNING_INTERVAL
+				&& lastWarning.compareAndSet(last, now);
+	}
+	
+	private static boolean handOffBackground(
+			final EventQueueEntry entry, final Event event) {
+		PooledEvent.retain(event);
+		try {
+			getBackground().execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					entry.runHandedOff(event);
+				}
+				
+			});
+		} catch (RejectedExecutionException ex) {
+			PooledEvent.recycle(event);
+			
+			long total = backgroundDropped.incrementAndGet();
+			if (shouldWarn(lastBackgroundWarning)) {
+				log.warn("Background executor rejected {}, dropping "
+						+ "invocations ({} dropped in total)",
+						entry.getHandlerName(), total);
+			}
+		}
+		
+		// never run on the caller, which may be the world thread
+		return true;
+	}
+	
+}
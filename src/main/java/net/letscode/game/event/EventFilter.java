@@ -0,0 +1,51 @@
+package net.letscode.game.event;
+
+/**
+ * A pre-dispatch filter for an event handler, declared with
+ * {@link EventHandler#filter()}. The bus checks the filter before invoking
+ * the handler, and skips the handler if the filter rejects the event, so
+ * handlers that are only interested in a small fraction of the events on a
+ * busy queue don't pay for an invocation just to discard the rest.
+ * <p>Filter classes must have a public no-argument constructor. A single
+ * instance of each filter class is created and shared by every handler and
+ * every listener that uses it, so filters must be stateless and thread safe;
+ * any per-listener state should be read from the {@code listener}
+ * argument.</p>
+ * <p>Skipped invocations are counted in the handler's {@link HandlerMetrics}
+ * while {@link EventMetrics} are enabled.</p>
+ * <p>Conditions such as "the event's context is the listener's current zone"
+ * are written as a small filter class comparing the two, rather than
+ * declared as field names on the annotation: a filter class is checked by
+ * the compiler, and is invoked directly rather than reading fields
+ * reflectively on every dispatch.</p>
+ * @param <E> the event type accepted by the filter
+ */
+public interface EventFilter<E extends Event> {
+	
+	/**
+	 * Decides whether the given listener should be notified of an event.
+	 * @param listener the listener whose handler is about to be invoked
+	 * @param event the event being dispatched
+	 * @return true to invoke the handler, false to skip it
+	 */
+	public boolean accept(Object listener, E event);
+	
+	/**
+	 * The default value of {@link EventHandler#filter()}, meaning "no
+	 * filter". Handlers declaring it are never filtered, and it is never
+	 * instantiated.
+	 */
+	public static final class None implements EventFilter<Event> {
+		
+		private None() {
+			
+		}
+		
+		@Override
+		public boolean accept(Object listener, Event event) {
+			return true;
+		}
+		
+	}
+	
+}
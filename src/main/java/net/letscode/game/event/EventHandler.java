@@ -37,4 +37,49 @@ public @interface EventHandler {
 	 */
 	boolean vetoable() default true;
 	
+	/**
+	 * An optional filter, checked before this handler is invoked. Events the
+	 * filter rejects are never passed to the handler. The filter's event type
+	 * must be compatible with the handler's parameter.
+	 * <p>The default, {@link EventFilter.None}, means the handler receives
+	 * every event.</p>
+	 * @see EventFilter
+	 * @return the filter class
+	 */
+	Class<? extends EventFilter<?>> filter() default EventFilter.None.class;
+	
+	/**
+	 * Marks this handler as a batch handler. Batch handlers take a
+	 * {@code List} of events (e.g. {@code List<XYZEvent>}) instead of a single
+	 * event, and receive all events of their type from an
+	 * {@link EventBus#pushAll(java.util.Collection)} in a single call. This
+	 * lets handlers amortize work over a burst of events, such as sending a
+	 * single network frame for the whole batch.
+	 * <p>Events pushed individually are delivered as a list of one. Events
+	 * vetoed by a higher priority handler or rejected by this handler's
+	 * {@link #filter()} are left out of the list, and the handler isn't
+	 * called at all if nothing is left.</p>
+	 * <p>In a {@code pushAll()}, batch handlers run after every event has
+	 * been dispatched to the ordinary handlers. As with other handler
+	 * methods, anything a batch handler throws (including an
+	 * {@link EventVetoException}) is logged, and doesn't veto its events.</p>
+	 * @return true if this is a batch handler
+	 */
+	boolean batch() default false;
+	
+	/**
+	 * The thread this handler runs on. By default, handlers run on whichever
+	 * thread pushed the event; {@link ExecutionContext#WORLD} handlers are
+	 * moved to the world thread, and {@link ExecutionContext#BACKGROUND}
+	 * handlers to the background pool, by the bus itself.
+	 * <p>A handler that doesn't run on the caller is still skipped if a
+	 * higher priority handler vetoed the event before its turn, but it can't
+	 * veto the event itself, since the rest of the queue has already been
+	 * notified by the time it runs. Its filter is checked on the thread it
+	 * runs on. Batch handlers are handed off one event at a time.</p>
+	 * @see EventExecutors
+	 * @return the execution context for this handler
+	 */
+	ExecutionContext execution() default ExecutionContext.CALLER;
+	
 }
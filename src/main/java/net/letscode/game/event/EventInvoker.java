@@ -0,0 +1,23 @@
+package net.letscode.game.event;
+
+/**
+ * Defines a direct invoker for a single event handler. Invokers are built once
+ * when a handler is registered, and are then called for every event dispatched
+ * to that handler. They are not bound to any particular listener instance, so
+ * the listener to notify is passed in on each call.
+ * @see EventQueueEntry#notify(Event)
+ */
+public interface EventInvoker {
+	
+	/**
+	 * Invokes the handler on the given listener. Only an
+	 * {@link EventVetoException} thrown from here vetoes the event; invokers
+	 * for {@code @EventHandler} methods wrap everything the handler throws
+	 * (see {@link MethodHandleInvoker}), so only consumers can veto.
+	 * @param listener the listener instance that owns the handler
+	 * @param event the event to pass to the handler
+	 * @throws Throwable any exception thrown by the handler
+	 */
+	public void invoke(Object listener, Event event) throws Throwable;
+	
+}
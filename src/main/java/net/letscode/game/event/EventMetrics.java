@@ -0,0 +1,84 @@
+package net.letscode.game.event;
+
+/**
+ * Global switch for event bus instrumentation. While enabled, every
+ * {@link EventQueueDefinition} counts the events pushed to it, and every
+ * handler records its invocation count, latency, vetoes and exceptions in a
+ * {@link HandlerMetrics}. Recording uses only atomic counters, so it is
+ * lock-free and allocates nothing.
+ * <p>Reading the clock is by far the most expensive part of recording (tens
+ * of nanoseconds on some virtualized hosts), so invocation, veto and
+ * exception counts are exact but latency is sampled: only one in every
+ * {@link #getSamplingInterval()} invocations of each handler is timed. An
+ * interval of 1 times every invocation.</p>
+ * <p>Metrics are disabled by default. They can be switched on and off at any
+ * time, and take effect from the next push. Counters are not reset when
+ * metrics are disabled.</p>
+ * <p>Recorded values can be read with {@link EventBus#getStats()} or
+ * {@link EventQueueDefinition#getStats()}.</p>
+ */
+public final class EventMetrics {
+	
+	private static volatile boolean enabled = false;
+	
+	/**
+	 * The sampling interval minus one; the interval is a power of two.
+	 */
+	private static volatile int sampleMask = 15;
+	
+	private EventMetrics() {
+		
+	}
+	
+	/**
+	 * @return true if event metrics are currently being recorded
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Enables or disables recording of event metrics.
+	 * @param enabled true to record metrics
+	 */
+	public static void setEnabled(boolean enabled) {
+		EventMetrics.enabled = enabled;
+	}
+	
+	/**
+	 * Gets the latency sampling interval. One in every {@code interval}
+	 * invocations of a handler has its latency recorded.
+	 * @return the sampling interval
+	 */
+	public static int getSamplingInterval() {
+		return sampleMask + 1;
+	}
+	
+	/**
+	 * Sets the latency sampling interval.
+	 * @param interval the sampling interval; rounded up to a power of two
+	 */
+	public static void setSamplingInterval(int interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Interval must be positive");
+		}
+		
+		int size = Integer.highestOneBit(interval);
+		if (size < interval) {
+			size <<= 1;
+		}
+		
+		sampleMask = size - 1;
+	}
+	
+	/**
+	 * Checks whether the invocation with the given sequence number should be
+	 * timed.
+	 * @param invocation the invocation count, including this invocation
+	 * @return true if the invocation should be timed
+	 */
+	static boolean shouldSample(long invocation) {
+		return (invocation & sampleMask) == 0;
+	}
+	
+}
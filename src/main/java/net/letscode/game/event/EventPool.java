@@ -0,0 +1,162 @@
+package net.letscode.game.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A per-thread pool of reusable {@link PooledEvent} instances of a single
+ * type. Each thread has its own small stack of free events, so acquiring and
+ * releasing events needs no synchronization.
+ * <p>Events are returned to the pool of the thread that releases them, which
+ * is usually the thread that dispatched them. An event acquired on one thread
+ * and dispatched on another (e.g. through
+ * {@link EventBus#pushAsync(Event)}) will end up in the dispatching thread's
+ * pool. Likewise, an event with handlers running in another
+ * {@link ExecutionContext} ends up in the pool of whichever thread finishes
+ * with it last. Once a thread's pool is full, further released events are
+ * simply dropped and left to the garbage collector.</p>
+ * <p>Pools are typically held in a static field of the event class, along
+ * with a static factory method that acquires and fills in an instance.</p>
+ * @param <T> the pooled event type
+ */
+public class EventPool<T extends PooledEvent> {
+	
+	/**
+	 * The default maximum number of free events kept per thread.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+	
+	/**
+	 * Creates new instances when a thread's pool is empty.
+	 * @param <T> the pooled event type
+	 */
+	public interface Factory<T extends PooledEvent> {
+		
+		/**
+		 * @return a new, empty event instance
+		 */
+		public T create();
+		
+	}
+	
+	private final Factory<T> factory;
+	private final int capacity;
+	private final ThreadLocal<Stack> stacks;
+	
+	private final AtomicLong created;
+	private final AtomicLong dropped;
+	
+	public EventPool(Factory<T> factory) {
+		this(factory, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a new event pool.
+	 * @param factory the factory for new events
+	 * @param capacity the maximum number of free events kept per thread
+	 */
+	public EventPool(Factory<T> factory, final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		
+		this.factory = factory;
+		this.capacity = capacity;
+		
+		stacks = new ThreadLocal<Stack>() {
+			
+			@Override
+			protected Stack initialValue() {
+				return new Stack(capacity);
+			}
+			
+		};
+		
+		created = new AtomicLong();
+		dropped = new AtomicLong();
+	}
+	
+	/**
+	 * Takes a free event from the current thread's pool, creating a new one if
+	 * the pool is empty. The caller should fill in the event and push it; the
+	 * bus will release it after dispatch.
+	 * @return an event ready to be filled in
+	 */
+	@SuppressWarnings("unchecked")
+	public T acquire() {
+		PooledEvent event = stacks.get().pop();
+		if (event == null) {
+			event = factory.create();
+			created.incrementAndGet();
+		}
+		
+		event.claim(this);
+		return (T) event;
+	}
+	
+	/**
+	 * Returns a released event to the current thread's pool.
+	 */
+	void put(PooledEvent event) {
+		if (!stacks.get().push(event)) {
+			dropped.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * @return the maximum number of free events kept per thread
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Gets the number of events this pool has had to allocate. Once warmed up,
+	 * this should stay flat.
+	 * @return the number of events created
+	 */
+	public long getCreated() {
+		return created.get();
+	}
+	
+	/**
+	 * Gets the number of released events that were dropped because the
+	 * releasing thread's pool was full.
+	 * @return the number of dropped events
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	private static class Stack {
+		
+		private final PooledEvent[] events;
+		private int size;
+		
+		public Stack(int capacity) {
+			events = new PooledEvent[capacity];
+			size = 0;
+		}
+		
+		public PooledEvent pop() {
+			if (size == 0) {
+				return null;
+			}
+			
+			PooledEvent event = events[--size];
+			events[size] = null;
+			
+			return event;
+		}
+		
+		public boolean push(PooledEvent event) {
+			if (size == events.length) {
+				return false;
+			}
+			
+			events[size++] = event;
+			return true;
+		}
+		
+	}
+	
+}
@@ -15,4 +15,10 @@ public class EventPriority {
 	public static final int LOWER = -100;
 	public static final int LOWEST = -1000;
 	
+	/**
+	 * A shed priority that disables deadline shedding.
+	 * @see EventBus#setShedPriority(int)
+	 */
+	public static final int NO_SHEDDING = Integer.MIN_VALUE;
+	
 }
@@ -0,0 +1,379 @@
+package net.letscode.game.event;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Exposes a single event type of an {@link EventBusProvider} as a
+ * reactive-streams {@link Publisher}, for downstream consumers (replication,
+ * analytics, persistence, ...) that can't be relied upon to keep up with the
+ * bus.
+ * <p>Each subscriber gets its own bounded buffer, filled by a lightweight
+ * {@link EventConsumer} subscribed to the bus at {@link EventPriority#LOWEST}
+ * priority, and so only sees events that weren't vetoed. Pushing an event
+ * never waits for a subscriber: events are only delivered as the subscriber
+ * {@link Subscription#request(long) requests} them, on the publisher's
+ * executor (by default the {@link EventExecutors#getBackground() background
+ * pool}), and once a subscriber's buffer is full further events are handled
+ * according to the publisher's {@link OverflowPolicy}.</p>
+ * <p>A bus never ends, so subscribers are never completed; they stop
+ * receiving events once they cancel their subscription. A subscriber that
+ * throws from {@code onNext} is cancelled.</p>
+ * <p>{@link PooledEvent}s are held until {@code onNext} returns, and are
+ * released afterwards, so subscribers must not keep pooled events (or pass
+ * them to another thread) beyond that call.</p>
+ * @param <E> the event type
+ */
+@Slf4j
+public class EventPublisher<E extends Event> implements Publisher<E> {
+	
+	/**
+	 * The default number of events buffered per subscriber.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+	
+	/**
+	 * Decides what happens to events pushed while a subscriber's buffer is
+	 * full.
+	 */
+	public enum OverflowPolicy {
+		
+		/**
+		 * Keep the buffered events and drop the new one.
+		 */
+		DROP_NEWEST,
+		
+		/**
+		 * Drop the oldest buffered event to make room for the new one.
+		 */
+		DROP_OLDEST,
+		
+		/**
+		 * Only ever keep the most recent event, regardless of capacity. This
+		 * suits subscribers that only care about the latest state, e.g. a
+		 * snapshot of a zone.
+		 */
+		LATEST
+		
+	}
+	
+	private final EventBusProvider provider;
+	
+	@Getter
+	private final Class<E> eventType;
+	
+	@Getter
+	private final int capacity;
+	
+	@Getter
+	private final OverflowPolicy policy;
+	
+	private final Executor executor;
+	
+	private final AtomicLong dropped;
+	
+	/**
+	 * Creates a publisher with a buffer of {@link #DEFAULT_CAPACITY} events
+	 * per subscriber that drops the oldest events on overflow.
+	 * @param provider the provider whose bus events are published from
+	 * @param eventType the event type to publish
+	 */
+	public EventPublisher(EventBusProvider provider, Class<E> eventType) {
+		this(provider, eventType, DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+	}
+	
+	/**
+	 * Creates a publisher that delivers events on the background pool.
+	 * @param provider the provider whose bus events are published from
+	 * @param eventType the event type to publish
+	 * @param capacity the number of events buffered per subscriber
+	 * @param policy what to do with events when a buffer is full
+	 */
+	public EventPublisher(
+			EventBusProvider provider, Class<E> eventType,
+			int capacity, OverflowPolicy policy) {
+		this(provider, eventType, capacity, policy, null);
+	}
+	
+	/**
+	 * Creates a new publisher.
+	 * @param provider the provider whose bus events are published from
+	 * @param eventType the event type to publish
+	 * @param capacity the number of events buffered per subscriber
+	 * @param policy what to do with events when a buffer is full
+	 * @param executor the executor events are delivered on, or null for the
+	 *     background pool
+	 */
+	public EventPublisher(
+			EventBusProvider provider, Class<E> eventType,
+			int capacity, OverflowPolicy policy, Executor executor) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		
+		this.provider = provider;
+		this.eventType = eventType;
+		this.capacity = (policy == OverflowPolicy.LATEST) ? 1 : capacity;
+		this.policy = policy;
+		this.executor = executor;
+		
+		dropped = new AtomicLong();
+	}
+	
+	@Override
+	public void subscribe(Subscriber<? super E> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("Subscriber must not be null");
+		}
+		
+		EventSubscription s = new EventSubscription(subscriber);
+		subscriber.onSubscribe(s);
+		
+		// the subscriber may have cancelled straight away
+		s.start();
+	}
+	
+	/**
+	 * Gets the number of events dropped across all subscribers because their
+	 * buffers were full.
+	 * @return the number of dropped events
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	private Executor executor() {
+		return (executor == null) ? EventExecutors.getBackground() : executor;
+	}
+	
+	/**
+	 * A single subscriber's buffer and demand. Events are added to the buffer
+	 * by the bus on the pushing thread, and delivered by a drain task on the
+	 * executor; {@code wip} ensures only one drain runs at a time, so the
+	 * subscriber is always signalled serially.
+	 */
+	private class EventSubscription
+			implements Subscription, EventConsumer<E>, Runnable {
+		
+		private final Subscriber<? super E> subscriber;
+		
+		private final ArrayDeque<E> buffer;
+		private final AtomicLong requested;
+		private final AtomicInteger wip;
+		
+		private volatile boolean cancelled;
+		private volatile EventRegistration registration;
+		
+		/**
+		 * An error to signal to the subscriber from the drain, so it isn't
+		 * signalled concurrently with {@code onNext}.
+		 */
+		private volatile Throwable error;
+		
+		public EventSubscription(Subscriber<? super E> subscriber) {
+			this.subscriber = subscriber;
+			
+			buffer = new ArrayDeque<>(Math.min(capacity, 16));
+			requested = new AtomicLong();
+			wip = new AtomicInteger();
+		}
+		
+		public void start() {
+			if (cancelled) {
+				return;
+			}
+			
+			registration = provider.bus().subscribe(
+					eventType, this, EventPriority.LOWEST, true);
+			
+			// cancelled concurrently, before the registration was visible
+			if (cancelled) {
+				registration.cancel();
+			}
+		}
+		
+		@Override
+		public void accept(E event) {
+			if (cancelled) {
+				return;
+			}
+			
+			PooledEvent.retain(event);
+			
+			E evicted = null;
+			boolean accepted = true;
+			synchronized (buffer) {
+				if (buffer.size() >= capacity) {
+					if (policy == OverflowPolicy.DROP_NEWEST) {
+						accepted = false;
+					} else {
+						evicted = buffer.poll();
+					}
+				}
+				
+				if (accepted) {
+					buffer.offer(event);
+				}
+			}
+			
+			if (!accepted) {
+				evicted = event;
+			}
+			
+			if (evicted != null) {
+				dropped.incrementAndGet();
+				PooledEvent.recycle(evicted);
+			}
+			
+			// with no demand, the next request() will schedule delivery; if
+			// cancelled meanwhile, the drain releases what was just buffered
+			if (accepted && (requested.get() > 0 || cancelled)) {
+				schedule();
+			}
+		}
+		
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				error = new IllegalArgumentException(
+						"Requested a non-positive number of events: " + n);
+				cancel();
+				return;
+			}
+			
+			long current;
+			long next;
+			do {
+				current = requested.get();
+				if (current == Long.MAX_VALUE) {
+					break;
+				}
+				
+				next = current + n;
+				if (next < 0) {
+					next = Long.MAX_VALUE;
+				}
+			} while (!requested.compareAndSet(current, next));
+			
+			schedule();
+		}
+		
+		@Override
+		public void cancel() {
+			if (cancelled) {
+				return;
+			}
+			
+			cancelled = true;
+			
+			EventRegistration r = registration;
+			if (r != null) {
+				r.cancel();
+			}
+			
+			// the drain clears the buffer once it sees the cancellation
+			schedule();
+		}
+		
+		private void schedule() {
+			if (wip.getAndIncrement() != 0) {
+				// a drain is running, and will pick this up before it stops
+				return;
+			}
+			
+			try {
+				executor().execute(this);
+			} catch (RejectedExecutionException ex) {
+				log.warn("Unable to schedule delivery of {} to {}, "
+						+ "cancelling", eventType.getName(), subscriber);
+				
+				cancelled = true;
+				EventRegistration r = registration;
+				if (r != null) {
+					r.cancel();
+				}
+				
+				wip.set(0);
+				clear();
+			}
+		}
+		
+		/**
+		 * Delivers buffered events up to the current demand.
+		 */
+		@Override
+		public void run() {
+			int missed = 1;
+			
+			while (true) {
+				long demand = requested.get();
+				long emitted = 0;
+				
+				while (emitted != demand && !cancelled) {
+					E event;
+					synchronized (buffer) {
+						event = buffer.poll();
+					}
+					
+					if (event == null) {
+						break;
+					}
+					
+					try {
+						subscriber.onNext(event);
+					} catch (Throwable t) {
+						log.error("Error in subscriber " + subscriber
+								+ ", cancelling", t);
+						cancel();
+					} finally {
+						PooledEvent.recycle(event);
+					}
+					
+					emitted++;
+				}
+				
+				if (cancelled) {
+					clear();
+					
+					Throwable t = error;
+					if (t != null) {
+						error = null;
+						subscriber.onError(t);
+					}
+				} else if (emitted != 0 && demand != Long.MAX_VALUE) {
+					requested.addAndGet(-emitted);
+				}
+				
+				missed = wip.addAndGet(-missed);
+				if (missed == 0) {
+					break;
+				}
+			}
+		}
+		
+		private void clear() {
+			while (true) {
+				E event;
+				synchronized (buffer) {
+					event = buffer.poll();
+				}
+				
+				if (event == null) {
+					break;
+				}
+				
+				PooledEvent.recycle(event);
+			}
+		}
+		
+	}
+	
+}
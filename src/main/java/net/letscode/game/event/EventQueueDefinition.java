@@ -1,26 +1,514 @@
 package net.letscode.game.event;
 
-import java.util.PriorityQueue;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- *
+ * Defines the event queue for a single event type.
+ * <p>Entries are kept in an array sorted by descending priority, with entries
+ * of equal priority kept in registration order. The array is never modified
+ * once published: registration and deregistration build a new copy and swap
+ * it in, so {@link #push(Event)} simply walks whichever snapshot was current
+ * when it started. This means pushes need no locking and may run on several
+ * threads at once, and handlers may safely register or deregister listeners
+ * (on this or any other queue) during dispatch. Changes made during a push
+ * take effect from the next push onwards.</p>
+ * <p>Entries for weakly registered listeners are skipped once their listener
+ * has been garbage collected, and are pruned lazily by the first push that
+ * finds one.</p>
+ * <p>Removing a single entry (see {@link #remove(EventQueueEntry)}) only
+ * cancels it, which is enough to stop it being notified. Cancelled entries
+ * are compacted out of the array once they make up a quarter of it, so the
+ * cost of rebuilding the array is spread over many removals, and a listener
+ * leaving a large queue doesn't have to copy the whole queue every time.</p>
+ * <p>Queues for {@link ContextualEvent} types may also hold keyed entries,
+ * which only receive events whose context equals their key (see
+ * {@link EventBus#register(Object, Object)}). Keyed entries are kept in a
+ * separate sorted array per key, so a push only looks up the array for its
+ * event's context rather than visiting every keyed entry. The keyed array is
+ * merged with the unkeyed one by priority during dispatch; at equal priority,
+ * unkeyed entries are notified first. Keyed arrays are usually small, so they
+ * are rebuilt immediately on removal.</p>
+ * <p>Contexts are held weakly by the keyed map, so that a weakly registered
+ * entry keyed on its own listener (or on anything that refers to it) doesn't
+ * keep the listener alive. Strong entries hold their context themselves.
+ * Once a context has been collected, its array is dropped on the next
+ * registration or prune. Pushes look up their context's array with a
+ * per-thread {@link ContextProbe}, so a contextual push doesn't allocate a
+ * key.</p>
  * @author timothyb89
  */
 @Slf4j
 public class EventQueueDefinition {
 	
+	private static final EventQueueEntry[] EMPTY = new EventQueueEntry[0];
+	
+	private static final ThreadLocal<ContextProbe> PROBE =
+			new ThreadLocal<ContextProbe>() {
+		
+		@Override
+		protected ContextProbe initialValue() {
+			return new ContextProbe();
+		}
+		
+	};
+	
 	@Getter
 	private Class<? extends Event> eventType;
 	
-	@Getter
-	private PriorityQueue<EventQueueEntry> queue;
+	/**
+	 * True if {@code eventType} is a {@link ContextualEvent}, and so may have
+	 * keyed entries.
+	 */
+	private final boolean contextual;
+	
+	/**
+	 * The current dispatch snapshot, in priority order. This array must never
+	 * be modified after it has been assigned.
+	 */
+	private volatile EventQueueEntry[] entries;
+	
+	/**
+	 * Keyed dispatch snapshots, by context. As with {@code entries}, the
+	 * arrays are never modified once published.
+	 */
+	private final Map<ContextKey, EventQueueEntry[]> keyed;
+	
+	/**
+	 * Receives the keys of {@code keyed} whose contexts have been collected.
+	 */
+	private final ReferenceQueue<Object> staleContexts;
+	
+	/**
+	 * The total number of keyed entries, across all contexts.
+	 */
+	private volatile int keyedCount;
+	
+	/**
+	 * The total number of expired entries removed from this queue.
+	 */
+	private final AtomicLong pruned;
+	
+	/**
+	 * The number of cancelled entries still present in {@code entries}.
+	 */
+	private volatile int cancelled;
+	
+	/**
+	 * The number of events pushed to this queue while metrics were enabled.
+	 */
+	private final AtomicLong pushes;
+	
+	/**
+	 * The number of pushes that shed at least one handler.
+	 */
+	private final AtomicLong sheddingPushes;
+	
+	/**
+	 * The total number of handler invocations shed.
+	 */
+	private final AtomicLong shed;
+	
+	/**
+	 * Shared handler metrics, by handler method. Guarded by this queue's
+	 * monitor.
+	 */
+	private final Map<Object, HandlerMetrics> metrics;
 	
 	public EventQueueDefinition(Class<? extends Event> eventType) {
 		this.eventType = eventType;
 		
-		queue = new PriorityQueue();
+		contextual = ContextualEvent.class.isAssignableFrom(eventType);
+		
+		entries = EMPTY;
+		keyed = new ConcurrentHashMap<>();
+		staleContexts = new ReferenceQueue<>();
+		pruned = new AtomicLong();
+		pushes = new AtomicLong();
+		sheddingPushes = new AtomicLong();
+		shed = new AtomicLong();
+		metrics = new LinkedHashMap<>();
+	}
+	
+	/**
+	 * Checks whether this queue's event type is a {@link ContextualEvent}, and
+	 * so accepts keyed entries.
+	 * @return true if this queue accepts keyed entries
+	 */
+	public boolean isContextual() {
+		return contextual;
+	}
+	
+	/**
+	 * Gets an unmodifiable view of the entries currently in this queue: first
+	 * the unkeyed entries in priority order, then the keyed entries for each
+	 * context. The returned list is a snapshot and will not reflect later
+	 * registrations.
+	 * @return the current entries in this queue
+	 */
+	public List<EventQueueEntry> getEntries() {
+		return Collections.unmodifiableList(allEntries());
+	}
+	
+	/**
+	 * Gets a snapshot of all live (uncancelled) entries, keyed or not.
+	 */
+	private List<EventQueueEntry> allEntries() {
+		List<EventQueueEntry> ret = new ArrayList<>(entries.length);
+		for (EventQueueEntry e : entries) {
+			if (!e.isCancelled()) {
+				ret.add(e);
+			}
+		}
+		
+		for (EventQueueEntry[] array : keyed.values()) {
+			for (EventQueueEntry e : array) {
+				if (!e.isCancelled()) {
+					ret.add(e);
+				}
+			}
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Adds an entry to this queue. The entry is placed after all existing
+	 * entries of equal or higher priority. Keyed entries are added to the
+	 * array for their context.
+	 * @param entry the entry to add
+	 * @throws IllegalArgumentException if the entry is keyed, but this queue
+	 *     is not for a {@link ContextualEvent} type
+	 */
+	public synchronized void add(EventQueueEntry entry) {
+		if (entry.isKeyed() && !contextual) {
+			throw new IllegalArgumentException(
+					"Keyed entries require a ContextualEvent queue, not "
+					+ eventType);
+		}
+		
+		expungeStaleContexts();
+		
+		entry.setQueue(this);
+		entry.setMetrics(metricsFor(entry));
+		
+		if (!entry.isKeyed()) {
+			entries = insert(entries, entry);
+			return;
+		}
+		
+		Object context = entry.getContext();
+		if (context == null) {
+			// a weak context that's already gone; nothing could reach it
+			return;
+		}
+		
+		ContextKey key = new ContextKey(context, null);
+		EventQueueEntry[] current = keyed.get(key);
+		if (current == null) {
+			// only keys that end up in the map need to be enqueued
+			key = new ContextKey(context, staleContexts);
+			current = EMPTY;
+		}
+		
+		keyed.put(key, insert(current, entry));
+		keyedCount++;
+	}
+	
+	/**
+	 * Returns a copy of {@code current} with {@code entry} inserted after
+	 * every entry that sorts before or equal to it, keeping equal priorities
+	 * in insertion order.
+	 */
+	private static EventQueueEntry[] insert(
+			EventQueueEntry[] current, EventQueueEntry entry) {
+		int pos = current.length;
+		while (pos > 0 && current[pos - 1].compareTo(entry) > 0) {
+			pos--;
+		}
+		
+		EventQueueEntry[] updated = new EventQueueEntry[current.length + 1];
+		System.arraycopy(current, 0, updated, 0, pos);
+		updated[pos] = entry;
+		System.arraycopy(current, pos, updated, pos + 1, current.length - pos);
+		
+		return updated;
+	}
+	
+	/**
+	 * Removes a single entry from this queue. The entry stops being notified
+	 * immediately (pushes already in progress on other threads may still
+	 * deliver one last event), but unkeyed entries are only physically removed
+	 * from the dispatch array once enough entries have been cancelled to make
+	 * a rebuild worthwhile.
+	 * @param entry the entry to remove
+	 */
+	public synchronized void remove(EventQueueEntry entry) {
+		if (entry.getQueue() != this || !entry.cancel()) {
+			return;
+		}
+		
+		if (entry.isKeyed()) {
+			// if the context is gone, the whole array is expunged later
+			Object context = entry.getContext();
+			if (context != null) {
+				compactKey(new ContextKey(context, null));
+			}
+			
+			return;
+		}
+		
+		cancelled++;
+		if (cancelled * 4 >= entries.length) {
+			compact();
+		}
+	}
+	
+	/**
+	 * Removes all expired (garbage collected) entries from this queue. This is
+	 * called automatically when a push comes across an expired entry.
+	 * @return the number of expired entries removed
+	 */
+	public synchronized int pruneExpired() {
+		return compact();
+	}
+	
+	/**
+	 * Rebuilds the dispatch arrays without any cancelled or expired entries.
+	 * Must be called while holding this queue's monitor.
+	 * @return the number of expired entries removed
+	 */
+	private int compact() {
+		int expired = 0;
+		
+		EventQueueEntry[] current = entries;
+		List<EventQueueEntry> kept = new ArrayList<>(current.length);
+		expired += filter(current, kept);
+		
+		if (kept.size() != current.length) {
+			entries = kept.toArray(new EventQueueEntry[kept.size()]);
+		}
+		
+		cancelled = 0;
+		
+		expired += expungeStaleContexts();
+		
+		// the map tolerates removal while iterating over its keys
+		for (ContextKey key : keyed.keySet()) {
+			expired += compactKey(key);
+		}
+		
+		if (expired > 0) {
+			pruned.addAndGet(expired);
+			
+			log.debug("Pruned {} expired listeners from queue {}",
+					expired, eventType);
+		}
+		
+		return expired;
+	}
+	
+	/**
+	 * Drops the keyed arrays for contexts that have been garbage collected.
+	 * Only weak entries can be left in such an array, and all of them have
+	 * expired. Must be called while holding this queue's monitor.
+	 * @return the number of expired entries removed
+	 */
+	private int expungeStaleContexts() {
+		int expired = 0;
+		
+		Object ref;
+		while ((ref = staleContexts.poll()) != null) {
+			EventQueueEntry[] array = keyed.remove((ContextKey) ref);
+			if (array != null) {
+				keyedCount -= array.length;
+				expired += array.length;
+			}
+		}
+		
+		return expired;
+	}
+	
+	/**
+	 * Rebuilds the keyed array for the given context without any cancelled or
+	 * expired entries, removing it if it ends up empty. Must be called while
+	 * holding this queue's monitor.
+	 * @return the number of expired entries removed
+	 */
+	private int compactKey(ContextKey key) {
+		EventQueueEntry[] current = keyed.get(key);
+		if (current == null) {
+			return 0;
+		}
+		
+		List<EventQueueEntry> kept = new ArrayList<>(current.length);
+		int expired = filter(current, kept);
+		
+		if (kept.isEmpty()) {
+			keyed.remove(key);
+		} else if (kept.size() != current.length) {
+			keyed.put(key, kept.toArray(new EventQueueEntry[kept.size()]));
+		}
+		
+		keyedCount -= current.length - kept.size();
+		
+		return expired;
+	}
+	
+	/**
+	 * Copies live entries from {@code source} into {@code kept}.
+	 * @return the number of expired entries skipped
+	 */
+	private static int filter(EventQueueEntry[] source, List<EventQueueEntry> kept) {
+		int expired = 0;
+		for (EventQueueEntry e : source) {
+			if (e.isCancelled()) {
+				continue;
+			}
+			
+			if (e.isExpired()) {
+				expired++;
+				continue;
+			}
+			
+			kept.add(e);
+		}
+		
+		return expired;
+	}
+	
+	/**
+	 * Gets the number of entries currently in this queue, keyed or not,
+	 * including any expired entries that have not been pruned yet, but not
+	 * cancelled entries.
+	 * @return the number of entries
+	 */
+	public int size() {
+		return entries.length - cancelled + keyedCount;
+	}
+	
+	/**
+	 * Gets the number of keyed entries in this queue.
+	 * @return the number of keyed entries
+	 */
+	public int getKeyedCount() {
+		return keyedCount;
+	}
+	
+	/**
+	 * Gets the number of entries in this queue whose listeners are still
+	 * reachable.
+	 * @return the number of live entries
+	 */
+	public int getLiveCount() {
+		int count = 0;
+		for (EventQueueEntry e : allEntries()) {
+			if (!e.isExpired()) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Gets the number of entries in this queue whose listeners have been
+	 * garbage collected, but have not been pruned yet.
+	 * @return the number of expired entries
+	 */
+	public int getExpiredCount() {
+		int count = 0;
+		for (EventQueueEntry e : allEntries()) {
+			if (e.isExpired()) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Gets the total number of expired entries that have been pruned from
+	 * this queue.
+	 * @return the number of pruned entries
+	 */
+	public long getPrunedCount() {
+		return pruned.get();
+	}
+	
+	/**
+	 * Gets the shared metrics for the given entry's handler, creating them if
+	 * needed. Annotated handlers share metrics by method, and
+	 * {@link EventConsumer}s by consumer class. Must be called while holding
+	 * this queue's monitor.
+	 */
+	private HandlerMetrics metricsFor(EventQueueEntry entry) {
+		Method method = entry.getMethod();
+		Object key = (method != null) ? method : entry.getObject().getClass();
+		
+		HandlerMetrics m = metrics.get(key);
+		if (m == null) {
+			m = new HandlerMetrics(method, entry.getHandlerName());
+			metrics.put(key, m);
+		}
+		
+		return m;
+	}
+	
+	/**
+	 * Gets the number of events pushed to this queue while
+	 * {@link EventMetrics} were enabled.
+	 * @return the number of recorded pushes
+	 */
+	public long getPushCount() {
+		return pushes.get();
+	}
+	
+	/**
+	 * Gets the number of pushes that skipped at least one handler because the
+	 * event's deadline had passed. This is recorded whether or not
+	 * {@link EventMetrics} are enabled.
+	 * @return the number of pushes that shed handlers
+	 */
+	public long getSheddingPushCount() {
+		return sheddingPushes.get();
+	}
+	
+	/**
+	 * Gets the total number of handler invocations skipped because an event's
+	 * deadline had passed.
+	 * @return the number of shed handler invocations
+	 */
+	public long getShedCount() {
+		return shed.get();
+	}
+	
+	/**
+	 * Takes a snapshot of the metrics recorded for this queue and each handler
+	 * method that has been registered to it. Handlers stay in the snapshot
+	 * after their listeners are removed, so counts are cumulative.
+	 * @see EventMetrics
+	 * @return a snapshot of this queue's metrics
+	 */
+	public synchronized QueueStats getStats() {
+		List<HandlerStats> handlers = new ArrayList<>(metrics.size());
+		for (HandlerMetrics m : metrics.values()) {
+			handlers.add(m.snapshot());
+		}
+		
+		return new QueueStats(eventType, pushes.get(), size(),
+				sheddingPushes.get(), shed.get(),
+				Collections.unmodifiableList(handlers));
 	}
 	
 	/**
@@ -29,27 +517,222 @@ public class EventQueueDefinition {
 	 * to {@code true} (the default), which will cause remaining, lower priority
 	 * events to be skipped. Ideally listeners that may veto events should have
 	 * an above-normal priority to ensure consistent behavior.
+	 * <p>For {@link ContextualEvent}s, entries keyed on the event's context
+	 * are notified along with the unkeyed entries, in priority order.</p>
 	 * @param event the event to dispatch
 	 */
 	public void push(Event event) {
-		boolean vetoed = false;
+		push(event, Integer.MIN_VALUE);
+	}
+	
+	/**
+	 * Notifies entries in the event queue of a batch of events, which must all
+	 * be of this queue's exact type. Ordinary handlers are invoked exactly as
+	 * if each event had been pushed in turn with {@link #push(Event)}: every
+	 * handler sees the first event, in priority order, before any handler
+	 * sees the second. Batch handlers are then invoked once each, in priority
+	 * order, with the events that reached them.
+	 * <p>Vetoes apply per event: an event vetoed by a handler is left out of
+	 * the lists given to lower priority (vetoable) batch handlers. Batch
+	 * handlers can't veto events themselves.</p>
+	 * <p>For {@link ContextualEvent}s, each event also reaches the entries
+	 * keyed on its own context, so a keyed batch handler receives only the
+	 * events for its context.</p>
+	 * @see EventBus#pushAll(java.util.Collection)
+	 * @param events the events to dispatch, in order
+	 */
+	public void pushAll(List<? extends Event> events) {
+		pushAll(events, EventPriority.NO_SHEDDING);
+	}
+	
+	/**
+	 * Notifies entries in the event queue of a batch of events, shedding low
+	 * priority entries from events whose deadline has passed. Each event is
+	 * shed from exactly as it would be by
+	 * {@link #push(Event, int, int)}; an event shed from a batch handler is
+	 * left out of that handler's list.
+	 * @see #pushAll(List)
+	 * @param events the events to dispatch, in order
+	 * @param shedPriority the highest priority that may be shed, or
+	 *     {@link EventPriority#NO_SHEDDING}
+	 */
+	public void pushAll(List<? extends Event> events, int shedPriority) {
+		int count = events.size();
+		if (count == 0) {
+			return;
+		}
+		
+		if (count == 1) {
+			push(events.get(0), Integer.MIN_VALUE, shedPriority);
+			return;
+		}
+		
+		EventQueueEntry[] snapshot = entries;
 		
-		for (EventQueueEntry e : queue) {
-			log.debug("Notifying listener: {}", e.getMethod());
+		if (EventMetrics.isEnabled()) {
+			pushes.addAndGet(count);
+		}
+		
+		// the events reaching each batch entry, by snapshot index for unkeyed
+		// entries and by entry for keyed ones
+		List<Event>[] batches = null;
+		Map<EventQueueEntry, List<Event>> keyedBatches = null;
+		boolean expired = false;
+		
+		for (Event event : events) {
+			EventQueueEntry[] keys = EMPTY;
+			if (keyedCount > 0 && event instanceof ContextualEvent) {
+				keys = findKeyed(((ContextualEvent<?>) event).getContext());
+			}
 			
-			// if the event has been vetoed, and this event is vetoable,
-			// skip it
-			if (vetoed && e.isVetoable()) {
+			boolean vetoed = false;
+			
+			long deadline = 0;
+			boolean shedding = shedPriority != EventPriority.NO_SHEDDING
+					&& event instanceof DeadlineEvent;
+			if (shedding) {
+				deadline = ((DeadlineEvent) event).getDeadline();
+			}
+			
+			boolean overdue = false;
+			int skipped = 0;
+			
+			// merge the two sorted arrays, as in push()
+			int i = 0;
+			int j = 0;
+			while (i < snapshot.length || j < keys.length) {
+				EventQueueEntry e;
+				int index;
+				if (j == keys.length || (i < snapshot.length
+						&& snapshot[i].getPriority() >= keys[j].getPriority())) {
+					index = i;
+					e = snapshot[i++];
+				} else {
+					index = -1;
+					e = keys[j++];
+				}
+				
+				if (vetoed && e.isVetoable()) {
+					continue;
+				}
+				
+				if (shedding && e.getPriority() <= shedPriority
+						&& !e.payOwed()) {
+					if (!overdue) {
+						overdue = System.currentTimeMillis() > deadline;
+					}
+					
+					if (overdue) {
+						e.markOwed();
+						skipped++;
+						continue;
+					}
+				}
+				
+				if (e.isBatch()) {
+					List<Event> batch;
+					if (index >= 0) {
+						if (batches == null) {
+							batches = newBatches(snapshot.length);
+						}
+						
+						batch = batches[index];
+						if (batch == null) {
+							batch = batches[index] = new ArrayList<>(count);
+						}
+					} else {
+						if (keyedBatches == null) {
+							keyedBatches = new LinkedHashMap<>();
+						}
+						
+						batch = keyedBatches.get(e);
+						if (batch == null) {
+							batch = new ArrayList<>();
+							keyedBatches.put(e, batch);
+						}
+					}
+					
+					batch.add(event);
+					continue;
+				}
+				
+				try {
+					if (!e.notify(event)) {
+						expired = true;
+					}
+				} catch (EventVetoException ex) {
+					vetoed = true;
+				}
+			}
+			
+			if (skipped > 0) {
+				sheddingPushes.incrementAndGet();
+				shed.addAndGet(skipped);
+			}
+		}
+		
+		if (batches != null || keyedBatches != null) {
+			expired |= notifyBatches(snapshot, batches, keyedBatches);
+		}
+		
+		if (expired) {
+			pruneExpired();
+		}
+	}
+	
+	/**
+	 * Creates an array of event lists; generic arrays can't be created
+	 * directly.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static List<Event>[] newBatches(int length) {
+		return new List[length];
+	}
+	
+	/**
+	 * Invokes each batch entry with the events collected for it, in priority
+	 * order. As in a push, unkeyed entries go first at equal priority.
+	 * @param snapshot the unkeyed entries
+	 * @param batches the events for the unkeyed entries, by index, or null
+	 * @param keyedBatches the events for keyed entries, or null
+	 * @return true if an expired entry was found
+	 */
+	private static boolean notifyBatches(
+			EventQueueEntry[] snapshot, List<Event>[] batches,
+			Map<EventQueueEntry, List<Event>> keyedBatches) {
+		List<EventQueueEntry> keys = Collections.emptyList();
+		if (keyedBatches != null) {
+			keys = new ArrayList<>(keyedBatches.keySet());
+			Collections.sort(keys);
+		}
+		
+		boolean expired = false;
+		
+		int i = 0;
+		int j = 0;
+		while (i < snapshot.length || j < keys.size()) {
+			EventQueueEntry e;
+			List<Event> batch;
+			if (j == keys.size() || (i < snapshot.length
+					&& snapshot[i].getPriority() >= keys.get(j).getPriority())) {
+				e = snapshot[i];
+				batch = (batches == null) ? null : batches[i];
+				i++;
+			} else {
+				e = keys.get(j++);
+				batch = keyedBatches.get(e);
+			}
+			
+			if (batch == null) {
 				continue;
 			}
 			
-			try {
-				e.notify(event);
-			} catch (EventVetoException ex) {
-				// skip others on event veto
-				vetoed = true;
+			if (!e.notifyBatch(Collections.unmodifiableList(batch))) {
+				expired = true;
 			}
 		}
+		
+		return expired;
 	}
 	
 	/**
@@ -59,25 +742,205 @@ public class EventQueueDefinition {
 	 * @param priority The minimum priority
 	 */
 	public void push(Event event, int priority) {
+		push(event, priority, EventPriority.NO_SHEDDING);
+	}
+	
+	/**
+	 * Notifies entries in the event queue with the given minimum priority,
+	 * shedding low priority entries if the event's deadline has passed.
+	 * <p>If {@code event} is a {@link DeadlineEvent}, entries with a priority
+	 * at or below {@code shedPriority} are skipped once the deadline has
+	 * passed. A shed entry is "owed" the next push, and will be notified then
+	 * regardless of the deadline, so no handler is ever shed from two pushes
+	 * in a row, even when several threads push at once. Entries above
+	 * {@code shedPriority} are never shed.</p>
+	 * <p>Shed invocations are dropped, not queued: the handler never sees the
+	 * event it was shed from, only the events pushed after it. Shedding is
+	 * meant for handlers that recompute state from scratch each tick (e.g.
+	 * visibility or interest updates), for which a missed event is only a
+	 * late update. Handlers that must see every event belong above
+	 * {@code shedPriority}.</p>
+	 * @see #push(Event)
+	 * @param event the event to dispatch
+	 * @param priority the minimum priority
+	 * @param shedPriority the highest priority that may be shed, or
+	 *     {@link EventPriority#NO_SHEDDING}
+	 */
+	public void push(Event event, int priority, int shedPriority) {
+		EventQueueEntry[] snapshot = entries;
+		EventQueueEntry[] keys = EMPTY;
+		
+		if (keyedCount > 0 && event instanceof ContextualEvent) {
+			keys = findKeyed(((ContextualEvent<?>) event).getContext());
+		}
+		
+		if (EventMetrics.isEnabled()) {
+			pushes.incrementAndGet();
+		}
+		
 		boolean vetoed = false;
+		boolean expired = false;
+		
+		long deadline = 0;
+		boolean shedding = shedPriority != EventPriority.NO_SHEDDING
+				&& event instanceof DeadlineEvent;
+		if (shedding) {
+			deadline = ((DeadlineEvent) event).getDeadline();
+		}
 		
-		for (EventQueueEntry e : queue) {
-			log.debug("Notifying listener: {}", e.getMethod());
+		boolean overdue = false;
+		int skipped = 0;
+		
+		// merge the two sorted arrays; unkeyed entries win ties
+		int i = 0;
+		int j = 0;
+		while (i < snapshot.length || j < keys.length) {
+			EventQueueEntry e;
+			if (j == keys.length || (i < snapshot.length
+					&& snapshot[i].getPriority() >= keys[j].getPriority())) {
+				e = snapshot[i++];
+			} else {
+				e = keys[j++];
+			}
 			
+			// entries are sorted, so nothing past this point can qualify
+			if (e.getPriority() < priority) {
+				break;
+			}
+			
+			// if the event has been vetoed, and this event is vetoable,
+			// skip it
 			if (vetoed && e.isVetoable()) {
 				continue;
 			}
 			
-			if (e.getPriority() < priority) {
-				continue;
+			// an entry owed a push pays its debt here, so it is never shed
+			// from two pushes in a row
+			if (shedding && e.getPriority() <= shedPriority
+					&& !e.payOwed()) {
+				if (!overdue) {
+					overdue = System.currentTimeMillis() > deadline;
+				}
+				
+				if (overdue) {
+					e.markOwed();
+					skipped++;
+					continue;
+				}
 			}
 			
 			try {
-				e.notify(event);
+				if (!e.notify(event)) {
+					expired = true;
+				}
 			} catch (EventVetoException ex) {
+				// skip others on event veto
 				vetoed = true;
 			}
 		}
+		
+		if (skipped > 0) {
+			sheddingPushes.incrementAndGet();
+			shed.addAndGet(skipped);
+		}
+		
+		if (expired) {
+			pruneExpired();
+		}
+	}
+	
+	/**
+	 * Looks up the keyed entries for the given context without allocating a
+	 * key.
+	 * @param context the event's context, or null
+	 * @return the keyed entries for the context, possibly empty
+	 */
+	private EventQueueEntry[] findKeyed(Object context) {
+		if (context == null) {
+			return EMPTY;
+		}
+		
+		ContextProbe probe = PROBE.get();
+		probe.set(context);
+		try {
+			EventQueueEntry[] found = keyed.get(probe);
+			return (found == null) ? EMPTY : found;
+		} finally {
+			// don't keep the context reachable from the thread
+			probe.set(null);
+		}
+	}
+	
+	/**
+	 * A weak, equality-compared key for the keyed map. The hash is captured up
+	 * front so that the key can still be removed after its context is gone.
+	 */
+	private static class ContextKey extends WeakReference<Object> {
+		
+		private final int hash;
+		
+		public ContextKey(Object context, ReferenceQueue<Object> queue) {
+			super(context, queue);
+			
+			hash = context.hashCode();
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			}
+			
+			Object context = get();
+			if (context == null) {
+				return false;
+			}
+			
+			if (o instanceof ContextProbe) {
+				return context.equals(((ContextProbe) o).context);
+			}
+			
+			return o instanceof ContextKey
+					&& context.equals(((ContextKey) o).get());
+		}
+		
+	}
+	
+	/**
+	 * A reusable, strongly held key for looking up the keyed map during
+	 * dispatch. A probe compares equal to the {@link ContextKey} for the same
+	 * context, and is never stored in the map.
+	 */
+	private static class ContextProbe {
+		
+		private Object context;
+		private int hash;
+		
+		public void set(Object context) {
+			this.context = context;
+			this.hash = (context == null) ? 0 : context.hashCode();
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			}
+			
+			return o instanceof ContextKey && context != null
+					&& context.equals(((ContextKey) o).get());
+		}
+		
 	}
 	
 }
@@ -1,23 +1,57 @@
 package net.letscode.game.event;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Defines an entry in the event queue for a specific event type.
- * TODO: should we use WeakReferences here? we could potentially avoid having to
- * ever manually deregister a class from event notifications, and just queue
- * "expired" event listeners for removal if we see they've been garbage
- * collected
+ * <p>Entries normally hold a strong reference to their listener, which must
+ * then be deregistered to stop receiving events and to be garbage collected.
+ * Entries created for {@link EventBus#registerWeak(Object)} instead hold the
+ * listener through a {@link WeakReference}: once the listener has been
+ * collected, the entry is "expired", is skipped during dispatch, and is
+ * removed from its queue by the next push that notices it. Weak entries
+ * hold their context (if any) weakly as well, since the context is often the
+ * listener itself or something that refers to it; an entry whose context has
+ * been collected is expired too, as no event can carry that context any
+ * more.</p>
+ * <p>Entries whose handler declared an {@link ExecutionContext} other than
+ * the caller are handed off to that context by {@link #notify(Event)}, and
+ * run later through {@link #runHandedOff(Event)}.</p>
+ * <p>Handlers that keep failing are suspended by a circuit breaker; see
+ * {@link EventBreakers}.</p>
  * @author timothyb89
  */
 @Slf4j
 public class EventQueueEntry implements Comparable<EventQueueEntry> {
 	
-	@Getter
+	private static final AtomicIntegerFieldUpdater<EventQueueEntry> OWED =
+			AtomicIntegerFieldUpdater.newUpdater(EventQueueEntry.class, "owed");
+	
+	/**
+	 * The listener, if held strongly. Exactly one of {@code object} and
+	 * {@code reference} is non-null until the entry is cancelled, which
+	 * clears this so that a cancelled entry still waiting to be compacted out
+	 * of a dispatch array (or held by an {@link EventRegistration}) doesn't
+	 * keep its listener reachable.
+	 */
 	private Object object;
 	
+	/**
+	 * The listener, if held weakly.
+	 */
+	private WeakReference<Object> reference;
+	
+	/**
+	 * The handler method, or null if the listener is an
+	 * {@link EventConsumer}.
+	 */
 	@Getter
 	private Method method;
 	
@@ -26,15 +60,257 @@ public class EventQueueEntry implements Comparable<EventQueueEntry> {
 	
 	@Getter
 	private boolean vetoable;
-
+	
+	@Getter
+	private EventInvoker invoker;
+	
+	/**
+	 * The context this entry is keyed on, if held strongly. At most one of
+	 * {@code context} and {@code contextReference} is non-null, and both are
+	 * null if the entry receives all events for its queue.
+	 * @see EventBus#register(Object, Object)
+	 */
+	private Object context;
+	
+	/**
+	 * The context this entry is keyed on, if held weakly.
+	 */
+	private WeakReference<Object> contextReference;
+	
+	/**
+	 * The handler's pre-dispatch filter, if any.
+	 */
+	@Getter
+	private EventFilter<Event> filter;
+	
+	/**
+	 * The thread this entry's handler runs on.
+	 */
+	@Getter
+	private ExecutionContext execution = ExecutionContext.CALLER;
+	
+	/**
+	 * The queue this entry was added to, if any.
+	 */
+	private EventQueueDefinition queue;
+	
+	/**
+	 * Set once this entry has been removed from its queue. Cancelled entries
+	 * are never notified, even if they're still in a dispatch snapshot.
+	 */
+	private volatile boolean cancelled;
+	
+	/**
+	 * 1 when this entry was shed from a push because the event's deadline
+	 * had passed; the entry is then exempt from shedding on the next push.
+	 * Updated with {@link #OWED}, as concurrent pushes may race to pay the
+	 * same debt.
+	 */
+	private volatile int owed;
+	
+	/**
+	 * Metrics for this entry's handler method, shared with other entries for
+	 * the same method in the same queue.
+	 */
+	@Getter
+	private HandlerMetrics metrics;
+	
+	/**
+	 * This entry's circuit breaker, created on the first failure.
+	 */
+	private volatile HandlerBreaker breaker;
+	
 	public EventQueueEntry(
-			Object object, Method method, int priority, boolean vetoable) {
-		this.object = object;
+			Object object, Method method, EventInvoker invoker,
+			int priority, boolean vetoable) {
+		this(object, false, method, invoker, priority, vetoable);
+	}
+	
+	public EventQueueEntry(
+			Object object, boolean weak, Method method, EventInvoker invoker,
+			int priority, boolean vetoable) {
+		this(object, weak, null, method, invoker, priority, vetoable);
+	}
+	
+	public EventQueueEntry(
+			Object object, boolean weak, Object context,
+			Method method, EventInvoker invoker,
+			int priority, boolean vetoable) {
+		if (weak) {
+			this.reference = new WeakReference<>(object);
+			
+			if (context != null) {
+				this.contextReference = new WeakReference<>(context);
+			}
+		} else {
+			this.object = object;
+			this.context = context;
+		}
+		
 		this.method = method;
+		this.invoker = invoker;
 		this.priority = priority;
 		this.vetoable = vetoable;
 	}
 	
+	/**
+	 * Gets the listener object for this entry. If the listener is held weakly
+	 * and has been garbage collected, or the entry is strong and has been
+	 * cancelled, this returns {@code null}.
+	 * @return the listener, or null if it has expired or been cancelled
+	 */
+	public Object getObject() {
+		return (reference == null) ? object : reference.get();
+	}
+	
+	/**
+	 * Gets the context this entry is keyed on. If the entry is weak and its
+	 * context has been garbage collected, this returns {@code null}; use
+	 * {@link #isKeyed()} to tell that apart from an unkeyed entry.
+	 * @return the context, or null if unkeyed or expired
+	 */
+	public Object getContext() {
+		return (contextReference == null) ? context : contextReference.get();
+	}
+	
+	/**
+	 * @return true if this entry only receives events for a single context
+	 */
+	public boolean isKeyed() {
+		return context != null || contextReference != null;
+	}
+	
+	/**
+	 * Gets the queue this entry belongs to.
+	 * @return the queue, or null if this entry hasn't been added to one
+	 */
+	public EventQueueDefinition getQueue() {
+		return queue;
+	}
+	
+	void setQueue(EventQueueDefinition queue) {
+		this.queue = queue;
+	}
+	
+	void setMetrics(HandlerMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Sets the filter for this entry. The filter must accept the event type
+	 * of this entry's handler.
+	 * @param filter the filter, or null for none
+	 */
+	@SuppressWarnings("unchecked")
+	public void setFilter(EventFilter<?> filter) {
+		this.filter = (EventFilter<Event>) filter;
+	}
+	
+	/**
+	 * Sets the thread this entry's handler runs on.
+	 * @param execution the execution context, or null for the caller
+	 */
+	public void setExecution(ExecutionContext execution) {
+		this.execution = (execution == null)
+				? ExecutionContext.CALLER
+				: execution;
+	}
+	
+	/**
+	 * @return true if this entry has been removed from its queue
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	/**
+	 * Marks this entry as cancelled. This should only be called by the owning
+	 * {@link EventQueueDefinition}, which accounts for cancelled entries.
+	 * @return true if the entry was cancelled by this call, false if it was
+	 *     already cancelled
+	 */
+	boolean cancel() {
+		if (cancelled) {
+			return false;
+		}
+		
+		cancelled = true;
+		object = null;
+		
+		HandlerBreaker b = breaker;
+		if (b != null) {
+			b.release();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @return true if this entry was shed from the last push, and so will not
+	 *     be shed from the next one
+	 */
+	public boolean isOwed() {
+		return owed != 0;
+	}
+	
+	/**
+	 * Marks this entry as shed from a push, exempting it from shedding on the
+	 * next one.
+	 */
+	void markOwed() {
+		OWED.compareAndSet(this, 0, 1);
+	}
+	
+	/**
+	 * Clears the exemption from shedding, if this entry has one. Only one of
+	 * several concurrent callers sees {@code true}.
+	 * @return true if this entry was owed a push, and so must not be shed
+	 */
+	boolean payOwed() {
+		return owed != 0 && OWED.compareAndSet(this, 1, 0);
+	}
+	
+	/**
+	 * Describes this entry's handler for logging and metrics: the handler
+	 * method, or the class of the listener for an {@link EventConsumer}.
+	 * @return a description of the handler
+	 */
+	public String getHandlerName() {
+		if (method != null) {
+			return method.toString();
+		}
+		
+		Object o = getObject();
+		return (o == null) ? "(expired consumer)" : o.getClass().getName();
+	}
+	
+	/**
+	 * @return true if this entry's handler is currently suspended by its
+	 *     circuit breaker
+	 * @see EventBreakers
+	 */
+	public boolean isSuspended() {
+		HandlerBreaker b = breaker;
+		return b != null && b.isOpen();
+	}
+	
+	/**
+	 * @return true if this entry holds its listener weakly
+	 */
+	public boolean isWeak() {
+		return reference != null;
+	}
+	
+	/**
+	 * Checks whether the listener for this entry, or the context it is keyed
+	 * on, has been garbage collected. Strongly held entries never expire.
+	 * @return true if this entry's listener or context has expired
+	 */
+	public boolean isExpired() {
+		return (reference != null && reference.get() == null)
+				|| (contextReference != null && contextReference.get() == null);
+	}
+	
 	@Override
 	public int compareTo(EventQueueEntry o) {
 		return o.priority - priority;
@@ -45,19 +321,325 @@ public class EventQueueEntry implements Comparable<EventQueueEntry> {
 	 * that the passed event is compatible with the method associated with this
 	 * entry (as it was checked at registration time). As such, any outside 
 	 * invocations of this method will need to manually check this.
+	 * <p>If this entry's handler doesn't run on the caller, the event is
+	 * handed off to its {@link ExecutionContext} and this returns without
+	 * waiting for the handler.</p>
 	 * @param event the event to pass to this queue entry
+	 * @return false if the listener has expired and could not be notified,
+	 *     true otherwise (including if this entry has been cancelled)
 	 */
-	public void notify(Event event) {
+	public boolean notify(Event event) {
+		if (cancelled) {
+			return true;
+		}
+		
+		Object target = getObject();
+		if (target == null) {
+			return false;
+		}
+		
+		HandlerBreaker b = breaker;
+		if (execution != ExecutionContext.CALLER) {
+			// a trial is only started once the handler actually runs, in
+			// runHandedOff(), so a dropped hand-off can't leave one open
+			if (b != null && !b.allowHandOff()) {
+				return true;
+			}
+			
+			if (EventExecutors.handOff(execution, this, event)) {
+				return true;
+			}
+		}
+		
+		if (b != null && !b.allow()) {
+			return true;
+		}
+		
+		HandlerMetrics m = metrics;
+		if (m != null && !EventMetrics.isEnabled()) {
+			m = null;
+		}
+		
+		if (filter != null && !accept(target, event, m)) {
+			return true;
+		}
+		
+		dispatch(target, event, null, m);
+		return true;
+	}
+	
+	/**
+	 * Notifies this batch handler entry of a list of events. Events rejected
+	 * by this entry's filter are removed from the list first, and the handler
+	 * is not invoked if none are left. As with {@link #notify(Event)}, the
+	 * events are assumed to be compatible with the handler.
+	 * <p>If this entry's handler doesn't run on the caller, each event is
+	 * handed off separately, and the handler receives them as lists of
+	 * one.</p>
+	 * @param events the events to pass to this queue entry
+	 * @return false if the listener has expired and could not be notified,
+	 *     true otherwise (including if this entry has been cancelled)
+	 * @throws IllegalStateException if this entry isn't for a batch handler
+	 */
+	public boolean notifyBatch(List<Event> events) {
+		if (!isBatch()) {
+			throw new IllegalStateException("Not a batch handler: " + method);
+		}
+		
+		if (cancelled) {
+			return true;
+		}
+		
+		Object target = getObject();
+		if (target == null) {
+			return false;
+		}
+		
+		HandlerBreaker b = breaker;
+		if (execution != ExecutionContext.CALLER) {
+			if (b != null && !b.allowHandOff()) {
+				return true;
+			}
+			
+			// usually every event is handed off, or none are, so the list of
+			// events left for the caller is only built if that isn't the case
+			List<Event> remaining = null;
+			int handedOff = 0;
+			for (int i = 0; i < events.size(); i++) {
+				Event e = events.get(i);
+				boolean off = EventExecutors.handOff(execution, this, e);
+				if (off) {
+					handedOff++;
+				}
+				
+				if (remaining != null) {
+					if (!off) {
+						remaining.add(e);
+					}
+				} else if (off && handedOff <= i) {
+					// the events before this one were all kept
+					remaining = new ArrayList<>(events.subList(0, i));
+				} else if (!off && handedOff > 0) {
+					// the events before this one were all handed off
+					remaining = new ArrayList<>(events.size() - i);
+					remaining.add(e);
+				}
+			}
+			
+			if (remaining != null) {
+				events = Collections.unmodifiableList(remaining);
+			} else if (handedOff > 0) {
+				return true;
+			}
+		}
+		
+		if (b != null && !b.allow()) {
+			return true;
+		}
+		
+		HandlerMetrics m = metrics;
+		if (m != null && !EventMetrics.isEnabled()) {
+			m = null;
+		}
+		
+		if (filter != null) {
+			List<Event> accepted = new ArrayList<>(events.size());
+			for (Event e : events) {
+				if (accept(target, e, m)) {
+					accepted.add(e);
+				}
+			}
+			
+			if (accepted.isEmpty()) {
+				return true;
+			}
+			
+			events = Collections.unmodifiableList(accepted);
+		}
+		
+		dispatch(target, null, events, m);
+		return true;
+	}
+	
+	/**
+	 * Runs this entry's handler for an event that was handed off to its
+	 * execution context, on the current thread. The handler is skipped if the
+	 * entry was cancelled or expired in the meantime, if its circuit breaker
+	 * doesn't allow it (this is where a suspended handler's trial starts), or
+	 * if its filter rejects the event. A veto from the handler is logged and
+	 * ignored.
+	 * <p>This always drops the hold taken on the event when it was handed
+	 * off, so a {@link PooledEvent} is recycled once every handler is done
+	 * with it.</p>
+	 * @param event the event that was handed off
+	 */
+	void runHandedOff(Event event) {
+		try {
+			if (cancelled) {
+				return;
+			}
+			
+			Object target = getObject();
+			if (target == null) {
+				return;
+			}
+			
+			HandlerBreaker b = breaker;
+			if (b != null && !b.allow()) {
+				return;
+			}
+			
+			HandlerMetrics m = metrics;
+			if (m != null && !EventMetrics.isEnabled()) {
+				m = null;
+			}
+			
+			if (filter != null && !accept(target, event, m)) {
+				return;
+			}
+			
+			try {
+				if (isBatch()) {
+					dispatch(target, null, Collections.singletonList(event), m);
+				} else {
+					dispatch(target, event, null, m);
+				}
+			} catch (EventVetoException ex) {
+				log.warn("Ignoring veto from {}, which runs on the {} context",
+						getHandlerName(), execution);
+			}
+		} finally {
+			PooledEvent.recycle(event);
+		}
+	}
+	
+	/**
+	 * @return true if this entry's handler takes a list of events
+	 */
+	public boolean isBatch() {
+		return invoker instanceof EventBatchInvoker;
+	}
+	
+	/**
+	 * Invokes the handler with either a single event or a batch, recording
+	 * metrics if {@code m} is not null.
+	 */
+	private void dispatch(
+			Object target, Event event, List<Event> events, HandlerMetrics m) {
+		if (m == null) {
+			invoke(target, event, events, null);
+			return;
+		}
+		
+		if (!m.recordInvocation()) {
+			invoke(target, event, events, m);
+			return;
+		}
+		
+		long start = System.nanoTime();
 		try {
-			method.invoke(object, event);
+			invoke(target, event, events, m);
+		} finally {
+			m.recordTime(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Checks this entry's filter. A filter that throws is treated as having
+	 * rejected the event.
+	 */
+	private boolean accept(Object target, Event event, HandlerMetrics m) {
+		boolean accepted;
+		try {
+			accepted = filter.accept(target, event);
+			if (!accepted) {
+				// a trial invocation needs an event the handler accepts
+				HandlerBreaker b = breaker;
+				if (b != null) {
+					b.abandonTrial();
+				}
+			}
+		} catch (RuntimeException ex) {
+			if (m != null) {
+				m.recordException();
+			}
+			
+			failed("event filter for", ex);
+			accepted = false;
+		}
+		
+		if (!accepted && m != null) {
+			m.recordFiltered();
+		}
+		
+		return accepted;
+	}
+	
+	private void invoke(
+			Object target, Event event, List<Event> events, HandlerMetrics m) {
+		try {
+			if (events == null) {
+				invoker.invoke(target, event);
+			} else {
+				((EventBatchInvoker) invoker).invokeBatch(target, events);
+			}
+			
+			succeeded();
 		} catch (EventVetoException ex) {
+			if (m != null) {
+				m.recordVeto();
+			}
+			
+			succeeded();
+			
 			// skip this - it needs to be passed to the queue to skip properly
 			throw ex;
-		} catch (Exception ex) {
+		} catch (Throwable ex) {
+			if (m != null) {
+				m.recordException();
+			}
+			
 			// we don't want non-veto exceptions to break the entire event queue
 			// so we catch and log the error here
-			log.error("Error in event handler " + method, ex);
+			failed("event handler", ex);
+		}
+	}
+	
+	private void succeeded() {
+		HandlerBreaker b = breaker;
+		if (b != null && b.isOpen()) {
+			b.recordSuccess();
+		}
+	}
+	
+	/**
+	 * Logs a failure of this entry's handler or filter, through its circuit
+	 * breaker if breakers are enabled.
+	 * @param source what failed, for the log message
+	 * @param ex the exception thrown
+	 */
+	private void failed(String source, Throwable ex) {
+		HandlerBreaker b = breaker;
+		
+		if (!EventBreakers.isEnabled()) {
+			if (b != null) {
+				b.release();
+			}
+			
+			log.error("Error in " + source + " " + getHandlerName(), ex);
+			return;
+		}
+		
+		if (b == null) {
+			synchronized (this) {
+				b = breaker;
+				if (b == null) {
+					b = breaker = new HandlerBreaker(this);
+				}
+			}
 		}
+		
+		b.recordFailure(source, ex);
 	}
 	
 }
@@ -0,0 +1,93 @@
+package net.letscode.game.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A handle for a listener's registration with an {@link EventBus}, as returned
+ * by {@link EventBus#register(Object)} and {@link EventBus#registerWeak(Object)}.
+ * The handle knows exactly which queue entries were created for the listener,
+ * so cancelling it only touches those entries rather than searching every
+ * queue on the bus.
+ * <p>Cancelling a handle has the same effect as
+ * {@link EventBus#deregister(Object)} for the handlers it covers. A listener
+ * registered more than once gets one handle per registration, and each may be
+ * cancelled independently.</p>
+ */
+public class EventRegistration {
+	
+	private final EventBus bus;
+	private final List<EventQueueEntry> entries;
+	
+	private volatile boolean active;
+	
+	EventRegistration(EventBus bus, List<EventQueueEntry> entries) {
+		this.bus = bus;
+		this.entries = entries;
+		
+		active = !entries.isEmpty();
+	}
+	
+	/**
+	 * Gets the listener this registration was made for.
+	 * @return the listener, or null if it was held weakly and has been garbage
+	 *     collected, if the registration has been cancelled, or if no handlers
+	 *     were registered
+	 */
+	public Object getListener() {
+		return entries.isEmpty() ? null : entries.get(0).getObject();
+	}
+	
+	/**
+	 * Gets the queue entries created for this registration. There is one entry
+	 * per handler method per compatible event queue.
+	 * @return an unmodifiable list of entries
+	 */
+	public List<EventQueueEntry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+	
+	/**
+	 * Checks whether this registration may still receive events. A
+	 * registration is inactive once cancelled, once its (weakly held) listener
+	 * has been garbage collected, or if it didn't register any handlers to
+	 * begin with.
+	 * @return true if this registration is active
+	 */
+	public boolean isActive() {
+		return active && getListener() != null;
+	}
+	
+	/**
+	 * Removes every handler covered by this registration from the bus. This
+	 * is idempotent, and safe to call from within a handler.
+	 */
+	public void cancel() {
+		bus.cancel(this);
+	}
+	
+	/**
+	 * Removes this registration's entries from their queues.
+	 * @return true if this call cancelled the registration, false if it was
+	 *     already inactive
+	 */
+	boolean release() {
+		synchronized (this) {
+			if (!active) {
+				return false;
+			}
+			
+			active = false;
+		}
+		
+		for (EventQueueEntry e : entries) {
+			EventQueueDefinition queue = e.getQueue();
+			if (queue != null) {
+				queue.remove(e);
+			}
+		}
+		
+		return true;
+	}
+	
+}
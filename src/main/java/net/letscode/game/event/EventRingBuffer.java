@@ -0,0 +1,282 @@
+package net.letscode.game.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A bounded, lock-free hand-off buffer of events from any number of producer
+ * threads to a single consumer thread. Producers {@link #offer(EventBus, Event)}
+ * an event along with the bus it should be pushed to, and the consumer later
+ * calls {@link #drain()} to push everything that has been published so far, in
+ * order, on its own thread.
+ * <p>This is used to move work off of network threads and onto the world
+ * thread: {@code ClientSession} offers incoming messages here, and
+ * {@code World} drains the buffer at the start of each tick, so listeners for
+ * incoming messages always run on the world thread alongside the rest of the
+ * game state.</p>
+ * <p>Producers that would otherwise allocate a new event for every offer
+ * can instead offer a payload along with a {@link Translator}, with
+ * {@link #offer(EventBus, Translator, Object)}. The translator builds the
+ * event on the draining thread just before it is pushed, so it can take a
+ * {@link PooledEvent} from that thread's pool, which is where the bus releases
+ * it to once it has been dispatched.</p>
+ * <p>{@link EventExecutors} also offers single handler invocations here, with
+ * {@link #offer(EventQueueEntry, Event)}, for handlers that declared
+ * {@link ExecutionContext#WORLD}. Those are run on the draining thread
+ * without pushing the event to a bus again.</p>
+ * <p>All slots are allocated up front and reused, so offering an event
+ * allocates nothing. Each slot carries a sequence number: a producer claims a
+ * position by advancing the shared tail, fills in the slot and then publishes
+ * it by writing the slot's sequence. The consumer only reads slots whose
+ * sequence says they've been published, and hands them back to producers once
+ * it has taken their contents.</p>
+ * <p>Only one thread may call {@link #drain()}.</p>
+ */
+@Slf4j
+public class EventRingBuffer {
+	
+	/**
+	 * Builds the event for a payload offered with
+	 * {@link EventRingBuffer#offer(EventBus, Translator, Object)}. This is
+	 * called on the draining thread.
+	 * @param <T> the payload type
+	 */
+	public interface Translator<T> {
+		
+		/**
+		 * Creates the event to push for the given payload.
+		 * @param payload the offered payload
+		 * @return the event to push
+		 */
+		public Event translate(T payload);
+		
+	}
+	
+	private final Slot[] slots;
+	private final int mask;
+	
+	/**
+	 * Per-slot sequence numbers. A slot at {@code index} is free for position
+	 * {@code p} when its sequence is {@code p}, and holds a published event
+	 * for position {@code p} when its sequence is {@code p + 1}.
+	 */
+	private final AtomicLongArray sequences;
+	
+	/**
+	 * The next position to be claimed by a producer.
+	 */
+	private final AtomicLong tail;
+	
+	/**
+	 * The next position to be consumed. Only ever written by the consumer,
+	 * but read by {@link #size()} from any thread.
+	 */
+	private volatile long head;
+	
+	private final AtomicLong rejected;
+	
+	/**
+	 * Creates a new ring buffer.
+	 * @param capacity the number of slots; rounded up to a power of two
+	 */
+	public EventRingBuffer(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		
+		slots = new Slot[size];
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			slots[i] = new Slot();
+			sequences.set(i, i);
+		}
+		
+		mask = size - 1;
+		tail = new AtomicLong();
+		head = 0;
+		rejected = new AtomicLong();
+	}
+	
+	/**
+	 * Offers an event to the buffer, to be pushed to the given bus when the
+	 * buffer is next drained. This never blocks.
+	 * @param bus the bus to push the event to
+	 * @param event the event to push
+	 * @return true if the event was accepted, false if the buffer is full (in
+	 *     which case the caller still owns the event, if it is pooled)
+	 */
+	public boolean offer(EventBus bus, Event event) {
+		return offer(bus, null, null, null, event);
+	}
+	
+	/**
+	 * Offers a payload to the buffer. When the buffer is next drained, the
+	 * translator is called with the payload on the draining thread, and the
+	 * event it returns is pushed to the given bus. This never blocks.
+	 * <p>The translator is usually created once per producer, so offering a
+	 * payload allocates nothing.</p>
+	 * @param <T> the payload type
+	 * @param bus the bus to push the event to
+	 * @param translator builds the event from the payload
+	 * @param payload the payload
+	 * @return true if the payload was accepted, false if the buffer is full
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> boolean offer(
+			EventBus bus, Translator<? super T> translator, T payload) {
+		return offer(bus, null, (Translator<Object>) translator, payload, null);
+	}
+	
+	/**
+	 * Offers a single handler invocation to the buffer, to be run when the
+	 * buffer is next drained. The event is passed to
+	 * {@link EventQueueEntry#runHandedOff(Event)}, which also releases the
+	 * caller's hold on it. This never blocks.
+	 * @param entry the entry to invoke
+	 * @param event the event to pass to the entry
+	 * @return true if the invocation was accepted, false if the buffer is full
+	 */
+	boolean offer(EventQueueEntry entry, Event event) {
+		return offer(null, entry, null, null, event);
+	}
+	
+	private boolean offer(EventBus bus, EventQueueEntry entry,
+			Translator<Object> translator, Object payload, Event event) {
+		long pos;
+		int index;
+		
+		while (true) {
+			pos = tail.get();
+			index = (int) pos & mask;
+			
+			long diff = sequences.get(index) - pos;
+			if (diff == 0) {
+				// the slot is free for this position; try to claim it
+				if (tail.compareAndSet(pos, pos + 1)) {
+					break;
+				}
+			} else if (diff < 0) {
+				// the slot still holds an event from the previous lap, so the
+				// buffer is full
+				rejected.incrementAndGet();
+				return false;
+			}
+			
+			// otherwise another producer claimed this position first; retry
+		}
+		
+		Slot slot = slots[index];
+		slot.bus = bus;
+		slot.entry = entry;
+		slot.translator = translator;
+		slot.payload = payload;
+		slot.event = event;
+		
+		// publish; the consumer's volatile read of the sequence makes the
+		// slot contents visible
+		sequences.lazySet(index, pos + 1);
+		
+		return true;
+	}
+	
+	/**
+	 * Pushes all events published before this call to their buses (or runs
+	 * the handler invocations), on the calling thread. Events offered while
+	 * the drain is in progress (for example, by handlers) are left for the
+	 * next drain, so this always terminates.
+	 * @return the number of events pushed
+	 */
+	public int drain() {
+		long end = tail.get();
+		long pos = head;
+		int count = 0;
+		
+		while (pos < end) {
+			int index = (int) pos & mask;
+			
+			// a producer has claimed this position but not yet published it;
+			// stop here to preserve ordering and pick it up next time
+			if (sequences.get(index) != pos + 1) {
+				break;
+			}
+			
+			Slot slot = slots[index];
+			EventBus bus = slot.bus;
+			EventQueueEntry entry = slot.entry;
+			Translator<Object> translator = slot.translator;
+			Object payload = slot.payload;
+			Event event = slot.event;
+			slot.bus = null;
+			slot.entry = null;
+			slot.translator = null;
+			slot.payload = null;
+			slot.event = null;
+			
+			// hand the slot back to producers before dispatching, so they
+			// aren't held up by slow handlers
+			sequences.lazySet(index, pos + slots.length);
+			head = ++pos;
+			
+			try {
+				if (entry != null) {
+					entry.runHandedOff(event);
+				} else {
+					if (translator != null) {
+						event = translator.translate(payload);
+					}
+					
+					bus.push(event);
+				}
+			} catch (Throwable t) {
+				log.error("Error dispatching buffered event "
+						+ (event != null ? event : payload), t);
+			}
+			
+			count++;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Gets the number of slots in this buffer.
+	 * @return the buffer capacity
+	 */
+	public int getCapacity() {
+		return slots.length;
+	}
+	
+	/**
+	 * Gets the approximate number of events waiting to be drained.
+	 * @return the number of waiting events
+	 */
+	public int size() {
+		return (int) Math.max(0, tail.get() - head);
+	}
+	
+	/**
+	 * Gets the number of events that were rejected because the buffer was
+	 * full.
+	 * @return the number of rejected events
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+	
+	private static class Slot {
+		
+		private EventBus bus;
+		private EventQueueEntry entry;
+		private Translator<Object> translator;
+		private Object payload;
+		private Event event;
+		
+	}
+	
+}
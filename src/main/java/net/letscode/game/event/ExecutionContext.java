@@ -0,0 +1,33 @@
+package net.letscode.game.event;
+
+/**
+ * Declares which thread an event handler should run on, with
+ * {@link EventHandler#execution()}. The bus routes each invocation to the
+ * declared context by itself, so handlers don't need to hop threads on their
+ * own.
+ * @see EventExecutors
+ */
+public enum ExecutionContext {
+	
+	/**
+	 * The handler runs on whichever thread pushed the event. This is the
+	 * default, and the only context in which a handler can veto an event.
+	 */
+	CALLER,
+	
+	/**
+	 * The handler runs on the world thread. Events pushed on the world thread
+	 * are handled immediately; events pushed on any other thread (e.g. a
+	 * Jetty I/O thread) are queued and handled at the start of the next tick.
+	 */
+	WORLD,
+	
+	/**
+	 * The handler runs on the background pool, and never on the pushing
+	 * thread; if the pool refuses it, the invocation is dropped. This is
+	 * meant for blocking work such as persistence and logging that should
+	 * stay off the world thread and I/O threads.
+	 */
+	BACKGROUND
+	
+}
@@ -0,0 +1,218 @@
+package net.letscode.game.event;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The circuit breaker for a single {@link EventQueueEntry}, created on the
+ * entry's first failure. See {@link EventBreakers} for the policy.
+ * <p>A breaker is closed while its handler is running normally, and open
+ * while the handler is suspended. Once the backoff has passed, the next
+ * invocation is let through as a trial (and any others are still skipped
+ * until it completes): success closes the breaker, and failure opens it
+ * again with double the backoff.</p>
+ * <p>Failures are rare by definition, so state changes simply synchronize on
+ * the breaker. Checking a closed breaker only reads a volatile field.</p>
+ */
+@Slf4j
+class HandlerBreaker {
+	
+	private final EventQueueEntry entry;
+	
+	/**
+	 * The time the handler is suspended until, or 0 if the breaker is
+	 * closed. Stays set during a trial.
+	 */
+	private volatile long openUntil;
+	
+	// the rest is guarded by this breaker
+	private boolean trial;
+	private long backoff;
+	
+	private long windowStart;
+	private int failures;
+	
+	private long lastLogged;
+	private int suppressed;
+	
+	public HandlerBreaker(EventQueueEntry entry) {
+		this.entry = entry;
+	}
+	
+	/**
+	 * @return true if the handler is currently suspended (or on trial)
+	 */
+	public boolean isOpen() {
+		return openUntil != 0;
+	}
+	
+	/**
+	 * Checks whether the handler may be invoked now. While suspended, this
+	 * returns false and counts the skipped invocation; once the backoff has
+	 * passed, it returns true exactly once to start a trial.
+	 * @return true if the handler may be invoked
+	 */
+	public boolean allow() {
+		if (openUntil == 0) {
+			return true;
+		}
+		
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			if (openUntil == 0) {
+				return true;
+			}
+			
+			if (!trial && now >= openUntil) {
+				trial = true;
+				return true;
+			}
+		}
+		
+		HandlerMetrics m = entry.getMetrics();
+		if (m != null) {
+			m.recordSkipped();
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Checks whether an invocation may be handed off to another thread, which
+	 * then calls {@link #allow()} itself just before running it. Unlike
+	 * {@code allow()}, this never starts a trial: a handed off invocation can
+	 * still be dropped on the way (e.g. by a full world buffer), and a trial
+	 * started for it would then never complete.
+	 * @return true if the handler may be handed off
+	 */
+	public boolean allowHandOff() {
+		long until = openUntil;
+		if (until == 0 || System.currentTimeMillis() >= until) {
+			return true;
+		}
+		
+		HandlerMetrics m = entry.getMetrics();
+		if (m != null) {
+			m.recordSkipped();
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Records a successful invocation, resuming the handler if this was its
+	 * trial.
+	 */
+	public synchronized void recordSuccess() {
+		if (!trial) {
+			return;
+		}
+		
+		close();
+		log.info("Resuming event handler {} after a successful trial",
+				entry.getHandlerName());
+	}
+	
+	/**
+	 * Ends a trial without an outcome, e.g. because the handler's filter
+	 * rejected the event; the next invocation is tried instead.
+	 */
+	public synchronized void abandonTrial() {
+		trial = false;
+	}
+	
+	/**
+	 * Records a failed invocation: logs it (or counts it towards the next
+	 * report), and suspends the handler if it has failed too often.
+	 * @param source what failed, e.g. "event handler"
+	 * @param ex the exception thrown
+	 */
+	public synchronized void recordFailure(String source, Throwable ex) {
+		long now = System.currentTimeMillis();
+		
+		if (now - lastLogged >= EventBreakers.getLogInterval()) {
+			if (suppressed > 0) {
+				log.error("Error in " + source + " " + entry.getHandlerName()
+						+ " (" + suppressed + " more errors since the last "
+						+ "report)", ex);
+			} else {
+				log.error("Error in " + source + " " + entry.getHandlerName(),
+						ex);
+			}
+			
+			lastLogged = now;
+			suppressed = 0;
+		} else {
+			suppressed++;
+		}
+		
+		if (trial) {
+			// the trial failed; suspend again for longer
+			trial = false;
+			backoff = Math.min(backoff * 2, EventBreakers.getMaxBackoff());
+			openUntil = now + backoff;
+			
+			recordTrip();
+			log.warn("Event handler {} is still failing, suspending it for "
+					+ "{} ms", entry.getHandlerName(), backoff);
+			return;
+		}
+		
+		if (openUntil != 0) {
+			// a handed-off invocation from before the handler was suspended
+			return;
+		}
+		
+		long window = EventBreakers.getFailureWindow();
+		if (failures == 0 || now - windowStart > window) {
+			windowStart = now;
+			failures = 0;
+		}
+		
+		failures++;
+		if (failures >= EventBreakers.getFailureThreshold()) {
+			backoff = EventBreakers.getInitialBackoff();
+			openUntil = now + backoff;
+			failures = 0;
+			
+			HandlerMetrics m = entry.getMetrics();
+			if (m != null) {
+				m.recordSuspended(1);
+			}
+			
+			recordTrip();
+			log.warn("Suspending event handler {} for {} ms after {} failures "
+					+ "within {} ms", entry.getHandlerName(), backoff,
+					EventBreakers.getFailureThreshold(),
+					EventBreakers.getFailureWindow());
+		}
+	}
+	
+	/**
+	 * Closes the breaker for good, e.g. because the entry was removed from its
+	 * queue, so it no longer counts as suspended.
+	 */
+	public synchronized void release() {
+		if (openUntil != 0) {
+			close();
+		}
+	}
+	
+	private void close() {
+		openUntil = 0;
+		trial = false;
+		failures = 0;
+		
+		HandlerMetrics m = entry.getMetrics();
+		if (m != null) {
+			m.recordSuspended(-1);
+		}
+	}
+	
+	private void recordTrip() {
+		HandlerMetrics m = entry.getMetrics();
+		if (m != null) {
+			m.recordTrip();
+		}
+	}
+	
+}
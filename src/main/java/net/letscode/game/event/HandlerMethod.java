@@ -0,0 +1,414 @@
+package net.letscode.game.event;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Describes a single event handler method: the method itself, the event type
+ * it accepts, its {@link EventHandler} settings and a ready-to-use
+ * {@link EventInvoker}. Descriptors are immutable and not tied to any listener
+ * instance, so they can be shared by every bus and every listener of the same
+ * class.
+ * <p>{@link #forClass(Class)} scans a listener class for annotated handlers
+ * once and caches the result against the class, so that
+ * {@link EventBus#register(Object)} doesn't need to reflect over the class or
+ * build invokers again for each new listener instance. The cache is a
+ * {@link ClassValue}, and so doesn't keep listener classes (or their class
+ * loaders) from being unloaded.</p>
+ * <p>If the listener class was compiled with the
+ * {@link net.letscode.game.event.processor.EventHandlerProcessor}, its
+ * generated {@link EventDispatcher} is used instead of scanning the class:
+ * the handlers and their settings are read from the generated table, and
+ * each handler is invoked through a direct call rather than a method handle.
+ * Classes without a generated dispatcher are scanned with reflection.</p>
+ * <p>{@link EventFilter}s are instantiated once per filter class, and shared
+ * between every handler that declares them.</p>
+ */
+@Slf4j
+final class HandlerMethod {
+	
+	private static final HandlerMethod[] NONE = new HandlerMethod[0];
+	
+	private static final ClassValue<HandlerMethod[]> CACHE =
+			new ClassValue<HandlerMethod[]>() {
+		
+		@Override
+		protected HandlerMethod[] computeValue(Class<?> type) {
+			return scan(type);
+		}
+		
+	};
+	
+	private static final ClassValue<EventFilter<?>> FILTERS =
+			new ClassValue<EventFilter<?>>() {
+		
+		@Override
+		protected EventFilter<?> computeValue(Class<?> type) {
+			try {
+				Constructor<?> c = type.getDeclaredConstructor();
+				c.setAccessible(true);
+				
+				return (EventFilter<?>) c.newInstance();
+			} catch (ReflectiveOperationException | SecurityException ex) {
+				throw new IllegalArgumentException(
+						"Unable to create event filter " + type, ex);
+			}
+		}
+		
+	};
+	
+	/**
+	 * The handler method, or null for an {@link EventConsumer}.
+	 */
+	@Getter
+	private final Method method;
+	
+	@Getter
+	private final Class<?> eventType;
+	
+	@Getter
+	private final int priority;
+	
+	@Getter
+	private final boolean vetoable;
+	
+	/**
+	 * True if the handler takes a {@code List} of events rather than a single
+	 * event.
+	 */
+	@Getter
+	private final boolean batch;
+	
+	@Getter
+	private final EventInvoker invoker;
+	
+	/**
+	 * The handler's filter, or null if it has none.
+	 */
+	@Getter
+	private final EventFilter<?> filter;
+	
+	/**
+	 * The thread the handler runs on.
+	 */
+	@Getter
+	private final ExecutionContext execution;
+	
+	private HandlerMethod(
+			Method method, Class<?> eventType, int priority, boolean vetoable,
+			boolean batch, EventInvoker invoker, EventFilter<?> filter,
+			ExecutionContext execution) {
+		this.method = method;
+		this.eventType = eventType;
+		this.priority = priority;
+		this.vetoable = vetoable;
+		this.batch = batch;
+		this.invoker = invoker;
+		this.filter = filter;
+		this.execution = execution;
+	}
+	
+	/**
+	 * Gets the handlers declared by the given listener class, in the order
+	 * {@link Class#getMethods()} returns them. The class is only scanned the
+	 * first time it is seen.
+	 * @param type the listener class
+	 * @return the handlers for the class; callers must not modify the array
+	 */
+	public static HandlerMethod[] forClass(Class<?> type) {
+		return CACHE.get(type);
+	}
+	
+	/**
+	 * Creates a descriptor for the given method, checking that it is a valid
+	 * handler. Invalid handlers are logged and skipped.
+	 * @param m the handler method
+	 * @param priority the handler priority
+	 * @param vetoable the vetoable flag
+	 * @return the descriptor, or null if {@code m} isn't a valid handler
+	 */
+	public static HandlerMethod create(Method m, int priority, boolean vetoable) {
+		return create(m, priority, vetoable, null, false,
+				ExecutionContext.CALLER);
+	}
+	
+	/**
+	 * Creates a descriptor for the given method, checking that it is a valid
+	 * handler and that its filter (if any) can be used with it. Invalid
+	 * handlers are logged and skipped.
+	 * @param m the handler method
+	 * @param priority the handler priority
+	 * @param vetoable the vetoable flag
+	 * @param filterClass the filter class; null or {@link EventFilter.None}
+	 *     for none
+	 * @param batch true if the handler takes a {@code List} of events
+	 * @param execution the thread the handler runs on
+	 * @return the descriptor, or null if {@code m} isn't a valid handler
+	 */
+	public static HandlerMethod create(
+			Method m, int priority, boolean vetoable,
+			Class<? extends EventFilter<?>> filterClass, boolean batch,
+			ExecutionContext execution) {
+		// check the parameter types, and attempt to resolve the event
+		// type
+		if (m.getParameterTypes().length != 1) {
+			log.warn("Skipping invalid event handler definition: " + m);
+			return null;
+		}
+		
+		Class<?> param;
+		if (batch) {
+			// batch handlers take a list; the event type is its element type
+			param = batchEventType(m);
+			if (param == null) {
+				log.warn("Skipping batch event handler without a List<Event> "
+						+ "parameter: " + m);
+				return null;
+			}
+		} else {
+			// make sure the parameter is an Event
+			param = m.getParameterTypes()[0];
+			if (!Event.class.isAssignableFrom(param)) {
+				log.warn("Skipping event handler without an Event parameter: "
+						+ m);
+				return null;
+			}
+		}
+		
+		EventFilter<?> filter = null;
+		if (filterClass != null && filterClass != EventFilter.None.class) {
+			filter = resolveFilter(m, param, filterClass);
+			if (filter == null) {
+				return null;
+			}
+		}
+		
+		// build the invoker once, here, rather than on every dispatch
+		EventInvoker invoker;
+		try {
+			invoker = batch
+					? new MethodHandleBatchInvoker(m)
+					: new MethodHandleInvoker(m);
+		} catch (IllegalAccessException ex) {
+			log.warn("Skipping inaccessible event handler: " + m, ex);
+			return null;
+		}
+		
+		return new HandlerMethod(
+				m, param, priority, vetoable, batch, invoker, filter,
+				execution);
+	}
+	
+	/**
+	 * Creates a descriptor for an {@link EventConsumer} subscription. There is
+	 * no handler method; the consumer is the listener and is invoked directly.
+	 * @param eventType the event type subscribed to
+	 * @param priority the handler priority
+	 * @param vetoable the vetoable flag
+	 * @return the descriptor
+	 */
+	public static HandlerMethod forConsumer(
+			Class<?> eventType, int priority, boolean vetoable) {
+		return new HandlerMethod(
+				null, eventType, priority, vetoable, false,
+				ConsumerInvoker.INSTANCE, null, ExecutionContext.CALLER);
+	}
+	
+	/**
+	 * Creates a descriptor from a generated dispatcher table entry. Generated
+	 * handlers were already checked by the processor; only the filter (which
+	 * needs to be instantiated anyway) is checked again here.
+	 * @param m the handler method
+	 * @param h the generated handler
+	 * @return the descriptor, or null if the handler's filter is invalid
+	 */
+	private static HandlerMethod create(Method m, EventDispatcher.Handler h) {
+		EventFilter<?> filter = null;
+		if (h.getFilter() != EventFilter.None.class) {
+			filter = resolveFilter(m, h.getEventType(), h.getFilter());
+			if (filter == null) {
+				return null;
+			}
+		}
+		
+		// the generated handler is its own invoker
+		return new HandlerMethod(
+				m, h.getEventType(), h.getPriority(), h.isVetoable(),
+				h.isBatch(), h, filter, h.getExecution());
+	}
+	
+	/**
+	 * Gets the shared filter instance for a handler, checking that it accepts
+	 * the handler's event type.
+	 * @return the filter, or null if it can't be used with the handler
+	 */
+	private static EventFilter<?> resolveFilter(
+			Method m, Class<?> eventType,
+			Class<? extends EventFilter<?>> filterClass) {
+		Class<?> accepts = filterEventType(filterClass);
+		if (accepts != null && !accepts.isAssignableFrom(eventType)) {
+			log.warn("Skipping event handler with incompatible filter "
+					+ filterClass.getName() + ": " + m);
+			return null;
+		}
+		
+		try {
+			return FILTERS.get(filterClass);
+		} catch (IllegalArgumentException ex) {
+			log.warn("Skipping event handler with invalid filter: " + m, ex);
+			return null;
+		}
+	}
+	
+	/**
+	 * Finds and instantiates the generated dispatcher for a listener class.
+	 * @return the dispatcher, or null if the class doesn't have one
+	 */
+	private static EventDispatcher findDispatcher(Class<?> type) {
+		ClassLoader loader = type.getClassLoader();
+		if (loader == null) {
+			return null;
+		}
+		
+		Class<?> c;
+		try {
+			c = Class.forName(type.getName() + EventDispatcher.SUFFIX,
+					true, loader);
+		} catch (ClassNotFoundException | LinkageError ex) {
+			return null;
+		}
+		
+		if (!EventDispatcher.class.isAssignableFrom(c)) {
+			return null;
+		}
+		
+		try {
+			return (EventDispatcher)
+					c.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			log.warn("Unable to create generated event dispatcher " + c, ex);
+			return null;
+		}
+	}
+	
+	/**
+	 * Builds the handlers for a class from its generated dispatcher.
+	 * @return the handlers, or null if the dispatcher is out of date with the
+	 *     class and it should be scanned instead
+	 */
+	private static HandlerMethod[] fromDispatcher(
+			Class<?> type, EventDispatcher dispatcher) {
+		EventDispatcher.Handler[] generated = dispatcher.getHandlers();
+		List<HandlerMethod> handlers = new ArrayList<>(generated.length);
+		
+		for (EventDispatcher.Handler h : generated) {
+			Method m;
+			try {
+				m = type.getMethod(h.getName(), h.getParameterType());
+			} catch (NoSuchMethodException ex) {
+				log.warn("Generated event dispatcher for " + type.getName()
+						+ " is out of date, falling back to reflection");
+				return null;
+			}
+			
+			HandlerMethod handler = create(m, h);
+			if (handler != null) {
+				handlers.add(handler);
+			}
+		}
+		
+		return handlers.toArray(new HandlerMethod[handlers.size()]);
+	}
+	
+	/**
+	 * Resolves the event type of a batch handler from its generic parameter,
+	 * e.g. {@code XYZEvent} for {@code List<XYZEvent>} or
+	 * {@code List<? extends XYZEvent>}.
+	 * @return the event type, or null if the parameter isn't a list of events
+	 */
+	private static Class<?> batchEventType(Method m) {
+		if (!m.getParameterTypes()[0].isAssignableFrom(List.class)) {
+			return null;
+		}
+		
+		Type type = m.getGenericParameterTypes()[0];
+		if (!(type instanceof ParameterizedType)) {
+			return null;
+		}
+		
+		Type arg = ((ParameterizedType) type).getActualTypeArguments()[0];
+		if (arg instanceof WildcardType) {
+			arg = ((WildcardType) arg).getUpperBounds()[0];
+		}
+		
+		if (!(arg instanceof Class) || !Event.class.isAssignableFrom((Class<?>) arg)) {
+			return null;
+		}
+		
+		return (Class<?>) arg;
+	}
+	
+	/**
+	 * Finds the event type a filter class declares for {@link EventFilter},
+	 * if it does so directly with a concrete type.
+	 * @return the filter's event type, or null if it can't be determined
+	 */
+	private static Class<?> filterEventType(Class<?> filterClass) {
+		for (Class<?> c = filterClass; c != null; c = c.getSuperclass()) {
+			for (Type t : c.getGenericInterfaces()) {
+				if (!(t instanceof ParameterizedType)) {
+					continue;
+				}
+				
+				ParameterizedType p = (ParameterizedType) t;
+				if (p.getRawType() == EventFilter.class) {
+					Type arg = p.getActualTypeArguments()[0];
+					
+					return (arg instanceof Class) ? (Class<?>) arg : null;
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	private static HandlerMethod[] scan(Class<?> type) {
+		EventDispatcher dispatcher = findDispatcher(type);
+		if (dispatcher != null) {
+			HandlerMethod[] handlers = fromDispatcher(type, dispatcher);
+			if (handlers != null) {
+				return handlers.length == 0 ? NONE : handlers;
+			}
+		}
+		
+		List<HandlerMethod> handlers = new ArrayList<>();
+		
+		for (Method m : type.getMethods()) {
+			EventHandler h = m.getAnnotation(EventHandler.class);
+			if (h == null) {
+				continue;
+			}
+			
+			HandlerMethod handler = create(
+					m, h.priority(), h.vetoable(), h.filter(), h.batch(),
+					h.execution());
+			if (handler != null) {
+				handlers.add(handler);
+			}
+		}
+		
+		if (handlers.isEmpty()) {
+			return NONE;
+		}
+		
+		return handlers.toArray(new HandlerMethod[handlers.size()]);
+	}
+	
+}
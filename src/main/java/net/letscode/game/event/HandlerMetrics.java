@@ -0,0 +1,254 @@
+package net.letscode.game.event;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.Getter;
+
+/**
+ * Live counters for a single handler method within a single event queue. All
+ * entries for the same method in a queue share one instance, so a queue with
+ * thousands of listeners of the same class still only has one set of counters
+ * per handler.
+ * <p>Latencies are recorded into a histogram of power-of-two buckets: bucket
+ * {@code i} counts invocations that took between {@code 2^i} and
+ * {@code 2^(i+1)} nanoseconds (bucket 0 also holds anything faster). This is
+ * coarse, but fixed-size and cheap enough to update on every call, and is
+ * plenty to tell a 100ns handler from a 100us one.</p>
+ * <p>Latency is only sampled (see {@link EventMetrics#getSamplingInterval()}),
+ * so the histogram, total and maximum times cover sampled invocations only.
+ * Invocation, veto, exception and filter counts are exact. Invocations
+ * skipped by a filter are counted as filtered, not as invocations.</p>
+ * <p>Circuit breaker activity (see {@link EventBreakers}) is recorded here
+ * too, regardless of whether metrics are enabled: how often the handler was
+ * suspended, how many invocations were skipped while it was, and how many
+ * entries are suspended right now.</p>
+ * @see EventMetrics
+ */
+public class HandlerMetrics {
+	
+	/**
+	 * The number of latency histogram buckets.
+	 */
+	public static final int BUCKETS = 64;
+	
+	/**
+	 * The handler method, or null for an {@link EventConsumer}.
+	 */
+	@Getter
+	private final Method method;
+	
+	@Getter
+	private final String name;
+	
+	private final AtomicLong invocations;
+	private final AtomicLong samples;
+	private final AtomicLong totalTime;
+	private final AtomicLong maxTime;
+	private final AtomicLong vetoes;
+	private final AtomicLong exceptions;
+	private final AtomicLong filtered;
+	private final AtomicLongArray histogram;
+	
+	private final AtomicLong trips;
+	private final AtomicLong skipped;
+	private final AtomicLong suspended;
+	
+	public HandlerMetrics(Method method) {
+		this(method, method.toString());
+	}
+	
+	public HandlerMetrics(Method method, String name) {
+		this.method = method;
+		this.name = name;
+		
+		invocations = new AtomicLong();
+		samples = new AtomicLong();
+		totalTime = new AtomicLong();
+		maxTime = new AtomicLong();
+		vetoes = new AtomicLong();
+		exceptions = new AtomicLong();
+		filtered = new AtomicLong();
+		histogram = new AtomicLongArray(BUCKETS);
+		
+		trips = new AtomicLong();
+		skipped = new AtomicLong();
+		suspended = new AtomicLong();
+	}
+	
+	/**
+	 * Records an invocation of the handler.
+	 * @return true if the invocation should be timed and passed to
+	 *     {@link #recordTime(long)}
+	 */
+	public boolean recordInvocation() {
+		return EventMetrics.shouldSample(invocations.incrementAndGet());
+	}
+	
+	/**
+	 * Records the latency of a sampled invocation.
+	 * @param nanos the time taken by the handler, in nanoseconds
+	 */
+	public void recordTime(long nanos) {
+		samples.incrementAndGet();
+		totalTime.addAndGet(nanos);
+		histogram.incrementAndGet(bucketFor(nanos));
+		
+		long max;
+		while (nanos > (max = maxTime.get())) {
+			if (maxTime.compareAndSet(max, nanos)) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Records that the handler vetoed an event.
+	 */
+	public void recordVeto() {
+		vetoes.incrementAndGet();
+	}
+	
+	/**
+	 * Records that the handler threw an exception (other than a veto).
+	 */
+	public void recordException() {
+		exceptions.incrementAndGet();
+	}
+	
+	/**
+	 * Records that the handler's {@link EventFilter} rejected an event, so the
+	 * handler wasn't invoked.
+	 */
+	public void recordFiltered() {
+		filtered.incrementAndGet();
+	}
+	
+	/**
+	 * Records that an entry for the handler was suspended by its circuit
+	 * breaker, either for the first time or after a failed trial.
+	 */
+	public void recordTrip() {
+		trips.incrementAndGet();
+	}
+	
+	/**
+	 * Records that an invocation was skipped because the entry was
+	 * suspended.
+	 */
+	public void recordSkipped() {
+		skipped.incrementAndGet();
+	}
+	
+	/**
+	 * Adjusts the number of currently suspended entries for the handler.
+	 * @param delta 1 when an entry is suspended, -1 when it is resumed
+	 */
+	void recordSuspended(int delta) {
+		suspended.addAndGet(delta);
+	}
+	
+	/**
+	 * Gets the histogram bucket for the given latency.
+	 * @param nanos the latency, in nanoseconds
+	 * @return the bucket index
+	 */
+	public static int bucketFor(long nanos) {
+		if (nanos <= 1) {
+			return 0;
+		}
+		
+		return 63 - Long.numberOfLeadingZeros(nanos);
+	}
+	
+	/**
+	 * @return the number of recorded invocations
+	 */
+	public long getInvocations() {
+		return invocations.get();
+	}
+	
+	/**
+	 * @return the number of invocations that were timed
+	 */
+	public long getSamples() {
+		return samples.get();
+	}
+	
+	/**
+	 * @return the total time spent in sampled invocations, in nanoseconds
+	 */
+	public long getTotalTime() {
+		return totalTime.get();
+	}
+	
+	/**
+	 * @return the longest single sampled invocation, in nanoseconds
+	 */
+	public long getMaxTime() {
+		return maxTime.get();
+	}
+	
+	/**
+	 * @return the number of events vetoed by the handler
+	 */
+	public long getVetoes() {
+		return vetoes.get();
+	}
+	
+	/**
+	 * @return the number of exceptions thrown by the handler
+	 */
+	public long getExceptions() {
+		return exceptions.get();
+	}
+	
+	/**
+	 * @return the number of invocations skipped by the handler's filter
+	 */
+	public long getFiltered() {
+		return filtered.get();
+	}
+	
+	/**
+	 * @return the number of times an entry for the handler was suspended
+	 */
+	public long getTrips() {
+		return trips.get();
+	}
+	
+	/**
+	 * @return the number of invocations skipped while suspended
+	 */
+	public long getSkipped() {
+		return skipped.get();
+	}
+	
+	/**
+	 * @return the number of entries for the handler currently suspended
+	 */
+	public long getSuspended() {
+		return suspended.get();
+	}
+	
+	/**
+	 * Takes a snapshot of the current counters. The snapshot is not atomic
+	 * across counters, so values recorded concurrently may be partially
+	 * included.
+	 * @return a snapshot of this handler's metrics
+	 */
+	public HandlerStats snapshot() {
+		long[] buckets = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = histogram.get(i);
+		}
+		
+		return new HandlerStats(
+				method, name,
+				invocations.get(), samples.get(), totalTime.get(), maxTime.get(),
+				vetoes.get(), exceptions.get(), filtered.get(),
+				trips.get(), skipped.get(), suspended.get(),
+				buckets);
+	}
+	
+}
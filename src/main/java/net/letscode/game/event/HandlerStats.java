@@ -0,0 +1,120 @@
+package net.letscode.game.event;
+
+import java.lang.reflect.Method;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * An immutable snapshot of a {@link HandlerMetrics}.
+ */
+@ToString(exclude = {"histogram"})
+public class HandlerStats {
+	
+	@Getter private final Method method;
+	
+	@Getter private final String name;
+	
+	@Getter private final long invocations;
+	
+	@Getter private final long samples;
+	
+	@Getter private final long totalTime;
+	
+	@Getter private final long maxTime;
+	
+	@Getter private final long vetoes;
+	
+	@Getter private final long exceptions;
+	
+	@Getter private final long filtered;
+	
+	@Getter private final long trips;
+	
+	@Getter private final long skipped;
+	
+	/**
+	 * The number of entries for the handler suspended by their circuit
+	 * breaker when the snapshot was taken.
+	 */
+	@Getter private final long suspended;
+	
+	private final long[] histogram;
+	
+	public HandlerStats(
+			Method method, String name,
+			long invocations, long samples, long totalTime, long maxTime,
+			long vetoes, long exceptions, long filtered,
+			long trips, long skipped, long suspended,
+			long[] histogram) {
+		this.method = method;
+		this.name = name;
+		this.invocations = invocations;
+		this.samples = samples;
+		this.totalTime = totalTime;
+		this.maxTime = maxTime;
+		this.vetoes = vetoes;
+		this.exceptions = exceptions;
+		this.filtered = filtered;
+		this.trips = trips;
+		this.skipped = skipped;
+		this.suspended = suspended;
+		this.histogram = histogram;
+	}
+	
+	/**
+	 * @return the mean sampled handler latency, in nanoseconds
+	 */
+	public double getAverageTime() {
+		return samples == 0 ? 0 : (double) totalTime / samples;
+	}
+	
+	/**
+	 * Estimates the total time spent in the handler, extrapolated from the
+	 * sampled invocations.
+	 * @return the estimated total time, in nanoseconds
+	 */
+	public long getEstimatedTotalTime() {
+		return (long) (getAverageTime() * invocations);
+	}
+	
+	/**
+	 * Estimates a latency percentile from the histogram. The result is the
+	 * upper bound of the bucket containing the percentile, so it may
+	 * overestimate by up to a factor of two (but never exceeds
+	 * {@link #getMaxTime()}).
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the estimated latency, in nanoseconds
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+		
+		if (total == 0) {
+			return 0;
+		}
+		
+		long rank = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < histogram.length; i++) {
+			seen += histogram[i];
+			if (seen >= rank && seen > 0) {
+				long bound = (i >= 62) ? Long.MAX_VALUE : (2L << i);
+				return Math.min(bound, maxTime);
+			}
+		}
+		
+		return maxTime;
+	}
+	
+	/**
+	 * Gets a copy of the latency histogram.
+	 * @see HandlerMetrics
+	 * @return the number of invocations in each bucket
+	 */
+	public long[] getHistogram() {
+		return histogram.clone();
+	}
+	
+}
@@ -0,0 +1,130 @@
+package net.letscode.game.event;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reverse index from listener objects to their {@link EventRegistration}s,
+ * used by {@link EventBus#deregister(Object)} to find a listener's entries
+ * without scanning every queue.
+ * <p>Listeners are compared by identity and held weakly, so the index never
+ * keeps a {@link EventBus#registerWeak(Object) weakly registered} listener
+ * alive. Keys for collected listeners are expunged on the next access.</p>
+ * <p>All methods are synchronized.</p>
+ */
+class ListenerIndex {
+	
+	private final Map<Key, List<EventRegistration>> map;
+	private final ReferenceQueue<Object> stale;
+	
+	public ListenerIndex() {
+		map = new HashMap<>();
+		stale = new ReferenceQueue<>();
+	}
+	
+	/**
+	 * Records a registration for the given listener.
+	 * @param listener the listener
+	 * @param registration the registration to add
+	 */
+	public synchronized void add(Object listener, EventRegistration registration) {
+		expunge();
+		
+		Key key = new Key(listener, stale);
+		List<EventRegistration> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<>(1);
+			map.put(key, list);
+		}
+		
+		list.add(registration);
+	}
+	
+	/**
+	 * Removes a single registration for the given listener.
+	 * @param listener the listener
+	 * @param registration the registration to remove
+	 */
+	public synchronized void remove(Object listener, EventRegistration registration) {
+		expunge();
+		
+		Key key = new Key(listener, null);
+		List<EventRegistration> list = map.get(key);
+		if (list != null && list.remove(registration) && list.isEmpty()) {
+			map.remove(key);
+		}
+	}
+	
+	/**
+	 * Removes and returns all registrations for the given listener.
+	 * @param listener the listener
+	 * @return the listener's registrations, possibly empty
+	 */
+	public synchronized List<EventRegistration> removeAll(Object listener) {
+		expunge();
+		
+		List<EventRegistration> list = map.remove(new Key(listener, null));
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * @return the number of listeners in the index
+	 */
+	public synchronized int size() {
+		expunge();
+		
+		return map.size();
+	}
+	
+	private void expunge() {
+		Object ref;
+		while ((ref = stale.poll()) != null) {
+			map.remove((Key) ref);
+		}
+	}
+	
+	/**
+	 * A weak, identity-compared map key. The hash is captured up front so that
+	 * the key can still be found (and removed) after its referent is gone.
+	 */
+	private static class Key extends WeakReference<Object> {
+		
+		private final int hash;
+		
+		public Key(Object referent, ReferenceQueue<Object> queue) {
+			super(referent, queue);
+			
+			hash = System.identityHashCode(referent);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			}
+			
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			
+			Object referent = get();
+			return referent != null && referent == ((Key) o).get();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,65 @@
+package net.letscode.game.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An {@link EventBatchInvoker} backed by a {@link MethodHandle}, for handlers
+ * taking a {@code List} of events. As with {@link MethodHandleInvoker}, the
+ * handle is resolved and adapted once, when the handler is registered, and
+ * exceptions thrown by the handler are wrapped in an
+ * {@link InvocationTargetException} in the same way, so a batch handler can't
+ * veto its events either.
+ */
+public class MethodHandleBatchInvoker implements EventBatchInvoker {
+	
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(
+			void.class, Object.class, List.class);
+	
+	private final MethodHandle handle;
+	
+	/**
+	 * Creates a new invoker for the given batch handler method. The method
+	 * must take a single parameter that a {@code List} can be assigned to;
+	 * any return value is discarded.
+	 * @param method the handler method
+	 * @throws IllegalAccessException if the method can't be accessed
+	 */
+	public MethodHandleBatchInvoker(Method method) throws IllegalAccessException {
+		try {
+			method.setAccessible(true);
+		} catch (SecurityException ex) {
+			// fall back to the standard access checks
+		}
+		
+		MethodHandle h = MethodHandles.lookup().unreflect(method);
+		
+		if (Modifier.isStatic(method.getModifiers())) {
+			h = MethodHandles.dropArguments(h, 0, Object.class);
+		}
+		
+		handle = h.asType(INVOKER_TYPE);
+	}
+	
+	@Override
+	public void invoke(Object listener, Event event) throws Throwable {
+		invokeBatch(listener, Collections.singletonList(event));
+	}
+	
+	@Override
+	public void invokeBatch(Object listener, List<Event> events)
+			throws Throwable {
+		try {
+			handle.invokeExact(listener, events);
+		} catch (Throwable ex) {
+			throw new InvocationTargetException(ex);
+		}
+	}
+	
+}
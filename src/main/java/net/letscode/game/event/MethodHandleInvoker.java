@@ -0,0 +1,73 @@
+package net.letscode.game.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * An {@link EventInvoker} backed by a {@link MethodHandle}. The handle is
+ * resolved and adapted to {@code (Object, Event)void} once, when the handler is
+ * registered, so dispatching an event is a single {@code invokeExact()} with
+ * no argument array, boxing, or per-call access checks as with
+ * {@link Method#invoke(Object, Object[])}.
+ * <p>Note that the handle is held in an instance field, which the JIT doesn't
+ * treat as a constant, so the handler is not inlined into the dispatch loop
+ * even when it is the only one registered. Listener classes compiled with
+ * {@link net.letscode.game.event.processor.EventHandlerProcessor} get a
+ * generated {@link EventDispatcher} instead, whose handlers are plain method
+ * calls that can be inlined; this invoker is the fallback for everything
+ * else.</p>
+ * <p>Exceptions thrown by the handler are wrapped in an
+ * {@link InvocationTargetException}, just as {@code Method.invoke()} wraps
+ * them, so they are handled exactly as they always have been: an
+ * {@link EventVetoException} thrown by an {@code @EventHandler} method is
+ * logged as an error along with any other exception, and does not veto the
+ * event.</p>
+ */
+public class MethodHandleInvoker implements EventInvoker {
+	
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(
+			void.class, Object.class, Event.class);
+	
+	private final MethodHandle handle;
+	
+	/**
+	 * Creates a new invoker for the given handler method. The method must take
+	 * a single parameter compatible with {@link Event}; any return value is
+	 * discarded.
+	 * @param method the handler method
+	 * @throws IllegalAccessException if the method can't be accessed
+	 */
+	public MethodHandleInvoker(Method method) throws IllegalAccessException {
+		// public methods of non-public classes (e.g. anonymous listeners)
+		// still need their access checks suppressed to be invoked
+		try {
+			method.setAccessible(true);
+		} catch (SecurityException ex) {
+			// fall back to the standard access checks
+		}
+		
+		MethodHandle h = MethodHandles.lookup().unreflect(method);
+		
+		// static handlers don't take a receiver, but the invoker type always
+		// passes one
+		if (Modifier.isStatic(method.getModifiers())) {
+			h = MethodHandles.dropArguments(h, 0, Object.class);
+		}
+		
+		handle = h.asType(INVOKER_TYPE);
+	}
+	
+	@Override
+	public void invoke(Object listener, Event event) throws Throwable {
+		try {
+			handle.invokeExact(listener, event);
+		} catch (Throwable ex) {
+			throw new InvocationTargetException(ex);
+		}
+	}
+	
+}
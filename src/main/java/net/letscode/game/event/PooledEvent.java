@@ -0,0 +1,118 @@
+package net.letscode.game.event;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * An event that may be recycled through an {@link EventPool} instead of being
+ * allocated for every push. This is intended for events fired many times per
+ * tick, where allocating (and collecting) a fresh instance each time adds up.
+ * <p>Pooled events are owned by the bus they are pushed to. Once a bus has
+ * finished dispatching a pooled event, whether it was pushed directly,
+ * asynchronously, deferred, or through an {@link EventRingBuffer}, the event
+ * is {@link #release() released}: its fields are cleared and it goes back to a
+ * pool to be handed out again. In particular, a deferred event that is
+ * superseded by a later {@link CoalescingEvent} is released without being
+ * delivered.</p>
+ * <p><b>Handlers must not retain pooled events</b> (or any mutable objects
+ * they own) beyond the handler call, as the same instance will be reused for
+ * a later, unrelated event. Copy out anything that is needed later. For the
+ * same reason, a pooled event may only be pushed once, to a single bus.</p>
+ * <p>Handlers that run outside the pushing thread (see
+ * {@link ExecutionContext}) hold on to the event until they have run, and the
+ * event is only released once the bus and every such handler are done with
+ * it.</p>
+ * <p>Instances created with {@code new} rather than taken from a pool are
+ * never recycled, and behave like ordinary events.</p>
+ * @see EventPool
+ */
+public abstract class PooledEvent extends Event {
+	
+	private static final AtomicIntegerFieldUpdater<PooledEvent> HOLDS =
+			AtomicIntegerFieldUpdater.newUpdater(PooledEvent.class, "holds");
+	
+	/**
+	 * The pool this event was acquired from, or null if it wasn't.
+	 */
+	private EventPool<?> pool;
+	
+	/**
+	 * True while this event is sitting in a pool, waiting to be reused.
+	 */
+	private boolean free;
+	
+	/**
+	 * The number of parties that must be done with this event before it is
+	 * released: the bus it was pushed to, plus any handed-off handlers.
+	 */
+	private volatile int holds;
+	
+	/**
+	 * Clears this event's state before it is returned to its pool. This should
+	 * drop any references held by the event, so that pooled instances don't
+	 * keep other objects reachable.
+	 */
+	protected abstract void reset();
+	
+	/**
+	 * @return true if this event was acquired from a pool and will be reused
+	 */
+	public boolean isPooled() {
+		return pool != null;
+	}
+	
+	/**
+	 * Resets this event and returns it to the pool it came from. This is done
+	 * automatically by {@link EventBus} after dispatch, and only needs to be
+	 * called directly for events that were acquired but never pushed.
+	 * <p>Events not acquired from a pool are left untouched.</p>
+	 * @throws IllegalStateException if the event has already been released
+	 */
+	public final void release() {
+		if (pool == null) {
+			return;
+		}
+		
+		if (free) {
+			throw new IllegalStateException("Event already released: " + this);
+		}
+		
+		reset();
+		free = true;
+		pool.put(this);
+	}
+	
+	/**
+	 * Marks this event as in use by the given pool.
+	 */
+	void claim(EventPool<?> pool) {
+		this.pool = pool;
+		this.free = false;
+		this.holds = 1;
+	}
+	
+	/**
+	 * Adds a hold to the given event if it is pooled, so that it isn't
+	 * released until a matching {@link #recycle(Event)}.
+	 * @param event the event to hold
+	 */
+	static void retain(Event event) {
+		if (event instanceof PooledEvent && ((PooledEvent) event).pool != null) {
+			HOLDS.incrementAndGet((PooledEvent) event);
+		}
+	}
+	
+	/**
+	 * Drops a hold on the given event if it is pooled, releasing it once no
+	 * holds remain; does nothing otherwise.
+	 * @param event the event to release
+	 */
+	static void recycle(Event event) {
+		if (event instanceof PooledEvent) {
+			PooledEvent p = (PooledEvent) event;
+			if (p.pool != null && HOLDS.decrementAndGet(p) == 0) {
+				p.release();
+			}
+		}
+	}
+	
+}
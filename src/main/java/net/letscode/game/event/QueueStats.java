@@ -0,0 +1,38 @@
+package net.letscode.game.event;
+
+import java.util.List;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * An immutable snapshot of the metrics for an {@link EventQueueDefinition}.
+ * @see EventMetrics
+ */
+@ToString
+public class QueueStats {
+	
+	@Getter private final Class<? extends Event> eventType;
+	
+	@Getter private final long pushes;
+	
+	@Getter private final int listeners;
+	
+	@Getter private final long sheddingPushes;
+	
+	@Getter private final long shed;
+	
+	@Getter private final List<HandlerStats> handlers;
+	
+	public QueueStats(
+			Class<? extends Event> eventType, long pushes, int listeners,
+			long sheddingPushes, long shed,
+			List<HandlerStats> handlers) {
+		this.eventType = eventType;
+		this.pushes = pushes;
+		this.listeners = listeners;
+		this.sheddingPushes = sheddingPushes;
+		this.shed = shed;
+		this.handlers = handlers;
+	}
+	
+}
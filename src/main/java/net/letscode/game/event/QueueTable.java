@@ -0,0 +1,83 @@
+package net.letscode.game.event;
+
+/**
+ * The queues of a single {@link EventBus}, by {@link EventBusSchema} slot.
+ * Slots without listeners have no queue. Tables are immutable: adding a queue
+ * or changing the schema creates a new table, which the bus then publishes in
+ * a single write, so {@link EventBus#push(Event)} always sees a schema and a
+ * set of queues that agree with each other.
+ * <p>A bus with no queues uses its schema's shared empty table.</p>
+ */
+final class QueueTable {
+	
+	private final EventBusSchema schema;
+	private final EventQueueDefinition[] queues;
+	
+	QueueTable(EventBusSchema schema, EventQueueDefinition[] queues) {
+		this.schema = schema;
+		this.queues = queues;
+	}
+	
+	public EventBusSchema getSchema() {
+		return schema;
+	}
+	
+	/**
+	 * Gets the queue for an exact event type.
+	 * @param type the event type
+	 * @return the queue, or null if the type isn't defined or has no
+	 *     listeners yet
+	 */
+	public EventQueueDefinition get(Class<?> type) {
+		int slot = schema.slotOf(type);
+		return (slot < 0) ? null : queues[slot];
+	}
+	
+	/**
+	 * Gets the queue for a slot.
+	 * @param slot the slot
+	 * @return the queue, or null if the slot has no listeners yet
+	 */
+	public EventQueueDefinition get(int slot) {
+		return queues[slot];
+	}
+	
+	/**
+	 * @return true if no slot has a queue
+	 */
+	public boolean isEmpty() {
+		return this == schema.getEmptyTable();
+	}
+	
+	/**
+	 * Gets a table with the given queue set for a slot.
+	 */
+	public QueueTable withQueue(int slot, EventQueueDefinition queue) {
+		EventQueueDefinition[] copy = queues.clone();
+		copy[slot] = queue;
+		
+		return new QueueTable(schema, copy);
+	}
+	
+	/**
+	 * Gets a table for a new schema, keeping the queues of every type the two
+	 * schemas have in common.
+	 */
+	public QueueTable withSchema(EventBusSchema next) {
+		if (next == schema) {
+			return this;
+		}
+		
+		if (isEmpty()) {
+			return next.getEmptyTable();
+		}
+		
+		EventQueueDefinition[] copy = new EventQueueDefinition[next.size()];
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = get(next.getType(i));
+		}
+		
+		return new QueueTable(next, copy);
+	}
+	
+}
@@ -0,0 +1,49 @@
+package net.letscode.game.event.demo;
+
+import java.lang.management.ManagementFactory;
+import net.letscode.game.api.entity.Entity;
+import net.letscode.game.api.entity.EntityZoneEnteredEvent;
+import net.letscode.game.api.entity.EntityZoneExitedEvent;
+import net.letscode.game.event.EventBus;
+
+/**
+ * A quick and dirty measurement of the heap used by idle event buses, that
+ * is, buses that define some event types but have no listeners. Each
+ * {@link Entity} owns one, so this is the per-entity cost of the event system
+ * before anything subscribes to it.
+ * <p>Buses are created the way entities create theirs, through an anonymous
+ * subclass calling {@link EventBus#add(Class)}.</p>
+ */
+public class BusFootprint {
+	
+	public static final int ENTITIES = 100000;
+	
+	private static long usedHeap() {
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		
+		return ManagementFactory.getMemoryMXBean()
+				.getHeapMemoryUsage().getUsed();
+	}
+	
+	public static void main(String[] args) {
+		Object[] keep = new Object[ENTITIES];
+		
+		long before = usedHeap();
+		for (int i = 0; i < ENTITIES; i++) {
+			EventBus bus = new EventBus() {{
+				add(EntityZoneEnteredEvent.class);
+				add(EntityZoneExitedEvent.class);
+			}};
+			bus.getClient();
+			
+			keep[i] = bus;
+		}
+		long after = usedHeap();
+		
+		System.out.printf("%d entity buses: %.1f bytes / bus\n",
+				keep.length, (double) (after - before) / ENTITIES);
+	}
+	
+}
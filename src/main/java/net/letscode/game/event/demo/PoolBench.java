@@ -0,0 +1,143 @@
+package net.letscode.game.event.demo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import net.letscode.game.api.entity.Entity;
+import net.letscode.game.api.world.WorldTickEvent;
+import net.letscode.game.api.zone.twod.EntityData2D;
+import net.letscode.game.api.zone.twod.Zone2DMovementEvent;
+import net.letscode.game.event.Event;
+import net.letscode.game.event.EventBus;
+import net.letscode.game.event.EventHandler;
+import net.letscode.game.misc.Point2D;
+
+/**
+ * Compares the allocation rate of pooled and freshly allocated events for the
+ * two high-frequency event types, {@link WorldTickEvent} and
+ * {@link Zone2DMovementEvent}. Allocation is measured per thread using the
+ * HotSpot {@code ThreadMXBean} extension, so this needs a HotSpot-based JVM.
+ * <p>The movement case simulates a zone in which every entity moves several
+ * times per tick: movement events are deferred, coalesced and flushed once
+ * per tick, as in {@code Zone2D}.</p>
+ */
+public class PoolBench {
+	
+	public static final int ENTITIES = 1000;
+	public static final int MOVES_PER_TICK = 4;
+	public static final int TICKS = 2000;
+	
+	public static final int WARMUP_ROUNDS = 3;
+	
+	public static class BenchReceiver {
+		
+		double sum;
+		
+		@EventHandler
+		public void onTick(WorldTickEvent event) {
+			sum += event.getElapsed();
+		}
+		
+		@EventHandler
+		public void onMove(Zone2DMovementEvent event) {
+			sum += event.getEnd().x;
+		}
+		
+	}
+	
+	private static com.sun.management.ThreadMXBean threads() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			throw new UnsupportedOperationException(
+					"Thread allocation counters are not available");
+		}
+		
+		return (com.sun.management.ThreadMXBean) bean;
+	}
+	
+	private static long allocated() {
+		return threads().getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	private static EventBus createBus() {
+		EventBus bus = new EventBus();
+		bus.add(WorldTickEvent.class);
+		bus.add(Zone2DMovementEvent.class);
+		bus.register(new BenchReceiver());
+		
+		return bus;
+	}
+	
+	private static long ticks(EventBus bus, boolean pooled) {
+		long before = allocated();
+		
+		for (int i = 0; i < TICKS * ENTITIES; i++) {
+			Event event = pooled
+					? WorldTickEvent.obtain(i, 15, 15, i + 15)
+					: new WorldTickEvent(i, 15, 15, i + 15);
+			bus.push(event);
+		}
+		
+		return allocated() - before;
+	}
+	
+	private static long moves(EventBus bus, EntityData2D[] data, boolean pooled) {
+		Point2D start = new Point2D();
+		Point2D end = new Point2D();
+		
+		long before = allocated();
+		
+		for (int t = 0; t < TICKS; t++) {
+			for (int m = 0; m < MOVES_PER_TICK; m++) {
+				for (EntityData2D d : data) {
+					Event event;
+					if (pooled) {
+						start.x = t;
+						end.x = t + 1;
+						event = Zone2DMovementEvent.obtain(d, start, end);
+					} else {
+						event = new Zone2DMovementEvent(
+								d, new Point2D(t, 0), new Point2D(t + 1, 0));
+					}
+					
+					bus.pushDeferred(event);
+				}
+			}
+			
+			bus.flushDeferred();
+		}
+		
+		return allocated() - before;
+	}
+	
+	public static void main(String[] args) {
+		EventBus bus = createBus();
+		
+		EntityData2D[] data = new EntityData2D[ENTITIES];
+		for (int i = 0; i < ENTITIES; i++) {
+			data[i] = new EntityData2D(new Entity());
+		}
+		
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			ticks(bus, false);
+			ticks(bus, true);
+			moves(bus, data, false);
+			moves(bus, data, true);
+		}
+		
+		long events = (long) TICKS * ENTITIES;
+		long moves = events * MOVES_PER_TICK;
+		
+		System.out.println("Event allocation, bytes per event");
+		System.out.println("=================================");
+		
+		System.out.printf("WorldTickEvent, allocated:      %6.1f\n",
+				(double) ticks(bus, false) / events);
+		System.out.printf("WorldTickEvent, pooled:         %6.1f\n",
+				(double) ticks(bus, true) / events);
+		System.out.printf("Zone2DMovementEvent, allocated: %6.1f\n",
+				(double) moves(bus, data, false) / moves);
+		System.out.printf("Zone2DMovementEvent, pooled:    %6.1f\n",
+				(double) moves(bus, data, true) / moves);
+	}
+	
+}
@@ -0,0 +1,120 @@
+package net.letscode.game.event.demo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import net.letscode.game.event.Event;
+import net.letscode.game.event.EventBus;
+import net.letscode.game.event.EventHandler;
+
+/**
+ * A quick and dirty benchmark for {@link EventBus#push(Event)} as the number of
+ * defined event types grows. Each bus defines {@code n} distinct event types
+ * and the type pushed is always the last one added, which was the worst case
+ * for the old linear queue search.
+ * <p>Distinct event classes are produced by loading {@link BenchEvent} through
+ * a fresh class loader for each type, so no generated code is needed.</p>
+ */
+public class PushBench {
+	
+	public static final int[] TYPE_COUNTS = { 2, 4, 8, 16, 32, 64 };
+	
+	public static final int WARMUP = 2000000;
+	public static final int ITERATIONS = 10000000;
+	
+	public static class BenchEvent extends Event {
+		
+	}
+	
+	public static class BenchReceiver {
+		
+		long count;
+		
+		@EventHandler
+		public void onEvent(Event event) {
+			count++;
+		}
+		
+	}
+	
+	/**
+	 * Defines a new copy of {@link BenchEvent} that is distinct from every
+	 * other copy, but still extends the same {@link Event}.
+	 */
+	private static class CopyLoader extends ClassLoader {
+		
+		private final byte[] bytes;
+		
+		public CopyLoader(byte[] bytes) {
+			super(PushBench.class.getClassLoader());
+			
+			this.bytes = bytes;
+		}
+		
+		public Class<?> copy() {
+			return defineClass(
+					BenchEvent.class.getName(), bytes, 0, bytes.length);
+		}
+		
+	}
+	
+	private static byte[] readClass(Class<?> clazz) throws IOException {
+		String name = "/" + clazz.getName().replace('.', '/') + ".class";
+		
+		try (InputStream in = clazz.getResourceAsStream(name)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			
+			int read;
+			while ((read = in.read(buf)) != -1) {
+				out.write(buf, 0, read);
+			}
+			
+			return out.toByteArray();
+		}
+	}
+	
+	private static double run(int types, byte[] bytes) throws Exception {
+		EventBus bus = new EventBus();
+		
+		Class<? extends Event> last = null;
+		for (int i = 0; i < types; i++) {
+			last = new CopyLoader(bytes).copy().asSubclass(Event.class);
+			bus.add(last);
+		}
+		
+		BenchReceiver receiver = new BenchReceiver();
+		bus.register(receiver);
+		
+		Event event = last.newInstance();
+		
+		for (int i = 0; i < WARMUP; i++) {
+			bus.push(event);
+		}
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			bus.push(event);
+		}
+		long end = System.nanoTime();
+		
+		if (receiver.count != WARMUP + ITERATIONS) {
+			throw new IllegalStateException("Events were lost");
+		}
+		
+		return (double) (end - start) / ITERATIONS;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		byte[] bytes = readClass(BenchEvent.class);
+		
+		System.out.println("EventBus.push() latency by defined event types");
+		System.out.println("==============================================");
+		
+		for (int types : TYPE_COUNTS) {
+			System.out.printf("%3d types: %.2f ns / push\n",
+					types, run(types, bytes));
+		}
+	}
+	
+}
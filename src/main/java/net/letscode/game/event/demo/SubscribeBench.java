@@ -0,0 +1,161 @@
+package net.letscode.game.event.demo;
+
+import net.letscode.game.event.Event;
+import net.letscode.game.event.EventBus;
+import net.letscode.game.event.EventConsumer;
+import net.letscode.game.event.EventHandler;
+import net.letscode.game.event.EventRegistration;
+
+/**
+ * A quick and dirty benchmark comparing {@link EventConsumer} subscriptions
+ * with annotated listeners, both for dispatch and for registering and
+ * cancelling a single listener.
+ * <p>Annotated listeners are measured twice: once with a public listener
+ * class, which gets a generated dispatcher, and once with a private one,
+ * which can't, and so is invoked through a method handle.</p>
+ */
+public class SubscribeBench {
+	
+	public static final int LISTENERS = 8;
+	
+	public static final int WARMUP = 2000000;
+	public static final int ITERATIONS = 10000000;
+	
+	public static final int REGISTRATIONS = 1000000;
+	
+	public static class BenchEvent extends Event {
+		
+	}
+	
+	public static class GeneratedReceiver {
+		
+		long count;
+		
+		@EventHandler
+		public void onEvent(BenchEvent event) {
+			count++;
+		}
+		
+	}
+	
+	private static class ReflectedReceiver {
+		
+		long count;
+		
+		@EventHandler
+		public void onEvent(BenchEvent event) {
+			count++;
+		}
+		
+	}
+	
+	public static class BenchConsumer implements EventConsumer<BenchEvent> {
+		
+		long count;
+		
+		@Override
+		public void accept(BenchEvent event) {
+			count++;
+		}
+		
+	}
+	
+	private interface Setup {
+		
+		public EventRegistration attach(EventBus bus);
+		
+	}
+	
+	private static double dispatch(Setup setup) {
+		EventBus bus = new EventBus();
+		bus.add(BenchEvent.class);
+		
+		for (int i = 0; i < LISTENERS; i++) {
+			setup.attach(bus);
+		}
+		
+		BenchEvent event = new BenchEvent();
+		
+		for (int i = 0; i < WARMUP; i++) {
+			bus.push(event);
+		}
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			bus.push(event);
+		}
+		long end = System.nanoTime();
+		
+		return (double) (end - start) / ITERATIONS;
+	}
+	
+	private static double registration(Setup setup) {
+		EventBus bus = new EventBus();
+		bus.add(BenchEvent.class);
+		
+		// warm up (and populate the handler cache)
+		for (int i = 0; i < REGISTRATIONS / 10; i++) {
+			setup.attach(bus).cancel();
+		}
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < REGISTRATIONS; i++) {
+			setup.attach(bus).cancel();
+		}
+		long end = System.nanoTime();
+		
+		return (double) (end - start) / REGISTRATIONS;
+	}
+	
+	private static Setup setup(String mode) {
+		switch (mode) {
+			case "generated":
+				return new Setup() {
+					@Override
+					public EventRegistration attach(EventBus bus) {
+						return bus.register(new GeneratedReceiver());
+					}
+				};
+			case "reflected":
+				return new Setup() {
+					@Override
+					public EventRegistration attach(EventBus bus) {
+						return bus.register(new ReflectedReceiver());
+					}
+				};
+			case "consumer":
+				return new Setup() {
+					@Override
+					public EventRegistration attach(EventBus bus) {
+						return bus.subscribe(
+								BenchEvent.class, new BenchConsumer());
+					}
+				};
+			default:
+				throw new IllegalArgumentException("Unknown mode: " + mode);
+		}
+	}
+	
+	/**
+	 * Runs the benchmark for each mode given ({@code generated},
+	 * {@code reflected} or {@code consumer}), or for all of them. Modes run
+	 * in the same JVM share the bus's call sites and so skew each other; run
+	 * one mode per JVM for comparable numbers.
+	 * @param args the modes to run
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			args = new String[] { "generated", "reflected", "consumer" };
+		}
+		
+		for (String mode : args) {
+			Setup setup = setup(mode);
+			
+			System.out.printf("%-9s dispatch to %d listeners: %.2f ns / push\n",
+					mode, LISTENERS, dispatch(setup));
+			System.out.printf("%-9s register and cancel:      %.2f ns\n",
+					mode, registration(setup));
+		}
+	}
+	
+}
@@ -0,0 +1,481 @@
+package net.letscode.game.event.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates an {@code EventDispatcher} for every listener class with
+ * {@code @EventHandler} methods, so that {@code EventBus.register()} can
+ * register listeners and invoke their handlers without reflection.
+ * <p>The processor looks at every concrete class being compiled (including
+ * member classes) that declares or inherits an {@code @EventHandler} method,
+ * and collects the same handlers {@code EventBus.register()} would find at
+ * runtime, i.e. the public methods of the class, declared or inherited,
+ * annotated with {@code @EventHandler}. Each superclass is only checked for
+ * handlers once. For a class with the binary name {@code a.b.Listener} it
+ * writes
+ * {@code a.b.Listener$$EventDispatcher}, which describes each handler and
+ * calls it directly.</p>
+ * <p>Invalid handlers are reported as warnings and left out, as the bus would
+ * skip them anyway. Classes that the generated code couldn't reference (e.g.
+ * private member classes) are skipped entirely, and are scanned with
+ * reflection at runtime as before.</p>
+ * <p>Only {@code @EventHandler} is claimed as a supported annotation, so the
+ * compiler only runs this processor for sources using it. A compilation
+ * without any {@code @EventHandler} method, e.g. of a subclass on its own
+ * that only inherits its handlers, produces no dispatcher, and the class is
+ * scanned with reflection at runtime.</p>
+ * <p>Note that this class is compiled before the rest of the project, and so
+ * must not depend on any of it, including Lombok. It is named in the
+ * compiler configuration of the project's pom rather than registered as a
+ * service, so that it doesn't run over the sources of anything depending on
+ * the project.</p>
+ */
+public class EventHandlerProcessor extends AbstractProcessor {
+	
+	private static final String EVENT = "net.letscode.game.event.Event";
+	private static final String EVENT_HANDLER =
+			"net.letscode.game.event.EventHandler";
+	private static final String NO_FILTER =
+			"net.letscode.game.event.EventFilter.None";
+	private static final String EXECUTION_CONTEXT =
+			"net.letscode.game.event.ExecutionContext";
+	private static final String DISPATCHER =
+			"net.letscode.game.event.EventDispatcher";
+	private static final String SUFFIX = "$$EventDispatcher";
+	
+	private Elements elements;
+	private Types types;
+	
+	/**
+	 * The binary names of the listener classes already generated for, since
+	 * later rounds see the earlier rounds' types again.
+	 */
+	private Set<String> generated;
+	
+	/**
+	 * Whether each class seen so far declares or inherits an
+	 * {@code @EventHandler} method.
+	 */
+	private Map<TypeElement, Boolean> hierarchy;
+	
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(EVENT_HANDLER);
+	}
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(
+			Set<? extends TypeElement> annotations, RoundEnvironment env) {
+		if (elements == null) {
+			elements = processingEnv.getElementUtils();
+			types = processingEnv.getTypeUtils();
+			generated = new HashSet<>();
+			hierarchy = new HashMap<>();
+		}
+		
+		// nothing to do if the event package isn't on the classpath
+		if (elements.getTypeElement(EVENT_HANDLER) == null) {
+			return false;
+		}
+		
+		// handlers may be inherited, so every class needs to be looked at,
+		// not only those with @EventHandler methods of their own
+		for (TypeElement type : ElementFilter.typesIn(env.getRootElements())) {
+			processType(type);
+		}
+		
+		// never claim annotations; other processors (e.g. Lombok) still need
+		// to see them
+		return false;
+	}
+	
+	private void processType(TypeElement type) {
+		for (TypeElement member : ElementFilter.typesIn(
+				type.getEnclosedElements())) {
+			processType(member);
+		}
+		
+		if (type.getKind() != ElementKind.CLASS
+				|| type.getModifiers().contains(Modifier.ABSTRACT)
+				|| !hasHandlers(type)) {
+			return;
+		}
+		
+		String binaryName = elements.getBinaryName(type).toString();
+		if (!generated.add(binaryName)) {
+			return;
+		}
+		
+		List<Handler> handlers = collect(type);
+		if (handlers == null || handlers.isEmpty()) {
+			return;
+		}
+		
+		try {
+			write(type, binaryName, handlers);
+		} catch (IOException ex) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Unable to write event dispatcher: " + ex, type);
+		}
+	}
+	
+	/**
+	 * Checks whether the given class, or any of its superclasses, declares an
+	 * {@code @EventHandler} method. This is much cheaper than collecting all
+	 * members of the class, and rules out most classes being compiled.
+	 */
+	private boolean hasHandlers(TypeElement type) {
+		Boolean known = hierarchy.get(type);
+		if (known != null) {
+			return known;
+		}
+		
+		TypeElement annotation = elements.getTypeElement(EVENT_HANDLER);
+		
+		boolean found = false;
+		for (ExecutableElement m : ElementFilter.methodsIn(
+				type.getEnclosedElements())) {
+			if (findAnnotation(m, annotation) != null) {
+				found = true;
+				break;
+			}
+		}
+		
+		TypeMirror superclass = type.getSuperclass();
+		if (!found && superclass.getKind() == TypeKind.DECLARED) {
+			found = hasHandlers((TypeElement) types.asElement(superclass));
+		}
+		
+		hierarchy.put(type, found);
+		return found;
+	}
+	
+	/**
+	 * Collects the valid handlers of the given class.
+	 * @return the handlers, or null if the class can't have a dispatcher
+	 */
+	private List<Handler> collect(TypeElement type) {
+		PackageElement pkg = elements.getPackageOf(type);
+		if (!isAccessible(type, pkg)) {
+			return null;
+		}
+		
+		TypeElement annotation = elements.getTypeElement(EVENT_HANDLER);
+		List<Handler> handlers = new ArrayList<>();
+		
+		for (ExecutableElement m : ElementFilter.methodsIn(
+				elements.getAllMembers(type))) {
+			if (!m.getModifiers().contains(Modifier.PUBLIC)) {
+				continue;
+			}
+			
+			AnnotationMirror mirror = findAnnotation(m, annotation);
+			if (mirror == null) {
+				continue;
+			}
+			
+			Handler h = createHandler(m, mirror);
+			if (h == null) {
+				continue;
+			}
+			
+			// the generated code needs to name all of these
+			if (!isAccessible(h.parameterType, pkg)
+					|| !isAccessible(h.eventType, pkg)
+					|| (h.filter != null && !isAccessible(h.filter, pkg))) {
+				return null;
+			}
+			
+			handlers.add(h);
+		}
+		
+		return handlers;
+	}
+	
+	private Handler createHandler(ExecutableElement m, AnnotationMirror mirror) {
+		TypeElement owner = (TypeElement) m.getEnclosingElement();
+		
+		List<? extends VariableElement> params = m.getParameters();
+		if (params.size() != 1) {
+			warn("Invalid event handler definition", m);
+			return null;
+		}
+		
+		Handler h = new Handler();
+		h.name = m.getSimpleName().toString();
+		h.isStatic = m.getModifiers().contains(Modifier.STATIC);
+		h.owner = owner;
+		
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e
+				: elements.getElementValuesWithDefaults(mirror).entrySet()) {
+			String key = e.getKey().getSimpleName().toString();
+			Object value = e.getValue().getValue();
+			
+			switch (key) {
+				case "priority":
+					h.priority = (Integer) value;
+					break;
+				case "vetoable":
+					h.vetoable = (Boolean) value;
+					break;
+				case "batch":
+					h.batch = (Boolean) value;
+					break;
+				case "filter":
+					h.filter = types.erasure((TypeMirror) value);
+					break;
+				case "execution":
+					h.execution = ((VariableElement) value)
+							.getSimpleName().toString();
+					break;
+			}
+		}
+		
+		TypeMirror param = params.get(0).asType();
+		h.parameterType = types.erasure(param);
+		
+		if (h.batch) {
+			h.eventType = batchEventType(param);
+			if (h.eventType == null) {
+				warn("Batch event handler without a List<Event> parameter", m);
+				return null;
+			}
+		} else {
+			h.eventType = h.parameterType;
+			if (!isEvent(h.eventType)) {
+				warn("Event handler without an Event parameter", m);
+				return null;
+			}
+		}
+		
+		return h;
+	}
+	
+	/**
+	 * Resolves the event type of a batch handler parameter, e.g.
+	 * {@code XYZEvent} for {@code List<XYZEvent>} or
+	 * {@code List<? extends XYZEvent>}.
+	 * @return the erased event type, or null if the parameter isn't a list of
+	 *     events
+	 */
+	private TypeMirror batchEventType(TypeMirror param) {
+		TypeElement list = elements.getTypeElement("java.util.List");
+		if (!types.isAssignable(
+				types.erasure(list.asType()), types.erasure(param))) {
+			return null;
+		}
+		
+		if (param.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		
+		List<? extends TypeMirror> args =
+				((DeclaredType) param).getTypeArguments();
+		if (args.size() != 1) {
+			return null;
+		}
+		
+		TypeMirror arg = args.get(0);
+		if (arg.getKind() == TypeKind.WILDCARD) {
+			arg = ((WildcardType) arg).getExtendsBound();
+		}
+		
+		if (arg == null || arg.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		
+		arg = types.erasure(arg);
+		return isEvent(arg) ? arg : null;
+	}
+	
+	private boolean isEvent(TypeMirror type) {
+		TypeElement event = elements.getTypeElement(EVENT);
+		
+		return type.getKind() == TypeKind.DECLARED
+				&& types.isAssignable(type, types.erasure(event.asType()));
+	}
+	
+	private AnnotationMirror findAnnotation(Element e, TypeElement annotation) {
+		for (AnnotationMirror mirror : e.getAnnotationMirrors()) {
+			if (types.isSameType(
+					mirror.getAnnotationType(), annotation.asType())) {
+				return mirror;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Checks that generated code in the given package can refer to a type.
+	 */
+	private boolean isAccessible(TypeMirror type, PackageElement pkg) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return false;
+		}
+		
+		return isAccessible((TypeElement) types.asElement(type), pkg);
+	}
+	
+	private boolean isAccessible(TypeElement type, PackageElement pkg) {
+		Element e = type;
+		while (e instanceof TypeElement) {
+			Set<Modifier> mods = e.getModifiers();
+			if (mods.contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			
+			if (!mods.contains(Modifier.PUBLIC)
+					&& !elements.getPackageOf(e).equals(pkg)) {
+				return false;
+			}
+			
+			e = e.getEnclosingElement();
+		}
+		
+		// local and anonymous classes aren't reachable by name
+		return e instanceof PackageElement;
+	}
+	
+	private void write(TypeElement type, String binaryName,
+			List<Handler> handlers) throws IOException {
+		PackageElement pkg = elements.getPackageOf(type);
+		String name = binaryName + SUFFIX;
+		String simpleName = pkg.isUnnamed()
+				? name
+				: name.substring(pkg.getQualifiedName().length() + 1);
+		
+		String listener = types.erasure(type.asType()).toString();
+		
+		try (Writer w = processingEnv.getFiler()
+				.createSourceFile(name, type).openWriter()) {
+			if (!pkg.isUnnamed()) {
+				w.write("package " + pkg.getQualifiedName() + ";\n\n");
+			}
+			
+			w.write("/**\n");
+			w.write(" * Event dispatcher for {@link " + listener + "}.\n");
+			w.write(" * Generated by " + getClass().getName() + "; do not edit.\n");
+			w.write(" */\n");
+			w.write("@SuppressWarnings("
+					+ "{\"unchecked\", \"rawtypes\", \"cast\"})\n");
+			w.write("public final class " + simpleName
+					+ " implements " + DISPATCHER + " {\n\n");
+			
+			w.write("\t@Override\n");
+			w.write("\tpublic " + DISPATCHER + ".Handler[] getHandlers() {\n");
+			w.write("\t\treturn new " + DISPATCHER + ".Handler[] {\n");
+			
+			for (Handler h : handlers) {
+				writeHandler(w, listener, h);
+			}
+			
+			w.write("\t\t};\n");
+			w.write("\t}\n\n");
+			w.write("}\n");
+		}
+	}
+	
+	private void writeHandler(Writer w, String listener, Handler h)
+			throws IOException {
+		w.write("\t\t\tnew " + DISPATCHER + "."
+				+ (h.batch ? "BatchHandler" : "Handler") + "(\n");
+		w.write("\t\t\t\t\t\"" + h.name + "\", "
+				+ h.parameterType + ".class, "
+				+ h.eventType + ".class,\n");
+		w.write("\t\t\t\t\t" + h.priority + ", " + h.vetoable + ", "
+				+ (h.filter == null ? NO_FILTER : h.filter) + ".class,\n");
+		w.write("\t\t\t\t\t" + EXECUTION_CONTEXT + "."
+				+ (h.execution == null ? "CALLER" : h.execution) + ") {\n");
+		
+		String target = h.isStatic
+				? types.erasure(h.owner.asType()).toString()
+				: "((" + listener + ") listener)";
+		
+		if (h.batch) {
+			w.write("\t\t\t\t@Override\n");
+			w.write("\t\t\t\tpublic void invokeBatch(java.lang.Object listener, "
+					+ "java.util.List<" + EVENT + "> events)\n");
+			w.write("\t\t\t\t\t\tthrows java.lang.Throwable {\n");
+			w.write("\t\t\t\t\ttry {\n");
+			w.write("\t\t\t\t\t\t" + target + "." + h.name
+					+ "((" + h.parameterType + ") (java.util.List) events);\n");
+		} else {
+			w.write("\t\t\t\t@Override\n");
+			w.write("\t\t\t\tpublic void invoke(java.lang.Object listener, "
+					+ EVENT + " event)\n");
+			w.write("\t\t\t\t\t\tthrows java.lang.Throwable {\n");
+			w.write("\t\t\t\t\ttry {\n");
+			w.write("\t\t\t\t\t\t" + target + "." + h.name
+					+ "((" + h.eventType + ") event);\n");
+		}
+		
+		// wrapped just as MethodHandleInvoker wraps them, so a veto from the
+		// handler is logged rather than vetoing the event
+		w.write("\t\t\t\t\t} catch (java.lang.Throwable ex) {\n");
+		w.write("\t\t\t\t\t\tthrow new "
+				+ "java.lang.reflect.InvocationTargetException(ex);\n");
+		w.write("\t\t\t\t\t}\n");
+		w.write("\t\t\t\t}\n");
+		w.write("\t\t\t},\n");
+	}
+	
+	private void warn(String message, Element e) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+				message + ", it will be skipped", e);
+	}
+	
+	/**
+	 * A handler method, as found by the processor.
+	 */
+	private static class Handler {
+		
+		private String name;
+		private TypeElement owner;
+		private boolean isStatic;
+		
+		private TypeMirror parameterType;
+		private TypeMirror eventType;
+		
+		private int priority;
+		private boolean vetoable;
+		private boolean batch;
+		private TypeMirror filter;
+		private String execution;
+		
+	}
+	
+}
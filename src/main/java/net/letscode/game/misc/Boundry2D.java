@@ -3,7 +3,7 @@ package net.letscode.game.misc;
 import lombok.ToString;
 
 /**
- *
+ * An axis-aligned rectangle, positioned by its center point.
  * @author timothyb
  */
 @ToString
@@ -50,4 +50,100 @@ public class Boundry2D {
 	public boolean contains(Point2D p) {
 		return contains(p.x, p.y);
 	}
+
+	/**
+	 * @return the x coordinate of the west edge
+	 */
+	public double getMinX() {
+		return x - width / 2;
+	}
+
+	/**
+	 * @return the x coordinate of the east edge
+	 */
+	public double getMaxX() {
+		return x + width / 2;
+	}
+
+	/**
+	 * @return the y coordinate of the south edge
+	 */
+	public double getMinY() {
+		return y - height / 2;
+	}
+
+	/**
+	 * @return the y coordinate of the north edge
+	 */
+	public double getMaxY() {
+		return y + height / 2;
+	}
+
+	/**
+	 * Checks whether this boundry contains the whole of another. As with
+	 * {@link #contains(double, double)}, edges are inclusive.
+	 *
+	 * @param other the other boundry
+	 * @return true if {@code other} lies entirely within this boundry
+	 */
+	public boolean contains(Boundry2D other) {
+		return Math.abs(x - other.x) * 2 + other.width <= width
+				&& Math.abs(y - other.y) * 2 + other.height <= height;
+	}
+
+	/**
+	 * Checks whether this boundry overlaps another. Boundries that only touch
+	 * along an edge or corner are considered to intersect.
+	 *
+	 * @param other the other boundry
+	 * @return true if the boundries overlap
+	 */
+	public boolean intersects(Boundry2D other) {
+		return Math.abs(x - other.x) * 2 <= width + other.width
+				&& Math.abs(y - other.y) * 2 <= height + other.height;
+	}
+
+	/**
+	 * Gets the squared distance from the given point to the nearest point of
+	 * this boundry, which is 0 for points inside it. The squared distance is
+	 * cheaper to compute, and compares the same way as the distance.
+	 *
+	 * @param px the point x
+	 * @param py the point y
+	 * @return the squared distance to the point
+	 */
+	public double distanceSquared(double px, double py) {
+		double dx = Math.max(Math.abs(px - x) - width / 2, 0);
+		double dy = Math.max(Math.abs(py - y) - height / 2, 0);
+
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Checks whether any part of this boundry lies within the given circle.
+	 *
+	 * @param cx the circle center x
+	 * @param cy the circle center y
+	 * @param radius the circle radius
+	 * @return true if the boundry and circle overlap
+	 */
+	public boolean intersectsCircle(double cx, double cy, double radius) {
+		return distanceSquared(cx, cy) <= radius * radius;
+	}
+
+	/**
+	 * Checks whether the whole of this boundry lies within the given circle,
+	 * i.e. whether its farthest corner does.
+	 *
+	 * @param cx the circle center x
+	 * @param cy the circle center y
+	 * @param radius the circle radius
+	 * @return true if the boundry is entirely inside the circle
+	 */
+	public boolean withinCircle(double cx, double cy, double radius) {
+		double fx = Math.abs(cx - x) + width / 2;
+		double fy = Math.abs(cy - y) + height / 2;
+
+		return fx * fx + fy * fy <= radius * radius;
+	}
 }
@@ -0,0 +1,822 @@
+package net.letscode.game.misc;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * A variant of {@link QuadTree} that keeps the whole tree in a handful of
+ * primitive arrays instead of an object per node and per item. Trees are
+ * divided exactly as a {@code QuadTree} with the same boundry and depth is,
+ * and support the same insert, update, remove and range query operations.
+ *
+ * <p>Nodes are identified by their index in the node arrays: each node's
+ * center, depth, parent, children and (for leaves) first entry are stored in
+ * parallel arrays, and node sizes are only stored once per depth. Entries
+ * are stored the same way, as a position and an {@code int} id (e.g. an
+ * entity id), and each leaf links its entries together through the entry
+ * arrays. This makes a node about a third the size of a {@code QuadTree} node
+ * with its {@link Boundry2D}, and entries need no object of their own at all,
+ * so a query only reads a few densely packed arrays rather than chasing
+ * references around the heap.</p>
+ *
+ * <p>{@link #insert(int, double, double)} returns a handle for the new entry,
+ * which is then used to update or remove it. Handles are reused once their
+ * entry is removed. Entries themselves are kept packed at the start of the
+ * entry arrays, and may move around within them; in particular,
+ * {@link #optimize()} rearranges them so that the entries of each leaf are
+ * next to each other, which is what keeps queries on large trees from missing
+ * the cache on every entry. Freed nodes are reused too, so a tree with a
+ * steady number of entries stops allocating once its arrays have grown to
+ * fit.</p>
+ *
+ * <p>As with {@code QuadTree}, updates only move an entry once it has left
+ * its leaf, and reinsert it from the nearest node that still contains it.</p>
+ *
+ * <p>This tree stores ids rather than objects, so it is best suited to large
+ * numbers of simple entries; {@code QuadTree} remains the more convenient
+ * choice when items need to be found directly, or for nearest neighbour
+ * searches.</p>
+ */
+public class FlatQuadTree {
+
+	/**
+	 * Marks the end of an entry list, or the lack of a parent or free slot.
+	 * Note that child indices use 0 instead, as the root is never a child.
+	 */
+	private static final int NONE = -1;
+
+	private static final int ROOT = 0;
+
+	@Getter private final Boundry2D boundry;
+	@Getter private final int maxDepth;
+
+	/**
+	 * Half the width and height of the nodes at each depth.
+	 */
+	private final double[] halfWidths;
+	private final double[] halfHeights;
+
+	private double[] nodeX;
+	private double[] nodeY;
+	private int[] nodeDepth;
+	private int[] nodeParent;
+
+	/**
+	 * Four children per node, in {@link QuadTree.Quadrant} order; 0 if the
+	 * child doesn't exist.
+	 */
+	private int[] nodeChildren;
+
+	/**
+	 * The first entry of each leaf, or the next free node for free nodes.
+	 */
+	private int[] nodeFirst;
+
+	private int nodeLimit;
+	private int freeNode;
+
+	/**
+	 * Entries 0 to {@code size - 1} are in use.
+	 */
+	private double[] entryX;
+	private double[] entryY;
+	private int[] entryId;
+	private int[] entryLeaf;
+	private int[] entryHandle;
+
+	/**
+	 * The next and previous entries in the same leaf, or {@code NONE}.
+	 */
+	private int[] entryNext;
+	private int[] entryPrev;
+
+	@Getter private int size;
+
+	/**
+	 * The entry for each handle. Free handles instead hold
+	 * {@code -2 - next}, where {@code next} is the next free handle (or
+	 * {@code NONE}), so they are always negative.
+	 */
+	private int[] handleEntry;
+	private int handleLimit;
+	private int freeHandle;
+
+	public FlatQuadTree(Boundry2D boundry, int maxDepth) {
+		this(boundry, maxDepth, 16);
+	}
+
+	public FlatQuadTree(
+			double x, double y, double width, double height, int maxDepth) {
+		this(new Boundry2D(x, y, width, height), maxDepth, 16);
+	}
+
+	/**
+	 * Creates a tree with room for the given number of entries. The entry
+	 * arrays double in size whenever they fill up, so sizing them up front
+	 * avoids both the copying and up to half of their memory going unused.
+	 *
+	 * @param boundry the area covered by the tree
+	 * @param maxDepth the depth of the leaf nodes; the root is at depth 1
+	 * @param capacity the initial number of entries
+	 */
+	public FlatQuadTree(Boundry2D boundry, int maxDepth, int capacity) {
+		if (maxDepth < 1) {
+			throw new IllegalArgumentException("maxDepth must be at least 1");
+		}
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+
+		this.boundry = boundry;
+		this.maxDepth = maxDepth;
+
+		halfWidths = new double[maxDepth + 1];
+		halfHeights = new double[maxDepth + 1];
+
+		double w = boundry.width;
+		double h = boundry.height;
+		for (int d = 1; d <= maxDepth; d++) {
+			halfWidths[d] = w / 2;
+			halfHeights[d] = h / 2;
+
+			w /= 2;
+			h /= 2;
+		}
+
+		nodeX = new double[16];
+		nodeY = new double[16];
+		nodeDepth = new int[16];
+		nodeParent = new int[16];
+		nodeChildren = new int[16 * 4];
+		nodeFirst = new int[16];
+
+		nodeX[ROOT] = boundry.x;
+		nodeY[ROOT] = boundry.y;
+		nodeDepth[ROOT] = 1;
+		nodeParent[ROOT] = NONE;
+		nodeFirst[ROOT] = NONE;
+
+		nodeLimit = 1;
+		freeNode = NONE;
+
+		entryX = new double[capacity];
+		entryY = new double[capacity];
+		entryId = new int[capacity];
+		entryLeaf = new int[capacity];
+		entryHandle = new int[capacity];
+		entryNext = new int[capacity];
+		entryPrev = new int[capacity];
+
+		handleEntry = new int[capacity];
+		handleLimit = 0;
+		freeHandle = NONE;
+	}
+
+	/**
+	 * Inserts a new entry into the tree. Any necessary nodes will be created,
+	 * up to <code>maxDepth</code>.
+	 *
+	 * @param id the id to store with the entry
+	 * @param x the entry x
+	 * @param y the entry y
+	 * @return the handle for the new entry
+	 */
+	public int insert(int id, double x, double y) {
+		if (!boundry.contains(x, y)) {
+			throw new IllegalArgumentException(
+					"Entry is out of bounds: (" + x + ", " + y + ") cannot be "
+					+ "contained within " + boundry);
+		}
+
+		if (size == entryX.length) {
+			growEntries();
+		}
+
+		int handle = allocateHandle();
+
+		int e = size++;
+		entryX[e] = x;
+		entryY[e] = y;
+		entryId[e] = id;
+		entryHandle[e] = handle;
+		handleEntry[handle] = e;
+
+		link(e, findLeaf(ROOT, x, y));
+
+		return handle;
+	}
+
+	/**
+	 * Moves an entry. If the entry's leaf still contains the new position,
+	 * only the position is changed. Otherwise, it is reinserted from its
+	 * nearest ancestor that contains it.
+	 * <p>If the new position is outside the tree altogether, the entry is
+	 * left where it was and an exception is thrown.</p>
+	 *
+	 * @param handle the entry handle
+	 * @param x the new x
+	 * @param y the new y
+	 */
+	public void update(int handle, double x, double y) {
+		int entry = entry(handle);
+
+		int leaf = entryLeaf[entry];
+		if (nodeContains(leaf, x, y)) {
+			entryX[entry] = x;
+			entryY[entry] = y;
+			return;
+		}
+
+		int ancestor = nodeParent[leaf];
+		while (ancestor != NONE && !nodeContains(ancestor, x, y)) {
+			ancestor = nodeParent[ancestor];
+		}
+
+		if (ancestor == NONE) {
+			throw new IllegalArgumentException(
+					"Entry is out of bounds: (" + x + ", " + y + ") cannot be "
+					+ "contained within " + boundry);
+		}
+
+		entryX[entry] = x;
+		entryY[entry] = y;
+
+		unlink(entry);
+		prune(leaf, ancestor);
+
+		link(entry, findLeaf(ancestor, x, y));
+	}
+
+	/**
+	 * Removes an entry from the tree. Its handle may be reused by a later
+	 * insertion.
+	 *
+	 * @param handle the entry handle
+	 */
+	public void remove(int handle) {
+		int entry = entry(handle);
+
+		int leaf = entryLeaf[entry];
+		unlink(entry);
+		prune(leaf, ROOT);
+
+		handleEntry[handle] = -2 - freeHandle;
+		freeHandle = handle;
+
+		// keep the entries packed
+		int last = --size;
+		if (entry != last) {
+			moveEntry(last, entry);
+		}
+	}
+
+	/**
+	 * Removes every entry from the tree. All handles become invalid.
+	 */
+	public void clear() {
+		Arrays.fill(nodeChildren, 0, 4, 0);
+		nodeFirst[ROOT] = NONE;
+
+		nodeLimit = 1;
+		freeNode = NONE;
+
+		handleLimit = 0;
+		freeHandle = NONE;
+
+		size = 0;
+	}
+
+	/**
+	 * Rearranges the entries so that the entries of each leaf are next to
+	 * each other in the entry arrays, in the order the leaves are visited by
+	 * queries. Entries that have moved between leaves end up scattered
+	 * across the arrays, so this should be called now and then on trees that
+	 * are queried often, e.g. once per tick after the tick's updates. Handles
+	 * are not affected.
+	 *
+	 * <p>This takes time proportional to the number of entries, and allocates
+	 * a new set of entry arrays.</p>
+	 */
+	public void optimize() {
+		int[] order = new int[size];
+		int count = order(ROOT, order, 0);
+
+		int capacity = entryX.length;
+		double[] x = new double[capacity];
+		double[] y = new double[capacity];
+		int[] id = new int[capacity];
+		int[] leaf = new int[capacity];
+		int[] handle = new int[capacity];
+
+		for (int i = 0; i < count; i++) {
+			int e = order[i];
+			x[i] = entryX[e];
+			y[i] = entryY[e];
+			id[i] = entryId[e];
+			leaf[i] = entryLeaf[e];
+			handle[i] = entryHandle[e];
+
+			handleEntry[handle[i]] = i;
+		}
+
+		// relink each leaf's entries in their new order
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || leaf[i - 1] != leaf[i]) {
+				nodeFirst[leaf[i]] = i;
+				entryPrev[i] = NONE;
+			} else {
+				entryPrev[i] = i - 1;
+			}
+
+			entryNext[i] = (i + 1 < count && leaf[i + 1] == leaf[i])
+					? i + 1 : NONE;
+		}
+
+		entryX = x;
+		entryY = y;
+		entryId = id;
+		entryLeaf = leaf;
+		entryHandle = handle;
+	}
+
+	/**
+	 * @return true if the tree contains no entries
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets the id stored with an entry.
+	 *
+	 * @param handle the entry handle
+	 * @return the entry id
+	 */
+	public int getId(int handle) {
+		return entryId[entry(handle)];
+	}
+
+	/**
+	 * @param handle the entry handle
+	 * @return the entry x
+	 */
+	public double getX(int handle) {
+		return entryX[entry(handle)];
+	}
+
+	/**
+	 * @param handle the entry handle
+	 * @return the entry y
+	 */
+	public double getY(int handle) {
+		return entryY[entry(handle)];
+	}
+
+	/**
+	 * Gets the number of nodes currently in the tree, including the root.
+	 *
+	 * @return the number of nodes
+	 */
+	public int getNodeCount() {
+		int free = 0;
+		for (int n = freeNode; n != NONE; n = nodeFirst[n]) {
+			free++;
+		}
+
+		return nodeLimit - free;
+	}
+
+	/**
+	 * Finds every entry within the given area, storing their ids in
+	 * {@code results}. Entries on the edge of the area are included.
+	 *
+	 * <p>If there are more matching entries than {@code results} can hold,
+	 * only the first {@code results.length} are stored; the return value is
+	 * always the total number found.</p>
+	 *
+	 * @param area the area to search
+	 * @param results the array to store matching ids in
+	 * @return the number of matching entries
+	 */
+	public int query(Boundry2D area, int[] results) {
+		return query(ROOT,
+				area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(),
+				results, null, 0);
+	}
+
+	/**
+	 * Finds every entry within the given area, passing each id to
+	 * {@code visitor}. Entries on the edge of the area are included.
+	 *
+	 * @param area the area to search
+	 * @param visitor the visitor for matching ids
+	 */
+	public void query(Boundry2D area, FlatQuadTreeVisitor visitor) {
+		query(ROOT,
+				area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(),
+				null, visitor, 0);
+	}
+
+	/**
+	 * Finds every entry within {@code radius} units of the given point,
+	 * storing their ids in {@code results}. Entries exactly {@code radius}
+	 * away are included. See {@link #query(Boundry2D, int[])} for how
+	 * {@code results} is filled.
+	 *
+	 * @param x the center x
+	 * @param y the center y
+	 * @param radius the search radius
+	 * @param results the array to store matching ids in
+	 * @return the number of matching entries
+	 */
+	public int queryRadius(double x, double y, double radius, int[] results) {
+		return queryRadius(ROOT, x, y, radius, results, null, 0);
+	}
+
+	/**
+	 * Finds every entry within {@code radius} units of the given point,
+	 * passing each id to {@code visitor}. Entries exactly {@code radius} away
+	 * are included.
+	 *
+	 * @param x the center x
+	 * @param y the center y
+	 * @param radius the search radius
+	 * @param visitor the visitor for matching ids
+	 */
+	public void queryRadius(
+			double x, double y, double radius, FlatQuadTreeVisitor visitor) {
+		queryRadius(ROOT, x, y, radius, null, visitor, 0);
+	}
+
+	/**
+	 * Rectangle query for a single node. Either {@code results} or
+	 * {@code visitor} is used, not both.
+	 *
+	 * @return the number of entries found so far
+	 */
+	private int query(
+			int node, double minX, double minY, double maxX, double maxY,
+			int[] results, FlatQuadTreeVisitor visitor, int found) {
+		int depth = nodeDepth[node];
+		double hw = halfWidths[depth];
+		double hh = halfHeights[depth];
+		double cx = nodeX[node];
+		double cy = nodeY[node];
+
+		if (cx - hw > maxX || cx + hw < minX
+				|| cy - hh > maxY || cy + hh < minY) {
+			return found;
+		}
+
+		if (cx - hw >= minX && cx + hw <= maxX
+				&& cy - hh >= minY && cy + hh <= maxY) {
+			return collect(node, results, visitor, found);
+		}
+
+		if (depth == maxDepth) {
+			for (int e = nodeFirst[node]; e != NONE; e = entryNext[e]) {
+				double x = entryX[e];
+				double y = entryY[e];
+				if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+					found = emit(e, results, visitor, found);
+				}
+			}
+
+			return found;
+		}
+
+		for (int i = node * 4; i < node * 4 + 4; i++) {
+			int child = nodeChildren[i];
+			if (child != 0) {
+				found = query(child, minX, minY, maxX, maxY,
+						results, visitor, found);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Circle query for a single node; see
+	 * {@link #query(int, double, double, double, double, int[],
+	 * FlatQuadTreeVisitor, int)}.
+	 */
+	private int queryRadius(
+			int node, double x, double y, double radius,
+			int[] results, FlatQuadTreeVisitor visitor, int found) {
+		int depth = nodeDepth[node];
+		double hw = halfWidths[depth];
+		double hh = halfHeights[depth];
+		double ax = Math.abs(x - nodeX[node]);
+		double ay = Math.abs(y - nodeY[node]);
+		double r2 = radius * radius;
+
+		// nearest point of the node to the center
+		double dx = Math.max(ax - hw, 0);
+		double dy = Math.max(ay - hh, 0);
+		if (dx * dx + dy * dy > r2) {
+			return found;
+		}
+
+		// farthest corner of the node from the center
+		double fx = ax + hw;
+		double fy = ay + hh;
+		if (fx * fx + fy * fy <= r2) {
+			return collect(node, results, visitor, found);
+		}
+
+		if (depth == maxDepth) {
+			for (int e = nodeFirst[node]; e != NONE; e = entryNext[e]) {
+				double ex = entryX[e] - x;
+				double ey = entryY[e] - y;
+				if (ex * ex + ey * ey <= r2) {
+					found = emit(e, results, visitor, found);
+				}
+			}
+
+			return found;
+		}
+
+		for (int i = node * 4; i < node * 4 + 4; i++) {
+			int child = nodeChildren[i];
+			if (child != 0) {
+				found = queryRadius(child, x, y, radius,
+						results, visitor, found);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Reports every entry in a node and its children, without checking their
+	 * positions.
+	 */
+	private int collect(
+			int node, int[] results, FlatQuadTreeVisitor visitor, int found) {
+		if (nodeDepth[node] == maxDepth) {
+			for (int e = nodeFirst[node]; e != NONE; e = entryNext[e]) {
+				found = emit(e, results, visitor, found);
+			}
+
+			return found;
+		}
+
+		for (int i = node * 4; i < node * 4 + 4; i++) {
+			int child = nodeChildren[i];
+			if (child != 0) {
+				found = collect(child, results, visitor, found);
+			}
+		}
+
+		return found;
+	}
+
+	private int emit(
+			int entry, int[] results, FlatQuadTreeVisitor visitor, int found) {
+		if (visitor != null) {
+			visitor.visit(entryId[entry]);
+		} else if (found < results.length) {
+			results[found] = entryId[entry];
+		}
+
+		return found + 1;
+	}
+
+	/**
+	 * Gets the entry for a handle, checking that the handle is in use.
+	 */
+	private int entry(int handle) {
+		if (handle < 0 || handle >= handleLimit || handleEntry[handle] < 0) {
+			throw new IllegalArgumentException("Invalid handle: " + handle);
+		}
+
+		return handleEntry[handle];
+	}
+
+	/**
+	 * Checks whether a node contains the given point, with inclusive edges as
+	 * in {@link Boundry2D#contains(double, double)}.
+	 */
+	private boolean nodeContains(int node, double x, double y) {
+		int depth = nodeDepth[node];
+		double hw = halfWidths[depth];
+		double hh = halfHeights[depth];
+		double cx = nodeX[node];
+		double cy = nodeY[node];
+
+		return (x >= cx - hw && x <= cx + hw)
+				&& (y >= cy - hh && y <= cy + hh);
+	}
+
+	/**
+	 * Walks down from the given node to the leaf for a point, creating nodes
+	 * as needed.
+	 */
+	private int findLeaf(int node, double x, double y) {
+		while (nodeDepth[node] < maxDepth) {
+			// same as QuadTree.Quadrant.of(): north and east are inclusive
+			int q = ((y >= nodeY[node]) ? 0 : 2) + ((x >= nodeX[node]) ? 1 : 0);
+
+			int child = nodeChildren[node * 4 + q];
+			if (child == 0) {
+				child = allocateNode(node, q);
+				nodeChildren[node * 4 + q] = child;
+			}
+
+			node = child;
+		}
+
+		return node;
+	}
+
+	private int allocateNode(int parent, int quadrant) {
+		int n;
+		if (freeNode != NONE) {
+			n = freeNode;
+			freeNode = nodeFirst[n];
+		} else {
+			if (nodeLimit == nodeX.length) {
+				growNodes();
+			}
+
+			n = nodeLimit++;
+		}
+
+		int depth = nodeDepth[parent] + 1;
+		double hw = halfWidths[depth];
+		double hh = halfHeights[depth];
+
+		nodeX[n] = nodeX[parent] + (((quadrant & 1) != 0) ? hw : -hw);
+		nodeY[n] = nodeY[parent] + (((quadrant & 2) == 0) ? hh : -hh);
+		nodeDepth[n] = depth;
+		nodeParent[n] = parent;
+		Arrays.fill(nodeChildren, n * 4, n * 4 + 4, 0);
+		nodeFirst[n] = NONE;
+
+		return n;
+	}
+
+	private void growNodes() {
+		int capacity = nodeX.length * 2;
+
+		nodeX = Arrays.copyOf(nodeX, capacity);
+		nodeY = Arrays.copyOf(nodeY, capacity);
+		nodeDepth = Arrays.copyOf(nodeDepth, capacity);
+		nodeParent = Arrays.copyOf(nodeParent, capacity);
+		nodeChildren = Arrays.copyOf(nodeChildren, capacity * 4);
+		nodeFirst = Arrays.copyOf(nodeFirst, capacity);
+	}
+
+	private void growEntries() {
+		int capacity = entryX.length * 2;
+
+		entryX = Arrays.copyOf(entryX, capacity);
+		entryY = Arrays.copyOf(entryY, capacity);
+		entryId = Arrays.copyOf(entryId, capacity);
+		entryLeaf = Arrays.copyOf(entryLeaf, capacity);
+		entryHandle = Arrays.copyOf(entryHandle, capacity);
+		entryNext = Arrays.copyOf(entryNext, capacity);
+		entryPrev = Arrays.copyOf(entryPrev, capacity);
+	}
+
+	private int allocateHandle() {
+		if (freeHandle != NONE) {
+			int handle = freeHandle;
+			freeHandle = -2 - handleEntry[handle];
+			return handle;
+		}
+
+		if (handleLimit == handleEntry.length) {
+			handleEntry = Arrays.copyOf(handleEntry, handleLimit * 2);
+		}
+
+		return handleLimit++;
+	}
+
+	/**
+	 * Moves an entry to an unused slot, fixing up its leaf's links and its
+	 * handle.
+	 */
+	private void moveEntry(int from, int to) {
+		int leaf = entryLeaf[from];
+		int prev = entryPrev[from];
+		int next = entryNext[from];
+
+		entryX[to] = entryX[from];
+		entryY[to] = entryY[from];
+		entryId[to] = entryId[from];
+		entryLeaf[to] = leaf;
+		entryHandle[to] = entryHandle[from];
+		entryPrev[to] = prev;
+		entryNext[to] = next;
+
+		if (prev != NONE) {
+			entryNext[prev] = to;
+		} else {
+			nodeFirst[leaf] = to;
+		}
+
+		if (next != NONE) {
+			entryPrev[next] = to;
+		}
+
+		handleEntry[entryHandle[to]] = to;
+	}
+
+	/**
+	 * Lists the entries of a node and its children, leaf by leaf, in the
+	 * order queries visit them.
+	 *
+	 * @return the number of entries listed so far
+	 */
+	private int order(int node, int[] order, int count) {
+		if (nodeDepth[node] == maxDepth) {
+			for (int e = nodeFirst[node]; e != NONE; e = entryNext[e]) {
+				order[count++] = e;
+			}
+
+			return count;
+		}
+
+		for (int i = node * 4; i < node * 4 + 4; i++) {
+			int child = nodeChildren[i];
+			if (child != 0) {
+				count = order(child, order, count);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Adds an entry to the front of a leaf's list.
+	 */
+	private void link(int entry, int leaf) {
+		int first = nodeFirst[leaf];
+
+		entryLeaf[entry] = leaf;
+		entryPrev[entry] = NONE;
+		entryNext[entry] = first;
+		if (first != NONE) {
+			entryPrev[first] = entry;
+		}
+
+		nodeFirst[leaf] = entry;
+	}
+
+	/**
+	 * Removes an entry from its leaf's list.
+	 */
+	private void unlink(int entry) {
+		int leaf = entryLeaf[entry];
+		int prev = entryPrev[entry];
+		int next = entryNext[entry];
+
+		if (prev != NONE) {
+			entryNext[prev] = next;
+		} else {
+			nodeFirst[leaf] = next;
+		}
+
+		if (next != NONE) {
+			entryPrev[next] = prev;
+		}
+	}
+
+	/**
+	 * Frees empty nodes from the given node upwards, stopping at {@code stop}
+	 * without freeing it. The root is never freed.
+	 */
+	private void prune(int node, int stop) {
+		while (node != stop && node != ROOT && isBare(node)) {
+			int parent = nodeParent[node];
+			for (int i = parent * 4; i < parent * 4 + 4; i++) {
+				if (nodeChildren[i] == node) {
+					nodeChildren[i] = 0;
+					break;
+				}
+			}
+
+			nodeFirst[node] = freeNode;
+			freeNode = node;
+
+			node = parent;
+		}
+	}
+
+	/**
+	 * @return true if a node has no entries or children of its own
+	 */
+	private boolean isBare(int node) {
+		if (nodeDepth[node] == maxDepth) {
+			return nodeFirst[node] == NONE;
+		}
+
+		int i = node * 4;
+		return nodeChildren[i] == 0 && nodeChildren[i + 1] == 0
+				&& nodeChildren[i + 2] == 0 && nodeChildren[i + 3] == 0;
+	}
+
+}
@@ -0,0 +1,16 @@
+package net.letscode.game.misc;
+
+/**
+ * Receives the ids found by a {@link FlatQuadTree} query, one at a time.
+ */
+public interface FlatQuadTreeVisitor {
+
+	/**
+	 * Called for each entry matching the query. The tree must not be modified
+	 * until the query has returned.
+	 *
+	 * @param id the id of the matching entry
+	 */
+	public void visit(int id);
+
+}
@@ -0,0 +1,292 @@
+package net.letscode.game.misc;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer for {@link QuadTree} nearest-neighbour searches. It holds
+ * up to {@link #getCapacity()} results, sorted from nearest to farthest, along
+ * with the working space the search needs. Once a buffer has been used for a
+ * few searches it has grown to fit them, and later searches allocate nothing,
+ * so callers that search often (e.g. targeting on every tick) should keep one
+ * around rather than creating a new one each time.
+ *
+ * <p>Buffers are not thread safe, and each search overwrites the results of
+ * the previous one.</p>
+ *
+ * @see QuadTree#nearest(double, double, NearestNeighbors)
+ */
+public class NearestNeighbors<T extends QuadTreeItem> {
+
+	private final int capacity;
+
+	/**
+	 * The results. During a search, this is a max-heap on distance so that
+	 * the farthest result can be replaced; afterwards it is sorted.
+	 */
+	private final Object[] items;
+	private final double[] distances;
+	private int size;
+
+	/**
+	 * The search frontier, a min-heap of subtrees on their distance from the
+	 * search point.
+	 */
+	private QuadTree<?>[] nodes;
+	private double[] nodeDistances;
+	private int nodeCount;
+
+	/**
+	 * Creates a new buffer.
+	 *
+	 * @param capacity the maximum number of results, i.e. {@code k}
+	 */
+	public NearestNeighbors(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+
+		this.capacity = capacity;
+
+		items = new Object[capacity];
+		distances = new double[capacity];
+
+		nodes = new QuadTree<?>[16];
+		nodeDistances = new double[16];
+	}
+
+	/**
+	 * @return the maximum number of results
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of results found by the last search
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the last search found nothing
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets a result of the last search.
+	 *
+	 * @param index the index, where 0 is the nearest result
+	 * @return the result
+	 * @throws IndexOutOfBoundsException if {@code index} is negative or not
+	 * less than {@link #size()}
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		checkIndex(index);
+
+		return (T) items[index];
+	}
+
+	/**
+	 * Gets the distance of a result of the last search from the search point.
+	 *
+	 * @param index the index, where 0 is the nearest result
+	 * @return the distance
+	 * @throws IndexOutOfBoundsException if {@code index} is negative or not
+	 * less than {@link #size()}
+	 */
+	public double getDistance(int index) {
+		checkIndex(index);
+
+		return Math.sqrt(distances[index]);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(
+					"Index: " + index + ", size: " + size);
+		}
+	}
+
+	/**
+	 * Clears the results, dropping references to the items.
+	 */
+	public void clear() {
+		Arrays.fill(items, 0, size, null);
+		size = 0;
+
+		Arrays.fill(nodes, 0, nodeCount, null);
+		nodeCount = 0;
+	}
+
+	/**
+	 * @return true if the results are full
+	 */
+	boolean isFull() {
+		return size == capacity;
+	}
+
+	/**
+	 * @return the squared distance of the farthest result so far
+	 */
+	double worst() {
+		return distances[0];
+	}
+
+	/**
+	 * Adds a result. If the results are full, the farthest result is replaced;
+	 * the caller must have checked that the new result is nearer.
+	 */
+	void offer(T item, double distance) {
+		if (size < capacity) {
+			// sift up
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >> 1;
+				if (distances[parent] >= distance) {
+					break;
+				}
+
+				items[i] = items[parent];
+				distances[i] = distances[parent];
+				i = parent;
+			}
+
+			items[i] = item;
+			distances[i] = distance;
+		} else {
+			siftDown(item, distance, 0, size);
+		}
+	}
+
+	/**
+	 * Places an item at {@code i} in the result heap of the given size,
+	 * moving larger children up as needed.
+	 */
+	private void siftDown(Object item, double distance, int i, int n) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= n) {
+				break;
+			}
+
+			if (child + 1 < n && distances[child + 1] > distances[child]) {
+				child++;
+			}
+
+			if (distances[child] <= distance) {
+				break;
+			}
+
+			items[i] = items[child];
+			distances[i] = distances[child];
+			i = child;
+		}
+
+		items[i] = item;
+		distances[i] = distance;
+	}
+
+	/**
+	 * Sorts the results from nearest to farthest, ending the search.
+	 */
+	void finish() {
+		// heap sort: repeatedly move the farthest result to the end
+		for (int n = size - 1; n > 0; n--) {
+			Object item = items[n];
+			double distance = distances[n];
+
+			items[n] = items[0];
+			distances[n] = distances[0];
+
+			siftDown(item, distance, 0, n);
+		}
+
+		Arrays.fill(nodes, 0, nodeCount, null);
+		nodeCount = 0;
+	}
+
+	/**
+	 * Adds a subtree to the search frontier.
+	 */
+	void pushNode(QuadTree<?> node, double distance) {
+		if (nodeCount == nodes.length) {
+			nodes = Arrays.copyOf(nodes, nodeCount * 2);
+			nodeDistances = Arrays.copyOf(nodeDistances, nodeCount * 2);
+		}
+
+		int i = nodeCount++;
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (nodeDistances[parent] <= distance) {
+				break;
+			}
+
+			nodes[i] = nodes[parent];
+			nodeDistances[i] = nodeDistances[parent];
+			i = parent;
+		}
+
+		nodes[i] = node;
+		nodeDistances[i] = distance;
+	}
+
+	/**
+	 * @return true if the search frontier has subtrees left
+	 */
+	boolean hasNodes() {
+		return nodeCount > 0;
+	}
+
+	/**
+	 * @return the squared distance of the nearest subtree in the frontier
+	 */
+	double peekNodeDistance() {
+		return nodeDistances[0];
+	}
+
+	/**
+	 * Removes and returns the nearest subtree in the frontier.
+	 */
+	@SuppressWarnings("unchecked")
+	QuadTree<T> popNode() {
+		QuadTree<T> top = (QuadTree<T>) nodes[0];
+
+		int n = --nodeCount;
+		QuadTree<?> last = nodes[n];
+		double distance = nodeDistances[n];
+		nodes[n] = null;
+
+		if (n > 0) {
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= n) {
+					break;
+				}
+
+				if (child + 1 < n
+						&& nodeDistances[child + 1] < nodeDistances[child]) {
+					child++;
+				}
+
+				if (nodeDistances[child] >= distance) {
+					break;
+				}
+
+				nodes[i] = nodes[child];
+				nodeDistances[i] = nodeDistances[child];
+				i = child;
+			}
+
+			nodes[i] = last;
+			nodeDistances[i] = distance;
+		}
+
+		return top;
+	}
+
+}
@@ -46,18 +46,6 @@ public class Point2D {
 	 * @return the quadrant this point resides in
 	 */
 	public QuadTree.Quadrant getQuadrant() {
-		if (y >= 0) {
-			if (x >= 0) {
-				return QuadTree.Quadrant.NORTHEAST;
-			} else {
-				return QuadTree.Quadrant.NORTHWEST;
-			}
-		} else {
-			if (x >= 0) {
-				return QuadTree.Quadrant.SOUTHEAST;
-			} else {
-				return QuadTree.Quadrant.SOUTHWEST;
-			}
-		}
+		return QuadTree.Quadrant.of(x, y);
 	}
 }
@@ -24,6 +24,22 @@ import lombok.ToString;
  * primarily for filtering groups of entities within a region, and should not be
  * used for anything that requires accurate positioning.</p>
  *
+ * <p>Items within a region can be found with {@link #query(Boundry2D,
+ * Collection)} and {@link #queryRadius(double, double, double, Collection)}.
+ * Queries skip every subtree that lies entirely outside the region, and take
+ * every item from subtrees that lie entirely inside it without checking them
+ * individually.</p>
+ *
+ * <p>{@link #nearest(double, double, NearestNeighbors)} finds the items
+ * closest to a point, visiting subtrees nearest-first and stopping as soon as
+ * no remaining subtree could hold a closer item.</p>
+ *
+ * <p>Each item remembers its leaf and its index within it, so removing an
+ * item is constant time, and {@link #update(QuadTreeItem)} only reinserts an
+ * item once it has actually left its leaf, starting from the nearest tree that
+ * still contains it rather than from the root. Neither allocates unless a new
+ * subtree is needed.</p>
+ *
  * <p>For the 3-dimensional equivalent, an <a
  * href="http://en.wikipedia.org/wiki/Octree">Octree</a> should be used
  * instead.</p>
@@ -34,8 +50,8 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 
 	@Getter private int maxDepth;
 	@Getter private int depth;
-	@Getter private QuadTree root;
-	@Getter private QuadTree parent;
+	@Getter private QuadTree<T> root;
+	@Getter private QuadTree<T> parent;
 	@Getter private Boundry2D boundry;
 	
 	private QuadTree<T> northWest;
@@ -44,9 +60,13 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 	private QuadTree<T> southEast;
 	
 	/**
-	 * The list of children. This is only ever used if this tree is a leaf node
+	 * The items in this tree. This is only ever used if this tree is a leaf
+	 * node. Each item knows its own index in the array (see
+	 * {@link QuadTreeItem#getQuadTreeIndex()}), so items can be removed in
+	 * constant time by moving the last item into their place.
 	 */
-	private List<T> children;
+	private Object[] items;
+	private int count;
 
 	public QuadTree(Boundry2D boundry, int maxDepth) {
 		this.boundry = boundry;
@@ -55,7 +75,10 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 		this.depth = 1;
 		this.root = this;
 		this.parent = null;
-		this.children = new LinkedList<>();
+
+		if (depth == maxDepth) {
+			this.items = new Object[4];
+		}
 	}
 
 	/**
@@ -82,18 +105,18 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 	 * @param parent the parent tree
 	 * @param quadrant the quadrant
 	 */
-	public QuadTree(QuadTree parent, Quadrant quadrant) {
+	public QuadTree(QuadTree<T> parent, Quadrant quadrant) {
 		this.parent = parent;
 		this.root = parent.getRoot();
 
 		this.maxDepth = parent.getMaxDepth();
 		this.depth = parent.getDepth() + 1;
 
-		// only initialize the list if we're at the max depth
-		// this is mainly to force an exception to be thrown if the list is ever
-		// modified when it shouldn't be
+		// only initialize the array if we're at the max depth
+		// this is mainly to force an exception to be thrown if the array is
+		// ever modified when it shouldn't be
 		if (depth == maxDepth) {
-			this.children = new LinkedList<>();
+			this.items = new Object[4];
 		}
 
 		double px = parent.boundry.x;
@@ -159,7 +182,7 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 	 * @param q the quadrant to set
 	 * @param tree the value to set for the given quadrant
 	 */
-	public void setSubtree(Quadrant q, QuadTree tree) {
+	public void setSubtree(Quadrant q, QuadTree<T> tree) {
 		switch (q) {
 			case NORTHEAST:
 				this.northEast = tree;
@@ -189,34 +212,32 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 					"Can't insert item into tree twice; remove it first.");
 		}
 
-		Point2D ip = new Point2D(item.getX(), item.getY());
+		double x = item.getX();
+		double y = item.getY();
 
-		if (!boundry.contains(ip)) {
+		if (!boundry.contains(x, y)) {
 			throw new IllegalArgumentException(
-					"Item is out of bounds: " + ip + " cannot be contained "
-					+ "within " + boundry);
+					"Item is out of bounds: (" + x + ", " + y + ") cannot be "
+					+ "contained within " + boundry);
 		}
 
-		Point2D l = ip.localize(boundry.getPosition());
-
-		if (depth < maxDepth) {
-			// recurse to the appropriate quadrant
-			Quadrant q = l.getQuadrant();
-			QuadTree<T> sub = getSubtree(q);
+		// walk down to the appropriate leaf
+		QuadTree<T> node = this;
+		while (node.depth < node.maxDepth) {
+			Quadrant q = Quadrant.of(x - node.boundry.x, y - node.boundry.y);
+			QuadTree<T> sub = node.getSubtree(q);
 
 			// if the subtree doesn't exist yet, create it
 			if (sub == null) {
-				sub = new QuadTree<>(this, q);
-				setSubtree(q, sub);
+				sub = new QuadTree<>(node, q);
+				node.setSubtree(q, sub);
 			}
 
-			// recurse
-			sub.insert(item);
-		} else {
-			// actually perform the insertion
-			children.add(item);
-			item.setQuadTreeParent(this);
+			node = sub;
 		}
+
+		// actually perform the insertion
+		node.add(item);
 	}
 
 	/**
@@ -224,10 +245,10 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 	 * nullifying trees emptied as a result of the removal.
 	 *
 	 * <p>In particular, this will work on any item contained even within
-	 * sibling trees, as this method (for indirect parents) just removes the
-	 * child from the parent using {@code item.getQuadTreeParent().remove()}.
-	 * This ends up being cheaper to do than searching subtrees for the real
-	 * parent, and is also somewhat more lenient.</p>
+	 * sibling trees, as the item is always removed from its real parent,
+	 * {@code item.getQuadTreeParent()}. This ends up being cheaper to do than
+	 * searching subtrees for the real parent, and is also somewhat more
+	 * lenient.</p>
 	 *
 	 * <p>Note that this method technically works with any QuadTreeItem, but is
 	 * restricted to items within the same overall tree (i.e. same root
@@ -236,85 +257,462 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 	 * @param item the item to remove
 	 */
 	public void remove(T item) {
-		QuadTree<T> p = item.getQuadTreeParent();
+		QuadTree<T> p = parentOf(item);
 		if (p == null) {
 			throw new IllegalArgumentException("Item has a null parent tree");
 		}
 
-		if (p == this) {
-			// if this item belongs to us, remove it and prune
-			// if for some reason the item isn't actually in our list ...
-			// oh well
-			children.remove(item);
-			item.setQuadTreeParent(null);
-			prune();
-		} else {
-			// indirect parent
-
-			QuadTree<T> r = p.getRoot();
+		// make sure the roots match
+		// there's no technical reason to check for this, but if it ever
+		// happens, it's pratically guaranteed to be a programmer error.
+		if (p.getRoot() != root) {
+			throw new IllegalArgumentException(
+					"Item is contained within a completely separate tree "
+					+ "and cannot be removed.");
+		}
 
-			// make sure the roots match
-			// there's no technical reason to check for this, but if it ever
-			// happens, it's pratically guaranteed to be a programmer error.
-			if (r != root) {
-				throw new IllegalArgumentException(
-						"Item is contained within a completely separate tree "
-						+ "and cannot be removed.");
-			}
+		p.removeItem(item);
+		p.prune(null);
+	}
 
-			// ask the real parent to remove the item for us
+	/**
+	 * Adds an item to this leaf.
+	 */
+	private void add(T item) {
+		if (count == items.length) {
+			items = Arrays.copyOf(items, count * 2);
 		}
+
+		item.setQuadTreeIndex(count);
+		item.setQuadTreeParent(this);
+		items[count++] = item;
 	}
 
 	/**
-	 * Prunes this QuadTree, removing any empty subtrees. Fundamentally this
-	 * allows the child tree to be garbage collected by removing any remaining
-	 * references to it.
+	 * Removes an item from this leaf, moving the last item into its slot.
 	 */
-	private void prune() {
-		if (northWest != null && northWest.isEmpty()) {
-			northWest = null;
+	private void removeItem(T item) {
+		int i = item.getQuadTreeIndex();
+		if (i < 0 || i >= count || items[i] != item) {
+			throw new IllegalArgumentException(
+					"Item is not in its parent tree: " + item);
 		}
 
-		if (northEast != null && northEast.isEmpty()) {
-			northEast = null;
+		int last = --count;
+		if (i != last) {
+			T moved = item(last);
+			items[i] = moved;
+			moved.setQuadTreeIndex(i);
 		}
 
-		if (southWest != null && southWest.isEmpty()) {
-			southWest = null;
+		items[last] = null;
+
+		item.setQuadTreeParent(null);
+		item.setQuadTreeIndex(-1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private T item(int i) {
+		return (T) items[i];
+	}
+
+	/**
+	 * Gets the leaf holding an item. Only a tree of the item's type ever sets
+	 * itself as an item's parent, so the cast is safe.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends QuadTreeItem> QuadTree<T> parentOf(T item) {
+		return (QuadTree<T>) item.getQuadTreeParent();
+	}
+
+	/**
+	 * Prunes this QuadTree after a removal, detaching it from its parent if it
+	 * is now empty, and so on up the tree. Fundamentally this allows the child
+	 * tree to be garbage collected by removing any remaining references to it.
+	 *
+	 * <p>Subtrees are pruned as soon as they are emptied, so a tree that isn't
+	 * a leaf is empty exactly when it has no subtrees, and only the trees
+	 * between the leaf and the root need to be checked.</p>
+	 *
+	 * @param stop a tree to stop at without pruning it, or null to go up to
+	 * the root
+	 */
+	private void prune(QuadTree<T> stop) {
+		QuadTree<T> node = this;
+		while (node != stop && node.parent != null && node.isBare()) {
+			QuadTree<T> p = node.parent;
+			p.detach(node);
+
+			node = p;
 		}
+	}
 
-		if (southEast != null && southEast.isEmpty()) {
-			southEast = null;
+	/**
+	 * @return true if this tree has no items or subtrees of its own
+	 */
+	private boolean isBare() {
+		if (depth == maxDepth) {
+			return count == 0;
 		}
 
-		// recurse upwards
-		if (parent != null) {
-			parent.prune();
+		return northWest == null && northEast == null
+				&& southWest == null && southEast == null;
+	}
+
+	private void detach(QuadTree<T> sub) {
+		if (northWest == sub) {
+			northWest = null;
+		} else if (northEast == sub) {
+			northEast = null;
+		} else if (southWest == sub) {
+			southWest = null;
+		} else if (southEast == sub) {
+			southEast = null;
 		}
 	}
 
 	/**
-	 * Updates the given item. If the item's position has changed sufficiently
-	 * for its parent quadrant to no longer contain it, it is removed and
-	 * reinserted into the correct quadrant. Otherwise, nothing is changed.
-	 * <p>Note that all items are inserted from the root of the tree.</p>
+	 * Updates the given item after it has moved. If the item's leaf still
+	 * contains it, nothing is changed. Otherwise, it is removed from its leaf
+	 * and reinserted from its nearest ancestor that contains it, so an item
+	 * moving into a neighbouring leaf only touches the trees around it.
 	 * <p>Items that have no parent are inserted anyway.</p>
+	 * <p>If the item has moved out of the tree altogether, it is left where
+	 * it was and an exception is thrown.</p>
 	 *
 	 * @param item the item to update
 	 */
 	public void update(T item) {
-		QuadTree<T> p = item.getQuadTreeParent();
-		if (p != null) {
-			if (p.getRoot() != getRoot()) {
-				throw new IllegalArgumentException(
-						"Cannot update an item in a disparate tree.");
+		QuadTree<T> p = parentOf(item);
+		if (p == null) {
+			getRoot().insert(item);
+			return;
+		}
+
+		if (p.getRoot() != getRoot()) {
+			throw new IllegalArgumentException(
+					"Cannot update an item in a disparate tree.");
+		}
+
+		double x = item.getX();
+		double y = item.getY();
+
+		// the common case: the item hasn't left its leaf
+		if (p.boundry.contains(x, y)) {
+			return;
+		}
+
+		QuadTree<T> ancestor = p.parent;
+		while (ancestor != null && !ancestor.boundry.contains(x, y)) {
+			ancestor = ancestor.parent;
+		}
+
+		if (ancestor == null) {
+			throw new IllegalArgumentException(
+					"Item is out of bounds: (" + x + ", " + y + ") cannot be "
+					+ "contained within " + p.getRoot().getBoundry());
+		}
+
+		p.removeItem(item);
+		p.prune(ancestor);
+
+		ancestor.insert(item);
+	}
+
+	/**
+	 * Finds every item within the given area, adding them to
+	 * {@code results}. Items on the edge of the area are included.
+	 *
+	 * @param area the area to search
+	 * @param results the collection to add matching items to
+	 * @return {@code results}
+	 */
+	public <C extends Collection<? super T>> C query(
+			Boundry2D area, C results) {
+		query(area, results, null);
+		return results;
+	}
+
+	/**
+	 * Finds every item within the given area, passing each to
+	 * {@code visitor}. Items on the edge of the area are included.
+	 *
+	 * @param area the area to search
+	 * @param visitor the visitor for matching items
+	 */
+	public void query(Boundry2D area, QuadTreeVisitor<? super T> visitor) {
+		query(area, null, visitor);
+	}
+
+	/**
+	 * Finds every item within {@code radius} units of the given point, adding
+	 * them to {@code results}. Items exactly {@code radius} away are
+	 * included.
+	 *
+	 * @param x the center x
+	 * @param y the center y
+	 * @param radius the search radius
+	 * @param results the collection to add matching items to
+	 * @return {@code results}
+	 */
+	public <C extends Collection<? super T>> C queryRadius(
+			double x, double y, double radius, C results) {
+		queryRadius(x, y, radius, results, null);
+		return results;
+	}
+
+	/**
+	 * Finds every item within {@code radius} units of the given point,
+	 * passing each to {@code visitor}. Items exactly {@code radius} away are
+	 * included.
+	 *
+	 * @param x the center x
+	 * @param y the center y
+	 * @param radius the search radius
+	 * @param visitor the visitor for matching items
+	 */
+	public void queryRadius(
+			double x, double y, double radius,
+			QuadTreeVisitor<? super T> visitor) {
+		queryRadius(x, y, radius, null, visitor);
+	}
+
+	/**
+	 * Finds the items nearest to the given point, up to the capacity of
+	 * {@code results}.
+	 *
+	 * @see #nearest(double, double, double, QuadTreeFilter, NearestNeighbors)
+	 * @param x the point x
+	 * @param y the point y
+	 * @param results the buffer to store the results in
+	 * @return {@code results}
+	 */
+	public NearestNeighbors<T> nearest(
+			double x, double y, NearestNeighbors<T> results) {
+		return nearest(x, y, Double.POSITIVE_INFINITY, null, results);
+	}
+
+	/**
+	 * Finds the items nearest to the given point, up to the capacity of
+	 * {@code results}, sorted from nearest to farthest. Previous results in
+	 * the buffer are discarded.
+	 *
+	 * <p>This is a best-first search: subtrees are visited in order of their
+	 * distance from the point, and the search ends once the nearest remaining
+	 * subtree is farther away than the worst result found so far (or than
+	 * {@code maxDistance}). Typically only the few leaves around the point are
+	 * ever looked at. Ties between items at exactly the same distance are
+	 * broken arbitrarily.</p>
+	 *
+	 * @param x the point x
+	 * @param y the point y
+	 * @param maxDistance the maximum distance of a result from the point; may
+	 * be {@link Double#POSITIVE_INFINITY}
+	 * @param filter a filter for the results, or null to accept any item
+	 * @param results the buffer to store the results in
+	 * @return {@code results}
+	 */
+	public NearestNeighbors<T> nearest(
+			double x, double y, double maxDistance,
+			QuadTreeFilter<? super T> filter, NearestNeighbors<T> results) {
+		results.clear();
+
+		double limit = maxDistance * maxDistance;
+
+		double d = boundry.distanceSquared(x, y);
+		if (d <= limit) {
+			results.pushNode(this, d);
+		}
+
+		while (results.hasNodes()) {
+			d = results.peekNodeDistance();
+			if (d > limit || (results.isFull() && d >= results.worst())) {
+				// nothing left can be closer than what we have
+				break;
 			}
 
-			p.remove(item);
+			QuadTree<T> node = results.popNode();
+
+			if (node.depth == node.maxDepth) {
+				for (int i = 0; i < node.count; i++) {
+					T item = node.item(i);
+
+					double dx = item.getX() - x;
+					double dy = item.getY() - y;
+					double d2 = dx * dx + dy * dy;
+
+					if (d2 > limit
+							|| (results.isFull() && d2 >= results.worst())) {
+						continue;
+					}
+
+					if (filter != null && !filter.accept(item)) {
+						continue;
+					}
+
+					results.offer(item, d2);
+				}
+			} else {
+				pushNearest(node.northWest, x, y, limit, results);
+				pushNearest(node.northEast, x, y, limit, results);
+				pushNearest(node.southWest, x, y, limit, results);
+				pushNearest(node.southEast, x, y, limit, results);
+			}
+		}
+
+		results.finish();
+		return results;
+	}
+
+	/**
+	 * Adds a subtree to the nearest-neighbour search frontier, unless it is
+	 * empty or too far away to matter.
+	 */
+	private static <T extends QuadTreeItem> void pushNearest(
+			QuadTree<T> sub, double x, double y, double limit,
+			NearestNeighbors<T> results) {
+		if (sub == null) {
+			return;
+		}
+
+		double d = sub.boundry.distanceSquared(x, y);
+		if (d > limit || (results.isFull() && d >= results.worst())) {
+			return;
+		}
+
+		results.pushNode(sub, d);
+	}
+
+	/**
+	 * Rectangle query. Exactly one of {@code results} and {@code visitor} is
+	 * used, so that neither form of the query needs to wrap the other.
+	 */
+	private void query(
+			Boundry2D area,
+			Collection<? super T> results, QuadTreeVisitor<? super T> visitor) {
+		if (!boundry.intersects(area)) {
+			return;
+		}
+
+		if (area.contains(boundry)) {
+			collect(results, visitor);
+			return;
+		}
+
+		if (depth == maxDepth) {
+			for (int i = 0; i < count; i++) {
+				T item = item(i);
+				if (area.contains(item.getX(), item.getY())) {
+					emit(item, results, visitor);
+				}
+			}
+
+			return;
+		}
+
+		if (northWest != null) {
+			northWest.query(area, results, visitor);
+		}
+
+		if (northEast != null) {
+			northEast.query(area, results, visitor);
+		}
+
+		if (southWest != null) {
+			southWest.query(area, results, visitor);
+		}
+
+		if (southEast != null) {
+			southEast.query(area, results, visitor);
+		}
+	}
+
+	/**
+	 * Circle query; see {@link #query(Boundry2D, Collection, QuadTreeVisitor)}.
+	 */
+	private void queryRadius(
+			double x, double y, double radius,
+			Collection<? super T> results, QuadTreeVisitor<? super T> visitor) {
+		if (!boundry.intersectsCircle(x, y, radius)) {
+			return;
+		}
+
+		if (boundry.withinCircle(x, y, radius)) {
+			collect(results, visitor);
+			return;
+		}
+
+		if (depth == maxDepth) {
+			double r2 = radius * radius;
+			for (int i = 0; i < count; i++) {
+				T item = item(i);
+
+				double dx = item.getX() - x;
+				double dy = item.getY() - y;
+				if (dx * dx + dy * dy <= r2) {
+					emit(item, results, visitor);
+				}
+			}
+
+			return;
+		}
+
+		if (northWest != null) {
+			northWest.queryRadius(x, y, radius, results, visitor);
 		}
 
-		getRoot().insert(item);
+		if (northEast != null) {
+			northEast.queryRadius(x, y, radius, results, visitor);
+		}
+
+		if (southWest != null) {
+			southWest.queryRadius(x, y, radius, results, visitor);
+		}
+
+		if (southEast != null) {
+			southEast.queryRadius(x, y, radius, results, visitor);
+		}
+	}
+
+	/**
+	 * Reports every item in this tree and its subtrees, without checking their
+	 * positions.
+	 */
+	private void collect(
+			Collection<? super T> results, QuadTreeVisitor<? super T> visitor) {
+		if (depth == maxDepth) {
+			for (int i = 0; i < count; i++) {
+				emit(item(i), results, visitor);
+			}
+
+			return;
+		}
+
+		if (northWest != null) {
+			northWest.collect(results, visitor);
+		}
+
+		if (northEast != null) {
+			northEast.collect(results, visitor);
+		}
+
+		if (southWest != null) {
+			southWest.collect(results, visitor);
+		}
+
+		if (southEast != null) {
+			southEast.collect(results, visitor);
+		}
+	}
+
+	private void emit(
+			T item,
+			Collection<? super T> results, QuadTreeVisitor<? super T> visitor) {
+		if (results != null) {
+			results.add(item);
+		} else {
+			visitor.visit(item);
+		}
 	}
 
 	/**
@@ -326,10 +724,10 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 	 * at least one does
 	 */
 	public boolean isEmpty() {
-		// nonempty child list means this is a leaf node and does not have any
-		// sub-boundries, so we don't have to check them
-		if (!children.isEmpty()) {
-			return false;
+		// leaf nodes don't have any sub-boundries, so we don't have to check
+		// them
+		if (depth == maxDepth) {
+			return count == 0;
 		}
 
 		return ((northWest != null) ? northWest.isEmpty() : true)
@@ -341,20 +739,29 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 	/**
 	 * Returns an unmodifiable list of children contained (directly) within this
 	 * QuadTree. Note that this specifically only direct children; the tree can
-	 * be iterated over if a list of all children is needed. <p>This should
-	 * always return null for QuadTrees that are already at the maximum
+	 * be iterated over if a list of all children is needed. <p>This will
+	 * always return an empty list for QuadTrees that aren't at the maximum
 	 * depth.</p>
 	 *
 	 * @return an unmodifiable list of direct children for this tree
 	 */
 	public List<T> getChildren() {
-		return Collections.unmodifiableList(children);
+		if (count == 0) {
+			return Collections.emptyList();
+		}
+
+		List<T> ret = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			ret.add(item(i));
+		}
+
+		return Collections.unmodifiableList(ret);
 	}
 
 	@Override
 	public Iterator<T> iterator() {
-		if (children != null) {
-			return children.iterator();
+		if (depth == maxDepth) {
+			return getChildren().iterator();
 		} else {
 			return new QuadTreeIterator();
 		}
@@ -363,11 +770,13 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 	public class QuadTreeIterator implements Iterator<T> {
 
 		private Quadrant quad;
+		private boolean started;
 		private Iterator<T> childIterator;
 		private T next;
 
 		public QuadTreeIterator() {
-			quad = Quadrant.SOUTHEAST;
+			quad = null;
+			started = false;
 			childIterator = null;
 
 			// fast-forward the iterator to find the first 'next' value
@@ -375,6 +784,12 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 		}
 
 		private boolean nextQuadrant() {
+			if (!started) {
+				started = true;
+				quad = Quadrant.getIterableStart();
+				return true;
+			}
+
 			if (quad != null) {
 				quad = quad.getNext();
 				return quad != null;
@@ -455,14 +870,31 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 		public static Quadrant getIterableStart() {
 			return SOUTHEAST;
 		}
+
+		/**
+		 * Finds the quadrant the given point resides in, assuming an origin
+		 * of <code>(0, 0)</code>. See {@link Point2D#getQuadrant()}.
+		 *
+		 * @param x the x coordinate
+		 * @param y the y coordinate
+		 * @return the quadrant the point resides in
+		 */
+		public static Quadrant of(double x, double y) {
+			if (y >= 0) {
+				return (x >= 0) ? NORTHEAST : NORTHWEST;
+			} else {
+				return (x >= 0) ? SOUTHEAST : SOUTHWEST;
+			}
+		}
 	}
 
-	@ToString(exclude = {"parent"})
+	@ToString(exclude = {"parent", "index"})
 	public static class TestItem implements QuadTreeItem {
 
 		private double x;
 		private double y;
-		private QuadTree parent;
+		private QuadTree<TestItem> parent;
+		private int index;
 
 		public TestItem(double x, double y) {
 			this.x = x;
@@ -479,14 +911,33 @@ public class QuadTree<T extends QuadTreeItem> implements Iterable<T> {
 			return y;
 		}
 
+		public void setX(double x) {
+			this.x = x;
+		}
+
+		public void setY(double y) {
+			this.y = y;
+		}
+
 		@Override
-		public QuadTree getQuadTreeParent() {
+		public QuadTree<TestItem> getQuadTreeParent() {
 			return parent;
 		}
 
 		@Override
-		public void setQuadTreeParent(QuadTree parent) {
-			this.parent = parent;
+		@SuppressWarnings("unchecked")
+		public void setQuadTreeParent(QuadTree<?> parent) {
+			this.parent = (QuadTree<TestItem>) parent;
+		}
+
+		@Override
+		public int getQuadTreeIndex() {
+			return index;
+		}
+
+		@Override
+		public void setQuadTreeIndex(int index) {
+			this.index = index;
 		}
 	}
 
@@ -0,0 +1,18 @@
+package net.letscode.game.misc;
+
+/**
+ * Decides which items a {@link QuadTree} search may return, e.g. to find the
+ * nearest entity of a certain kind.
+ */
+public interface QuadTreeFilter<T extends QuadTreeItem> {
+
+	/**
+	 * Checks whether an item may be returned. This is only called for items
+	 * that are close enough to be part of the result.
+	 *
+	 * @param item the item
+	 * @return true if the item may be returned
+	 */
+	public boolean accept(T item);
+
+}
@@ -9,7 +9,22 @@ public interface QuadTreeItem {
 	public double getX();
 	public double getY();
 	
-	public QuadTree getQuadTreeParent();
-	public void setQuadTreeParent(QuadTree parent);
+	/**
+	 * Gets the leaf tree holding this item, as last set by the tree.
+	 * Implementations may narrow the return type to the tree they are kept
+	 * in, since only a {@code QuadTree<T>} ever sets itself as the parent of
+	 * an item of type {@code T}.
+	 * @return the leaf holding this item, or null if it isn't in a tree
+	 */
+	public QuadTree<?> getQuadTreeParent();
+	public void setQuadTreeParent(QuadTree<?> parent);
+	
+	/**
+	 * Gets the index of this item within its parent tree's items, as last set
+	 * by the tree. Implementations should only store the value.
+	 * @return the index of this item in its parent tree
+	 */
+	public int getQuadTreeIndex();
+	public void setQuadTreeIndex(int index);
 	
 }
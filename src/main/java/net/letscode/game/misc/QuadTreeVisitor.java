@@ -0,0 +1,18 @@
+package net.letscode.game.misc;
+
+/**
+ * Receives the items found by a {@link QuadTree} query, one at a time. Queries
+ * that report to a visitor don't need to collect their results anywhere, and
+ * so allocate nothing.
+ */
+public interface QuadTreeVisitor<T extends QuadTreeItem> {
+
+	/**
+	 * Called for each item matching the query. The tree must not be modified
+	 * until the query has returned.
+	 *
+	 * @param item the matching item
+	 */
+	public void visit(T item);
+
+}
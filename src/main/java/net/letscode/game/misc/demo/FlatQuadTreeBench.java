@@ -0,0 +1,222 @@
+package net.letscode.game.misc.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.letscode.game.misc.Boundry2D;
+import net.letscode.game.misc.FlatQuadTree;
+import net.letscode.game.misc.FlatQuadTreeVisitor;
+import net.letscode.game.misc.QuadTree;
+import net.letscode.game.misc.QuadTree.TestItem;
+import net.letscode.game.misc.QuadTreeVisitor;
+
+/**
+ * A quick and dirty comparison of {@link FlatQuadTree} and {@link QuadTree},
+ * for a few zone sizes: the heap used per item (including the items
+ * themselves, as a {@code FlatQuadTree} entry replaces the item object), the
+ * time per radius query, and the time per update for items moving a short
+ * distance, with queries timed again after the updates. The flat tree is
+ * sized for its entries up front, as a zone would be. Items are spread
+ * uniformly over a 1000x1000 tree with the default {@code Zone2D} depth, and
+ * every query result is checked against the other tree.
+ */
+public class FlatQuadTreeBench {
+
+	public static final int[] ITEM_COUNTS = { 1000, 10000, 100000 };
+
+	public static final int DEPTH = 7;
+	public static final double SIZE = 1000;
+	public static final double RADIUS = 25;
+	public static final double STEP = 2;
+
+	public static final int QUERIES = 20000;
+	public static final int ROUNDS = 20;
+
+	private static class Counter
+			implements QuadTreeVisitor<TestItem>, FlatQuadTreeVisitor {
+
+		public int count;
+
+		@Override
+		public void visit(TestItem item) {
+			count++;
+		}
+
+		@Override
+		public void visit(int id) {
+			count++;
+		}
+
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static double time(
+			QuadTree<TestItem> tree, double[] qx, double[] qy,
+			Counter counter) {
+		long start = System.nanoTime();
+		for (int i = 0; i < QUERIES; i++) {
+			tree.queryRadius(qx[i], qy[i], RADIUS, counter);
+		}
+
+		return (double) (System.nanoTime() - start) / QUERIES;
+	}
+
+	private static double time(
+			FlatQuadTree tree, double[] qx, double[] qy, Counter counter) {
+		long start = System.nanoTime();
+		for (int i = 0; i < QUERIES; i++) {
+			tree.queryRadius(qx[i], qy[i], RADIUS, counter);
+		}
+
+		return (double) (System.nanoTime() - start) / QUERIES;
+	}
+
+	private static double clamp(double v) {
+		return Math.max(-SIZE / 2, Math.min(SIZE / 2, v));
+	}
+
+	private static void run(int count) {
+		Random random = new Random(count);
+
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++) {
+			xs[i] = (random.nextDouble() - 0.5) * SIZE;
+			ys[i] = (random.nextDouble() - 0.5) * SIZE;
+		}
+
+		long before = usedMemory();
+		QuadTree<TestItem> tree = new QuadTree<>(0, 0, SIZE, SIZE, DEPTH);
+		List<TestItem> items = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			TestItem item = new TestItem(xs[i], ys[i]);
+			tree.insert(item);
+			items.add(item);
+		}
+
+		// the list is only there to measure the tree without it
+		long treeBytes = usedMemory() - before - (16 + 4L * count);
+
+		before = usedMemory();
+		FlatQuadTree flat = new FlatQuadTree(
+				new Boundry2D(0, 0, SIZE, SIZE), DEPTH, count);
+		int[] entries = new int[count];
+		for (int i = 0; i < count; i++) {
+			entries[i] = flat.insert(i, xs[i], ys[i]);
+		}
+
+		flat.optimize();
+
+		long flatBytes = usedMemory() - before;
+
+		double[] qx = new double[QUERIES];
+		double[] qy = new double[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			qx[i] = (random.nextDouble() - 0.5) * SIZE;
+			qy[i] = (random.nextDouble() - 0.5) * SIZE;
+		}
+
+		Counter counter = new Counter();
+
+		// check results (which also warms up both trees)
+		for (int i = 0; i < QUERIES; i++) {
+			counter.count = 0;
+			tree.queryRadius(qx[i], qy[i], RADIUS, counter);
+			int expected = counter.count;
+
+			counter.count = 0;
+			flat.queryRadius(qx[i], qy[i], RADIUS, counter);
+			if (counter.count != expected) {
+				throw new IllegalStateException("Wrong result count");
+			}
+		}
+
+		double treeQuery = time(tree, qx, qy, counter);
+		double flatQuery = time(flat, qx, qy, counter);
+
+		// generate the moves up front so both trees get the same ones
+		double[][] moveX = new double[ROUNDS][count];
+		double[][] moveY = new double[ROUNDS][count];
+		for (int r = 0; r < ROUNDS; r++) {
+			for (int i = 0; i < count; i++) {
+				xs[i] = clamp(xs[i] + random.nextGaussian() * STEP);
+				ys[i] = clamp(ys[i] + random.nextGaussian() * STEP);
+				moveX[r][i] = xs[i];
+				moveY[r][i] = ys[i];
+			}
+		}
+
+		long start = System.nanoTime();
+		for (int r = 0; r < ROUNDS; r++) {
+			for (int i = 0; i < count; i++) {
+				TestItem item = items.get(i);
+				item.setX(moveX[r][i]);
+				item.setY(moveY[r][i]);
+				tree.update(item);
+			}
+		}
+		double treeUpdate = (double) (System.nanoTime() - start)
+				/ (ROUNDS * count);
+
+		start = System.nanoTime();
+		for (int r = 0; r < ROUNDS; r++) {
+			for (int i = 0; i < count; i++) {
+				flat.update(entries[i], moveX[r][i], moveY[r][i]);
+			}
+		}
+		double flatUpdate = (double) (System.nanoTime() - start)
+				/ (ROUNDS * count);
+
+		double treeMoved = time(tree, qx, qy, counter);
+		double flatMoved = time(flat, qx, qy, counter);
+
+		start = System.nanoTime();
+		flat.optimize();
+		double optimize = (System.nanoTime() - start) / 1e3;
+
+		double flatOptimized = time(flat, qx, qy, counter);
+
+		// both trees should still agree after moving everything
+		for (int i = 0; i < 1000; i++) {
+			counter.count = 0;
+			tree.queryRadius(qx[i], qy[i], RADIUS, counter);
+			int expected = counter.count;
+
+			counter.count = 0;
+			flat.queryRadius(qx[i], qy[i], RADIUS, counter);
+			if (counter.count != expected) {
+				throw new IllegalStateException(
+						"Wrong result count after moves");
+			}
+		}
+
+		System.out.printf("%6d items:\n", count);
+		System.out.printf("    memory: tree %6.1f B/item, flat %6.1f B/item\n",
+				(double) treeBytes / count, (double) flatBytes / count);
+		System.out.printf("    query:  tree %6.0f ns,     flat %6.0f ns\n",
+				treeQuery, flatQuery);
+		System.out.printf("    update: tree %6.1f ns,     flat %6.1f ns\n",
+				treeUpdate, flatUpdate);
+		System.out.printf("    query after updates: tree %6.0f ns, flat %6.0f "
+				+ "ns, flat after optimize() (%.0f us) %6.0f ns\n",
+				treeMoved, flatMoved, optimize, flatOptimized);
+	}
+
+	public static void main(String[] args) {
+		System.out.println("QuadTree vs FlatQuadTree, radius " + RADIUS);
+		System.out.println("=================================");
+
+		for (int count : ITEM_COUNTS) {
+			run(count);
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+package net.letscode.game.misc.demo;
+
+import java.util.Random;
+import net.letscode.game.misc.NearestNeighbors;
+import net.letscode.game.misc.QuadTree;
+import net.letscode.game.misc.QuadTree.TestItem;
+
+/**
+ * A quick and dirty benchmark for
+ * {@link QuadTree#nearest(double, double, NearestNeighbors)} against a brute
+ * force scan of every item, for a few zone sizes. Items are spread uniformly
+ * over a 1000x1000 tree with the default {@code Zone2D} depth, and each search
+ * looks for the {@link #K} nearest items to a random point. Every result is
+ * checked against the brute force result.
+ */
+public class NearestBench {
+	
+	public static final int[] ITEM_COUNTS = { 1000, 10000, 100000 };
+	
+	public static final int K = 8;
+	public static final int DEPTH = 7;
+	public static final double SIZE = 1000;
+	
+	public static final int QUERIES = 20000;
+	public static final int WARMUP = 5000;
+	
+	/**
+	 * The k nearest items by scanning all of them, keeping the results sorted
+	 * by insertion. This is the cheapest way to do it without an index.
+	 */
+	private static int bruteForce(
+			TestItem[] items, double x, double y,
+			TestItem[] found, double[] distances) {
+		int size = 0;
+		
+		for (TestItem item : items) {
+			double dx = item.getX() - x;
+			double dy = item.getY() - y;
+			double d2 = dx * dx + dy * dy;
+			
+			if (size == K && d2 >= distances[K - 1]) {
+				continue;
+			}
+			
+			int i = (size < K) ? size++ : K - 1;
+			while (i > 0 && distances[i - 1] > d2) {
+				found[i] = found[i - 1];
+				distances[i] = distances[i - 1];
+				i--;
+			}
+			
+			found[i] = item;
+			distances[i] = d2;
+		}
+		
+		return size;
+	}
+	
+	private static void run(int count) {
+		Random random = new Random(count);
+		
+		QuadTree<TestItem> tree = new QuadTree<>(0, 0, SIZE, SIZE, DEPTH);
+		TestItem[] items = new TestItem[count];
+		for (int i = 0; i < count; i++) {
+			items[i] = new TestItem(
+					(random.nextDouble() - 0.5) * SIZE,
+					(random.nextDouble() - 0.5) * SIZE);
+			tree.insert(items[i]);
+		}
+		
+		double[] xs = new double[QUERIES];
+		double[] ys = new double[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			xs[i] = (random.nextDouble() - 0.5) * SIZE;
+			ys[i] = (random.nextDouble() - 0.5) * SIZE;
+		}
+		
+		NearestNeighbors<TestItem> results = new NearestNeighbors<>(K);
+		TestItem[] found = new TestItem[K];
+		double[] distances = new double[K];
+		
+		// check results (which also warms up both paths)
+		for (int i = 0; i < QUERIES; i++) {
+			tree.nearest(xs[i], ys[i], results);
+			int size = bruteForce(items, xs[i], ys[i], found, distances);
+			
+			if (results.size() != size) {
+				throw new IllegalStateException("Wrong result count");
+			}
+			
+			for (int j = 0; j < size; j++) {
+				double d = results.getDistance(j);
+				if (Math.abs(d * d - distances[j]) > 1e-9) {
+					throw new IllegalStateException("Wrong result at " + j);
+				}
+			}
+		}
+		
+		for (int i = 0; i < WARMUP; i++) {
+			tree.nearest(xs[i], ys[i], results);
+		}
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < QUERIES; i++) {
+			tree.nearest(xs[i], ys[i], results);
+		}
+		double treeTime = (double) (System.nanoTime() - start) / QUERIES;
+		
+		// brute force is slow enough at 100k that fewer queries will do
+		int bruteQueries = Math.max(100, QUERIES * 1000 / count);
+		start = System.nanoTime();
+		for (int i = 0; i < bruteQueries; i++) {
+			bruteForce(items, xs[i], ys[i], found, distances);
+		}
+		double bruteTime = (double) (System.nanoTime() - start) / bruteQueries;
+		
+		System.out.printf("%6d items: tree %9.1f ns, brute force %11.1f ns "
+				+ "(%.0fx)\n",
+				count, treeTime, bruteTime, bruteTime / treeTime);
+	}
+	
+	public static void main(String[] args) {
+		System.out.println("QuadTree.nearest() vs brute force, k = " + K);
+		System.out.println("======================================");
+		
+		for (int count : ITEM_COUNTS) {
+			run(count);
+		}
+	}
+	
+}
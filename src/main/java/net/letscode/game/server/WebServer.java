@@ -40,7 +40,7 @@ public class WebServer {
 		SecurityUtils.setSecurityManager(sm);
 		
 		log.info("Initializing game world...");
-		World.get();
+		World.get().start();
 		
 		log.info("Starting server on port " + port);
 		server = new Server(port);
@@ -19,6 +19,8 @@ import net.letscode.game.auth.User;
 import net.letscode.game.event.EventBus;
 import net.letscode.game.event.EventBusClient;
 import net.letscode.game.event.EventBusProvider;
+import net.letscode.game.event.EventBusSchema;
+import net.letscode.game.event.EventRingBuffer;
 import net.letscode.game.server.message.MessageDispatcher;
 import net.letscode.game.server.message.outgoing.StateChangeMessage;
 import net.letscode.game.server.message.request.handler.RequestMonitor;
@@ -38,10 +40,23 @@ import org.eclipse.jetty.websocket.api.annotations.WebSocket;
 @WebSocket
 public class ClientSession extends WebSocketAdapter implements EventBusProvider {
 	
+	private static final EventBusSchema SCHEMA = EventBusSchema.of(
+			IncomingMessageEvent.class,
+			OutgoingMessageEvent.class,
+			EntitySelectionEvent.class);
+	
 	private JsonFactory factory;
 	
+	private ObjectMapper mapper;
+	
 	private EventBus bus;
 	
+	/**
+	 * Turns incoming messages into events on the world thread, so that the
+	 * events come from (and go back to) the world thread's pool.
+	 */
+	private EventRingBuffer.Translator<JsonNode> incoming;
+	
 	private RequestMonitor monitor;
 	
 	@Getter
@@ -71,20 +86,24 @@ public class ClientSession extends WebSocketAdapter implements EventBusProvider
 	
 	public ClientSession() {
 		factory = new JsonFactory();
+		mapper = new ObjectMapper(factory);
 		
-		bus = new EventBus() {{
-			add(IncomingMessageEvent.class);
-			add(OutgoingMessageEvent.class);
-			add(EntitySelectionEvent.class);
-			// Login event?
-			// Logout event?
-		}};
+		bus = new EventBus(SCHEMA);
+		
+		incoming = new EventRingBuffer.Translator<JsonNode>() {
+			
+			@Override
+			public IncomingMessageEvent translate(JsonNode message) {
+				return IncomingMessageEvent.obtain(ClientSession.this, message);
+			}
+			
+		};
 		
 		monitor = new RequestMonitor();
-		bus.register(monitor);
+		bus.subscribe(OutgoingMessageEvent.class, monitor);
 		
 		dispatcher = new MessageDispatcher();
-		bus.register(dispatcher);
+		bus.subscribe(IncomingMessageEvent.class, dispatcher);
 		
 		adapter = new PlayerAdapter(this);
 		
@@ -133,14 +152,19 @@ public class ClientSession extends WebSocketAdapter implements EventBusProvider
 	public void onWebSocketText(String input) {
 		super.onWebSocketText(input);
 		
-		ObjectMapper mapper = new ObjectMapper();
 		try {
 			JsonNode root = mapper.readTree(input);
 			
 			log.info("Message: " + root);
 			
-			// notify the listeners
-			bus.push(new IncomingMessageEvent(this, root));
+			// hand the message to the world thread; listeners are notified at
+			// the start of the next tick
+			boolean accepted = World.get().getInbox().offer(
+					bus, incoming, root);
+			if (!accepted) {
+				log.warn("Inbox full, dropping message from "
+						+ getSession().getRemoteAddress());
+			}
 		} catch (Exception ex) {
 			log.error("Error parsing client message", ex);
 		}
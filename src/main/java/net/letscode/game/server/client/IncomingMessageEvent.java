@@ -1,8 +1,10 @@
 package net.letscode.game.server.client;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import lombok.Data;
-import net.letscode.game.event.Event;
+import lombok.Getter;
+import lombok.ToString;
+import net.letscode.game.event.EventPool;
+import net.letscode.game.event.PooledEvent;
 import net.letscode.game.server.client.ClientSession;
 import net.letscode.game.server.message.MessageDispatcher;
 
@@ -12,19 +14,66 @@ import net.letscode.game.server.message.MessageDispatcher;
  * events will only trigger for "raw" message; that is, before any parsing has
  * occurred. Parsed messages will instead be distributed through the event bus
  * of {@link MessageDispatcher}.
+ * <p>Incoming message events are pooled: {@link ClientSession} has them
+ * created with {@link #obtain(ClientSession, JsonNode)} on the world thread,
+ * as the world inbox is drained, so handlers must not keep a reference to the
+ * event.</p>
+ * @see PooledEvent
  * @author timothyb89
  */
-@Data
-public class IncomingMessageEvent extends Event {
+@ToString
+public class IncomingMessageEvent extends PooledEvent {
+	
+	private static final EventPool<IncomingMessageEvent> POOL =
+			new EventPool<>(new EventPool.Factory<IncomingMessageEvent>() {
+		
+		@Override
+		public IncomingMessageEvent create() {
+			return new IncomingMessageEvent();
+		}
+		
+	}, 64);
 	
 	/**
 	 * The client from which the message originated.
 	 */
-	private final ClientSession client;
+	@Getter
+	private ClientSession client;
 	
 	/**
 	 * The message data from the client.
 	 */
-	private final JsonNode message;
+	@Getter
+	private JsonNode message;
+	
+	private IncomingMessageEvent() {
+		
+	}
+	
+	public IncomingMessageEvent(ClientSession client, JsonNode message) {
+		this.client = client;
+		this.message = message;
+	}
+	
+	/**
+	 * Gets a pooled event for the given message.
+	 * @param client the client the message came from
+	 * @param message the message data
+	 * @return a pooled incoming message event
+	 */
+	public static IncomingMessageEvent obtain(
+			ClientSession client, JsonNode message) {
+		IncomingMessageEvent event = POOL.acquire();
+		event.client = client;
+		event.message = message;
+		
+		return event;
+	}
+	
+	@Override
+	protected void reset() {
+		client = null;
+		message = null;
+	}
 	
 }
@@ -6,7 +6,8 @@ import lombok.extern.slf4j.Slf4j;
 import net.letscode.game.event.EventBus;
 import net.letscode.game.event.EventBusClient;
 import net.letscode.game.event.EventBusProvider;
-import net.letscode.game.event.EventHandler;
+import net.letscode.game.event.EventBusSchema;
+import net.letscode.game.event.EventConsumer;
 import net.letscode.game.server.client.ClientSession;
 import net.letscode.game.server.client.IncomingMessageEvent;
 import net.letscode.game.server.message.incoming.AbstractMessageEvent;
@@ -18,10 +19,18 @@ import net.letscode.game.server.message.incoming.RegistrationMessageEvent;
  * A {@code SessionListener} that handles the dispatching of all incoming
  * messages from a given client. Messages will be dispatched to registered
  * {@link MessageHandler}s via their {@code type} field
+ * <p>The dispatcher is subscribed directly to a session's
+ * {@link IncomingMessageEvent}s as an {@link EventConsumer}.</p>
  * @author timothyb89
  */
 @Slf4j
-public class MessageDispatcher implements EventBusProvider {
+public class MessageDispatcher
+		implements EventBusProvider, EventConsumer<IncomingMessageEvent> {
+	
+	private static final EventBusSchema SCHEMA = EventBusSchema.of(
+			ChatMessageEvent.class,
+			LoginMessageEvent.class,
+			RegistrationMessageEvent.class);
 
 	private EventBus bus;
 	
@@ -29,14 +38,14 @@ public class MessageDispatcher implements EventBusProvider {
 		// TODO: MessageHandlerFactory already scans these - it would be easy to
 		// make a list of Event classes and add them here automatically
 		
-		bus = new EventBus() {{
-			add(ChatMessageEvent.class);
-			add(LoginMessageEvent.class);
-			add(RegistrationMessageEvent.class);
-		}};
+		bus = new EventBus(SCHEMA);
+	}
+	
+	@Override
+	public void accept(IncomingMessageEvent event) {
+		onMessageReceived(event);
 	}
 	
-	@EventHandler
 	public void onMessageReceived(IncomingMessageEvent event) {
 		log.info("Attempting to dispatch new message: " + event);
 		
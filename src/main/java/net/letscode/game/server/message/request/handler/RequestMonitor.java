@@ -1,20 +1,22 @@
 package net.letscode.game.server.message.request.handler;
 
 import lombok.extern.slf4j.Slf4j;
-import net.letscode.game.event.EventHandler;
+import net.letscode.game.event.EventConsumer;
 import net.letscode.game.server.client.OutgoingMessageEvent;
 import net.letscode.game.server.message.request.Request;
 
 /**
  * Monitors outgoing messages for Request objects. If an outgoing Request
  * instance is found, it will be registered in the {@link RequestRegistry}.
+ * <p>The monitor is subscribed directly to a session's
+ * {@link OutgoingMessageEvent}s as an {@link EventConsumer}.</p>
  * @author timothyb89
  */
 @Slf4j
-public class RequestMonitor {
+public class RequestMonitor implements EventConsumer<OutgoingMessageEvent> {
 
-	@EventHandler
-	public void onMessageSent(OutgoingMessageEvent event) {
+	@Override
+	public void accept(OutgoingMessageEvent event) {
 		if (event.getMessage() instanceof Request) {
 			Request request = (Request) event.getMessage();
 			
@@ -0,0 +1,89 @@
+package net.letscode.game.api.zone.twod;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import net.letscode.game.api.entity.Entity;
+import net.letscode.game.misc.Boundry2D;
+import net.letscode.game.misc.Point2D;
+
+/**
+ * Tests finding entities by position with
+ * {@link Zone2D#getEntitiesWithin(Boundry2D, java.util.Collection)} and
+ * {@link Zone2D#getEntitiesNear(double, double, double, java.util.Collection)}.
+ */
+public class Zone2DTest extends TestCase {
+
+	private Zone2D zone;
+
+	@Override
+	protected void setUp() {
+		// 100x100 centered on the origin
+		zone = new Zone2D();
+	}
+
+	private Entity add(double x, double y) {
+		Entity entity = new Entity();
+		zone.addEntity(entity);
+		zone.move(entity, new Point2D(x, y));
+
+		return entity;
+	}
+
+	private static List<Entity> entities(List<EntityData2D> data) {
+		List<Entity> ret = new ArrayList<>();
+		for (EntityData2D d : data) {
+			ret.add(d.getEntity());
+		}
+
+		return ret;
+	}
+
+	public void testWithin() {
+		Entity a = add(10, 10);
+		Entity b = add(12, 8);
+		add(-30, 20);
+
+		List<Entity> found = entities(zone.getEntitiesWithin(
+				new Boundry2D(10, 10, 10, 10), new ArrayList<EntityData2D>()));
+
+		assertEquals(2, found.size());
+		assertTrue(found.contains(a));
+		assertTrue(found.contains(b));
+	}
+
+	public void testNear() {
+		Entity a = add(3, 4);
+		add(4, 4);
+		add(-40, -40);
+
+		List<Entity> found = entities(zone.getEntitiesNear(
+				0, 0, 5, new ArrayList<EntityData2D>()));
+
+		assertEquals(1, found.size());
+		assertSame(a, found.get(0));
+	}
+
+	public void testMovedEntitiesFoundAtNewPosition() {
+		Entity a = add(10, 10);
+		zone.move(a, new Point2D(-20, -20));
+
+		assertTrue(zone.getEntitiesNear(
+				10, 10, 5, new ArrayList<EntityData2D>()).isEmpty());
+		assertEquals(1, zone.getEntitiesNear(
+				-20, -20, 1, new ArrayList<EntityData2D>()).size());
+	}
+
+	public void testRemovedEntitiesNotFound() {
+		Entity a = add(10, 10);
+		Entity b = add(11, 11);
+		zone.removeEntity(a);
+
+		List<Entity> found = entities(zone.getEntitiesWithin(
+				new Boundry2D(10, 10, 10, 10), new ArrayList<EntityData2D>()));
+
+		assertEquals(1, found.size());
+		assertSame(b, found.get(0));
+	}
+
+}
@@ -0,0 +1,241 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import net.letscode.game.event.AsyncEventDispatcher.OverflowPolicy;
+
+/**
+ * Tests lane ordering, overflow policies and lane statistics of the
+ * {@link AsyncEventDispatcher}.
+ * <p>Most tests run lanes on a {@link ManualExecutor}, so the test decides
+ * when queued events are dispatched.</p>
+ */
+public class AsyncEventDispatcherTest extends TestCase {
+
+	public static class KeyedEvent extends Event {
+
+		private final int key;
+		private final int sequence;
+
+		public KeyedEvent(int key, int sequence) {
+			this.key = key;
+			this.sequence = sequence;
+		}
+
+	}
+
+	/**
+	 * Holds submitted lanes until {@link #runAll()} is called.
+	 */
+	private static class ManualExecutor implements Executor {
+
+		private final List<Runnable> pending = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable command) {
+			pending.add(command);
+		}
+
+		public void runAll() {
+			while (!pending.isEmpty()) {
+				pending.remove(0).run();
+			}
+		}
+
+	}
+
+	private EventBus bus;
+	private List<KeyedEvent> received;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(KeyedEvent.class);
+
+		received = Collections.synchronizedList(new ArrayList<KeyedEvent>());
+		bus.subscribe(KeyedEvent.class, new EventConsumer<KeyedEvent>() {
+
+			@Override
+			public void accept(KeyedEvent event) {
+				received.add(event);
+			}
+
+		});
+	}
+
+	public void testPerKeyOrder() throws InterruptedException {
+		AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(
+				4, 10000, OverflowPolicy.BLOCK);
+		bus.setAsyncDispatcher(dispatcher);
+
+		final CountDownLatch done = new CountDownLatch(1);
+		bus.subscribe(KeyedEvent.class, new EventConsumer<KeyedEvent>() {
+
+			@Override
+			public void accept(KeyedEvent event) {
+				if (event.key < 0) {
+					done.countDown();
+				}
+			}
+
+		});
+
+		for (int i = 0; i < 5000; i++) {
+			bus.pushAsync(new KeyedEvent(i % 7, i), i % 7);
+		}
+
+		// the marker only arrives once everything on its lane has, so wait
+		// for the other lanes too
+		bus.pushAsync(new KeyedEvent(-1, 0), null);
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		dispatcher.shutdown();
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while (dispatcher.getCompleted() < 5001
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertEquals(5001, dispatcher.getCompleted());
+		assertEquals(0, dispatcher.getQueueDepth());
+
+		Map<Integer, Integer> last = new HashMap<>();
+		synchronized (received) {
+			for (KeyedEvent e : received) {
+				Integer previous = last.put(e.key, e.sequence);
+				if (previous != null) {
+					assertTrue("out of order for key " + e.key,
+							previous < e.sequence);
+				}
+			}
+		}
+	}
+
+	public void testDiscard() {
+		ManualExecutor executor = new ManualExecutor();
+		AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(
+				executor, 1, 2, OverflowPolicy.DISCARD);
+
+		assertTrue(dispatcher.dispatch(bus, new KeyedEvent(0, 0), null));
+		assertTrue(dispatcher.dispatch(bus, new KeyedEvent(0, 1), null));
+		assertFalse(dispatcher.dispatch(bus, new KeyedEvent(0, 2), null));
+
+		assertEquals(2, dispatcher.getQueueDepth());
+		assertEquals(1, dispatcher.getDiscarded());
+		assertTrue(received.isEmpty());
+
+		executor.runAll();
+
+		assertEquals(2, received.size());
+		assertEquals(0, dispatcher.getQueueDepth());
+		assertEquals(2, dispatcher.getCompleted());
+	}
+
+	public void testCallerRuns() {
+		ManualExecutor executor = new ManualExecutor();
+		AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(
+				executor, 1, 1, OverflowPolicy.CALLER_RUNS);
+
+		KeyedEvent queued = new KeyedEvent(0, 0);
+		KeyedEvent overflow = new KeyedEvent(0, 1);
+		dispatcher.dispatch(bus, queued, null);
+		dispatcher.dispatch(bus, overflow, null);
+
+		// the overflowing event overtakes the one still in its lane
+		assertEquals(Collections.singletonList(overflow), received);
+		assertEquals(1, dispatcher.getCallerRuns());
+
+		executor.runAll();
+		assertEquals(2, received.size());
+		assertSame(queued, received.get(1));
+	}
+
+	public void testBlockFromLaneRunsOnCaller() {
+		ManualExecutor executor = new ManualExecutor();
+		final AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(
+				executor, 1, 1, OverflowPolicy.BLOCK);
+
+		bus.subscribe(KeyedEvent.class, new EventConsumer<KeyedEvent>() {
+
+			@Override
+			public void accept(KeyedEvent event) {
+				if (event.key == 0) {
+					// the first takes the permit the lane just gave back,
+					// the second would wait on this very lane forever
+					dispatcher.dispatch(bus, new KeyedEvent(1, 0), null);
+					dispatcher.dispatch(bus, new KeyedEvent(1, 1), null);
+				}
+			}
+
+		});
+
+		dispatcher.dispatch(bus, new KeyedEvent(0, 0), null);
+		executor.runAll();
+
+		assertEquals(1, dispatcher.getCallerRuns());
+		assertEquals(3, received.size());
+
+		// the second ran straight away, ahead of the first
+		assertEquals(1, received.get(1).sequence);
+		assertEquals(0, received.get(2).sequence);
+		assertEquals(0, dispatcher.getQueueDepth());
+	}
+
+	public void testShutdownRunsOnCaller() {
+		ManualExecutor executor = new ManualExecutor();
+		AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(
+				executor, 1, 1, OverflowPolicy.BLOCK);
+
+		dispatcher.shutdown();
+		dispatcher.dispatch(bus, new KeyedEvent(0, 0), null);
+
+		assertEquals(1, received.size());
+		assertEquals(1, dispatcher.getCallerRuns());
+		assertEquals(0, dispatcher.getSubmitted());
+	}
+
+	public void testLaneLatency() throws InterruptedException {
+		ManualExecutor executor = new ManualExecutor();
+		AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(
+				executor, 2, 10, OverflowPolicy.BLOCK);
+
+		// find a key for each lane, by watching where events go
+		Object[] keys = new Object[2];
+		for (int i = 0; keys[0] == null || keys[1] == null; i++) {
+			Object key = i;
+			dispatcher.dispatch(bus, new KeyedEvent(i, 0), key);
+
+			int lane = dispatcher.getLaneDepth(0) > 0 ? 0 : 1;
+			keys[lane] = (keys[lane] == null) ? key : keys[lane];
+			executor.runAll();
+		}
+
+		long completed0 = dispatcher.getLaneCompleted(0);
+		long completed1 = dispatcher.getLaneCompleted(1);
+
+		dispatcher.dispatch(bus, new KeyedEvent(0, 0), keys[0]);
+		Thread.sleep(20);
+		executor.runAll();
+
+		assertEquals(completed0 + 1, dispatcher.getLaneCompleted(0));
+		assertEquals(completed1, dispatcher.getLaneCompleted(1));
+
+		long slow = TimeUnit.MILLISECONDS.toNanos(20);
+		assertTrue(dispatcher.getLaneMaxLatency(0) >= slow);
+		assertTrue(dispatcher.getLaneMaxLatency(1) < slow);
+		assertEquals(dispatcher.getLaneMaxLatency(0),
+				dispatcher.getMaxLatency());
+
+		assertEquals(completed0 + completed1 + 1, dispatcher.getCompleted());
+		assertTrue(dispatcher.getLaneAverageLatency(0)
+				> dispatcher.getLaneAverageLatency(1));
+	}
+
+}
@@ -0,0 +1,265 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link EventBus#pushAll(java.util.Collection)} and handlers declared
+ * with {@code @EventHandler(batch = true)}.
+ */
+public class BatchDispatchTest extends TestCase {
+
+	public static class ZoneEvent extends ContextualEvent<String> {
+
+		private final int sequence;
+
+		public ZoneEvent(String zone, int sequence) {
+			super(zone);
+			this.sequence = sequence;
+		}
+
+	}
+
+	public static class OtherEvent extends Event {
+	}
+
+	public static class BatchListener {
+
+		private final List<List<ZoneEvent>> batches = new ArrayList<>();
+
+		@EventHandler(batch = true)
+		public void onEvents(List<ZoneEvent> events) {
+			batches.add(new ArrayList<>(events));
+		}
+
+	}
+
+	public static class VetoingBatchListener {
+
+		@EventHandler(batch = true, priority = 10)
+		public void onEvents(List<ZoneEvent> events) {
+			throw new EventVetoException();
+		}
+
+	}
+
+	public static class BackgroundBatchListener {
+
+		private final List<List<ZoneEvent>> batches = new ArrayList<>();
+
+		@EventHandler(batch = true,
+				execution = ExecutionContext.BACKGROUND)
+		public void onEvents(List<ZoneEvent> events) {
+			batches.add(new ArrayList<>(events));
+		}
+
+	}
+
+	private EventBus bus;
+	private List<String> log;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(ZoneEvent.class);
+		bus.add(OtherEvent.class);
+
+		log = new ArrayList<>();
+	}
+
+	@Override
+	protected void tearDown() {
+		EventExecutors.setBackground(null);
+	}
+
+	private void subscribeLogger(final String name, int priority) {
+		bus.subscribe(ZoneEvent.class, new EventConsumer<ZoneEvent>() {
+
+			@Override
+			public void accept(ZoneEvent event) {
+				log.add(name + event.sequence);
+			}
+
+		}, priority, true);
+	}
+
+	private static List<ZoneEvent> events(String zone, int count) {
+		List<ZoneEvent> events = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			events.add(new ZoneEvent(zone, i));
+		}
+
+		return events;
+	}
+
+	public void testOrdinaryHandlersPerEvent() {
+		subscribeLogger("a", 1);
+		subscribeLogger("b", 0);
+
+		bus.pushAll(events("zone", 3));
+
+		assertEquals(Arrays.asList("a0", "b0", "a1", "b1", "a2", "b2"), log);
+	}
+
+	public void testBatchHandlerCalledOnce() {
+		BatchListener listener = new BatchListener();
+		bus.register(listener);
+
+		List<ZoneEvent> events = events("zone", 5);
+		bus.pushAll(events);
+
+		assertEquals(1, listener.batches.size());
+		assertEquals(events, listener.batches.get(0));
+
+		// a single push is a list of one
+		bus.push(new ZoneEvent("zone", 5));
+		assertEquals(2, listener.batches.size());
+		assertEquals(1, listener.batches.get(1).size());
+	}
+
+	public void testGroupedByType() {
+		BatchListener listener = new BatchListener();
+		bus.register(listener);
+
+		List<Event> events = new ArrayList<>();
+		events.add(new ZoneEvent("zone", 0));
+		events.add(new OtherEvent());
+		events.add(new ZoneEvent("zone", 1));
+		bus.pushAll(events);
+
+		assertEquals(1, listener.batches.size());
+		assertEquals(2, listener.batches.get(0).size());
+	}
+
+	public void testVetoedEventsLeftOut() {
+		bus.subscribe(ZoneEvent.class, new EventConsumer<ZoneEvent>() {
+
+			@Override
+			public void accept(ZoneEvent event) {
+				if (event.sequence % 2 == 1) {
+					throw new EventVetoException();
+				}
+			}
+
+		}, 10, true);
+
+		BatchListener listener = new BatchListener();
+		bus.register(listener);
+
+		bus.pushAll(events("zone", 4));
+
+		assertEquals(1, listener.batches.size());
+		List<ZoneEvent> batch = listener.batches.get(0);
+		assertEquals(2, batch.size());
+		assertEquals(0, batch.get(0).sequence);
+		assertEquals(2, batch.get(1).sequence);
+	}
+
+	public void testBatchHandlerCannotVeto() {
+		bus.register(new VetoingBatchListener());
+
+		BatchListener listener = new BatchListener();
+		bus.register(listener);
+
+		bus.pushAll(events("zone", 3));
+		assertEquals(3, listener.batches.get(0).size());
+
+		bus.push(new ZoneEvent("zone", 3));
+		assertEquals(2, listener.batches.size());
+	}
+
+	public void testKeyedBatchHandlers() {
+		BatchListener a = new BatchListener();
+		BatchListener b = new BatchListener();
+		BatchListener all = new BatchListener();
+		bus.register(a, "a");
+		bus.register(b, "b");
+		bus.register(all);
+		subscribeLogger("x", 0);
+
+		List<ZoneEvent> events = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			events.add(new ZoneEvent(i % 2 == 0 ? "a" : "b", i));
+		}
+		events.add(new ZoneEvent("c", 6));
+
+		bus.pushAll(events);
+
+		assertEquals(1, a.batches.size());
+		assertEquals(3, a.batches.get(0).size());
+		for (ZoneEvent e : a.batches.get(0)) {
+			assertEquals("a", e.getContext());
+		}
+
+		assertEquals(1, b.batches.size());
+		assertEquals(3, b.batches.get(0).size());
+		assertEquals(1, b.batches.get(0).get(0).sequence);
+
+		assertEquals(7, all.batches.get(0).size());
+		assertEquals(7, log.size());
+	}
+
+	public void testKeyedBatchHandlersInPriorityOrder() {
+		final List<String> order = new ArrayList<>();
+
+		bus.register(new Object() {
+
+			@EventHandler(batch = true, priority = 5)
+			public void onEvents(List<ZoneEvent> events) {
+				order.add("keyed");
+			}
+
+		}, "a");
+		bus.register(new Object() {
+
+			@EventHandler(batch = true, priority = 10)
+			public void onEvents(List<ZoneEvent> events) {
+				order.add("high");
+			}
+
+		});
+		bus.register(new Object() {
+
+			@EventHandler(batch = true, priority = 5)
+			public void onEvents(List<ZoneEvent> events) {
+				order.add("unkeyed");
+			}
+
+		});
+
+		bus.pushAll(events("a", 2));
+
+		assertEquals(Arrays.asList("high", "unkeyed", "keyed"), order);
+	}
+
+	public void testHandedOffOneAtATime() {
+		final List<Runnable> pending = new ArrayList<>();
+		EventExecutors.setBackground(new Executor() {
+
+			@Override
+			public void execute(Runnable command) {
+				pending.add(command);
+			}
+
+		});
+
+		BackgroundBatchListener listener = new BackgroundBatchListener();
+		bus.register(listener);
+
+		bus.pushAll(events("zone", 3));
+		assertTrue(listener.batches.isEmpty());
+		assertEquals(3, pending.size());
+
+		for (Runnable r : pending) {
+			r.run();
+		}
+
+		assertEquals(3, listener.batches.size());
+		assertEquals(1, listener.batches.get(2).size());
+		assertEquals(2, listener.batches.get(2).get(0).sequence);
+	}
+
+}
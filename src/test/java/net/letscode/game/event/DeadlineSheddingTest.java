@@ -0,0 +1,183 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests shedding of low priority handlers from {@link DeadlineEvent}s that
+ * have overrun their deadline.
+ */
+public class DeadlineSheddingTest extends TestCase {
+
+	public static class TickEvent extends Event implements DeadlineEvent {
+
+		private final long deadline;
+
+		public TickEvent(long deadline) {
+			this.deadline = deadline;
+		}
+
+		@Override
+		public long getDeadline() {
+			return deadline;
+		}
+
+	}
+
+	public static class PlainEvent extends Event {
+	}
+
+	public static class BatchListener {
+
+		private final List<List<TickEvent>> batches = new ArrayList<>();
+
+		@EventHandler(batch = true, priority = EventPriority.LOW)
+		public void onEvents(List<TickEvent> events) {
+			batches.add(new ArrayList<>(events));
+		}
+
+	}
+
+	private EventBus bus;
+	private int high;
+	private int low;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(TickEvent.class);
+		bus.add(PlainEvent.class);
+		bus.setShedPriority(EventPriority.NORMAL);
+
+		bus.subscribe(TickEvent.class, new EventConsumer<TickEvent>() {
+
+			@Override
+			public void accept(TickEvent event) {
+				high++;
+			}
+
+		}, EventPriority.HIGH, true);
+
+		bus.subscribe(TickEvent.class, new EventConsumer<TickEvent>() {
+
+			@Override
+			public void accept(TickEvent event) {
+				low++;
+			}
+
+		}, EventPriority.LOW, true);
+	}
+
+	private static TickEvent overdue() {
+		return new TickEvent(System.currentTimeMillis() - 1000);
+	}
+
+	private static TickEvent onTime() {
+		return new TickEvent(System.currentTimeMillis() + 60000);
+	}
+
+	public void testNothingShedOnTime() {
+		bus.push(onTime());
+
+		assertEquals(1, high);
+		assertEquals(1, low);
+		assertEquals(0, bus.getShedCount());
+	}
+
+	public void testOverdueShedsLowPriority() {
+		bus.push(overdue());
+
+		assertEquals(1, high);
+		assertEquals(0, low);
+		assertEquals(1, bus.getShedCount());
+	}
+
+	public void testNeverShedTwiceInARow() {
+		bus.push(overdue());
+		assertEquals(0, low);
+
+		// owed this push, so it is notified even though it's overdue
+		bus.push(overdue());
+		assertEquals(1, low);
+
+		bus.push(overdue());
+		assertEquals(1, low);
+
+		assertEquals(3, high);
+		assertEquals(2, bus.getShedCount());
+	}
+
+	public void testDebtPaidOnTime() {
+		bus.push(overdue());
+		bus.push(onTime());
+		assertEquals(1, low);
+
+		// the debt was paid by the push on time
+		bus.push(overdue());
+		assertEquals(1, low);
+	}
+
+	public void testNoShedding() {
+		bus.setShedPriority(EventPriority.NO_SHEDDING);
+
+		bus.push(overdue());
+		bus.push(overdue());
+
+		assertEquals(2, low);
+		assertEquals(0, bus.getShedCount());
+	}
+
+	public void testOnlyDeadlineEvents() {
+		final int[] plain = new int[1];
+		bus.subscribe(PlainEvent.class, new EventConsumer<PlainEvent>() {
+
+			@Override
+			public void accept(PlainEvent event) {
+				plain[0]++;
+			}
+
+		}, EventPriority.LOWEST, true);
+
+		bus.push(new PlainEvent());
+		assertEquals(1, plain[0]);
+		assertEquals(0, bus.getShedCount());
+	}
+
+	public void testPushAllSheds() {
+		BatchListener listener = new BatchListener();
+		bus.register(listener);
+
+		List<TickEvent> events = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			events.add(overdue());
+		}
+
+		bus.pushAll(events);
+
+		// every other event reaches each low priority handler
+		assertEquals(4, high);
+		assertEquals(2, low);
+		assertEquals(2, listener.batches.get(0).size());
+		assertSame(events.get(1), listener.batches.get(0).get(0));
+		assertSame(events.get(3), listener.batches.get(0).get(1));
+
+		QueueStats stats = bus.getQueueForClass(TickEvent.class).getStats();
+		assertEquals(4, stats.getShed());
+		assertEquals(2, stats.getSheddingPushes());
+	}
+
+	public void testDebtPaidOnce() {
+		EventQueueEntry entry =
+				bus.getQueueForClass(TickEvent.class).getEntries().get(1);
+
+		assertFalse(entry.payOwed());
+
+		entry.markOwed();
+		assertTrue(entry.isOwed());
+		assertTrue(entry.payOwed());
+		assertFalse(entry.payOwed());
+		assertFalse(entry.isOwed());
+	}
+
+}
@@ -0,0 +1,138 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link EventBus#pushDeferred(Event)}: ordering, coalescing and events
+ * deferred during a flush.
+ */
+public class DeferredEventQueueTest extends TestCase {
+
+	public static class PlainEvent extends Event {
+
+		private final int value;
+
+		public PlainEvent(int value) {
+			this.value = value;
+		}
+
+	}
+
+	public static class MoveEvent extends Event implements CoalescingEvent {
+
+		private final String entity;
+		private final int position;
+
+		public MoveEvent(String entity, int position) {
+			this.entity = entity;
+			this.position = position;
+		}
+
+		@Override
+		public Object getCoalescingKey() {
+			return entity;
+		}
+
+	}
+
+	private EventBus bus;
+	private List<Event> received;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(PlainEvent.class);
+		bus.add(MoveEvent.class);
+
+		received = new ArrayList<>();
+		EventConsumer<Event> recorder = new EventConsumer<Event>() {
+
+			@Override
+			public void accept(Event event) {
+				received.add(event);
+			}
+
+		};
+
+		bus.subscribe(PlainEvent.class, recorder);
+		bus.subscribe(MoveEvent.class, recorder);
+	}
+
+	public void testNothingUntilFlushed() {
+		bus.pushDeferred(new PlainEvent(1));
+		assertTrue(received.isEmpty());
+
+		assertEquals(1, bus.flushDeferred());
+		assertEquals(1, received.size());
+		assertEquals(0, bus.flushDeferred());
+	}
+
+	public void testSameTypeInOrder() {
+		for (int i = 0; i < 5; i++) {
+			bus.pushDeferred(new PlainEvent(i));
+		}
+
+		assertEquals(5, bus.flushDeferred());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(i, ((PlainEvent) received.get(i)).value);
+		}
+	}
+
+	public void testCoalesceKeepsFirstPositionAndLastContents() {
+		MoveEvent a1 = new MoveEvent("a", 1);
+		MoveEvent b1 = new MoveEvent("b", 1);
+		MoveEvent a2 = new MoveEvent("a", 2);
+		MoveEvent a3 = new MoveEvent("a", 3);
+		MoveEvent c1 = new MoveEvent("c", 1);
+
+		bus.pushDeferred(a1);
+		bus.pushDeferred(b1);
+		bus.pushDeferred(a2);
+		bus.pushDeferred(c1);
+		bus.pushDeferred(a3);
+
+		assertEquals(3, bus.flushDeferred());
+		assertEquals(3, received.size());
+		assertSame(a3, received.get(0));
+		assertSame(b1, received.get(1));
+		assertSame(c1, received.get(2));
+	}
+
+	public void testCoalescingResetsAfterFlush() {
+		bus.pushDeferred(new MoveEvent("a", 1));
+		bus.flushDeferred();
+
+		bus.pushDeferred(new MoveEvent("a", 2));
+		bus.pushDeferred(new PlainEvent(0));
+		bus.pushDeferred(new MoveEvent("a", 3));
+		assertEquals(2, bus.flushDeferred());
+
+		assertEquals(3, received.size());
+		assertEquals(3, ((MoveEvent) received.get(1)).position);
+	}
+
+	public void testDeferredDuringFlushWaitsForNextFlush() {
+		bus.subscribe(PlainEvent.class, new EventConsumer<PlainEvent>() {
+
+			@Override
+			public void accept(PlainEvent event) {
+				if (event.value < 3) {
+					bus.pushDeferred(new PlainEvent(event.value + 1));
+				}
+			}
+
+		});
+
+		bus.pushDeferred(new PlainEvent(0));
+
+		for (int i = 1; i <= 4; i++) {
+			assertEquals(1, bus.flushDeferred());
+			assertEquals(i, received.size());
+		}
+
+		assertEquals(0, bus.flushDeferred());
+	}
+
+}
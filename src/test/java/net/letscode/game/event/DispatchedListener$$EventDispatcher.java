@@ -0,0 +1,51 @@
+package net.letscode.game.event;
+
+import java.lang.reflect.InvocationTargetException;
+import net.letscode.game.event.DispatchedListener.PingEvent;
+
+/**
+ * The dispatcher the annotation processor would generate for
+ * {@link DispatchedListener}, written out by hand.
+ */
+public final class DispatchedListener$$EventDispatcher
+		implements EventDispatcher {
+
+	@Override
+	public Handler[] getHandlers() {
+		return new Handler[] {
+			new Handler("onPing", PingEvent.class, PingEvent.class,
+					5, true, EventFilter.None.class,
+					ExecutionContext.CALLER) {
+
+				@Override
+				public void invoke(Object listener, Event event)
+						throws Throwable {
+					try {
+						((DispatchedListener) listener).onPing(
+								(PingEvent) event);
+					} catch (Throwable ex) {
+						throw new InvocationTargetException(ex);
+					}
+				}
+
+			},
+			new Handler("onVeto", PingEvent.class, PingEvent.class,
+					0, true, EventFilter.None.class,
+					ExecutionContext.CALLER) {
+
+				@Override
+				public void invoke(Object listener, Event event)
+						throws Throwable {
+					try {
+						((DispatchedListener) listener).onVeto(
+								(PingEvent) event);
+					} catch (Throwable ex) {
+						throw new InvocationTargetException(ex);
+					}
+				}
+
+			},
+		};
+	}
+
+}
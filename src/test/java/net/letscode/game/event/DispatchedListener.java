@@ -0,0 +1,25 @@
+package net.letscode.game.event;
+
+/**
+ * A listener with a hand-written {@link EventDispatcher}, standing in for one
+ * generated by the annotation processor, which doesn't run over the tests.
+ * @see GeneratedDispatcherTest
+ */
+public class DispatchedListener {
+
+	public static class PingEvent extends Event {
+	}
+
+	int pings;
+
+	@EventHandler(priority = 5)
+	public void onPing(PingEvent event) {
+		pings++;
+	}
+
+	@EventHandler
+	public void onVeto(PingEvent event) {
+		throw new EventVetoException();
+	}
+
+}
@@ -0,0 +1,158 @@
+package net.letscode.game.event;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link EventBusSchema} interning and the lazily created queues of an
+ * {@link EventBus}.
+ */
+public class EventBusSchemaTest extends TestCase {
+
+	public static class BaseEvent extends Event {
+	}
+
+	public static class SubEvent extends BaseEvent {
+	}
+
+	public static class OtherEvent extends Event {
+	}
+
+	public static class ZoneEvent extends ContextualEvent<String> {
+
+		public ZoneEvent(String zone) {
+			super(zone);
+		}
+
+	}
+
+	public static class Listener {
+
+		private int events;
+
+		@EventHandler
+		public void onEvent(BaseEvent event) {
+			events++;
+		}
+
+	}
+
+	public void testInterned() {
+		EventBusSchema a = EventBusSchema.of(BaseEvent.class, SubEvent.class);
+		EventBusSchema b = EventBusSchema.EMPTY
+				.with(BaseEvent.class)
+				.with(SubEvent.class);
+
+		assertSame(a, b);
+		assertSame(a, a.with(SubEvent.class));
+		assertNotSame(a, EventBusSchema.of(SubEvent.class, BaseEvent.class));
+	}
+
+	public void testBusesShareSchema() {
+		EventBus first = new EventBus();
+		first.add(BaseEvent.class);
+		first.add(OtherEvent.class);
+
+		EventBus second = new EventBus() {{
+			add(BaseEvent.class);
+			add(OtherEvent.class);
+		}};
+
+		assertSame(first.getSchema(), second.getSchema());
+		assertSame(EventBusSchema.of(BaseEvent.class, OtherEvent.class),
+				first.getSchema());
+	}
+
+	public void testSlots() {
+		EventBusSchema schema = EventBusSchema.of(
+				BaseEvent.class, OtherEvent.class, ZoneEvent.class);
+
+		assertEquals(3, schema.size());
+		assertEquals(Arrays.asList(
+				BaseEvent.class, OtherEvent.class, ZoneEvent.class),
+				schema.getTypes());
+		assertEquals(1, schema.slotOf(OtherEvent.class));
+		assertSame(ZoneEvent.class, schema.getType(2));
+		assertEquals(-1, schema.slotOf(SubEvent.class));
+
+		assertFalse(schema.isContextual(0));
+		assertTrue(schema.isContextual(2));
+	}
+
+	public void testWithout() {
+		EventBusSchema schema = EventBusSchema.of(
+				BaseEvent.class, OtherEvent.class, SubEvent.class);
+		EventBusSchema removed = schema.without(OtherEvent.class);
+
+		assertSame(EventBusSchema.of(BaseEvent.class, SubEvent.class),
+				removed);
+		assertEquals(1, removed.slotOf(SubEvent.class));
+		assertSame(removed, removed.without(OtherEvent.class));
+	}
+
+	public void testCompatibleSlots() {
+		EventBusSchema schema = EventBusSchema.of(
+				BaseEvent.class, OtherEvent.class, SubEvent.class);
+
+		assertTrue(Arrays.equals(new int[] { 0, 2 },
+				schema.getCompatibleSlots(BaseEvent.class)));
+		assertTrue(Arrays.equals(new int[] { 2 },
+				schema.getCompatibleSlots(SubEvent.class)));
+		assertTrue(Arrays.equals(new int[] { 0, 1, 2 },
+				schema.getCompatibleSlots(Event.class)));
+		assertEquals(0, schema.getCompatibleSlots(ZoneEvent.class).length);
+	}
+
+	public void testQueuesCreatedByListeners() {
+		EventBus bus = new EventBus(EventBusSchema.of(
+				BaseEvent.class, SubEvent.class, OtherEvent.class));
+
+		assertNull(bus.findQueueForClass(BaseEvent.class));
+
+		Listener listener = new Listener();
+		bus.register(listener);
+
+		assertNotNull(bus.findQueueForClass(BaseEvent.class));
+		assertNotNull(bus.findQueueForClass(SubEvent.class));
+		assertNull(bus.findQueueForClass(OtherEvent.class));
+
+		// nothing is created for events nobody listens to
+		bus.push(new OtherEvent());
+		assertNull(bus.findQueueForClass(OtherEvent.class));
+
+		bus.push(new SubEvent());
+		assertEquals(1, listener.events);
+	}
+
+	public void testGetQueueCreates() {
+		EventBus bus = new EventBus(EventBusSchema.of(OtherEvent.class));
+
+		EventQueueDefinition queue = bus.getQueueForClass(OtherEvent.class);
+		assertNotNull(queue);
+		assertSame(queue, bus.findQueueForClass(OtherEvent.class));
+		assertSame(queue, bus.getQueueForClass(OtherEvent.class));
+		assertEquals(0, queue.size());
+	}
+
+	public void testUndefinedType() {
+		EventBus bus = new EventBus(EventBusSchema.of(OtherEvent.class));
+
+		assertNull(bus.getQueueForClass(BaseEvent.class));
+		assertNull(bus.findQueueForClass(BaseEvent.class));
+	}
+
+	public void testRemove() {
+		EventBus bus = new EventBus(
+				EventBusSchema.of(BaseEvent.class, OtherEvent.class));
+		Listener listener = new Listener();
+		bus.register(listener);
+
+		bus.remove(BaseEvent.class);
+		assertSame(EventBusSchema.of(OtherEvent.class), bus.getSchema());
+		assertNull(bus.getQueueForClass(BaseEvent.class));
+
+		bus.push(new BaseEvent());
+		assertEquals(0, listener.events);
+	}
+
+}
@@ -0,0 +1,117 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests that {@link EventBus#push(Event)} notifies the queue for the event's
+ * exact type, and through it the handlers for each of its superclasses.
+ */
+public class EventBusTest extends TestCase {
+
+	public static class BaseEvent extends Event {
+	}
+
+	public static class SubEvent extends BaseEvent {
+	}
+
+	public static class OtherEvent extends Event {
+	}
+
+	public static class Listener {
+
+		private final List<String> calls = new ArrayList<>();
+
+		@EventHandler
+		public void onBase(BaseEvent event) {
+			calls.add("base");
+		}
+
+		@EventHandler
+		public void onSub(SubEvent event) {
+			calls.add("sub");
+		}
+
+		@EventHandler
+		public void onAny(Event event) {
+			calls.add("any");
+		}
+
+	}
+
+	private EventBus bus;
+	private Listener listener;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(Event.class);
+		bus.add(BaseEvent.class);
+		bus.add(SubEvent.class);
+
+		listener = new Listener();
+		bus.register(listener);
+	}
+
+	private List<String> push(Event event) {
+		listener.calls.clear();
+		bus.push(event);
+
+		return new ArrayList<>(listener.calls);
+	}
+
+	public void testExactTypeOnly() {
+		List<String> calls = push(new BaseEvent());
+
+		assertEquals(2, calls.size());
+		assertTrue(calls.contains("base"));
+		assertTrue(calls.contains("any"));
+	}
+
+	public void testSuperclassHandlersNotifiedOnce() {
+		List<String> calls = push(new SubEvent());
+
+		assertEquals(3, calls.size());
+		assertTrue(calls.contains("base"));
+		assertTrue(calls.contains("sub"));
+		assertTrue(calls.contains("any"));
+	}
+
+	public void testUndefinedTypeIgnored() {
+		// OtherEvent has no queue of its own, so even the Event handler
+		// isn't notified
+		assertTrue(push(new OtherEvent()).isEmpty());
+	}
+
+	public void testAddTwice() {
+		bus.add(BaseEvent.class);
+
+		assertEquals(3, bus.getSchema().size());
+		assertEquals(2, push(new BaseEvent()).size());
+	}
+
+	public void testRemoveType() {
+		bus.remove(SubEvent.class);
+
+		assertTrue(push(new SubEvent()).isEmpty());
+		assertEquals(2, push(new BaseEvent()).size());
+	}
+
+	public void testTypeAddedAfterRegistration() {
+		bus.add(OtherEvent.class);
+
+		// the listener was registered before the type was defined
+		assertTrue(push(new OtherEvent()).isEmpty());
+
+		bus.register(listener);
+		assertEquals(1, push(new OtherEvent()).size());
+	}
+
+	public void testDeregister() {
+		bus.deregister(listener);
+
+		assertTrue(push(new SubEvent()).isEmpty());
+	}
+
+}
@@ -0,0 +1,164 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link EventConsumer} subscriptions made with
+ * {@link EventBus#subscribe(Class, EventConsumer, int, boolean)}.
+ */
+public class EventConsumerTest extends TestCase {
+
+	public static class TestEvent extends Event {
+	}
+
+	public static class SubEvent extends TestEvent {
+	}
+
+	public static class Listener {
+
+		private final List<String> log;
+
+		public Listener(List<String> log) {
+			this.log = log;
+		}
+
+		@EventHandler(priority = 5)
+		public void onEvent(TestEvent event) {
+			log.add("annotated");
+		}
+
+	}
+
+	/**
+	 * Logs its name for every event it receives.
+	 */
+	private static class LoggingConsumer implements EventConsumer<TestEvent> {
+
+		private final String name;
+		private final List<String> log;
+
+		public LoggingConsumer(String name, List<String> log) {
+			this.name = name;
+			this.log = log;
+		}
+
+		@Override
+		public void accept(TestEvent event) {
+			log.add(name);
+		}
+
+	}
+
+	private EventBus bus;
+	private List<String> log;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(TestEvent.class);
+		bus.add(SubEvent.class);
+
+		log = new ArrayList<>();
+	}
+
+	public void testSubscribe() {
+		EventRegistration registration = bus.subscribe(
+				TestEvent.class, new LoggingConsumer("a", log));
+
+		assertTrue(registration.isActive());
+		assertEquals(2, registration.getEntries().size());
+
+		bus.push(new TestEvent());
+		bus.push(new SubEvent());
+		assertEquals(Arrays.asList("a", "a"), log);
+	}
+
+	public void testSubclassOnly() {
+		bus.subscribe(SubEvent.class, new EventConsumer<SubEvent>() {
+
+			@Override
+			public void accept(SubEvent event) {
+				log.add("sub");
+			}
+
+		});
+
+		bus.push(new TestEvent());
+		assertTrue(log.isEmpty());
+
+		bus.push(new SubEvent());
+		assertEquals(1, log.size());
+	}
+
+	public void testOrderedWithAnnotatedHandlers() {
+		bus.subscribe(TestEvent.class,
+				new LoggingConsumer("low", log), EventPriority.LOW, true);
+		bus.register(new Listener(log));
+		bus.subscribe(TestEvent.class,
+				new LoggingConsumer("high", log), EventPriority.HIGH, true);
+
+		bus.push(new TestEvent());
+
+		assertEquals(Arrays.asList("high", "annotated", "low"), log);
+	}
+
+	public void testVeto() {
+		bus.subscribe(TestEvent.class, new EventConsumer<TestEvent>() {
+
+			@Override
+			public void accept(TestEvent event) {
+				throw new EventVetoException();
+			}
+
+		}, EventPriority.HIGH, true);
+		bus.subscribe(TestEvent.class,
+				new LoggingConsumer("vetoed", log), EventPriority.NORMAL, true);
+		bus.subscribe(TestEvent.class,
+				new LoggingConsumer("always", log), EventPriority.LOW, false);
+
+		bus.push(new TestEvent());
+
+		assertEquals(Arrays.asList("always"), log);
+	}
+
+	public void testCancel() {
+		EventRegistration registration = bus.subscribe(
+				TestEvent.class, new LoggingConsumer("a", log));
+		bus.subscribe(TestEvent.class, new LoggingConsumer("b", log));
+
+		registration.cancel();
+		assertFalse(registration.isActive());
+
+		bus.push(new SubEvent());
+		assertEquals(Arrays.asList("b"), log);
+	}
+
+	public void testDeregister() {
+		LoggingConsumer consumer = new LoggingConsumer("a", log);
+		EventRegistration first = bus.subscribe(TestEvent.class, consumer);
+		EventRegistration second = bus.subscribe(SubEvent.class, consumer);
+
+		bus.deregister(consumer);
+		assertFalse(first.isActive());
+		assertFalse(second.isActive());
+
+		bus.push(new SubEvent());
+		assertTrue(log.isEmpty());
+	}
+
+	public void testSharedInvoker() {
+		EventRegistration a = bus.subscribe(
+				TestEvent.class, new LoggingConsumer("a", log));
+		EventRegistration b = bus.subscribe(
+				SubEvent.class, new LoggingConsumer("b", log));
+
+		assertSame(ConsumerInvoker.INSTANCE,
+				a.getEntries().get(0).getInvoker());
+		assertSame(ConsumerInvoker.INSTANCE,
+				b.getEntries().get(0).getInvoker());
+	}
+
+}
@@ -0,0 +1,208 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import junit.framework.TestCase;
+
+/**
+ * Tests how {@link EventExecutors} hands handlers off to their
+ * {@link ExecutionContext}, and what happens when it can't.
+ */
+public class EventExecutorsTest extends TestCase {
+
+	public static class TestEvent extends Event {
+	}
+
+	public static class WorldListener {
+
+		private final List<Thread> threads = new ArrayList<>();
+
+		@EventHandler(execution = ExecutionContext.WORLD)
+		public void onEvent(TestEvent event) {
+			threads.add(Thread.currentThread());
+		}
+
+	}
+
+	public static class BackgroundListener {
+
+		private int events;
+
+		@EventHandler(execution = ExecutionContext.BACKGROUND)
+		public void onEvent(EventPoolTest.TestEvent event) {
+			events++;
+		}
+
+	}
+
+	/**
+	 * Holds background invocations until {@link #runAll()} is called.
+	 */
+	private static class ManualExecutor implements Executor {
+
+		private final List<Runnable> pending = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable command) {
+			pending.add(command);
+		}
+
+		public void runAll() {
+			while (!pending.isEmpty()) {
+				pending.remove(0).run();
+			}
+		}
+
+	}
+
+	/**
+	 * Refuses every invocation, like a saturated or shut down pool.
+	 */
+	private static class RejectingExecutor implements Executor {
+
+		@Override
+		public void execute(Runnable command) {
+			throw new RejectedExecutionException();
+		}
+
+	}
+
+	private EventBus bus;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(TestEvent.class);
+		bus.add(EventPoolTest.TestEvent.class);
+	}
+
+	@Override
+	protected void tearDown() {
+		EventExecutors.setWorld(null, null);
+		EventExecutors.setBackground(null);
+	}
+
+	public void testWorldRunsOnCallerWithoutThread() {
+		WorldListener listener = new WorldListener();
+		bus.register(listener);
+
+		bus.push(new TestEvent());
+
+		assertEquals(1, listener.threads.size());
+		assertSame(Thread.currentThread(), listener.threads.get(0));
+	}
+
+	public void testWorldQueuedFromOtherThreads() {
+		EventRingBuffer buffer = new EventRingBuffer(4);
+		EventExecutors.setWorld(new Thread(), buffer);
+
+		WorldListener listener = new WorldListener();
+		bus.register(listener);
+
+		bus.push(new TestEvent());
+		assertTrue(listener.threads.isEmpty());
+		assertEquals(1, buffer.size());
+
+		// whoever drains the buffer runs the handler
+		assertEquals(1, buffer.drain());
+		assertEquals(1, listener.threads.size());
+	}
+
+	public void testWorldOnWorldThread() {
+		EventRingBuffer buffer = new EventRingBuffer(4);
+		EventExecutors.setWorld(Thread.currentThread(), buffer);
+
+		WorldListener listener = new WorldListener();
+		bus.register(listener);
+
+		bus.push(new TestEvent());
+		assertEquals(1, listener.threads.size());
+		assertEquals(0, buffer.size());
+	}
+
+	public void testWorldDroppedWhenFull() {
+		EventRingBuffer buffer = new EventRingBuffer(2);
+		EventExecutors.setWorld(new Thread(), buffer);
+
+		WorldListener listener = new WorldListener();
+		bus.register(listener);
+
+		long dropped = EventExecutors.getDropped();
+		for (int i = 0; i < 5; i++) {
+			bus.push(new TestEvent());
+		}
+
+		assertEquals(dropped + 3, EventExecutors.getDropped());
+		assertTrue(listener.threads.isEmpty());
+
+		buffer.drain();
+		assertEquals(2, listener.threads.size());
+	}
+
+	public void testBackgroundHandedOff() {
+		ManualExecutor executor = new ManualExecutor();
+		EventExecutors.setBackground(executor);
+
+		BackgroundListener listener = new BackgroundListener();
+		bus.register(listener);
+
+		bus.push(EventPoolTest.TestEvent.obtain("a"));
+		assertEquals(0, listener.events);
+		assertEquals(1, executor.pending.size());
+
+		executor.runAll();
+		assertEquals(1, listener.events);
+	}
+
+	public void testBackgroundDroppedWhenRejected() {
+		EventExecutors.setBackground(new RejectingExecutor());
+
+		BackgroundListener listener = new BackgroundListener();
+		bus.register(listener);
+
+		final List<String> after = new ArrayList<>();
+		bus.subscribe(EventPoolTest.TestEvent.class,
+				new EventConsumer<EventPoolTest.TestEvent>() {
+
+			@Override
+			public void accept(EventPoolTest.TestEvent event) {
+				after.add("after");
+			}
+
+		}, EventPriority.LOW, true);
+
+		long dropped = EventExecutors.getBackgroundDropped();
+		EventPoolTest.TestEvent event = EventPoolTest.TestEvent.obtain("a");
+		bus.push(event);
+
+		// never run on the caller, but the rest of the queue still is
+		assertEquals(0, listener.events);
+		assertEquals(1, after.size());
+		assertEquals(dropped + 1, EventExecutors.getBackgroundDropped());
+
+		// the hand-off's hold on the event was released
+		assertSame(event, EventPoolTest.TestEvent.obtain("b"));
+	}
+
+	public void testCallerNeverHandedOff() {
+		EventExecutors.setBackground(new RejectingExecutor());
+
+		EventQueueEntry entry = bus.subscribe(TestEvent.class,
+				new EventConsumer<TestEvent>() {
+
+			@Override
+			public void accept(TestEvent event) {
+
+			}
+
+		}).getEntries().get(0);
+
+		assertFalse(EventExecutors.handOff(
+				ExecutionContext.CALLER, entry, new TestEvent()));
+		assertTrue(EventExecutors.handOff(
+				ExecutionContext.BACKGROUND, entry, new TestEvent()));
+	}
+
+}
@@ -0,0 +1,142 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests handlers declaring an {@link EventHandler#filter()}.
+ */
+public class EventFilterTest extends TestCase {
+
+	public static class ValueEvent extends Event {
+
+		private final int value;
+
+		public ValueEvent(int value) {
+			this.value = value;
+		}
+
+	}
+
+	public static class OtherEvent extends Event {
+	}
+
+	/**
+	 * Accepts events matching the listener's current value.
+	 */
+	public static class MatchingFilter implements EventFilter<ValueEvent> {
+
+		@Override
+		public boolean accept(Object listener, ValueEvent event) {
+			return ((Listener) listener).wanted == event.value;
+		}
+
+	}
+
+	public static class Listener {
+
+		private final List<Integer> values = new ArrayList<>();
+		private int wanted;
+
+		@EventHandler(filter = MatchingFilter.class)
+		public void onEvent(ValueEvent event) {
+			values.add(event.value);
+		}
+
+	}
+
+	public static class IncompatibleListener {
+
+		private int events;
+
+		@EventHandler(filter = MatchingFilter.class)
+		public void onEvent(OtherEvent event) {
+			events++;
+		}
+
+	}
+
+	private EventBus bus;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(ValueEvent.class);
+		bus.add(OtherEvent.class);
+	}
+
+	@Override
+	protected void tearDown() {
+		EventMetrics.setEnabled(false);
+	}
+
+	public void testFilterPerListener() {
+		Listener a = new Listener();
+		Listener b = new Listener();
+		b.wanted = 1;
+		bus.register(a);
+		bus.register(b);
+
+		for (int i = 0; i < 3; i++) {
+			bus.push(new ValueEvent(i));
+		}
+
+		assertEquals(1, a.values.size());
+		assertEquals(0, (int) a.values.get(0));
+		assertEquals(1, b.values.size());
+		assertEquals(1, (int) b.values.get(0));
+
+		// the filter sees the listener's state at dispatch time
+		a.wanted = 2;
+		bus.push(new ValueEvent(2));
+		assertEquals(2, a.values.size());
+	}
+
+	public void testFilterShared() {
+		HandlerMethod[] a = HandlerMethod.forClass(Listener.class);
+		assertNotNull(a[0].getFilter());
+		assertTrue(a[0].getFilter() instanceof MatchingFilter);
+
+		EventRegistration first = bus.register(new Listener());
+		EventRegistration second = bus.register(new Listener());
+		assertSame(first.getEntries().get(0).getFilter(),
+				second.getEntries().get(0).getFilter());
+	}
+
+	public void testNoFilter() {
+		HandlerMethod[] handlers =
+				HandlerMethod.forClass(EventBusTest.Listener.class);
+
+		for (HandlerMethod h : handlers) {
+			assertNull(h.getFilter());
+		}
+	}
+
+	public void testIncompatibleFilterSkipsHandler() {
+		IncompatibleListener listener = new IncompatibleListener();
+		EventRegistration registration = bus.register(listener);
+
+		assertTrue(registration.getEntries().isEmpty());
+
+		bus.push(new OtherEvent());
+		assertEquals(0, listener.events);
+	}
+
+	public void testFilteredCounted() {
+		EventMetrics.setEnabled(true);
+
+		Listener listener = new Listener();
+		bus.register(listener);
+
+		for (int i = 0; i < 5; i++) {
+			bus.push(new ValueEvent(i));
+		}
+
+		HandlerStats stats = bus.getQueueForClass(ValueEvent.class)
+				.getStats().getHandlers().get(0);
+		assertEquals(4, stats.getFiltered());
+		assertEquals(1, stats.getInvocations());
+	}
+
+}
@@ -0,0 +1,146 @@
+package net.letscode.game.event;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the counters and latency sampling recorded while
+ * {@link EventMetrics} are enabled.
+ */
+public class EventMetricsTest extends TestCase {
+
+	public static class TestEvent extends Event {
+	}
+
+	public static class Listener {
+
+		@EventHandler
+		public void onEvent(TestEvent event) {
+		}
+
+	}
+
+	public static class FailingListener {
+
+		@EventHandler
+		public void onEvent(TestEvent event) {
+			throw new IllegalStateException("expected by the test");
+		}
+
+	}
+
+	public static class Veto implements EventConsumer<TestEvent> {
+
+		@Override
+		public void accept(TestEvent event) {
+			throw new EventVetoException();
+		}
+
+	}
+
+	private EventBus bus;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(TestEvent.class);
+	}
+
+	@Override
+	protected void tearDown() {
+		EventMetrics.setEnabled(false);
+		EventMetrics.setSamplingInterval(16);
+	}
+
+	private QueueStats stats() {
+		return bus.getQueueForClass(TestEvent.class).getStats();
+	}
+
+	private HandlerStats handler(Class<?> listener) {
+		for (HandlerStats h : stats().getHandlers()) {
+			if (h.getName().contains(listener.getName())) {
+				return h;
+			}
+		}
+
+		fail("no stats for " + listener.getName());
+		return null;
+	}
+
+	public void testNothingRecordedWhileDisabled() {
+		bus.register(new Listener());
+		bus.push(new TestEvent());
+
+		assertEquals(0, stats().getPushes());
+		assertEquals(0, handler(Listener.class).getInvocations());
+	}
+
+	public void testInvocations() {
+		EventMetrics.setEnabled(true);
+		EventMetrics.setSamplingInterval(1);
+
+		bus.register(new Listener());
+		bus.register(new Listener());
+		for (int i = 0; i < 10; i++) {
+			bus.push(new TestEvent());
+		}
+
+		assertEquals(10, stats().getPushes());
+		assertEquals(2, stats().getListeners());
+
+		// both listeners share the metrics for the method
+		assertEquals(1, stats().getHandlers().size());
+		HandlerStats h = handler(Listener.class);
+		assertEquals(20, h.getInvocations());
+		assertEquals(20, h.getSamples());
+		assertTrue(h.getMaxTime() <= h.getTotalTime());
+		assertTrue(h.getPercentile(50) <= h.getMaxTime());
+
+		long histogram = 0;
+		for (long count : h.getHistogram()) {
+			histogram += count;
+		}
+		assertEquals(20, histogram);
+	}
+
+	public void testSampling() {
+		EventMetrics.setEnabled(true);
+		EventMetrics.setSamplingInterval(3);
+		assertEquals(4, EventMetrics.getSamplingInterval());
+
+		bus.register(new Listener());
+		for (int i = 0; i < 16; i++) {
+			bus.push(new TestEvent());
+		}
+
+		HandlerStats h = handler(Listener.class);
+		assertEquals(16, h.getInvocations());
+		assertEquals(4, h.getSamples());
+	}
+
+	public void testVetoesAndExceptions() {
+		EventMetrics.setEnabled(true);
+
+		bus.subscribe(TestEvent.class, new Veto(), 10, true);
+		bus.register(new FailingListener());
+
+		bus.push(new TestEvent());
+		assertEquals(1, handler(Veto.class).getVetoes());
+		assertEquals(0, handler(FailingListener.class).getInvocations());
+
+		bus.push(new TestEvent(), 10);
+		assertEquals(2, handler(Veto.class).getVetoes());
+
+		bus.getQueueForClass(TestEvent.class).getEntries().get(0).cancel();
+		bus.push(new TestEvent());
+		assertEquals(1, handler(FailingListener.class).getExceptions());
+	}
+
+	public void testBusStats() {
+		bus.add(Event.class);
+
+		assertEquals(2, bus.getStats().size());
+		assertEquals(TestEvent.class, bus.getStats().get(0).getEventType());
+		assertEquals(0, bus.getStats().get(1).getPushes());
+	}
+
+}
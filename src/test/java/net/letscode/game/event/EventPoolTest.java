@@ -0,0 +1,168 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link EventPool} reuse and when the bus releases a
+ * {@link PooledEvent}, including events held by handed-off handlers.
+ */
+public class EventPoolTest extends TestCase {
+
+	public static class TestEvent extends PooledEvent {
+
+		private static final EventPool<TestEvent> POOL =
+				new EventPool<>(new EventPool.Factory<TestEvent>() {
+
+			@Override
+			public TestEvent create() {
+				return new TestEvent();
+			}
+
+		}, 2);
+
+		private String payload;
+
+		public static TestEvent obtain(String payload) {
+			TestEvent event = POOL.acquire();
+			event.payload = payload;
+
+			return event;
+		}
+
+		@Override
+		protected void reset() {
+			payload = null;
+		}
+
+	}
+
+	public static class BackgroundListener {
+
+		private final List<String> payloads = new ArrayList<>();
+
+		@EventHandler(execution = ExecutionContext.BACKGROUND)
+		public void onEvent(TestEvent event) {
+			payloads.add(event.payload);
+		}
+
+	}
+
+	/**
+	 * Holds background invocations until {@link #runAll()} is called.
+	 */
+	private static class ManualExecutor implements Executor {
+
+		private final List<Runnable> pending = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable command) {
+			pending.add(command);
+		}
+
+		public void runAll() {
+			while (!pending.isEmpty()) {
+				pending.remove(0).run();
+			}
+		}
+
+	}
+
+	private EventBus bus;
+	private List<String> payloads;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(TestEvent.class);
+
+		payloads = new ArrayList<>();
+		bus.subscribe(TestEvent.class, new EventConsumer<TestEvent>() {
+
+			@Override
+			public void accept(TestEvent event) {
+				payloads.add(event.payload);
+			}
+
+		});
+	}
+
+	@Override
+	protected void tearDown() {
+		EventExecutors.setBackground(null);
+	}
+
+	public void testReleasedAfterPush() {
+		TestEvent event = TestEvent.obtain("a");
+		assertTrue(event.isPooled());
+
+		bus.push(event);
+		assertEquals("a", payloads.get(0));
+		assertNull(event.payload);
+
+		// the next event on this thread reuses the instance
+		assertSame(event, TestEvent.obtain("b"));
+	}
+
+	public void testUnpooledEventsUntouched() {
+		TestEvent event = new TestEvent();
+		event.payload = "a";
+		assertFalse(event.isPooled());
+
+		bus.push(event);
+		assertEquals("a", event.payload);
+
+		event.release();
+		assertEquals("a", event.payload);
+	}
+
+	public void testDoubleRelease() {
+		TestEvent event = TestEvent.obtain("a");
+		event.release();
+
+		try {
+			event.release();
+			fail("expected IllegalStateException");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+	}
+
+	public void testFullPoolDropsEvents() {
+		TestEvent[] events = new TestEvent[4];
+		for (int i = 0; i < events.length; i++) {
+			events[i] = TestEvent.obtain("a");
+		}
+
+		long dropped = TestEvent.POOL.getDropped();
+		for (TestEvent event : events) {
+			event.release();
+		}
+
+		assertEquals(dropped + 2, TestEvent.POOL.getDropped());
+	}
+
+	public void testHeldByHandedOffHandler() {
+		ManualExecutor executor = new ManualExecutor();
+		EventExecutors.setBackground(executor);
+
+		BackgroundListener listener = new BackgroundListener();
+		bus.register(listener);
+
+		TestEvent event = TestEvent.obtain("a");
+		bus.push(event);
+
+		// the bus is done, but the background handler hasn't run yet
+		assertEquals(1, payloads.size());
+		assertTrue(listener.payloads.isEmpty());
+		assertEquals("a", event.payload);
+		assertNotSame(event, TestEvent.obtain("b"));
+
+		executor.runAll();
+		assertEquals("a", listener.payloads.get(0));
+		assertNull(event.payload);
+	}
+
+}
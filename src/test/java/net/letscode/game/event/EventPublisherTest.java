@@ -0,0 +1,355 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import junit.framework.TestCase;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Tests that an {@link EventPublisher} only delivers events as subscribers
+ * request them, and how it handles full buffers and cancellation.
+ */
+public class EventPublisherTest extends TestCase {
+
+	public static class ValueEvent extends Event {
+
+		private final int value;
+
+		public ValueEvent(int value) {
+			this.value = value;
+		}
+
+	}
+
+	public static class PooledValueEvent extends PooledEvent {
+
+		private static final EventPool<PooledValueEvent> POOL =
+				new EventPool<>(new EventPool.Factory<PooledValueEvent>() {
+
+			@Override
+			public PooledValueEvent create() {
+				return new PooledValueEvent();
+			}
+
+		}, 2);
+
+		private String payload;
+
+		public static PooledValueEvent obtain(String payload) {
+			PooledValueEvent event = POOL.acquire();
+			event.payload = payload;
+
+			return event;
+		}
+
+		@Override
+		protected void reset() {
+			payload = null;
+		}
+
+	}
+
+	/**
+	 * Holds delivery tasks until {@link #runAll()} is called.
+	 */
+	private static class ManualExecutor implements Executor {
+
+		private final List<Runnable> pending = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable command) {
+			pending.add(command);
+		}
+
+		public void runAll() {
+			while (!pending.isEmpty()) {
+				pending.remove(0).run();
+			}
+		}
+
+	}
+
+	/**
+	 * Records the values it receives, and requests nothing by itself.
+	 */
+	private static class RecordingSubscriber
+			implements Subscriber<ValueEvent> {
+
+		private final List<Integer> values = new ArrayList<>();
+		private final List<Throwable> errors = new ArrayList<>();
+		private Subscription subscription;
+
+		@Override
+		public void onSubscribe(Subscription s) {
+			subscription = s;
+		}
+
+		@Override
+		public void onNext(ValueEvent event) {
+			values.add(event.value);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			errors.add(t);
+		}
+
+		@Override
+		public void onComplete() {
+			fail("a bus never completes");
+		}
+
+	}
+
+	private EventBus bus;
+	private EventBusProvider provider;
+	private ManualExecutor executor;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(ValueEvent.class);
+		bus.add(PooledValueEvent.class);
+
+		provider = new EventBusProvider() {
+
+			@Override
+			public EventBusClient bus() {
+				return bus.getClient();
+			}
+
+		};
+
+		executor = new ManualExecutor();
+	}
+
+	private EventPublisher<ValueEvent> publisher(
+			int capacity, EventPublisher.OverflowPolicy policy) {
+		return new EventPublisher<>(
+				provider, ValueEvent.class, capacity, policy, executor);
+	}
+
+	private void push(int from, int to) {
+		for (int i = from; i < to; i++) {
+			bus.push(new ValueEvent(i));
+		}
+	}
+
+	public void testNothingDeliveredWithoutDemand() {
+		RecordingSubscriber s = new RecordingSubscriber();
+		publisher(8, EventPublisher.OverflowPolicy.DROP_OLDEST).subscribe(s);
+
+		push(0, 3);
+		assertTrue(executor.pending.isEmpty());
+		executor.runAll();
+		assertTrue(s.values.isEmpty());
+	}
+
+	public void testDeliveredUpToDemand() {
+		RecordingSubscriber s = new RecordingSubscriber();
+		publisher(8, EventPublisher.OverflowPolicy.DROP_OLDEST).subscribe(s);
+
+		push(0, 5);
+		s.subscription.request(2);
+		executor.runAll();
+		assertEquals(Arrays.asList(0, 1), s.values);
+
+		// the rest stays buffered until more is requested
+		s.subscription.request(1);
+		executor.runAll();
+		assertEquals(Arrays.asList(0, 1, 2), s.values);
+
+		// outstanding demand is filled as events arrive
+		s.subscription.request(3);
+		executor.runAll();
+		push(5, 7);
+		executor.runAll();
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), s.values);
+	}
+
+	public void testUnboundedDemand() {
+		RecordingSubscriber s = new RecordingSubscriber();
+		publisher(4, EventPublisher.OverflowPolicy.DROP_NEWEST).subscribe(s);
+
+		s.subscription.request(Long.MAX_VALUE);
+		s.subscription.request(Long.MAX_VALUE);
+
+		for (int i = 0; i < 10; i++) {
+			push(i, i + 1);
+			executor.runAll();
+		}
+
+		assertEquals(10, s.values.size());
+	}
+
+	public void testDropNewest() {
+		RecordingSubscriber s = new RecordingSubscriber();
+		EventPublisher<ValueEvent> publisher =
+				publisher(2, EventPublisher.OverflowPolicy.DROP_NEWEST);
+		publisher.subscribe(s);
+
+		push(0, 5);
+		assertEquals(3, publisher.getDropped());
+
+		s.subscription.request(10);
+		executor.runAll();
+		assertEquals(Arrays.asList(0, 1), s.values);
+	}
+
+	public void testDropOldest() {
+		RecordingSubscriber s = new RecordingSubscriber();
+		EventPublisher<ValueEvent> publisher =
+				publisher(2, EventPublisher.OverflowPolicy.DROP_OLDEST);
+		publisher.subscribe(s);
+
+		push(0, 5);
+		assertEquals(3, publisher.getDropped());
+
+		s.subscription.request(10);
+		executor.runAll();
+		assertEquals(Arrays.asList(3, 4), s.values);
+	}
+
+	public void testLatest() {
+		RecordingSubscriber s = new RecordingSubscriber();
+		EventPublisher<ValueEvent> publisher =
+				publisher(16, EventPublisher.OverflowPolicy.LATEST);
+		assertEquals(1, publisher.getCapacity());
+		publisher.subscribe(s);
+
+		push(0, 5);
+
+		s.subscription.request(10);
+		executor.runAll();
+		assertEquals(Arrays.asList(4), s.values);
+	}
+
+	public void testSubscribersBufferSeparately() {
+		EventPublisher<ValueEvent> publisher =
+				publisher(8, EventPublisher.OverflowPolicy.DROP_OLDEST);
+		RecordingSubscriber a = new RecordingSubscriber();
+		RecordingSubscriber b = new RecordingSubscriber();
+		publisher.subscribe(a);
+		publisher.subscribe(b);
+
+		push(0, 3);
+		a.subscription.request(3);
+		b.subscription.request(1);
+		executor.runAll();
+
+		assertEquals(3, a.values.size());
+		assertEquals(1, b.values.size());
+	}
+
+	public void testVetoedEventsNotPublished() {
+		bus.subscribe(ValueEvent.class, new EventConsumer<ValueEvent>() {
+
+			@Override
+			public void accept(ValueEvent event) {
+				if (event.value == 1) {
+					throw new EventVetoException();
+				}
+			}
+
+		});
+
+		RecordingSubscriber s = new RecordingSubscriber();
+		publisher(8, EventPublisher.OverflowPolicy.DROP_OLDEST).subscribe(s);
+		s.subscription.request(10);
+
+		push(0, 3);
+		executor.runAll();
+		assertEquals(Arrays.asList(0, 2), s.values);
+	}
+
+	public void testCancel() {
+		RecordingSubscriber s = new RecordingSubscriber();
+		publisher(8, EventPublisher.OverflowPolicy.DROP_OLDEST).subscribe(s);
+		assertEquals(1, bus.getQueueForClass(ValueEvent.class).size());
+
+		push(0, 2);
+		s.subscription.cancel();
+		assertEquals(0, bus.getQueueForClass(ValueEvent.class).size());
+
+		s.subscription.request(10);
+		executor.runAll();
+		push(2, 4);
+		executor.runAll();
+		assertTrue(s.values.isEmpty());
+	}
+
+	public void testNonPositiveRequest() {
+		RecordingSubscriber s = new RecordingSubscriber();
+		publisher(8, EventPublisher.OverflowPolicy.DROP_OLDEST).subscribe(s);
+
+		s.subscription.request(0);
+		executor.runAll();
+
+		assertEquals(1, s.errors.size());
+		assertTrue(s.errors.get(0) instanceof IllegalArgumentException);
+		assertEquals(0, bus.getQueueForClass(ValueEvent.class).size());
+	}
+
+	public void testThrowingSubscriberCancelled() {
+		RecordingSubscriber s = new RecordingSubscriber() {
+
+			@Override
+			public void onNext(ValueEvent event) {
+				super.onNext(event);
+				throw new IllegalStateException();
+			}
+
+		};
+		publisher(8, EventPublisher.OverflowPolicy.DROP_OLDEST).subscribe(s);
+
+		push(0, 3);
+		s.subscription.request(10);
+		executor.runAll();
+
+		assertEquals(1, s.values.size());
+		assertEquals(0, bus.getQueueForClass(ValueEvent.class).size());
+	}
+
+	public void testPooledEventsHeldUntilDelivered() {
+		final List<String> payloads = new ArrayList<>();
+		final Subscription[] subscription = new Subscription[1];
+		new EventPublisher<>(provider, PooledValueEvent.class, 8,
+				EventPublisher.OverflowPolicy.DROP_OLDEST, executor)
+				.subscribe(new Subscriber<PooledValueEvent>() {
+
+			@Override
+			public void onSubscribe(Subscription s) {
+				subscription[0] = s;
+			}
+
+			@Override
+			public void onNext(PooledValueEvent event) {
+				payloads.add(event.payload);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+
+			}
+
+			@Override
+			public void onComplete() {
+
+			}
+
+		});
+
+		PooledValueEvent event = PooledValueEvent.obtain("a");
+		bus.push(event);
+		assertEquals("a", event.payload);
+
+		subscription[0].request(1);
+		executor.runAll();
+		assertEquals(Arrays.asList("a"), payloads);
+		assertNull(event.payload);
+	}
+
+}
@@ -0,0 +1,129 @@
+package net.letscode.game.event;
+
+import java.lang.ref.WeakReference;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link EventRegistration}: cancelling one registration leaves the
+ * listener's others alone, and a cancelled listener isn't kept reachable.
+ */
+public class EventRegistrationTest extends TestCase {
+
+	public static class TestEvent extends Event {
+	}
+
+	public static class OtherEvent extends Event {
+	}
+
+	public static class Listener {
+
+		private int events;
+		private int others;
+
+		@EventHandler
+		public void onEvent(TestEvent event) {
+			events++;
+		}
+
+		@EventHandler
+		public void onOther(OtherEvent event) {
+			others++;
+		}
+
+	}
+
+	private EventBus bus;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(TestEvent.class);
+		bus.add(OtherEvent.class);
+	}
+
+	public void testRegistrationCoversAllHandlers() {
+		Listener listener = new Listener();
+		EventRegistration registration = bus.register(listener);
+
+		assertEquals(2, registration.getEntries().size());
+		assertSame(listener, registration.getListener());
+		assertTrue(registration.isActive());
+	}
+
+	public void testCancel() {
+		Listener listener = new Listener();
+		EventRegistration registration = bus.register(listener);
+
+		registration.cancel();
+		assertFalse(registration.isActive());
+		assertNull(registration.getListener());
+
+		bus.push(new TestEvent());
+		bus.push(new OtherEvent());
+		assertEquals(0, listener.events);
+		assertEquals(0, listener.others);
+
+		// cancelling again does nothing
+		registration.cancel();
+		assertFalse(registration.isActive());
+	}
+
+	public void testCancelLeavesOtherRegistrations() {
+		Listener listener = new Listener();
+		EventRegistration first = bus.register(listener);
+		EventRegistration second = bus.registerWeak(listener);
+
+		first.cancel();
+		assertTrue(second.isActive());
+
+		bus.push(new TestEvent());
+		assertEquals(1, listener.events);
+	}
+
+	public void testDeregisterCancelsAll() {
+		Listener listener = new Listener();
+		EventRegistration first = bus.register(listener);
+		EventRegistration second = bus.registerWeak(listener);
+
+		bus.deregister(listener);
+		assertFalse(first.isActive());
+		assertFalse(second.isActive());
+
+		bus.push(new TestEvent());
+		assertEquals(0, listener.events);
+	}
+
+	public void testCancelDuringPush() {
+		final Listener listener = new Listener();
+		final EventRegistration[] registration = new EventRegistration[1];
+
+		bus.subscribe(TestEvent.class, new EventConsumer<TestEvent>() {
+
+			@Override
+			public void accept(TestEvent event) {
+				registration[0].cancel();
+			}
+
+		}, 10, true);
+		registration[0] = bus.register(listener);
+
+		bus.push(new TestEvent());
+		bus.push(new TestEvent());
+		assertEquals(0, listener.events);
+		assertFalse(registration[0].isActive());
+	}
+
+	public void testCancelledListenerCollected() throws InterruptedException {
+		Listener listener = new Listener();
+		EventRegistration registration = bus.register(listener);
+		WeakReference<Listener> ref = new WeakReference<>(listener);
+		listener = null;
+
+		// the registration (and the entries it holds) outlive the listener
+		registration.cancel();
+		WeakRegistrationTest.collect(ref);
+
+		assertEquals(2, registration.getEntries().size());
+	}
+
+}
@@ -0,0 +1,255 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests ordering, capacity and translators of the {@link EventRingBuffer}.
+ */
+public class EventRingBufferTest extends TestCase {
+
+	public static class TestEvent extends Event {
+
+		private final int producer;
+		private final int sequence;
+
+		public TestEvent(int producer, int sequence) {
+			this.producer = producer;
+			this.sequence = sequence;
+		}
+
+	}
+
+	public static class PooledTestEvent extends PooledEvent {
+
+		private static final EventPool<PooledTestEvent> POOL =
+				new EventPool<>(new EventPool.Factory<PooledTestEvent>() {
+
+			@Override
+			public PooledTestEvent create() {
+				return new PooledTestEvent();
+			}
+
+		}, 4);
+
+		private String payload;
+
+		public static PooledTestEvent obtain(String payload) {
+			PooledTestEvent event = POOL.acquire();
+			event.payload = payload;
+
+			return event;
+		}
+
+		@Override
+		protected void reset() {
+			payload = null;
+		}
+
+	}
+
+	private EventBus bus;
+	private List<Event> received;
+	private List<String> payloads;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(TestEvent.class);
+		bus.add(PooledTestEvent.class);
+
+		received = new ArrayList<>();
+		payloads = new ArrayList<>();
+
+		bus.subscribe(TestEvent.class, new EventConsumer<TestEvent>() {
+
+			@Override
+			public void accept(TestEvent event) {
+				received.add(event);
+			}
+
+		});
+
+		bus.subscribe(PooledTestEvent.class,
+				new EventConsumer<PooledTestEvent>() {
+
+			@Override
+			public void accept(PooledTestEvent event) {
+				received.add(event);
+				payloads.add(event.payload);
+			}
+
+		});
+	}
+
+	public void testCapacityRoundedUp() {
+		assertEquals(8, new EventRingBuffer(5).getCapacity());
+		assertEquals(8, new EventRingBuffer(8).getCapacity());
+		assertEquals(1, new EventRingBuffer(1).getCapacity());
+	}
+
+	public void testDrainInOrder() {
+		EventRingBuffer buffer = new EventRingBuffer(16);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(buffer.offer(bus, new TestEvent(0, i)));
+		}
+
+		assertEquals(10, buffer.size());
+		assertTrue(received.isEmpty());
+
+		assertEquals(10, buffer.drain());
+		assertEquals(0, buffer.size());
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, ((TestEvent) received.get(i)).sequence);
+		}
+
+		assertEquals(0, buffer.drain());
+	}
+
+	public void testRejectWhenFull() {
+		EventRingBuffer buffer = new EventRingBuffer(4);
+
+		for (int lap = 0; lap < 3; lap++) {
+			for (int i = 0; i < 4; i++) {
+				assertTrue(buffer.offer(bus, new TestEvent(0, i)));
+			}
+
+			assertFalse(buffer.offer(bus, new TestEvent(0, 4)));
+			assertEquals(4, buffer.size());
+			assertEquals(4, buffer.drain());
+		}
+
+		assertEquals(3, buffer.getRejected());
+		assertEquals(12, received.size());
+	}
+
+	public void testOffersDuringDrainWaitForNextDrain() {
+		final EventRingBuffer buffer = new EventRingBuffer(8);
+		bus.subscribe(TestEvent.class, new EventConsumer<TestEvent>() {
+
+			@Override
+			public void accept(TestEvent event) {
+				if (event.sequence < 5) {
+					buffer.offer(bus, new TestEvent(0, event.sequence + 1));
+				}
+			}
+
+		});
+
+		buffer.offer(bus, new TestEvent(0, 0));
+
+		for (int i = 1; i <= 6; i++) {
+			assertEquals(1, buffer.drain());
+			assertEquals(i, received.size());
+		}
+
+		assertEquals(0, buffer.drain());
+	}
+
+	public void testTranslatorRunsOnDrain() {
+		EventRingBuffer buffer = new EventRingBuffer(8);
+
+		final List<Thread> threads = new ArrayList<>();
+		EventRingBuffer.Translator<String> translator =
+				new EventRingBuffer.Translator<String>() {
+
+			@Override
+			public Event translate(String payload) {
+				threads.add(Thread.currentThread());
+				return PooledTestEvent.obtain(payload);
+			}
+
+		};
+
+		buffer.offer(bus, translator, "a");
+		buffer.offer(bus, translator, "b");
+		assertTrue(threads.isEmpty());
+
+		buffer.drain();
+		assertEquals(2, threads.size());
+		assertSame(Thread.currentThread(), threads.get(0));
+
+		// each event went back to this thread's pool once pushed, so the
+		// next drain gets the same instance again
+		Event first = received.get(0);
+		assertTrue(((PooledEvent) first).isPooled());
+		assertNull(((PooledTestEvent) first).payload);
+
+		buffer.offer(bus, translator, "c");
+		buffer.drain();
+
+		assertSame(received.get(1), received.get(2));
+
+		List<String> expected = new ArrayList<>();
+		expected.add("a");
+		expected.add("b");
+		expected.add("c");
+		assertEquals(expected, payloads);
+	}
+
+	public void testTranslatorFailureIsIsolated() {
+		EventRingBuffer buffer = new EventRingBuffer(8);
+
+		buffer.offer(bus, new EventRingBuffer.Translator<String>() {
+
+			@Override
+			public Event translate(String payload) {
+				throw new IllegalStateException("expected by the test");
+			}
+
+		}, "bad");
+		buffer.offer(bus, new TestEvent(0, 1));
+
+		assertEquals(2, buffer.drain());
+		assertEquals(1, received.size());
+	}
+
+	public void testManyProducers() throws InterruptedException {
+		final EventRingBuffer buffer = new EventRingBuffer(64);
+		final int producers = 4;
+		final int count = 20000;
+
+		Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			threads[p] = new Thread() {
+
+				@Override
+				public void run() {
+					for (int i = 0; i < count; i++) {
+						while (!buffer.offer(bus, new TestEvent(producer, i))) {
+							Thread.yield();
+						}
+					}
+				}
+
+			};
+			threads[p].start();
+		}
+
+		long deadline = System.currentTimeMillis() + 20000;
+		while (received.size() < producers * count
+				&& System.currentTimeMillis() < deadline) {
+			if (buffer.drain() == 0) {
+				Thread.yield();
+			}
+		}
+
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(producers * count, received.size());
+		assertEquals(0, buffer.size());
+
+		int[] next = new int[producers];
+		for (Event e : received) {
+			TestEvent t = (TestEvent) e;
+			assertEquals(next[t.producer]++, t.sequence);
+		}
+	}
+
+}
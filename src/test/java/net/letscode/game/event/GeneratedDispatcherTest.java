@@ -0,0 +1,68 @@
+package net.letscode.game.event;
+
+import junit.framework.TestCase;
+import net.letscode.game.event.DispatchedListener.PingEvent;
+
+/**
+ * Tests registering listeners through a generated {@link EventDispatcher},
+ * using the hand-written one for {@link DispatchedListener}.
+ */
+public class GeneratedDispatcherTest extends TestCase {
+
+	private EventBus bus;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(PingEvent.class);
+	}
+
+	public void testHandlersFromTable() {
+		HandlerMethod[] handlers =
+				HandlerMethod.forClass(DispatchedListener.class);
+
+		assertEquals(2, handlers.length);
+		assertEquals("onPing", handlers[0].getMethod().getName());
+		assertEquals(5, handlers[0].getPriority());
+		assertEquals(PingEvent.class, handlers[0].getEventType());
+		assertNull(handlers[0].getFilter());
+
+		// the generated handler is its own invoker
+		for (HandlerMethod h : handlers) {
+			assertTrue(h.getInvoker() instanceof EventDispatcher.Handler);
+		}
+	}
+
+	public void testDispatch() {
+		DispatchedListener listener = new DispatchedListener();
+		bus.register(listener);
+
+		final int[] after = new int[1];
+		bus.subscribe(PingEvent.class, new EventConsumer<PingEvent>() {
+
+			@Override
+			public void accept(PingEvent event) {
+				after[0]++;
+			}
+
+		}, EventPriority.LOW, true);
+
+		bus.push(new PingEvent());
+
+		assertEquals(1, listener.pings);
+
+		// the veto was wrapped, so it was only logged
+		assertEquals(1, after[0]);
+	}
+
+	public void testReflectionWithoutDispatcher() {
+		HandlerMethod[] handlers =
+				HandlerMethod.forClass(EventBusTest.Listener.class);
+
+		assertTrue(handlers.length > 0);
+		for (HandlerMethod h : handlers) {
+			assertTrue(h.getInvoker() instanceof MethodHandleInvoker);
+		}
+	}
+
+}
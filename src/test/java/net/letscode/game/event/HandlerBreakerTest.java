@@ -0,0 +1,215 @@
+package net.letscode.game.event;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests suspending handlers that keep failing with their circuit breaker;
+ * see {@link EventBreakers}.
+ */
+public class HandlerBreakerTest extends TestCase {
+
+	public static class TestEvent extends Event {
+	}
+
+	public static class FailingConsumer implements EventConsumer<TestEvent> {
+
+		private boolean failing = true;
+		private int calls;
+
+		@Override
+		public void accept(TestEvent event) {
+			calls++;
+			if (failing) {
+				throw new IllegalStateException("expected by the test");
+			}
+		}
+
+	}
+
+	public static class CountingConsumer implements EventConsumer<TestEvent> {
+
+		private int calls;
+
+		@Override
+		public void accept(TestEvent event) {
+			calls++;
+		}
+
+	}
+
+	private EventBus bus;
+	private FailingConsumer consumer;
+	private EventQueueEntry entry;
+
+	@Override
+	protected void setUp() {
+		EventBreakers.setFailureThreshold(3);
+		EventBreakers.setBackoff(100, 400);
+		EventBreakers.setLogInterval(0);
+
+		bus = new EventBus();
+		bus.add(TestEvent.class);
+
+		consumer = new FailingConsumer();
+		entry = bus.subscribe(TestEvent.class, consumer).getEntries().get(0);
+	}
+
+	@Override
+	protected void tearDown() {
+		EventBreakers.setEnabled(true);
+		EventBreakers.setFailureThreshold(5);
+		EventBreakers.setFailureWindow(10000);
+		EventBreakers.setBackoff(1000, 300000);
+		EventBreakers.setLogInterval(10000);
+	}
+
+	private HandlerStats stats() {
+		return bus.getQueueForClass(TestEvent.class)
+				.getStats().getHandlers().get(0);
+	}
+
+	private void push(int count) {
+		for (int i = 0; i < count; i++) {
+			bus.push(new TestEvent());
+		}
+	}
+
+	public void testSuspendedAfterThreshold() {
+		push(2);
+		assertFalse(entry.isSuspended());
+
+		push(1);
+		assertTrue(entry.isSuspended());
+		assertEquals(1, stats().getTrips());
+		assertEquals(1, stats().getSuspended());
+
+		// skipped until the backoff has passed
+		push(5);
+		assertEquals(3, consumer.calls);
+		assertEquals(5, stats().getSkipped());
+	}
+
+	public void testOtherHandlersUnaffected() {
+		CountingConsumer other = new CountingConsumer();
+		bus.subscribe(TestEvent.class, other);
+
+		push(10);
+
+		assertTrue(entry.isSuspended());
+		assertEquals(3, consumer.calls);
+		assertEquals(10, other.calls);
+	}
+
+	public void testFailuresOutsideWindow() throws InterruptedException {
+		EventBreakers.setFailureWindow(20);
+
+		for (int i = 0; i < 4; i++) {
+			push(1);
+			Thread.sleep(50);
+		}
+
+		assertFalse(entry.isSuspended());
+		assertEquals(4, consumer.calls);
+	}
+
+	public void testSuccessfulTrialResumes() throws InterruptedException {
+		push(3);
+		assertTrue(entry.isSuspended());
+
+		Thread.sleep(150);
+		consumer.failing = false;
+
+		push(1);
+		assertEquals(4, consumer.calls);
+		assertFalse(entry.isSuspended());
+		assertEquals(0, stats().getSuspended());
+
+		push(2);
+		assertEquals(6, consumer.calls);
+	}
+
+	public void testFailedTrialBacksOff() throws InterruptedException {
+		push(3);
+		Thread.sleep(150);
+
+		// the trial fails, so the handler is suspended for twice as long
+		push(1);
+		assertEquals(4, consumer.calls);
+		assertTrue(entry.isSuspended());
+		assertEquals(2, stats().getTrips());
+		assertEquals(1, stats().getSuspended());
+
+		Thread.sleep(120);
+		push(1);
+		assertEquals(4, consumer.calls);
+
+		Thread.sleep(150);
+		consumer.failing = false;
+		push(1);
+		assertEquals(5, consumer.calls);
+		assertFalse(entry.isSuspended());
+	}
+
+	public void testDisabled() {
+		EventBreakers.setEnabled(false);
+
+		push(10);
+
+		assertFalse(entry.isSuspended());
+		assertEquals(10, consumer.calls);
+		assertEquals(0, stats().getTrips());
+	}
+
+	public void testDisablingResumesAfterTrial() throws InterruptedException {
+		push(3);
+		assertTrue(entry.isSuspended());
+
+		EventBreakers.setEnabled(false);
+		push(1);
+		assertEquals(3, consumer.calls);
+
+		// the trial fails, but that no longer suspends the handler
+		Thread.sleep(150);
+		push(1);
+		assertFalse(entry.isSuspended());
+
+		push(2);
+		assertEquals(6, consumer.calls);
+	}
+
+	public void testCancelReleases() {
+		push(3);
+		assertEquals(1, stats().getSuspended());
+
+		bus.deregister(consumer);
+		assertFalse(entry.isSuspended());
+		assertEquals(0, stats().getSuspended());
+	}
+
+	public void testInvalidSettings() {
+		try {
+			EventBreakers.setFailureThreshold(0);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		try {
+			EventBreakers.setBackoff(10, 5);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		try {
+			EventBreakers.setLogInterval(-1);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		assertEquals(3, EventBreakers.getFailureThreshold());
+		assertEquals(100, EventBreakers.getInitialBackoff());
+	}
+
+}
@@ -0,0 +1,96 @@
+package net.letscode.game.event;
+
+import java.lang.reflect.Method;
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link HandlerMethod} cache and handler validation.
+ */
+public class HandlerMethodTest extends TestCase {
+
+	public static class TestEvent extends Event {
+	}
+
+	public static class Listener {
+
+		@EventHandler(priority = 7, vetoable = false)
+		public void onEvent(TestEvent event) {
+		}
+
+	}
+
+	public static class SubListener extends Listener {
+	}
+
+	public static class NotAListener {
+
+		public void onEvent(TestEvent event) {
+		}
+
+		public void twoParameters(TestEvent event, Object other) {
+		}
+
+		public void notAnEvent(String event) {
+		}
+
+	}
+
+	public void testScannedOnce() {
+		HandlerMethod[] first = HandlerMethod.forClass(Listener.class);
+		assertSame(first, HandlerMethod.forClass(Listener.class));
+
+		assertEquals(1, first.length);
+		assertEquals(TestEvent.class, first[0].getEventType());
+		assertEquals(7, first[0].getPriority());
+		assertFalse(first[0].isVetoable());
+		assertFalse(first[0].isBatch());
+		assertNull(first[0].getFilter());
+		assertEquals(ExecutionContext.CALLER, first[0].getExecution());
+	}
+
+	public void testInheritedHandlers() {
+		HandlerMethod[] handlers = HandlerMethod.forClass(SubListener.class);
+
+		assertEquals(1, handlers.length);
+		assertEquals("onEvent", handlers[0].getMethod().getName());
+	}
+
+	public void testNoHandlers() {
+		HandlerMethod[] handlers = HandlerMethod.forClass(NotAListener.class);
+
+		assertEquals(0, handlers.length);
+		assertSame(handlers, HandlerMethod.forClass(Object.class));
+	}
+
+	public void testCreate() throws NoSuchMethodException {
+		Method m = NotAListener.class.getMethod("onEvent", TestEvent.class);
+		HandlerMethod handler = HandlerMethod.create(m, 3, true);
+
+		assertNotNull(handler);
+		assertSame(m, handler.getMethod());
+		assertEquals(3, handler.getPriority());
+		assertTrue(handler.isVetoable());
+	}
+
+	public void testInvalidHandlersSkipped() throws NoSuchMethodException {
+		Method twoParameters = NotAListener.class.getMethod(
+				"twoParameters", TestEvent.class, Object.class);
+		Method notAnEvent = NotAListener.class.getMethod(
+				"notAnEvent", String.class);
+
+		assertNull(HandlerMethod.create(twoParameters, 0, true));
+		assertNull(HandlerMethod.create(notAnEvent, 0, true));
+	}
+
+	public void testListenersShareHandlers() {
+		EventBus bus = new EventBus();
+		bus.add(TestEvent.class);
+
+		EventRegistration a = bus.register(new Listener());
+		EventRegistration b = bus.register(new Listener());
+
+		assertSame(a.getEntries().get(0).getInvoker(),
+				b.getEntries().get(0).getInvoker());
+	}
+
+}
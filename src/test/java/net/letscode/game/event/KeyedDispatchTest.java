@@ -0,0 +1,141 @@
+package net.letscode.game.event;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests listeners registered for a single context with
+ * {@link EventBus#register(Object, Object)}.
+ */
+public class KeyedDispatchTest extends TestCase {
+
+	public static class ZoneEvent extends ContextualEvent<String> {
+
+		public ZoneEvent(String zone) {
+			super(zone);
+		}
+
+	}
+
+	public static class Listener {
+
+		private final String name;
+		private final List<String> log;
+
+		public Listener(String name, List<String> log) {
+			this.name = name;
+			this.log = log;
+		}
+
+		@EventHandler
+		public void onEvent(ZoneEvent event) {
+			log.add(name + ":" + event.getContext());
+		}
+
+	}
+
+	public static class HighListener extends Listener {
+
+		public HighListener(String name, List<String> log) {
+			super(name, log);
+		}
+
+		@Override
+		@EventHandler(priority = 10)
+		public void onEvent(ZoneEvent event) {
+			super.onEvent(event);
+		}
+
+	}
+
+	private EventBus bus;
+	private List<String> log;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(ZoneEvent.class);
+
+		log = new ArrayList<>();
+	}
+
+	private EventQueueDefinition queue() {
+		return bus.getQueueForClass(ZoneEvent.class);
+	}
+
+	public void testOnlyMatchingContext() {
+		bus.register(new Listener("a", log), "zone-a");
+		bus.register(new Listener("b", log), "zone-b");
+		assertEquals(2, queue().getKeyedCount());
+
+		bus.push(new ZoneEvent("zone-a"));
+		bus.push(new ZoneEvent("zone-c"));
+		bus.push(new ZoneEvent(null));
+
+		assertEquals(1, log.size());
+		assertEquals("a:zone-a", log.get(0));
+	}
+
+	public void testContextsComparedByEquality() {
+		bus.register(new Listener("a", log), new String("zone"));
+
+		bus.push(new ZoneEvent(new String("zone")));
+		assertEquals(1, log.size());
+	}
+
+	public void testMergedByPriority() {
+		bus.register(new Listener("unkeyed", log));
+		bus.register(new HighListener("high", log), "zone");
+		bus.register(new Listener("keyed", log), "zone");
+
+		bus.push(new ZoneEvent("zone"));
+
+		// unkeyed entries come first at equal priority
+		assertEquals(3, log.size());
+		assertEquals("high:zone", log.get(0));
+		assertEquals("unkeyed:zone", log.get(1));
+		assertEquals("keyed:zone", log.get(2));
+	}
+
+	public void testCancel() {
+		EventRegistration registration =
+				bus.register(new Listener("a", log), "zone");
+		bus.register(new Listener("b", log), "zone");
+
+		registration.cancel();
+		assertEquals(1, queue().getKeyedCount());
+
+		bus.push(new ZoneEvent("zone"));
+		assertEquals(1, log.size());
+		assertEquals("b:zone", log.get(0));
+	}
+
+	public void testWeakContextCollected() throws InterruptedException {
+		Object context = new Object();
+		bus.registerWeak(new Listener("a", log), context);
+
+		WeakReference<Object> ref = new WeakReference<>(context);
+		context = null;
+		WeakRegistrationTest.collect(ref);
+
+		// the dead context's array goes on the next registration
+		bus.register(new Listener("b", log), "zone");
+		assertEquals(1, queue().getKeyedCount());
+	}
+
+	public void testManyContexts() {
+		for (int i = 0; i < 100; i++) {
+			bus.register(new Listener("l" + i, log), "zone-" + i);
+		}
+
+		for (int i = 0; i < 100; i += 10) {
+			bus.push(new ZoneEvent("zone-" + i));
+		}
+
+		assertEquals(10, log.size());
+		assertEquals("l90:zone-90", log.get(9));
+	}
+
+}
@@ -0,0 +1,108 @@
+package net.letscode.game.event;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests that handlers invoked through a {@link MethodHandleInvoker} behave as
+ * they did when they were invoked reflectively: exceptions, vetoes included,
+ * are logged and the remaining handlers still run.
+ */
+public class MethodHandleInvokerTest extends TestCase {
+
+	public static class TestEvent extends Event {
+	}
+
+	private static final List<String> calls = new ArrayList<>();
+
+	public static class Listener {
+
+		@EventHandler(priority = EventPriority.HIGHEST)
+		public void veto(TestEvent event) {
+			calls.add("veto");
+			throw new EventVetoException();
+		}
+
+		@EventHandler(priority = EventPriority.HIGH)
+		public void fail(TestEvent event) {
+			calls.add("fail");
+			throw new IllegalStateException("expected by the test");
+		}
+
+		@EventHandler
+		public void normal(TestEvent event) {
+			calls.add("normal");
+		}
+
+		@EventHandler(priority = EventPriority.LOW)
+		public static void lowStatic(TestEvent event) {
+			calls.add("static");
+		}
+
+	}
+
+	private EventBus bus;
+
+	@Override
+	protected void setUp() {
+		calls.clear();
+
+		bus = new EventBus();
+		bus.add(TestEvent.class);
+	}
+
+	public void testInvokerWrapsExceptions() throws Exception {
+		MethodHandleInvoker invoker = new MethodHandleInvoker(
+				Listener.class.getMethod("veto", TestEvent.class));
+
+		try {
+			invoker.invoke(new Listener(), new TestEvent());
+			fail("veto not thrown");
+		} catch (InvocationTargetException ex) {
+			assertTrue(ex.getCause() instanceof EventVetoException);
+		} catch (Throwable ex) {
+			fail("unwrapped exception: " + ex);
+		}
+	}
+
+	public void testStaticHandler() throws Throwable {
+		MethodHandleInvoker invoker = new MethodHandleInvoker(
+				Listener.class.getMethod("lowStatic", TestEvent.class));
+
+		invoker.invoke(null, new TestEvent());
+		assertEquals(1, calls.size());
+	}
+
+	public void testHandlerVetoIsOnlyLogged() {
+		bus.register(new Listener());
+		bus.push(new TestEvent());
+
+		List<String> expected = new ArrayList<>();
+		expected.add("veto");
+		expected.add("fail");
+		expected.add("normal");
+		expected.add("static");
+		assertEquals(expected, calls);
+	}
+
+	public void testConsumerVetoes() {
+		bus.register(new Listener());
+		bus.subscribe(TestEvent.class, new EventConsumer<TestEvent>() {
+
+			@Override
+			public void accept(TestEvent event) {
+				calls.add("consumer");
+				throw new EventVetoException();
+			}
+
+		}, EventPriority.HIGHEST + 1, true);
+
+		bus.push(new TestEvent());
+
+		assertEquals(1, calls.size());
+		assertEquals("consumer", calls.get(0));
+	}
+
+}
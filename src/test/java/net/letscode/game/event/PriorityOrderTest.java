@@ -0,0 +1,143 @@
+package net.letscode.game.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests the order in which an {@link EventQueueDefinition} notifies its
+ * entries, and how vetoes and registrations made during a push affect it.
+ */
+public class PriorityOrderTest extends TestCase {
+
+	public static class TestEvent extends Event {
+	}
+
+	private EventBus bus;
+	private List<String> calls;
+
+	@Override
+	protected void setUp() {
+		bus = new EventBus();
+		bus.add(TestEvent.class);
+
+		calls = new ArrayList<>();
+	}
+
+	private EventConsumer<TestEvent> record(final String name) {
+		return new EventConsumer<TestEvent>() {
+
+			@Override
+			public void accept(TestEvent event) {
+				calls.add(name);
+			}
+
+		};
+	}
+
+	private EventConsumer<TestEvent> veto(final String name) {
+		return new EventConsumer<TestEvent>() {
+
+			@Override
+			public void accept(TestEvent event) {
+				calls.add(name);
+				throw new EventVetoException();
+			}
+
+		};
+	}
+
+	private void subscribe(EventConsumer<TestEvent> c, int priority) {
+		bus.subscribe(TestEvent.class, c, priority, true);
+	}
+
+	private List<String> push() {
+		calls.clear();
+		bus.push(new TestEvent());
+
+		return new ArrayList<>(calls);
+	}
+
+	public void testDescendingPriority() {
+		subscribe(record("normal"), EventPriority.NORMAL);
+		subscribe(record("lowest"), EventPriority.LOWEST);
+		subscribe(record("highest"), EventPriority.HIGHEST);
+		subscribe(record("low"), EventPriority.LOW);
+		subscribe(record("high"), EventPriority.HIGH);
+
+		assertEquals(Arrays.asList("highest", "high", "normal", "low", "lowest"),
+				push());
+	}
+
+	public void testEqualPrioritiesInRegistrationOrder() {
+		subscribe(record("a"), EventPriority.NORMAL);
+		subscribe(record("high"), EventPriority.HIGH);
+		subscribe(record("b"), EventPriority.NORMAL);
+		subscribe(record("c"), EventPriority.NORMAL);
+
+		assertEquals(Arrays.asList("high", "a", "b", "c"), push());
+	}
+
+	public void testVetoSkipsVetoableEntries() {
+		subscribe(record("first"), EventPriority.HIGHEST);
+		subscribe(veto("veto"), EventPriority.HIGH);
+		subscribe(record("skipped"), EventPriority.NORMAL);
+		bus.subscribe(TestEvent.class, record("always"),
+				EventPriority.LOW, false);
+		subscribe(record("skipped too"), EventPriority.LOWEST);
+
+		assertEquals(Arrays.asList("first", "veto", "always"), push());
+	}
+
+	public void testMinimumPriority() {
+		subscribe(record("high"), EventPriority.HIGH);
+		subscribe(record("normal"), EventPriority.NORMAL);
+		subscribe(record("low"), EventPriority.LOW);
+
+		bus.push(new TestEvent(), EventPriority.NORMAL);
+		assertEquals(Arrays.asList("high", "normal"), calls);
+	}
+
+	public void testRegistrationDuringPush() {
+		subscribe(new EventConsumer<TestEvent>() {
+
+			private boolean added;
+
+			@Override
+			public void accept(TestEvent event) {
+				calls.add("adder");
+
+				if (!added) {
+					added = true;
+					subscribe(record("added"), EventPriority.LOW);
+				}
+			}
+
+		}, EventPriority.HIGH);
+
+		// the push in progress keeps its snapshot
+		assertEquals(Arrays.asList("adder"), push());
+		assertEquals(Arrays.asList("adder", "added"), push());
+	}
+
+	public void testCancelDuringPush() {
+		final EventRegistration[] later = new EventRegistration[1];
+		subscribe(new EventConsumer<TestEvent>() {
+
+			@Override
+			public void accept(TestEvent event) {
+				calls.add("canceller");
+				later[0].cancel();
+			}
+
+		}, EventPriority.HIGH);
+
+		later[0] = bus.subscribe(TestEvent.class, record("cancelled"));
+
+		// cancelled entries stop being notified straight away
+		assertEquals(Arrays.asList("canceller"), push());
+		assertEquals(1, bus.getQueueForClass(TestEvent.class).size());
+	}
+
+}
@@ -0,0 +1,140 @@
+package net.letscode.game.event;
+
+import java.lang.ref.WeakReference;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link EventBus#registerWeak(Object)}: weak listeners don't stay
+ * reachable through the bus, and expired entries are pruned lazily.
+ */
+public class WeakRegistrationTest extends TestCase {
+
+	public static class TestEvent extends Event {
+	}
+
+	private static int hits;
+
+	public static class Listener {
+
+		@EventHandler
+		public void onEvent(TestEvent event) {
+			hits++;
+		}
+
+	}
+
+	private EventBus bus;
+
+	@Override
+	protected void setUp() {
+		hits = 0;
+
+		bus = new EventBus();
+		bus.add(TestEvent.class);
+	}
+
+	private EventQueueDefinition queue() {
+		return bus.getQueueForClass(TestEvent.class);
+	}
+
+	/**
+	 * Runs the garbage collector until the given reference has been cleared.
+	 */
+	static void collect(WeakReference<?> ref) throws InterruptedException {
+		for (int i = 0; i < 100 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertNull("referent was never collected", ref.get());
+	}
+
+	private WeakReference<Listener> registerWeak() {
+		Listener listener = new Listener();
+		bus.registerWeak(listener);
+
+		return new WeakReference<>(listener);
+	}
+
+	public void testNotifiedWhileReachable() {
+		Listener listener = new Listener();
+		bus.registerWeak(listener);
+
+		bus.push(new TestEvent());
+		assertEquals(1, hits);
+		assertTrue(queue().getEntries().get(0).isWeak());
+	}
+
+	public void testExpiredEntriesPrunedOnPush() throws InterruptedException {
+		Listener kept = new Listener();
+		bus.registerWeak(kept);
+
+		WeakReference<Listener> ref = registerWeak();
+		collect(ref);
+
+		assertEquals(2, queue().size());
+		assertEquals(1, queue().getLiveCount());
+		assertEquals(1, queue().getExpiredCount());
+
+		bus.push(new TestEvent());
+
+		assertEquals(1, hits);
+		assertEquals(1, queue().size());
+		assertEquals(0, queue().getExpiredCount());
+		assertEquals(1, queue().getPrunedCount());
+	}
+
+	public void testManyExpiredPrunedAtOnce() throws InterruptedException {
+		WeakReference<Listener> last = null;
+		for (int i = 0; i < 50; i++) {
+			last = registerWeak();
+		}
+
+		collect(last);
+		System.gc();
+
+		bus.push(new TestEvent());
+		assertEquals(0, hits);
+
+		// anything that survived this long is collected by the next push
+		for (int i = 0; i < 100 && queue().size() > 0; i++) {
+			System.gc();
+			Thread.sleep(10);
+			bus.push(new TestEvent());
+		}
+
+		assertEquals(0, queue().size());
+		assertEquals(50, queue().getPrunedCount());
+		assertEquals(0, hits);
+	}
+
+	public void testStrongListenerStaysReachable() throws InterruptedException {
+		Listener listener = new Listener();
+		bus.register(listener);
+
+		WeakReference<Listener> ref = new WeakReference<>(listener);
+		listener = null;
+
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertNotNull(ref.get());
+
+		bus.push(new TestEvent());
+		assertEquals(1, hits);
+		assertEquals(0, queue().getPrunedCount());
+	}
+
+	public void testDeregisterWeak() {
+		Listener listener = new Listener();
+		bus.registerWeak(listener);
+		bus.deregister(listener);
+
+		bus.push(new TestEvent());
+		assertEquals(0, hits);
+		assertEquals(0, queue().size());
+	}
+
+}
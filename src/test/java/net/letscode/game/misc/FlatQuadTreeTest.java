@@ -0,0 +1,409 @@
+package net.letscode.game.misc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+import net.letscode.game.misc.QuadTree.Quadrant;
+import net.letscode.game.misc.QuadTree.TestItem;
+
+/**
+ * Tests {@link FlatQuadTree} by running the same random operations on it and
+ * on a {@link QuadTree} of the same size and depth, and checking that both
+ * agree with each other and with a brute-force scan.
+ */
+public class FlatQuadTreeTest extends TestCase {
+
+	private static final double SIZE = 1000;
+
+	private FlatQuadTree flat;
+	private QuadTree<TestItem> tree;
+	private Random random;
+
+	/**
+	 * The entries currently in both trees, by handle.
+	 */
+	private Map<Integer, TestItem> items;
+	private Map<TestItem, Integer> ids;
+	private int nextId;
+
+	private void init(int depth, long seed) {
+		flat = new FlatQuadTree(0, 0, SIZE, SIZE, depth);
+		tree = new QuadTree<>(0, 0, SIZE, SIZE, depth);
+		random = new Random(seed);
+
+		items = new HashMap<>();
+		ids = new IdentityHashMap<>();
+		nextId = 0;
+	}
+
+	private int insert(double x, double y) {
+		int id = nextId++;
+		int handle = flat.insert(id, x, y);
+		assertFalse("handle reused while live", items.containsKey(handle));
+
+		TestItem item = new TestItem(x, y);
+		tree.insert(item);
+
+		items.put(handle, item);
+		ids.put(item, id);
+
+		return handle;
+	}
+
+	private void remove(int handle) {
+		flat.remove(handle);
+		tree.remove(items.remove(handle));
+	}
+
+	private void update(int handle, double x, double y) {
+		flat.update(handle, x, y);
+
+		TestItem item = items.get(handle);
+		item.setX(x);
+		item.setY(y);
+		tree.update(item);
+	}
+
+	private double coordinate() {
+		// some entries land exactly on the edge of the tree
+		if (random.nextInt(50) == 0) {
+			return random.nextBoolean() ? SIZE / 2 : -SIZE / 2;
+		}
+
+		return (random.nextDouble() - 0.5) * SIZE;
+	}
+
+	private static double clamp(double v) {
+		return Math.max(-SIZE / 2, Math.min(SIZE / 2, v));
+	}
+
+	private int randomHandle() {
+		List<Integer> handles = new ArrayList<>(items.keySet());
+		return handles.get(random.nextInt(handles.size()));
+	}
+
+	private static int countNodes(QuadTree<?> node) {
+		int count = 1;
+		for (Quadrant q : Quadrant.values()) {
+			QuadTree<?> sub = node.getSubtree(q);
+			if (sub != null) {
+				count += countNodes(sub);
+			}
+		}
+
+		return count;
+	}
+
+	private Set<Integer> toIds(Set<TestItem> found) {
+		Set<Integer> ret = new HashSet<>();
+		for (TestItem item : found) {
+			ret.add(ids.get(item));
+		}
+
+		return ret;
+	}
+
+	private static Set<Integer> toSet(int[] results, int count) {
+		Set<Integer> ret = new HashSet<>();
+		for (int i = 0; i < count; i++) {
+			assertTrue("id found twice: " + results[i], ret.add(results[i]));
+		}
+
+		return ret;
+	}
+
+	private static Set<TestItem> identitySet() {
+		return Collections.newSetFromMap(
+				new IdentityHashMap<TestItem, Boolean>());
+	}
+
+	/**
+	 * Checks every entry and a few random queries against the quadtree and
+	 * a brute-force scan.
+	 */
+	private void check() {
+		assertEquals(items.size(), flat.getSize());
+		assertEquals(items.isEmpty(), flat.isEmpty());
+		assertEquals(countNodes(tree), flat.getNodeCount());
+
+		for (Map.Entry<Integer, TestItem> e : items.entrySet()) {
+			int handle = e.getKey();
+			TestItem item = e.getValue();
+
+			assertEquals(item.getX(), flat.getX(handle));
+			assertEquals(item.getY(), flat.getY(handle));
+			assertEquals((int) ids.get(item), flat.getId(handle));
+		}
+
+		int[] results = new int[items.size() + 1];
+
+		for (int i = 0; i < 5; i++) {
+			double x = coordinate();
+			double y = coordinate();
+			double radius = random.nextDouble() * 300;
+
+			Set<Integer> expected = new HashSet<>();
+			for (TestItem item : items.values()) {
+				double dx = item.getX() - x;
+				double dy = item.getY() - y;
+				if (dx * dx + dy * dy <= radius * radius) {
+					expected.add(ids.get(item));
+				}
+			}
+
+			assertEquals(expected, toIds(
+					tree.queryRadius(x, y, radius, identitySet())));
+
+			int count = flat.queryRadius(x, y, radius, results);
+			assertEquals(expected, toSet(results, count));
+
+			final Set<Integer> visited = new HashSet<>();
+			flat.queryRadius(x, y, radius, new FlatQuadTreeVisitor() {
+
+				@Override
+				public void visit(int id) {
+					visited.add(id);
+				}
+
+			});
+			assertEquals(expected, visited);
+
+			Boundry2D area = new Boundry2D(x, y,
+					random.nextDouble() * 400, random.nextDouble() * 400);
+
+			expected.clear();
+			for (TestItem item : items.values()) {
+				if (area.contains(item.getX(), item.getY())) {
+					expected.add(ids.get(item));
+				}
+			}
+
+			assertEquals(expected, toIds(tree.query(area, identitySet())));
+
+			count = flat.query(area, results);
+			assertEquals(expected, toSet(results, count));
+
+			// a short array still reports the full count
+			assertEquals(expected.size(), flat.query(area, new int[1]));
+		}
+	}
+
+	private void runRandom(int depth, long seed, int steps) {
+		init(depth, seed);
+
+		for (int step = 0; step < steps; step++) {
+			int op = random.nextInt(20);
+			if (op < 6 || items.isEmpty()) {
+				insert(coordinate(), coordinate());
+			} else if (op < 10) {
+				remove(randomHandle());
+			} else if (op < 19) {
+				int handle = randomHandle();
+				TestItem item = items.get(handle);
+
+				// mostly short moves within or next to the leaf, with some
+				// long ones across the tree
+				double scale = random.nextInt(4) == 0 ? 300 : 3;
+				update(handle,
+						clamp(item.getX() + random.nextGaussian() * scale),
+						clamp(item.getY() + random.nextGaussian() * scale));
+			} else {
+				flat.optimize();
+			}
+
+			if (step % 500 == 0) {
+				check();
+			}
+		}
+
+		check();
+
+		for (int handle : new ArrayList<>(items.keySet())) {
+			remove(handle);
+		}
+
+		check();
+		assertEquals(1, flat.getNodeCount());
+	}
+
+	public void testRandomSingleNode() {
+		runRandom(1, 1, 5000);
+	}
+
+	public void testRandomShallow() {
+		runRandom(3, 3, 20000);
+	}
+
+	public void testRandomDeep() {
+		runRandom(7, 7, 20000);
+	}
+
+	public void testOptimizeKeepsHandles() {
+		init(6, 6);
+
+		for (int i = 0; i < 2000; i++) {
+			insert(coordinate(), coordinate());
+		}
+
+		// scatter the entries, so optimize() has to move them around
+		for (int round = 0; round < 5; round++) {
+			for (int handle : new ArrayList<>(items.keySet())) {
+				update(handle, coordinate(), coordinate());
+			}
+		}
+
+		flat.optimize();
+		check();
+
+		// and the tree still works normally afterwards
+		for (int i = 0; i < 500; i++) {
+			remove(randomHandle());
+			insert(coordinate(), coordinate());
+		}
+
+		check();
+	}
+
+	public void testHandlesReusedAfterRemove() {
+		init(4, 4);
+
+		int a = insert(10, 10);
+		int b = insert(-10, -10);
+		int c = insert(200, -200);
+
+		remove(b);
+		try {
+			flat.getId(b);
+			fail("stale handle accepted");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		// the freed handle is the next one given out
+		assertEquals(b, insert(300, 300));
+
+		remove(a);
+		remove(c);
+		Set<Integer> reused = new HashSet<>();
+		reused.add(insert(1, 1));
+		reused.add(insert(2, 2));
+
+		Set<Integer> expected = new HashSet<>();
+		expected.add(a);
+		expected.add(c);
+		assertEquals(expected, reused);
+
+		check();
+	}
+
+	public void testNodesReusedAfterRemove() {
+		init(5, 5);
+
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			points.add(new double[] { coordinate(), coordinate() });
+		}
+
+		List<Integer> handles = new ArrayList<>();
+		for (double[] p : points) {
+			handles.add(insert(p[0], p[1]));
+		}
+
+		int nodes = flat.getNodeCount();
+		assertEquals(countNodes(tree), nodes);
+
+		for (int handle : handles) {
+			remove(handle);
+		}
+
+		assertEquals(1, flat.getNodeCount());
+		assertTrue(flat.isEmpty());
+
+		// the same points need exactly the same nodes again
+		for (double[] p : points) {
+			insert(p[0], p[1]);
+		}
+
+		assertEquals(nodes, flat.getNodeCount());
+		check();
+	}
+
+	public void testUpdateOutOfBounds() {
+		init(4, 4);
+
+		int handle = insert(10, 10);
+		try {
+			flat.update(handle, SIZE, 0);
+			fail("updated an entry out of the tree");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		// left where it was
+		assertEquals(10.0, flat.getX(handle));
+		assertEquals(10.0, flat.getY(handle));
+		check();
+	}
+
+	public void testInsertOutOfBounds() {
+		init(4, 4);
+
+		try {
+			flat.insert(0, SIZE, SIZE);
+			fail("inserted an entry out of the tree");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		assertTrue(flat.isEmpty());
+		assertEquals(1, flat.getNodeCount());
+	}
+
+	public void testClear() {
+		init(5, 5);
+
+		for (int i = 0; i < 500; i++) {
+			insert(coordinate(), coordinate());
+		}
+
+		int handle = randomHandle();
+		flat.clear();
+
+		assertTrue(flat.isEmpty());
+		assertEquals(0, flat.getSize());
+		assertEquals(1, flat.getNodeCount());
+		assertEquals(0,
+				flat.query(new Boundry2D(0, 0, SIZE, SIZE), new int[1]));
+
+		try {
+			flat.getX(handle);
+			fail("handle survived clear()");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		// start again from scratch, with a fresh quadtree to compare against
+		tree = new QuadTree<>(0, 0, SIZE, SIZE, 5);
+		items.clear();
+		ids.clear();
+
+		assertEquals(0, insert(1, 1));
+		for (int i = 0; i < 500; i++) {
+			insert(coordinate(), coordinate());
+		}
+
+		for (int i = 0; i < 200; i++) {
+			remove(randomHandle());
+		}
+
+		check();
+	}
+
+}
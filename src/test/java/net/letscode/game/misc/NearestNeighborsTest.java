@@ -0,0 +1,258 @@
+package net.letscode.game.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+import net.letscode.game.misc.QuadTree.TestItem;
+
+/**
+ * Tests {@link QuadTree#nearest(double, double, double, QuadTreeFilter,
+ * NearestNeighbors)} against a brute-force search, and the
+ * {@link NearestNeighbors} buffer itself.
+ */
+public class NearestNeighborsTest extends TestCase {
+
+	/**
+	 * Accepts items whose x coordinate rounds to an even number.
+	 */
+	private static final QuadTreeFilter<TestItem> EVEN_X =
+			new QuadTreeFilter<TestItem>() {
+
+		@Override
+		public boolean accept(TestItem item) {
+			return Math.round(item.getX()) % 2 == 0;
+		}
+
+	};
+
+	private QuadTree<TestItem> tree;
+	private List<TestItem> items;
+
+	@Override
+	protected void setUp() {
+		tree = new QuadTree<>(0, 0, 16, 16, 4);
+		items = new ArrayList<>();
+	}
+
+	private TestItem insert(double x, double y) {
+		TestItem item = new TestItem(x, y);
+		tree.insert(item);
+		items.add(item);
+
+		return item;
+	}
+
+	private static double distanceSquared(TestItem item, double x, double y) {
+		double dx = item.getX() - x;
+		double dy = item.getY() - y;
+
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Checks a search result against a brute-force scan of every item. Ties
+	 * may be broken either way, so the distances are compared by rank, and
+	 * the items only checked for being valid results at that distance.
+	 */
+	private void assertNearest(
+			NearestNeighbors<TestItem> results, double x, double y,
+			double maxDistance, QuadTreeFilter<TestItem> filter) {
+		List<Double> expected = new ArrayList<>();
+		for (TestItem item : items) {
+			double d = distanceSquared(item, x, y);
+			if (d <= maxDistance * maxDistance
+					&& (filter == null || filter.accept(item))) {
+				expected.add(d);
+			}
+		}
+
+		Collections.sort(expected);
+
+		int k = Math.min(results.getCapacity(), expected.size());
+		assertEquals(k, results.size());
+
+		Set<TestItem> seen = Collections.newSetFromMap(
+				new IdentityHashMap<TestItem, Boolean>());
+		for (int i = 0; i < k; i++) {
+			TestItem item = results.get(i);
+			double d = expected.get(i);
+
+			assertTrue("item returned twice: " + item, seen.add(item));
+			assertTrue(filter == null || filter.accept(item));
+			assertEquals(d, distanceSquared(item, x, y));
+			assertEquals(Math.sqrt(d), results.getDistance(i));
+		}
+	}
+
+	public void testNearestFirst() {
+		TestItem a = insert(1, 1);
+		TestItem b = insert(-2, 2);
+		TestItem c = insert(5, -6);
+
+		NearestNeighbors<TestItem> results =
+				tree.nearest(0, 0, new NearestNeighbors<TestItem>(3));
+
+		assertEquals(3, results.size());
+		assertSame(a, results.get(0));
+		assertSame(b, results.get(1));
+		assertSame(c, results.get(2));
+		assertEquals(Math.sqrt(2), results.getDistance(0));
+	}
+
+	public void testMaxDistance() {
+		insert(1, 0);
+		insert(3, 0);
+		insert(3, 0.01);
+
+		NearestNeighbors<TestItem> results = tree.nearest(
+				0, 0, 3, null, new NearestNeighbors<TestItem>(5));
+
+		// items exactly maxDistance away are included
+		assertEquals(2, results.size());
+		assertEquals(3.0, results.getDistance(1));
+	}
+
+	public void testFilter() {
+		insert(1, 1);
+		TestItem b = insert(2, 3);
+		insert(3, 0);
+
+		NearestNeighbors<TestItem> results = tree.nearest(
+				0, 0, Double.POSITIVE_INFINITY, EVEN_X,
+				new NearestNeighbors<TestItem>(5));
+
+		assertEquals(1, results.size());
+		assertSame(b, results.get(0));
+	}
+
+	public void testTies() {
+		TestItem[] ring = {
+			insert(2, 0), insert(0, 2), insert(-2, 0), insert(0, -2)
+		};
+		insert(3, 3);
+
+		NearestNeighbors<TestItem> results =
+				tree.nearest(0, 0, new NearestNeighbors<TestItem>(2));
+
+		assertEquals(2, results.size());
+		assertEquals(2.0, results.getDistance(0));
+		assertEquals(2.0, results.getDistance(1));
+		assertNotSame(results.get(0), results.get(1));
+		assertTrue(Arrays.asList(ring).contains(results.get(0)));
+		assertTrue(Arrays.asList(ring).contains(results.get(1)));
+	}
+
+	public void testCapacityLargerThanTree() {
+		insert(1, 1);
+		insert(2, 2);
+
+		NearestNeighbors<TestItem> results =
+				tree.nearest(7, 7, new NearestNeighbors<TestItem>(10));
+
+		assertEquals(2, results.size());
+		assertEquals(10, results.getCapacity());
+		assertTrue(results.getDistance(0) <= results.getDistance(1));
+	}
+
+	public void testEmptyTree() {
+		NearestNeighbors<TestItem> results =
+				tree.nearest(0, 0, new NearestNeighbors<TestItem>(3));
+
+		assertTrue(results.isEmpty());
+	}
+
+	public void testIndexChecked() {
+		insert(1, 1);
+		NearestNeighbors<TestItem> results =
+				tree.nearest(0, 0, new NearestNeighbors<TestItem>(3));
+
+		for (int index : new int[] { -1, 1, 3 }) {
+			try {
+				results.get(index);
+				fail("expected IndexOutOfBoundsException for " + index);
+			} catch (IndexOutOfBoundsException ex) {
+				// expected
+			}
+
+			try {
+				results.getDistance(index);
+				fail("expected IndexOutOfBoundsException for " + index);
+			} catch (IndexOutOfBoundsException ex) {
+				// expected
+			}
+		}
+	}
+
+	public void testInvalidCapacity() {
+		try {
+			new NearestNeighbors<TestItem>(0);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public void testBufferReuse() {
+		for (int i = 0; i < 20; i++) {
+			insert(i % 8 - 4, i / 8 - 1);
+		}
+
+		NearestNeighbors<TestItem> results = new NearestNeighbors<>(8);
+
+		tree.nearest(0, 0, results);
+		assertEquals(8, results.size());
+
+		// a smaller result replaces the previous one entirely
+		tree.nearest(0, 0, 1, null, results);
+		assertNearest(results, 0, 0, 1, null);
+
+		tree.nearest(0, 0, 0.5, EVEN_X, results);
+		assertNearest(results, 0, 0, 0.5, EVEN_X);
+
+		results.clear();
+		assertTrue(results.isEmpty());
+	}
+
+	public void testRandomSearchesMatchBruteForce() {
+		Random random = new Random(23);
+		tree = new QuadTree<>(0, 0, 1000, 1000, 6);
+
+		for (int i = 0; i < 1500; i++) {
+			// integer coordinates, and some duplicates, so there are ties
+			double x = random.nextInt(1000) - 500;
+			double y = random.nextInt(1000) - 500;
+			insert(x, y);
+			if (random.nextInt(10) == 0) {
+				insert(x, y);
+			}
+		}
+
+		// one buffer is reused for every search, whatever its result size
+		NearestNeighbors<TestItem> big = new NearestNeighbors<>(2000);
+		NearestNeighbors<TestItem> small = new NearestNeighbors<>(16);
+
+		for (int i = 0; i < 300; i++) {
+			double x = random.nextInt(1200) - 600;
+			double y = random.nextInt(1200) - 600;
+
+			double maxDistance = random.nextBoolean()
+					? Double.POSITIVE_INFINITY
+					: random.nextInt(200);
+			QuadTreeFilter<TestItem> filter =
+					random.nextBoolean() ? EVEN_X : null;
+
+			NearestNeighbors<TestItem> results =
+					(i % 10 == 0) ? big : small;
+
+			assertSame(results,
+					tree.nearest(x, y, maxDistance, filter, results));
+			assertNearest(results, x, y, maxDistance, filter);
+		}
+	}
+
+}
@@ -0,0 +1,191 @@
+package net.letscode.game.misc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+import net.letscode.game.misc.QuadTree.TestItem;
+
+/**
+ * Tests the {@link QuadTree} range queries, {@code query} and
+ * {@code queryRadius}, against a brute-force scan.
+ */
+public class QuadTreeQueryTest extends TestCase {
+
+	private QuadTree<TestItem> tree;
+	private List<TestItem> items;
+
+	@Override
+	protected void setUp() {
+		tree = new QuadTree<>(0, 0, 16, 16, 4);
+		items = new ArrayList<>();
+	}
+
+	private TestItem insert(double x, double y) {
+		TestItem item = new TestItem(x, y);
+		tree.insert(item);
+		items.add(item);
+
+		return item;
+	}
+
+	private static Set<TestItem> identitySet() {
+		return Collections.newSetFromMap(
+				new IdentityHashMap<TestItem, Boolean>());
+	}
+
+	private Set<TestItem> within(Boundry2D area) {
+		Set<TestItem> ret = identitySet();
+		for (TestItem item : items) {
+			if (area.contains(item.getX(), item.getY())) {
+				ret.add(item);
+			}
+		}
+
+		return ret;
+	}
+
+	private Set<TestItem> near(double x, double y, double radius) {
+		Set<TestItem> ret = identitySet();
+		for (TestItem item : items) {
+			double dx = item.getX() - x;
+			double dy = item.getY() - y;
+			if (dx * dx + dy * dy <= radius * radius) {
+				ret.add(item);
+			}
+		}
+
+		return ret;
+	}
+
+	public void testQuery() {
+		TestItem a = insert(1, 1);
+		TestItem b = insert(3, 3);
+		insert(-5, 5);
+		insert(7, -7);
+
+		Set<TestItem> found =
+				tree.query(new Boundry2D(2, 2, 4, 4), identitySet());
+
+		assertEquals(2, found.size());
+		assertTrue(found.contains(a));
+		assertTrue(found.contains(b));
+	}
+
+	public void testQueryEdgesInclusive() {
+		TestItem corner = insert(4, 4);
+		TestItem edge = insert(0, 2);
+		insert(4.01, 4);
+
+		Set<TestItem> found =
+				tree.query(new Boundry2D(2, 2, 4, 4), identitySet());
+
+		assertEquals(2, found.size());
+		assertTrue(found.contains(corner));
+		assertTrue(found.contains(edge));
+	}
+
+	public void testQueryWholeTree() {
+		for (int i = -7; i <= 7; i += 2) {
+			insert(i, -i);
+		}
+
+		assertEquals(items.size(),
+				tree.query(new Boundry2D(0, 0, 100, 100),
+						new ArrayList<TestItem>()).size());
+		assertTrue(tree.query(new Boundry2D(50, 50, 10, 10),
+				new ArrayList<TestItem>()).isEmpty());
+	}
+
+	public void testQueryEmptyTree() {
+		assertTrue(tree.query(new Boundry2D(0, 0, 16, 16),
+				new ArrayList<TestItem>()).isEmpty());
+		assertTrue(tree.queryRadius(0, 0, 8, new ArrayList<TestItem>())
+				.isEmpty());
+	}
+
+	public void testQueryAppendsToResults() {
+		TestItem a = insert(1, 1);
+		TestItem other = new TestItem(100, 100);
+
+		List<TestItem> results = new ArrayList<>();
+		results.add(other);
+
+		assertSame(results,
+				tree.query(new Boundry2D(0, 0, 4, 4), results));
+		assertEquals(2, results.size());
+		assertSame(other, results.get(0));
+		assertSame(a, results.get(1));
+	}
+
+	public void testQueryRadius() {
+		TestItem a = insert(1, 1);
+		insert(3, 3);
+		insert(-5, 5);
+
+		Set<TestItem> found = tree.queryRadius(0, 0, 2, identitySet());
+
+		assertEquals(Collections.singleton(a), found);
+	}
+
+	public void testQueryRadiusEdgeInclusive() {
+		TestItem edge = insert(3, 4);
+		insert(3, 4.01);
+
+		Set<TestItem> found = tree.queryRadius(0, 0, 5, identitySet());
+
+		assertEquals(Collections.singleton(edge), found);
+	}
+
+	public void testVisitorsMatchCollections() {
+		Random random = new Random(22);
+		for (int i = 0; i < 200; i++) {
+			insert(random.nextDouble() * 16 - 8, random.nextDouble() * 16 - 8);
+		}
+
+		final Set<TestItem> visited = identitySet();
+		QuadTreeVisitor<TestItem> visitor = new QuadTreeVisitor<TestItem>() {
+
+			@Override
+			public void visit(TestItem item) {
+				assertTrue("item visited twice: " + item, visited.add(item));
+			}
+
+		};
+
+		Boundry2D area = new Boundry2D(1, -2, 7, 5);
+		tree.query(area, visitor);
+		assertEquals(tree.query(area, identitySet()), visited);
+
+		visited.clear();
+		tree.queryRadius(-1, 2, 4.5, visitor);
+		assertEquals(tree.queryRadius(-1, 2, 4.5, identitySet()), visited);
+	}
+
+	public void testRandomQueriesMatchBruteForce() {
+		Random random = new Random(2);
+		tree = new QuadTree<>(0, 0, 1000, 1000, 6);
+
+		for (int i = 0; i < 2000; i++) {
+			insert(random.nextDouble() * 1000 - 500,
+					random.nextDouble() * 1000 - 500);
+		}
+
+		for (int i = 0; i < 200; i++) {
+			double x = random.nextDouble() * 1200 - 600;
+			double y = random.nextDouble() * 1200 - 600;
+
+			Boundry2D area = new Boundry2D(x, y,
+					random.nextDouble() * 300, random.nextDouble() * 300);
+			assertEquals(within(area), tree.query(area, identitySet()));
+
+			double radius = random.nextDouble() * 200;
+			assertEquals(near(x, y, radius),
+					tree.queryRadius(x, y, radius, identitySet()));
+		}
+	}
+
+}
@@ -0,0 +1,385 @@
+package net.letscode.game.misc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+import net.letscode.game.misc.QuadTree.Quadrant;
+import net.letscode.game.misc.QuadTree.TestItem;
+
+/**
+ * Tests {@link QuadTree} removal, pruning, iteration and updates.
+ *
+ * <p>Most tests use a 16x16 tree with a maximum depth of 4, so leaves are 2x2
+ * and every item sits three subtrees below the root.</p>
+ */
+public class QuadTreeTest extends TestCase {
+
+	private QuadTree<TestItem> tree;
+
+	@Override
+	protected void setUp() {
+		tree = new QuadTree<>(0, 0, 16, 16, 4);
+	}
+
+	private TestItem insert(double x, double y) {
+		TestItem item = new TestItem(x, y);
+		tree.insert(item);
+
+		return item;
+	}
+
+	private static Set<TestItem> identitySet() {
+		return Collections.newSetFromMap(
+				new IdentityHashMap<TestItem, Boolean>());
+	}
+
+	private Set<TestItem> iterate() {
+		Set<TestItem> ret = identitySet();
+		for (TestItem item : tree) {
+			assertTrue("item iterated twice: " + item, ret.add(item));
+		}
+
+		return ret;
+	}
+
+	public void testInsertPlacesItemsInLeaves() {
+		TestItem item = insert(5, 5);
+
+		QuadTree<TestItem> leaf = item.getQuadTreeParent();
+		assertEquals(4, leaf.getDepth());
+		assertSame(tree, leaf.getRoot());
+		assertTrue(leaf.getBoundry().contains(5, 5));
+		assertEquals(Collections.singletonList(item), leaf.getChildren());
+		assertTrue(tree.getChildren().isEmpty());
+	}
+
+	public void testRemoveThroughRoot() {
+		TestItem a = insert(5, 5);
+		TestItem b = insert(-5, -5);
+
+		tree.remove(a);
+
+		assertNull(a.getQuadTreeParent());
+		assertEquals(-1, a.getQuadTreeIndex());
+		assertEquals(Collections.singleton(b), iterate());
+	}
+
+	public void testRemoveThroughSiblingSubtree() {
+		TestItem a = insert(5, 5);
+		TestItem b = insert(-5, -5);
+
+		// b lives under SOUTHWEST, but any tree with the same root will do
+		QuadTree<TestItem> northEast = tree.getSubtree(Quadrant.NORTHEAST);
+		northEast.remove(b);
+
+		assertNull(b.getQuadTreeParent());
+		assertNull(tree.getSubtree(Quadrant.SOUTHWEST));
+		assertEquals(Collections.singleton(a), iterate());
+	}
+
+	public void testRemoveKeepsIndicesConsistent() {
+		// all in the same 2x2 leaf
+		TestItem a = insert(5.1, 5.1);
+		TestItem b = insert(5.2, 5.2);
+		TestItem c = insert(5.3, 5.3);
+		TestItem d = insert(5.4, 5.4);
+		TestItem e = insert(5.5, 5.5);
+
+		QuadTree<TestItem> leaf = a.getQuadTreeParent();
+		assertSame(leaf, e.getQuadTreeParent());
+
+		// the last item moves into the removed item's slot
+		tree.remove(b);
+		assertEquals(1, e.getQuadTreeIndex());
+
+		tree.remove(e);
+		tree.remove(a);
+
+		assertEquals(2, leaf.getChildren().size());
+		for (TestItem item : leaf.getChildren()) {
+			assertSame(item, leaf.getChildren().get(item.getQuadTreeIndex()));
+		}
+
+		tree.remove(c);
+		tree.remove(d);
+		assertTrue(tree.isEmpty());
+	}
+
+	public void testRemoveForeignItemFails() {
+		QuadTree<TestItem> other = new QuadTree<>(0, 0, 16, 16, 4);
+		TestItem item = new TestItem(1, 1);
+		other.insert(item);
+
+		try {
+			tree.remove(item);
+			fail("removed an item from another tree");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		assertNotNull(item.getQuadTreeParent());
+
+		try {
+			tree.remove(new TestItem(1, 1));
+			fail("removed an item that was never inserted");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public void testPruneEmptiedBranch() {
+		TestItem item = insert(5, 5);
+		QuadTree<TestItem> northEast = tree.getSubtree(Quadrant.NORTHEAST);
+		assertNotNull(northEast);
+
+		tree.remove(item);
+
+		assertNull(tree.getSubtree(Quadrant.NORTHEAST));
+		assertNull(northEast.getSubtree(Quadrant.NORTHEAST));
+		assertTrue(tree.isEmpty());
+		assertFalse(tree.iterator().hasNext());
+	}
+
+	public void testPruneStopsAtSharedAncestor() {
+		// same depth 2 and 3 trees, different leaves
+		TestItem a = insert(5, 5);
+		TestItem b = insert(7, 7);
+
+		QuadTree<TestItem> leafA = a.getQuadTreeParent();
+		QuadTree<TestItem> leafB = b.getQuadTreeParent();
+		assertNotSame(leafA, leafB);
+		assertSame(leafA.getParent(), leafB.getParent());
+
+		QuadTree<TestItem> shared = leafA.getParent();
+		tree.remove(a);
+
+		// only a's leaf goes
+		assertSame(shared, leafB.getParent());
+		assertSame(leafB, shared.getSubtree(Quadrant.NORTHEAST));
+		assertNull(shared.getSubtree(Quadrant.SOUTHWEST));
+		assertSame(tree.getSubtree(Quadrant.NORTHEAST), shared.getParent());
+		assertFalse(tree.isEmpty());
+
+		tree.remove(b);
+		assertNull(tree.getSubtree(Quadrant.NORTHEAST));
+	}
+
+	public void testPruneKeepsNonEmptyLeaf() {
+		TestItem a = insert(5.1, 5.1);
+		TestItem b = insert(5.2, 5.2);
+
+		QuadTree<TestItem> leaf = a.getQuadTreeParent();
+		tree.remove(a);
+
+		assertSame(leaf, b.getQuadTreeParent());
+		assertNotNull(tree.getSubtree(Quadrant.NORTHEAST));
+		assertEquals(Collections.singleton(b), iterate());
+	}
+
+	public void testIterateAllQuadrants() {
+		Set<TestItem> expected = identitySet();
+		expected.add(insert(5, 5));
+		expected.add(insert(-5, 5));
+		expected.add(insert(-5, -5));
+		expected.add(insert(5, -5));
+		expected.add(insert(0, 0));
+		expected.add(insert(7.9, -7.9));
+
+		assertEquals(expected, iterate());
+	}
+
+	public void testIterateOnlySouthEast() {
+		TestItem a = insert(5, -5);
+		TestItem b = insert(1, -1);
+
+		assertNotNull(tree.getSubtree(Quadrant.SOUTHEAST));
+		assertNull(tree.getSubtree(Quadrant.NORTHEAST));
+
+		Set<TestItem> expected = identitySet();
+		expected.add(a);
+		expected.add(b);
+		assertEquals(expected, iterate());
+	}
+
+	public void testIterateManyItemsPerLeaf() {
+		Random random = new Random(4);
+
+		Set<TestItem> expected = identitySet();
+		for (int i = 0; i < 500; i++) {
+			expected.add(insert(
+					random.nextDouble() * 16 - 8,
+					random.nextDouble() * 16 - 8));
+		}
+
+		assertEquals(expected, iterate());
+	}
+
+	public void testIterateEmptyTree() {
+		Iterator<TestItem> it = tree.iterator();
+		assertFalse(it.hasNext());
+
+		try {
+			it.next();
+			fail("next() on an exhausted iterator");
+		} catch (NoSuchElementException ex) {
+			// expected
+		}
+	}
+
+	public void testUpdateWithinLeaf() {
+		TestItem item = insert(5.1, 5.1);
+		QuadTree<TestItem> leaf = item.getQuadTreeParent();
+		int index = item.getQuadTreeIndex();
+
+		item.setX(5.9);
+		item.setY(4.1);
+		tree.update(item);
+
+		assertSame(leaf, item.getQuadTreeParent());
+		assertEquals(index, item.getQuadTreeIndex());
+	}
+
+	public void testUpdateToSiblingLeaf() {
+		TestItem item = insert(5, 5);
+		TestItem other = insert(5.5, 5.5);
+		QuadTree<TestItem> leaf = item.getQuadTreeParent();
+		QuadTree<TestItem> parent = leaf.getParent();
+
+		// (7, 7) is in the same depth 3 tree, but a different leaf
+		item.setX(7);
+		item.setY(7);
+		tree.update(item);
+
+		QuadTree<TestItem> moved = item.getQuadTreeParent();
+		assertNotSame(leaf, moved);
+		assertSame(parent, moved.getParent());
+		assertTrue(moved.getBoundry().contains(7, 7));
+
+		// the old leaf still holds the other item
+		assertSame(leaf, other.getQuadTreeParent());
+		assertEquals(Collections.singletonList(other), leaf.getChildren());
+		assertEquals(0, other.getQuadTreeIndex());
+	}
+
+	public void testUpdateAcrossRootQuadrants() {
+		TestItem item = insert(5, 5);
+		QuadTree<TestItem> northEast = tree.getSubtree(Quadrant.NORTHEAST);
+
+		item.setX(-5);
+		item.setY(-5);
+		tree.update(item);
+
+		// the old branch is pruned all the way up to the root
+		assertNull(tree.getSubtree(Quadrant.NORTHEAST));
+		assertNull(northEast.getSubtree(Quadrant.NORTHEAST));
+		assertSame(tree.getSubtree(Quadrant.SOUTHWEST),
+				item.getQuadTreeParent().getParent().getParent());
+		assertEquals(Collections.singleton(item), iterate());
+	}
+
+	public void testUpdateFromSubtree() {
+		TestItem item = insert(5, 5);
+		insert(-5, -5);
+
+		// update works from any tree with the same root
+		item.setX(5);
+		item.setY(-5);
+		tree.getSubtree(Quadrant.SOUTHWEST).update(item);
+
+		assertTrue(item.getQuadTreeParent().getBoundry().contains(5, -5));
+		assertNull(tree.getSubtree(Quadrant.NORTHEAST));
+		assertEquals(2, iterate().size());
+	}
+
+	public void testUpdateOutOfBounds() {
+		TestItem item = insert(5, 5);
+		QuadTree<TestItem> leaf = item.getQuadTreeParent();
+
+		item.setX(100);
+		try {
+			tree.update(item);
+			fail("updated an item out of the tree");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		// left where it was
+		assertSame(leaf, item.getQuadTreeParent());
+		assertEquals(Collections.singleton(item), iterate());
+
+		item.setX(5);
+		tree.remove(item);
+		assertTrue(tree.isEmpty());
+	}
+
+	public void testUpdateInsertsOrphans() {
+		TestItem item = new TestItem(3, 3);
+		tree.update(item);
+
+		assertNotNull(item.getQuadTreeParent());
+		assertEquals(Collections.singleton(item), iterate());
+	}
+
+	public void testRandomUpdatesMatchBruteForce() {
+		Random random = new Random(24);
+		tree = new QuadTree<>(0, 0, 1000, 1000, 6);
+
+		List<TestItem> items = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			items.add(insert(
+					random.nextDouble() * 1000 - 500,
+					random.nextDouble() * 1000 - 500));
+		}
+
+		for (int round = 0; round < 20; round++) {
+			for (TestItem item : items) {
+				// mostly short moves, with the odd jump across the tree
+				double step = (random.nextInt(10) == 0) ? 400 : 10;
+				item.setX(clamp(item.getX() + random.nextGaussian() * step));
+				item.setY(clamp(item.getY() + random.nextGaussian() * step));
+				tree.update(item);
+
+				assertTrue(item.getQuadTreeParent().getBoundry().contains(
+						item.getX(), item.getY()));
+			}
+
+			double x = random.nextDouble() * 1000 - 500;
+			double y = random.nextDouble() * 1000 - 500;
+			double radius = random.nextDouble() * 150;
+
+			Set<TestItem> expected = identitySet();
+			for (TestItem item : items) {
+				double dx = item.getX() - x;
+				double dy = item.getY() - y;
+				if (dx * dx + dy * dy <= radius * radius) {
+					expected.add(item);
+				}
+			}
+
+			assertEquals(expected,
+					tree.queryRadius(x, y, radius, identitySet()));
+		}
+
+		assertEquals(items.size(), iterate().size());
+
+		for (TestItem item : items) {
+			tree.remove(item);
+		}
+
+		assertTrue(tree.isEmpty());
+		for (Quadrant q : Quadrant.values()) {
+			assertNull(tree.getSubtree(q));
+		}
+	}
+
+	private static double clamp(double v) {
+		return Math.max(-500, Math.min(500, v));
+	}
+
+}